@@ -0,0 +1,32 @@
+// Codec.java, created Fri Oct 16 15:02:37 2026
+// Copyright (C) 2005 Alexandru Salcianu <salcianu@alum.mit.edu>
+// Licensed under the Modified BSD Licence; see COPYING for details.
+package jpaul.Constraints;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * <code>Codec</code> translates values of type <code>T</code> to and
+ * from a compact binary form.  Used by {@link MappedSolReader} to
+ * save the values of the variables from a solution into a file, and
+ * to decode them later from the (memory-mapped) file.  {@link Codecs}
+ * contains codecs for a few common types.
+ *
+ * @see jpaul.Constraints.SetConstraints.SetCodec
+ * @version $Id$ */
+public interface Codec<T> {
+
+    /** Writes the binary form of <code>value</code> to
+	<code>out</code>.  <code>value</code> is never
+	<code>null</code>. */
+    public void write(T value, DataOutput out) throws IOException;
+
+    /** Reads a value written by {@link #write write}, starting at
+	the current position of <code>in</code>.  Must leave the
+	position of <code>in</code> after the last byte of the
+	value. */
+    public T read(ByteBuffer in);
+
+}
@@ -0,0 +1,93 @@
+// Codecs.java, created Fri Oct 16 15:06:12 2026
+// Copyright (C) 2005 Alexandru Salcianu <salcianu@alum.mit.edu>
+// Licensed under the Modified BSD Licence; see COPYING for details.
+package jpaul.Constraints;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+
+/**
+ * <code>Codecs</code> contains codecs for a few common types.  For
+ * each kind of codec, we have a corresponding static method.
+ *
+ * @version $Id$ */
+public final class Codecs {
+
+    /** Make sure nobody can instantiate this class. */
+    private Codecs() {/* no instances */ }
+
+    /** Returns a codec for <code>Integer</code>s (4 bytes per
+	integer). */
+    public static Codec<Integer> integer() {
+	return INTEGER;
+    }
+
+    private static final Codec<Integer> INTEGER = new Codec<Integer>() {
+	public void write(Integer value, DataOutput out) throws IOException {
+	    out.writeInt(value.intValue());
+	}
+	public Integer read(ByteBuffer in) {
+	    return Integer.valueOf(in.getInt());
+	}
+    };
+
+
+    /** Returns a codec for <code>Long</code>s (8 bytes per long). */
+    public static Codec<Long> longs() {
+	return LONG;
+    }
+
+    private static final Codec<Long> LONG = new Codec<Long>() {
+	public void write(Long value, DataOutput out) throws IOException {
+	    out.writeLong(value.longValue());
+	}
+	public Long read(ByteBuffer in) {
+	    return Long.valueOf(in.getLong());
+	}
+    };
+
+
+    /** Returns a codec for <code>String</code>s (UTF-8, preceded by
+	the length in bytes). */
+    public static Codec<String> string() {
+	return STRING;
+    }
+
+    private static final Codec<String> STRING = new Codec<String>() {
+	public void write(String value, DataOutput out) throws IOException {
+	    byte[] bytes = utf8(value);
+	    out.writeInt(bytes.length);
+	    out.write(bytes);
+	}
+	public String read(ByteBuffer in) {
+	    byte[] bytes = new byte[in.getInt()];
+	    in.get(bytes);
+	    return fromUtf8(bytes);
+	}
+    };
+
+
+    // returns the UTF-8 encoding of s
+    static byte[] utf8(String s) {
+	try {
+	    return s.getBytes("UTF-8");
+	}
+	catch(UnsupportedEncodingException e) {
+	    // every JVM supports UTF-8
+	    throw new Error(e);
+	}
+    }
+
+    // decodes UTF-8 bytes
+    static String fromUtf8(byte[] bytes) {
+	try {
+	    return new String(bytes, "UTF-8");
+	}
+	catch(UnsupportedEncodingException e) {
+	    throw new Error(e);
+	}
+    }
+
+}
@@ -129,6 +129,57 @@ public abstract class Constraint<V extends Var<Info>, Info> {
     }
 
 
+    /** Checks whether <code>this</code> constraint is delta-aware.
+	A delta-aware constraint reads its inputs using {@link
+	#getDelta getDelta} and produces correct
+	results even if it sees only the part of each input that
+	changed since its previous execution: e.g., the operation the
+	constraint performs distributes over the join.  In the
+	difference propagation mode (see {@link
+	ConstraintSystem#setDiffPropagation setDiffPropagation}), the
+	solver passes only the new parts of the inputs to such
+	constraints.  Examples: {@link LtConstraint}, {@link
+	CtConstraint}.
+
+	<p>By default, it returns <code>false</code>. */
+    public boolean isDeltaAware() { return false; }
+
+
+    /** Returns the part of the value of <code>v</code> that the
+	currently executed constraint has not seen yet (see {@link
+	DeltaSolAccessor#getDelta DeltaSolAccessor.getDelta}), if
+	<code>sa</code> supports difference propagation, and the full
+	value of <code>v</code> otherwise.  To be used by the
+	<code>action</code> of delta-aware constraints. */
+    protected static <V extends Var<Info>, Info> Info getDelta(SolAccessor<V,Info> sa, V v) {
+	if(sa instanceof DeltaSolAccessor/*<V,Info>*/) {
+	    return ((DeltaSolAccessor<V,Info>) sa).getDelta(v);
+	}
+	return sa.get(v);
+    }
+
+
+    /** Returns a signature of the operation <code>this</code>
+	constraint performs, or <code>null</code> if unknown.  Two
+	constraints of the same class, with equal (non-null)
+	signatures, must join the same value into their (only) output
+	variable if their input variables (in the order given by
+	{@link #in}) have equal values.  E.g., the signature of a
+	{@link CtConstraint} is its constant.  The signatures should
+	have consistent <code>equals</code> and <code>hashCode</code>
+	methods.
+
+	<p>The offline variable substitution pre-pass (see {@link
+	ConstraintSystem.Builder#setOfflineSubstitution
+	ConstraintSystem.Builder.setOfflineSubstitution}) uses the
+	signatures to prove that some variables are equal, and unify
+	them.  A subclass that changes the operation of a constraint
+	with a signature should redefine this method.
+
+	<p>By default, it returns <code>null</code>. */
+    public Object signature() { return null; }
+
+
     /** Returns a rough estimate of the evaluation cost of
         <code>this</code> constraint.  This cost has only a relative
         meaning: e.g., a constraint is more/less costly than another.
@@ -6,18 +6,36 @@ package jpaul.Constraints;
 import java.util.Collection;
 import java.util.Map;
 import java.util.LinkedHashMap;
+import java.util.HashMap;
 import java.util.Set;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.Iterator;
+import java.util.Queue;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.BitSet;
+
+import java.lang.reflect.Array;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import jpaul.Graphs.DiGraph;
+import jpaul.Graphs.ForwardNavigator;
 import jpaul.Graphs.ArcBasedDiGraph;
 import jpaul.Graphs.SCComponent;
 import jpaul.Graphs.TopSortedCompDiGraph;
 
-import jpaul.DataStructs.Pair;
 import jpaul.DataStructs.Relation;
 import jpaul.DataStructs.MapSetRelation;
 import jpaul.DataStructs.UnionFind;
@@ -27,7 +45,6 @@ import jpaul.DataStructs.NonIterableMap;
 
 import jpaul.DataStructs.WorkSet;
 import jpaul.DataStructs.WorkStack;
-import jpaul.DataStructs.WorkPriorityQueue;
 
 import java.io.PrintStream;
 
@@ -79,8 +96,73 @@ import java.io.PrintStream;
    connected component, the fixed-point solver does not execute an
    expensive constraint before iterating to saturation (i.e., no
    further progress possible) over the cheaper constraints.  This is
-   achieved by using a {@link jpaul.DataStructs.WorkPriorityQueue
-   WorkPriorityQueue} in the fixed-point solver.
+   achieved by using a priority queue (ordered by {@link
+   Constraint#cost cost}) as the workset of the fixed-point solver.
+   Other orders are available (see {@link #setWorksetStrategy
+   setWorksetStrategy}).  In the adaptive cost mode (see {@link
+   #setAdaptiveCosts setAdaptiveCosts}), the solver uses the costs it
+   measures instead of the declared ones.
+
+   <p>
+   <li><b>Direct propagation along inclusions:</b> The solver does
+   not execute the {@link LtConstraint}s between variables from the
+   same SCC.  Instead, it keeps them as arrays of variable ids, and
+   propagates the new values along them in a tight loop, before
+   executing the next constraint from the workset.
+
+   <p>
+   <li><b>Difference propagation (optional):</b> If turned on (see
+   {@link #setDiffPropagation setDiffPropagation}), the solver
+   remembers, for each {@link Constraint#isDeltaAware delta-aware}
+   constraint, the parts of its inputs that changed since its last
+   execution, and passes only those parts to the constraint (see
+   {@link DeltaSolAccessor#getDelta DeltaSolAccessor.getDelta}).  E.g., an
+   {@link LtConstraint} from a big SCC no longer re-joins the entire
+   value of its source each time it is re-executed.
+
+   <p>
+   <li><b>Lazy cycle detection (optional):</b> If turned on (see
+   {@link #setCycleDetection setCycleDetection}), the solver detects
+   cycles of {@link LtConstraint}s that were not unified before
+   solving (e.g., cycles closed by {@link #addConstraints
+   addConstraints}) and unifies their variables on the fly.
+
+   <p>
+   <li><b>Incremental solving:</b> New constraints can be added to
+   an already solved system (see {@link #addConstraints
+   addConstraints}).  The next call to {@link #solve} starts from
+   the previous solution and re-solves only the SCCs that may be
+   affected by the new constraints.
+
+   <p>
+   <li><b>Generated constraints:</b> The executed constraints may
+   add new constraints to the system (see {@link
+   GeneratingSolAccessor#addConstraint}); the solver
+   integrates them into its structures and re-solves only the
+   affected SCCs, in the same call to {@link #solve}.
+
+   <p>
+   <li><b>Demand-driven solving:</b> {@link #solveFor solveFor}
+   solves only the SCCs needed for the values of some variables, and
+   solves the other SCCs lazily, when they are first queried.
+
+   <p>
+   <li><b>Budgeted solving:</b> {@link #solve(SolveBudget)} stops
+   when a deadline, a maximal number of constraint executions, or a
+   cancellation (see {@link SolveBudget}) is hit, and returns the
+   values computed so far.
+
+   <p>
+   <li><b>Value sharing (optional):</b> If turned on (see {@link
+   #setValueSharing setValueSharing}), variables with equal values
+   share the same value object in the solution.
+
+   <p>
+   <li><b>Offline variable substitution (optional):</b> If turned on
+   (see {@link Builder#setOfflineSubstitution
+   Builder.setOfflineSubstitution}), an additional pre-pass unifies
+   the variables whose values are computed in the same way (see
+   {@link Constraint#signature}) from the same sources.
 
    </ul>
 
@@ -102,7 +184,211 @@ public class ConstraintSystem<V extends Var<Info>, Info> {
     public static boolean DEBUG = false;
 
     private static boolean DEBUG_VER = false;
-    
+
+
+    /** Turns the difference propagation mode on or off.  In this
+	mode, each {@link Constraint#isDeltaAware delta-aware}
+	constraint sees (via {@link DeltaSolAccessor#getDelta
+	DeltaSolAccessor.getDelta}) only the part of each input variable
+	that changed since the previous execution of that constraint.
+	This may drastically speed up the solver for systems with
+	large values (e.g., large sets) and large strongly connected
+	components of variables; the solution is the same.  Off by
+	default.  The change takes effect with the next call to
+	{@link #solve}; it waits for the running solves to finish. */
+    public void setDiffPropagation(boolean diffProp) {
+	structLock.writeLock().lock();
+	try {
+	    this.diffProp = diffProp;
+	}
+	finally {
+	    structLock.writeLock().unlock();
+	}
+    }
+
+    /** Checks whether the difference propagation mode is on.
+	@see #setDiffPropagation */
+    public boolean getDiffPropagation() {
+	return diffProp;
+    }
+
+    private boolean diffProp = false;
+
+
+    /** Turns the lazy cycle detection mode on or off.  In this mode,
+	each time an {@link LtConstraint} <code>vs &lt;= vd</code>
+	does not change <code>vd</code> and <code>vs</code> and
+	<code>vd</code> have the same value, the solver searches a
+	cycle of <code>LtConstraint</code>s that contains
+	<code>vs</code> and <code>vd</code> (at most once per
+	constraint).  All variables from such a cycle are equal in the
+	least solution; the solver unifies them until the end of
+	their SCC, so that their value is propagated only once.  The
+	constructor already unifies the variables from the cycles of
+	<code>LtConstraint</code>s; hence, this mode helps only for
+	the cycles that it cannot see, e.g., cycles closed by {@link
+	#addConstraints addConstraints}.  Off by default.  The change
+	takes effect with the next call to {@link #solve}; it waits
+	for the running solves to finish. */
+    public void setCycleDetection(boolean cycleDetection) {
+	structLock.writeLock().lock();
+	try {
+	    this.cycleDetection = cycleDetection;
+	}
+	finally {
+	    structLock.writeLock().unlock();
+	}
+    }
+
+    /** Checks whether the lazy cycle detection mode is on.
+	@see #setCycleDetection */
+    public boolean getCycleDetection() {
+	return cycleDetection;
+    }
+
+    private boolean cycleDetection = false;
+
+
+    /** Turns the value sharing mode on or off.  In this mode, the
+	variables with equal values share the same value object: an
+	{@link LtConstraint} <code>vs &lt;= vd</code> that gives the
+	first value of <code>vd</code> does not copy the value of
+	<code>vs</code> (the first join into one of the two variables
+	copies it), and at the end of each solve, the equal values
+	are shared through a hash-consing table.  Useful for systems
+	where many variables have the same (large) value: the
+	solution may take much less memory.  The values should have
+	consistent <code>equals</code> and <code>hashCode</code>
+	methods.  Off by default.  The change takes effect with the
+	next call to {@link #solve}; it waits for the running solves
+	to finish. */
+    public void setValueSharing(boolean valueSharing) {
+	structLock.writeLock().lock();
+	try {
+	    this.valueSharing = valueSharing;
+	}
+	finally {
+	    structLock.writeLock().unlock();
+	}
+    }
+
+    /** Checks whether the value sharing mode is on.
+	@see #setValueSharing */
+    public boolean getValueSharing() {
+	return valueSharing;
+    }
+
+    private boolean valueSharing = false;
+
+
+    /** Turns the collection of statistics on or off.  If on, each
+	call to {@link #solve()} (or {@link #solve(Executor)})
+	records, for each class of constraints and for each SCC of
+	mutually dependent variables, how many constraints were
+	executed, how much time their execution took, etc. (see
+	{@link SolverStats}).  Measuring the time of each constraint
+	execution has a small cost, so this mode is off by default.
+	The change takes effect with the next call to {@link
+	#solve}.
+
+	@see #getLastStatistics */
+    public void setStatistics(boolean collectStats) {
+	this.collectStats = collectStats;
+    }
+
+    /** Checks whether the collection of statistics is on.
+	@see #setStatistics */
+    public boolean getStatistics() {
+	return collectStats;
+    }
+
+    /** Returns the statistics for the last call to {@link #solve()}
+	(or {@link #solve(Executor)}), or <code>null</code> if the
+	collection of statistics was off for that call.
+	@see #setStatistics */
+    public SolverStats<V> getLastStatistics() {
+	structLock.readLock().lock();
+	try {
+	    return lastStats;
+	}
+	finally {
+	    structLock.readLock().unlock();
+	}
+    }
+
+    private boolean collectStats = false;
+    private SolverStats<V> lastStats = null;
+
+
+    /** Sets the strategy that decides the order in which the
+	fixed-point solver executes the constraints from an SCC (see
+	{@link WorksetStrategy}).  The solution does not depend on
+	the strategy, but the number of constraint executions may.
+	The default strategy is {@link WorksetStrategy#COST}.  The
+	change takes effect with the next call to {@link #solve}. */
+    public void setWorksetStrategy(WorksetStrategy worksetStrategy) {
+	if(worksetStrategy == null) {
+	    throw new IllegalArgumentException("null workset strategy");
+	}
+	this.worksetStrategy = worksetStrategy;
+    }
+
+    /** Returns the current workset strategy.
+	@see #setWorksetStrategy */
+    public WorksetStrategy getWorksetStrategy() {
+	return worksetStrategy;
+    }
+
+    private WorksetStrategy worksetStrategy = WorksetStrategy.COST;
+
+
+    /** Turns the adaptive cost mode on or off.  In this mode, the
+	solver times a sample of the constraint executions, and
+	records how many of them change some variable (see {@link
+	CostModel}).  The {@link WorksetStrategy#COST COST} workset
+	strategy uses these measured costs (per class of constraints)
+	instead of the {@link Constraint#cost declared} ones: useful
+	when the declared costs do not reflect the actual data.  The
+	measurements accumulate over all solves, and are kept if the
+	mode is turned off.  Off by default.  The change takes effect
+	with the next call to {@link #solve}.
+
+	@see #getCostModel */
+    public void setAdaptiveCosts(boolean adaptiveCosts) {
+	structLock.writeLock().lock();
+	try {
+	    this.adaptiveCosts = adaptiveCosts;
+	    if(adaptiveCosts && (costModel == null)) {
+		costModel = new CostModel();
+	    }
+	}
+	finally {
+	    structLock.writeLock().unlock();
+	}
+    }
+
+    /** Checks whether the adaptive cost mode is on.
+	@see #setAdaptiveCosts */
+    public boolean getAdaptiveCosts() {
+	return adaptiveCosts;
+    }
+
+    /** Returns the constraint costs measured in the adaptive cost
+	mode, or <code>null</code> if this mode was never on.
+	@see #setAdaptiveCosts */
+    public CostModel getCostModel() {
+	structLock.readLock().lock();
+	try {
+	    return costModel;
+	}
+	finally {
+	    structLock.readLock().unlock();
+	}
+    }
+
+    private boolean adaptiveCosts = false;
+    private CostModel costModel = null;
+
 
     /** Creates a <code>ConstraintSystem</code>.  Takes a collection
         of constraints, simplifies them by unifying variables known to
@@ -112,25 +398,163 @@ public class ConstraintSystem<V extends Var<Info>, Info> {
         different solutions if some of the constraints use external
         values that change. */
     public ConstraintSystem(Collection<Constraint<V,Info>> cs) {
-	findAllVars(cs);
+	this(ConstraintSystem.<V,Info>builder(cs));
+    }
 
-	cs = unifyEquals(cs);
+    private static <V extends Var<Info>, Info> Builder<V,Info> builder(Collection<Constraint<V,Info>> cs) {
+	Builder<V,Info> builder = new Builder<V,Info>();
+	builder.addAll(cs);
+	return builder;
+    }
 
-	buildSolverStructs(cs);
+    // takes over the (duplicate-free) constraints and the variables from builder
+    private ConstraintSystem(Builder<V,Info> builder) {
+	origCs = builder.cs;
+	vars   = builder.vars;
+	offlineSubst = builder.offlineSubst;
+	buildAll();
+    }
+
+    /** Checks whether the offline variable substitution pre-pass is
+	on for <code>this</code> system.
+	@see Builder#setOfflineSubstitution */
+    public boolean getOfflineSubstitution() {
+	return offlineSubst;
+    }
+
+    private final boolean offlineSubst;
+
+
+    /** <code>Builder</code> constructs a {@link ConstraintSystem}
+	from constraints that arrive one by one, e.g., from a
+	constraint generator that calls {@link #add add} for each
+	constraint it produces, or from an <code>Iterator</code> (see
+	{@link #addAll(Iterator)}).  Unlike the
+	<code>ConstraintSystem</code> constructor, a
+	<code>Builder</code> does not need all the constraints in a
+	collection beforehand.  The duplicate constraints (according
+	to <code>equals</code>) are eliminated as they arrive, and
+	{@link #build build} hands over the constraints to the new
+	system without copying them: for very large systems, the peak
+	memory consumption stays close to the memory used by the
+	constructed system. */
+    public static class Builder<V extends Var<Info>, Info> {
+
+	/** Creates an empty <code>Builder</code>. */
+	public Builder() { }
+
+	// the constraints, without duplicates; null after build
+	private ArrayList<Constraint<V,Info>> cs = new ArrayList<Constraint<V,Info>>();
+	// the same constraints, for the duplicate test
+	private NonIterableSet<Constraint<V,Info>> seen = new NonIterableSet<Constraint<V,Info>>();
+	// all variables from cs
+	private Set<V> vars = new LinkedHashSet<V>();
+	private boolean offlineSubst = false;
+
+	/** Turns the offline variable substitution pre-pass on or off
+	    for the system under construction.  This pass labels each
+	    variable with the set of operations (see {@link
+	    Constraint#signature}) that produce its value, following
+	    the dependencies in topological order, and unifies the
+	    variables with the same label: these variables are equal in
+	    the least solution, even if no inclusion cycle or single
+	    inclusion proves it.  It takes some time, and pays off only
+	    for systems where many variables are computed in the same
+	    way from the same sources.  Off by default.
+
+	    <p>Note: after this pass unifies some variables, {@link
+	    ConstraintSystem#addConstraints addConstraints} redoes all
+	    unifications whenever a new constraint updates an existing
+	    variable. */
+	public void setOfflineSubstitution(boolean offlineSubst) {
+	    this.offlineSubst = offlineSubst;
+	}
+
+	/** Adds the constraint <code>c</code> to the system under
+	    construction.
+
+	    @return <code>true</code> if <code>c</code> is new,
+	    <code>false</code> if it is a duplicate (and was
+	    ignored). */
+	public boolean add(Constraint<V,Info> c) {
+	    if(cs == null) throw new IllegalStateException("System already built");
+	    if(!seen.add(c)) return false;
+	    cs.add(c);
+	    for(V v : c.in()) {
+		vars.add(v);
+	    }
+	    for(V v : c.out()) {
+		vars.add(v);
+	    }
+	    return true;
+	}
+
+	/** Adds all constraints produced by <code>it</code>. */
+	public void addAll(Iterator<? extends Constraint<V,Info>> it) {
+	    while(it.hasNext()) {
+		add(it.next());
+	    }
+	}
+
+	/** Adds all constraints from <code>cs</code>. */
+	public void addAll(Iterable<? extends Constraint<V,Info>> cs) {
+	    addAll(cs.iterator());
+	}
+
+	/** Returns the number of (distinct) constraints added so far. */
+	public int size() {
+	    if(cs == null) throw new IllegalStateException("System already built");
+	    return cs.size();
+	}
+
+	/** Constructs the constraint system with all the constraints
+	    added so far (see {@link
+	    ConstraintSystem#ConstraintSystem(Collection)}).  After this
+	    call, <code>this</code> builder cannot be used anymore. */
+	public ConstraintSystem<V,Info> build() {
+	    if(cs == null) throw new IllegalStateException("System already built");
+	    seen = null; // enable some gc
+	    cs.trimToSize();
+	    ConstraintSystem<V,Info> sys = new ConstraintSystem<V,Info>(this);
+	    cs = null;
+	    vars = null;
+	    return sys;
+	}
+    }
+
+
+    // simplifies the original constraints and builds the solver structures from scratch
+    private void buildAll() {
+	Collection<Constraint<V,Info>> cs = unifyEquals(origCs);
 
-	v2version  = new NonIterableMap<V,int[]>(vertexHashCapacity);
-	c2versions = new NonIterableMap<Constraint<V,Info>,int[]>((3 * cs.size()) / 2);
+	buildSolverStructs(cs);
     }
 
+    // the original (non-simplified) constraints; needed if adding
+    // new constraints invalidates the variable unifications
+    private final List<Constraint<V,Info>> origCs;
+    // The generated constraints already added to origCs (see
+    // nextPass).  The simplifications may drop such a constraint
+    // (e.g., if its source is empty): it is then missing from
+    // c2id, but it is not new.
+    private final NonIterableSet<Constraint<V,Info>> generatedCs =
+	new NonIterableSet<Constraint<V,Info>>();
+
 
-    private void findAllVars(Collection<Constraint<V,Info>> cs) {
-	vars = new LinkedHashSet<V>();
+    // adds to vars all variables from cs; returns the new ones
+    private List<V> findAllVars(Collection<Constraint<V,Info>> cs) {
+	List<V> newVars = new LinkedList<V>();
 	for(Constraint<V,Info> c : cs) {
-	    vars.addAll(c.in());
-	    vars.addAll(c.out());
+	    for(V v : c.in()) {
+		if(vars.add(v)) newVars.add(v);
+	    }
+	    for(V v : c.out()) {
+		if(vars.add(v)) newVars.add(v);
+	    }
 	}
+	return newVars;
     }
-    private Set<V> vars;
+    private final Set<V> vars;
 
     /** Returns the set of all variables from this constraint system.
         The reason this method is public is that we want external
@@ -141,48 +565,407 @@ public class ConstraintSystem<V extends Var<Info>, Info> {
     public Set<V> vars() { return vars; }
 
 
-    private Collection<Constraint<V,Info>> unifyEquals(Collection<Constraint<V,Info>> cs) {
-	cs = new LinkedList<Constraint<V,Info>>(cs);
+    /** Adds the constraints from <code>newCs</code> to
+	<code>this</code> system.  The next call to {@link #solve()}
+	(or {@link #solve(Executor)}) starts from the solution
+	computed by the previous call to <code>solve</code> (if any),
+	and re-solves only the SCCs that may be affected by the new
+	constraints.  The result is the same as the least solution of
+	all the constraints, computed from scratch.  The solutions
+	returned by the previous calls to <code>solve</code> are not
+	affected.
+
+	<p>The new variables are unified with the existing ones, as
+	in the constructor.  Still, if a new constraint updates a
+	variable that was unified with another one only because it
+	had a single incoming inclusion constraint (or a variable
+	that was proved to be empty), we redo all unifications from
+	scratch; even in this case, the next <code>solve</code> reuses
+	the previous solution (but it re-solves all SCCs).
+
+	<p>Note: in order to reuse it, <code>this</code> system keeps a
+	reference to the last solution it computed.  Reusing the last
+	solution is correct only if the external values used by the
+	constraints (if any) did not change since it was computed
+	(otherwise, use a new <code>ConstraintSystem</code>).  This
+	method waits for the solves in progress (if any) to finish
+	their current pass over the SCCs. */
+    public void addConstraints(Collection<Constraint<V,Info>> newCs) {
+	structLock.writeLock().lock();
+	try {
+	    NonIterableMap<V,Integer> oldIds = var2id;
+	    List<V> updated = integrate(newCs);
+	    updatePending(oldIds, updated);
+	}
+	finally {
+	    structLock.writeLock().unlock();
+	}
+    }
+
+    // Adds the constraints newCs to the (simplified) constraints and
+    // to the solver structures.  Returns the representatives of the
+    // variables updated by the constraints from newCs (including
+    // those that were already in this system), or null if we redid
+    // all unifications (and all sccs need to be re-solved).  If the
+    // variable ids change, the solver structures use a new var2id
+    // map.
+    private List<V> integrate(Collection<Constraint<V,Info>> newCs) {
+	boolean reunify = invalidatesUnification(newCs);
+	for(Constraint<V,Info> c : newCs) {
+	    if(!generatedCs.contains(c)) origCs.add(c);
+	}
+	List<V> newVars = findAllVars(newCs);
+
+	if(reunify) {
+	    if(DEBUG) System.out.println("addConstraints: redo all unifications");
+	    buildAll();
+	    return null;
+	}
+	unifyNewVars(newCs, newVars);
+	List<Constraint<V,Info>> added = rewriteNew(newCs);
+	updateSolverStructs(added, newVars);
+	List<V> updated = new ArrayList<V>();
+	for(Constraint<V,Info> c : newCs) {
+	    for(V w : c.out()) {
+		V w2 = uf.find(w);
+		// no id: all constraints that update w were eliminated
+		if(var2id.get(w2) != null) updated.add(w2);
+	    }
+	}
+	return updated;
+    }
+
+    // Updates the starting point of the next solve after new
+    // constraints were integrated (see integrate): the next solve
+    // starts from the last solution, and re-solves the sccs of the
+    // variables from updated (all sccs, if updated is null).
+    // oldIds is the var2id map before the integration.
+    private void updatePending(NonIterableMap<V,Integer> oldIds, List<V> updated) {
+	nbChanges++;
+	if(lastSol == null) return;
+	if(var2id != oldIds) {
+	    seeds = computeSeeds(lastSol);
+	}
+	else if(seeds == null) {
+	    seeds = lastSol.sol;
+	}
+	if(updated == null) {
+	    allDirty = true;
+	}
+	else {
+	    dirtyVars.addAll(updated);
+	}
+    }
+
+    // Last solution computed by solve, and the changes of this
+    // system since then (the pending changes).  If seeds is
+    // non-null, the next solve starts from these values (the last
+    // solution, or values derived from it), indexed by variable ids;
+    // if allDirty is true, the next solve needs to solve all sccs
+    // (even if it starts from seeds); dirtyVars contains the
+    // variables (representatives) updated by the constraints added
+    // since the last solution.  A solve that starts from the pending
+    // changes does not consume them: they are discarded only when
+    // it finishes, if no other changes happened meanwhile (see
+    // finish).  Hence, simultaneous solves and aborted solves (see
+    // SolveBudget) never lose them.
+    private SolStore lastSol = null;
+    private Object[] seeds = null;
+    private boolean allDirty = false;
+    private final List<V> dirtyVars = new LinkedList<V>();
+    // number of changes of this system (see updatePending)
+    private int nbChanges = 0;
+
+    // Protects the solver structures and the state shared by the
+    // solves (lastSol, seeds, allDirty, dirtyVars, lastStats,
+    // costModel): the passes over the sccs hold the read lock,
+    // such that several solves may run simultaneously; the changes
+    // of this state hold the write lock (see solveWith).
+    private final ReentrantReadWriteLock structLock = new ReentrantReadWriteLock();
+
+
+    // Checks whether adding the constraints cs invalidates the
+    // unifications / constraint eliminations done so far (see
+    // fragile and emptyReps).  A unification done by substituteVars
+    // may depend on the values of many upstream variables: if there
+    // is any, a new constraint that updates an existing variable
+    // invalidates the unifications.
+    private boolean invalidatesUnification(Collection<Constraint<V,Info>> cs) {
+	for(Constraint<V,Info> c : cs) {
+	    for(V w : c.out()) {
+		if(fragile.contains(w) || emptyReps.contains(uf.find(w)) ||
+		   ((nbUnifiedSubst != 0) && vars.contains(w))) {
+		    return true;
+		}
+	    }
+	}
+	return false;
+    }
+
+
+    // Unifies each new variable vd such that the only constraint
+    // (from cs) that updates vd is "vs <= vd" with vs (see
+    // unifySingleLt).  We never change the representative of an
+    // existing variable: the previous solution relies on it.
+    private void unifyNewVars(Collection<Constraint<V,Info>> cs, List<V> newVars) {
+	if(newVars.isEmpty()) return;
+	NonIterableSet<V> isNew = new NonIterableSet<V>(newVars.size());
+	isNew.addAll(newVars);
+
+	// map new var -> the only constraint that updates it, if that constraint is an LtConstraint
+	NonIterableMap<V,LtConstraint<V,Info>> single = new NonIterableMap<V,LtConstraint<V,Info>>();
+	NonIterableSet<V> bad = new NonIterableSet<V>();
+	for(Constraint<V,Info> c : cs) {
+	    for(V w : c.out()) {
+		if(!isNew.contains(w) || bad.contains(w)) continue;
+		if((c instanceof LtConstraint/*<V,Info>*/) && !single.containsKey(w)) {
+		    single.put(w, (LtConstraint<V,Info>) c);
+		}
+		else {
+		    bad.add(w);
+		    single.remove(w);
+		}
+	    }
+	}
+
+	for(V v : newVars) {
+	    // collect the chain of single inclusions that ends in v
+	    List<LtConstraint<V,Info>> chain = new ArrayList<LtConstraint<V,Info>>();
+	    for(LtConstraint<V,Info> ltc = single.remove(v); ltc != null; ltc = single.remove(ltc.vs)) {
+		chain.add(ltc);
+	    }
+	    // unify starting with the beginning of the chain: this
+	    // way, the destination of each inclusion is still a
+	    // trivial class, and joins the class of the source.
+	    for(int i = chain.size() - 1; i >= 0; i--) {
+		LtConstraint<V,Info> ltc = chain.get(i);
+		V vs = uf.find(ltc.vs);
+		if(vs.equals(uf.find(ltc.vd))) continue;
+		V vNew = uf.union(ltc.vd, vs);
+		assert vNew.equals(vs);
+		if(DEBUG_VER) System.out.println("unify " + vs + " " + ltc.vd + " -> " + vNew);
+		fragile.add(ltc.vd);
+		nbUnifiedSLt++;
+	    }
+	}
+    }
+
+
+    // Rewrites the constraints from cs modulo uf; drops the
+    // superfluous ones, and those that are already in this system.
+    private List<Constraint<V,Info>> rewriteNew(Collection<Constraint<V,Info>> cs) {
+	Set<Constraint<V,Info>> res = new LinkedHashSet<Constraint<V,Info>>();
+	for(Constraint<V,Info> c : cs) {
+	    Constraint<V,Info> c2 = c.rewrite(uf);
+	    if((c2 == null) || c2.out().isEmpty() || c2id.containsKey(c2)) continue;
+	    res.add(c2);
+	}
+	return new ArrayList<Constraint<V,Info>>(res);
+    }
+
+
+    // Updates the solver structures for the constraints added to
+    // this system (already rewritten modulo uf).  If the new
+    // dependencies respect the current order of the sccs, we just
+    // add sccs for the new variables at the end of this order, and
+    // the existing ids do not change; otherwise, we recompute all
+    // sccs and ids (see rebuildSolverStructs).
+    private void updateSolverStructs(List<Constraint<V,Info>> added, List<V> newVars) {
+	structVersion++;
+	// 1. new variables (representatives) that do not have an id yet
+	Set<V> newReps = new LinkedHashSet<V>();
+	for(Constraint<V,Info> c : added) {
+	    for(V v : c.in()) {
+		V v2 = uf.find(v);
+		if(var2id.get(v2) == null) newReps.add(v2);
+	    }
+	    for(V w : c.out()) {
+		V w2 = uf.find(w);
+		if(var2id.get(w2) == null) newReps.add(w2);
+	    }
+	}
+
+	// 2. dependencies between new variables; check the other dependencies
+	Relation<V,V> newDeps = new MapSetRelation<V,V>();
+	for(V v : newReps) {
+	    // see the "tricky" comment from dependencies
+	    newDeps.add(v, v);
+	}
+	for(Constraint<V,Info> c : added) {
+	    for(V v : c.in()) {
+		V v2 = uf.find(v);
+		for(V w : c.out()) {
+		    V w2 = uf.find(w);
+		    if(newReps.contains(v2)) {
+			if(!newReps.contains(w2)) {
+			    // an old variable depends on a new one
+			    rebuildSolverStructs(added);
+			    return;
+			}
+			newDeps.add(v2, w2);
+		    }
+		    else if(!newReps.contains(w2) && (varScc[varId(v2)] > varScc[varId(w2)])) {
+			// dependency against the current order of the sccs
+			rebuildSolverStructs(added);
+			return;
+		    }
+		}
+	    }
+	}
+
+	// 3. sccs for the new variables, after all the old sccs
+	if(!newReps.isEmpty()) {
+	    addSccs((new TopSortedCompDiGraph<V>(new ArcBasedDiGraph<V>(newDeps))).decrOrder());
+	}
+	// the new sccs may contain the representatives of old variables
+	List<V> idless = idlessVars;
+	idlessVars = new LinkedList<V>();
+	mapIdlessVars(idless);
+	mapIdlessVars(newVars);
+
+	// 4. dependencies between sccs
+	for(Constraint<V,Info> c : added) {
+	    for(V v : c.in()) {
+		for(V w : c.out()) {
+		    addSccArc(varScc[varId(v)], varScc[varId(w)]);
+		}
+	    }
+	}
+
+	for(Constraint<V,Info> c : added) {
+	    indexConstraint(c);
+	}
+    }
+
+
+    // recomputes the solver structures for all current (simplified) constraints
+    private void rebuildSolverStructs(List<Constraint<V,Info>> added) {
+	if(DEBUG) System.out.println("addConstraints: recompute all sccs");
+	Collection<Constraint<V,Info>> cs = new LinkedHashSet<Constraint<V,Info>>();
+	for(int cid = 0; cid < nbConsIds; cid++) {
+	    cs.add(cons(cid));
+	}
+	cs.addAll(added);
+	buildSolverStructs(cs);
+    }
+
+
+    // Projects the solution old (computed before the last change of
+    // the variable ids, and maybe before a re-unification of the
+    // variables) on the current ids: the value of each representative
+    // is the join of the old values of all variables from its class.
+    // All unified variables are equal in the least solution, so these
+    // values are below that solution.
+    private Object[] computeSeeds(SolStore old) {
+	Object[] res = new Object[nbVarIds];
+	// ids whose value is a private copy (that we can mutate)
+	boolean[] owned = new boolean[nbVarIds];
+	for(V v : vars) {
+	    Info value = old.get(v);
+	    if(value == null) continue;
+	    Integer id = var2id.get(v);
+	    if(id == null) continue;
+	    int i = id.intValue();
+	    @SuppressWarnings("unchecked")
+	    Info repValue = (Info) res[i];
+	    if(repValue == null) {
+		res[i] = value;
+	    }
+	    else if(repValue != value) {
+		V rep = var(i);
+		if(!owned[i]) {
+		    repValue = rep.copy(repValue);
+		    res[i] = repValue;
+		    owned[i] = true;
+		}
+		rep.join(repValue, value);
+	    }
+	}
+	return res;
+    }
+
+
+    // Returns the constraints from cs, simplified modulo the
+    // unifications.  The result may contain duplicates.
+    private ArrayList<Constraint<V,Info>> unifyEquals(Collection<Constraint<V,Info>> origCs) {
+	ArrayList<Constraint<V,Info>> cs = new ArrayList<Constraint<V,Info>>(origCs);
 	uf = new UnionFind<V>();
+	fragile   = new NonIterableSet<V>();
+	emptyReps = new NonIterableSet<V>();
+	rep2members = new NonIterableMap<V,LinkedList<V>>();
+	nbUnifiedMS   = 0;
+	nbUnifiedSLt  = 0;
+	nbEmptyVars   = 0;
+	nbElimCons    = 0;
+	nbUnifiedSubst = 0;
 	unifyMutuallySmaller(cs);
 	boolean changed = true;
 	while(changed) {
-	    changed = unifySingleLt(cs, false);
-	    if(DEBUG) unifySingleLt(cs, true);
-	    if(eliminateEmpty(cs)) {
-		changed = true;
+	    changed = false;
+	    if(simplifyInclusions(cs)) {
+		// the rewriting may drop some constraints that are not
+		// inclusions, and enable new simplifications
+		changed = updateConstraints(cs);
 	    }
-	    if(changed) {
-		cs = updateConstraints(cs);
+	    // the most expensive pass, only when the others are done
+	    if(!changed && offlineSubst && substituteVars(cs)) {
+		updateConstraints(cs);
+		changed = true;
 	    }
 	}
 
-	int nbDisjointVars = 0;
+	NonIterableSet<V> empty = new NonIterableSet<V>();
 	for(V v : vars()) {
 	    V parent = uf.find(v);
-	    if(v == parent) nbDisjointVars++;
+	    if(emptyReps.contains(v)) empty.add(parent);
 	}
-	vertexHashCapacity = (3 * nbDisjointVars) / 2;
+	emptyReps = empty;
+	rep2members = null; // enable some gc
 
 	return cs;
     }
     // Union-find structure to maintain the sets of equal variables
     private UnionFind<V> uf;
-    // the initial capacity for all maps/sets with fdisjoint (i.e., non-unified) vertices
-    private int vertexHashCapacity = 16;
+    // Variables unified with others only because their single
+    // incoming constraint was an inclusion (see unifySingleLt); a
+    // new constraint that updates such a variable invalidates that
+    // unification.
+    private NonIterableSet<V> fragile;
+    // Representatives of the variables proved empty by
+    // eliminateEmpty; a new constraint that updates one of them
+    // invalidates the elimination of the constraints that read it.
+    private NonIterableSet<V> emptyReps;
+    // During unifyEquals, map representative -> the variables from
+    // its equivalence class that are not fragile yet.  No entry for
+    // a representative means that its class contains only itself.
+    // Each variable becomes fragile at most once, and is then removed
+    // from these lists: marking classes as fragile takes linear time.
+    private NonIterableMap<V,LinkedList<V>> rep2members;
+    // Statistics about the simplifications done by unifyEquals and
+    // addConstraints (see SolverStats): number of variables unified
+    // by unifyMutuallySmaller and by unifySingleLt / unifyNewVars,
+    // number of variables proved empty and number of constraints
+    // eliminated by eliminateEmpty, number of variables unified by
+    // substituteVars.
+    private int nbUnifiedMS;
+    private int nbUnifiedSLt;
+    private int nbUnifiedSubst;
+    private int nbEmptyVars;
+    private int nbElimCons;
 
 
     // unify groups of mutually smaller variables
-    private void unifyMutuallySmaller(Collection<Constraint<V,Info>> cs) {
+    private void unifyMutuallySmaller(ArrayList<Constraint<V,Info>> cs) {
 	// construct digraph generated by "less than" constraints
-	List<Pair<V,V>> edges = new LinkedList<Pair<V,V>>();
+	Map<V,List<V>> succs = new LinkedHashMap<V,List<V>>();
 	for(Constraint<V,Info> c : cs) {
 	    if(c instanceof LtConstraint/*<Info>*/) {
 		LtConstraint<V,Info> ltc = (LtConstraint<V,Info>) c;
-		edges.add(new Pair<V,V>(ltc.vs, ltc.vd));
+		addArc(succs, ltc.vs, ltc.vd);
+		vertex(succs, ltc.vd);
 	    }
 	}
-	DiGraph<V> dg = new ArcBasedDiGraph<V>(edges);
+	DiGraph<V> dg = diGraph(succs);
 	// for each SCC of mutually "smaller" vars,
 	for(SCComponent<V> scc : (new TopSortedCompDiGraph<V>(dg)).incrOrder()) {
 	    // unify all the vars from the SCC
@@ -195,575 +978,3026 @@ public class ConstraintSystem<V extends Var<Info>, Info> {
 		    uf.union(v, major);
 		}
 	    }
+	    if(scc.size() > 1) {
+		rep2members.put(uf.find(major), new LinkedList<V>(scc.vertices()));
+		nbUnifiedMS += scc.size() - 1;
+	    }
 	}
 
 	// remove superfluous inclusions of the form "v <= v"
-	for(Iterator<Constraint<V,Info>> it = cs.iterator(); it.hasNext(); ) {
-	    Constraint<V,Info> c = it.next();
+	for(int i = 0; i < cs.size(); i++) {
+	    Constraint<V,Info> c = cs.get(i);
 	    if(c instanceof LtConstraint/*<V,Info>*/) {
 		LtConstraint<V,Info> ltc = (LtConstraint<V,Info>) c;
 		V vs = uf.find(ltc.vs);
 		V vd = uf.find(ltc.vd);
 		if(vs.equals(vd)) {
 		    if(DEBUG_VER) System.out.println("Removing " + c);
-		    it.remove();
+		    cs.set(i, null);
+		}
+	    }
+	}
+	removeNulls(cs);
+
+    }
+
+
+    // Unifies each variable whose only incoming constraint is an
+    // inclusion with the source of that inclusion (unifySingleLt),
+    // and eliminates the inclusions whose source has no incoming
+    // constraint (eliminateEmpty), until nothing changes.  The
+    // indexes are built once, and updated as the variables are
+    // unified and the inclusions are eliminated.  The eliminated
+    // inclusions are removed from cs; the other constraints are not
+    // rewritten.  Returns true if it unified some variables or
+    // eliminated some constraints.
+    //
+    // The work is organized in rounds of unifySingleLt,
+    // eliminateEmpty and dropSelfEdges: the result does not depend
+    // on the order of the unifications inside unifySingleLt, nor on
+    // the order of the eliminations inside eliminateEmpty, but it
+    // may depend on the order between these two passes.  The
+    // inclusions that become "v <= v" during a round still count as
+    // incoming constraints (for eliminateEmpty) until the end of the
+    // round (when dropSelfEdges drops them).
+    private boolean simplifyInclusions(ArrayList<Constraint<V,Info>> cs) {
+	return (new InclusionSimplifier(cs)).run();
+    }
+
+    private final class InclusionSimplifier {
+
+	InclusionSimplifier(ArrayList<Constraint<V,Info>> cs) {
+	    this.cs = cs;
+	    // 1. ids for the variables; each variable points to (the
+	    // id of) its representative
+	    int n = vars.size();
+	    idVar  = new Object[n];
+	    parent = new int[n];
+	    NonIterableMap<V,Integer> var2int = new NonIterableMap<V,Integer>((3 * n) / 2 + 1);
+	    int k = 0;
+	    for(V v : vars) {
+		idVar[k] = v;
+		var2int.put(v, Integer.valueOf(k));
+		k++;
+	    }
+	    for(int i = 0; i < n; i++) {
+		parent[i] = var2int.get(uf.find(var(i))).intValue();
+	    }
+	    inEdges  = new IntVec[n];
+	    outEdges = new IntVec[n];
+	    count = new int[n];
+	    bad   = new boolean[n];
+
+	    // 2. the inclusions (edges), and the incoming constraints of each variable
+	    int nbEdges = 0;
+	    for(Constraint<V,Info> c : cs) {
+		if(c instanceof LtConstraint/*<V,Info>*/) nbEdges++;
+	    }
+	    src  = new int[nbEdges];
+	    dst  = new int[nbEdges];
+	    pos  = new int[nbEdges];
+	    dead = new boolean[nbEdges];
+	    int e = 0;
+	    for(int i = 0; i < cs.size(); i++) {
+		Constraint<V,Info> c = cs.get(i);
+		if(c instanceof LtConstraint/*<V,Info>*/) {
+		    LtConstraint<V,Info> ltc = (LtConstraint<V,Info>) c;
+		    int s = find(var2int.get(ltc.vs).intValue());
+		    int d = find(var2int.get(ltc.vd).intValue());
+		    src[e] = s;
+		    dst[e] = d;
+		    pos[e] = i;
+		    count[d]++;
+		    if(s == d) {
+			selfEdges.add(e);
+		    }
+		    else {
+			edges(inEdges, d).add(e);
+			edges(outEdges, s).add(e);
+		    }
+		    e++;
+		}
+		else {
+		    for(V w : c.out()) {
+			int d = find(var2int.get(w).intValue());
+			count[d]++;
+			bad[d] = true;
+		    }
+		}
+	    }
+	}
+
+	private final ArrayList<Constraint<V,Info>> cs;
+
+	// variable id -> variable
+	private final Object[] idVar;
+	// variable id -> id of a variable from the same class (the
+	// representative points to itself)
+	private final int[] parent;
+
+	// For each inclusion (edge) e: the ids of its source and
+	// destination variables (not necessarily representatives), and
+	// its position in cs.  dead[e] is true if e was eliminated, or
+	// dropped because it became "v <= v".
+	private final int[] src;
+	private final int[] dst;
+	private final int[] pos;
+	private final boolean[] dead;
+
+	// For each representative: its incoming and outgoing edges
+	// (may contain dead edges and edges "v <= v"), the number of
+	// constraints that update it, and whether some of these
+	// constraints are not inclusions.
+	private final IntVec[] inEdges;
+	private final IntVec[] outEdges;
+	private final int[] count;
+	private final boolean[] bad;
+
+	// edges that became "v <= v" during the current round
+	private final IntVec selfEdges = new IntVec();
+
+	// representatives whose incoming edges changed, and
+	// representatives that may have no incoming constraint
+	private final IntVec toUnify = new IntVec();
+	private final IntVec toEliminate = new IntVec();
+
+	private boolean modif = false;
+
+	boolean run() {
+	    for(int i = 0; i < parent.length; i++) {
+		if(parent[i] == i) {
+		    toUnify.add(i);
+		    if(count[i] == 0) toEliminate.add(i);
+		}
+	    }
+	    // one round
+	    while((toUnify.size != 0) || (toEliminate.size != 0)) {
+		unifySingleLt();
+		eliminateEmpty();
+		dropSelfEdges();
+	    }
+	    removeNulls(cs);
+	    return modif;
+	}
+
+	// Unifies each variable vd (from toUnify and the variables
+	// affected by the unifications) such that the only constraint
+	// that updates vd is "vs <= vd" with vs.
+	private void unifySingleLt() {
+	    while(toUnify.size != 0) {
+		int d = find(toUnify.elems[--toUnify.size]);
+		if(bad[d]) continue;
+		int s = singleSource(d);
+		if(s == -1) continue;
+
+		V vs = var(s);
+		V vd = var(d);
+		V vNew = uf.union(vs, vd);
+		if(DEBUG_VER) System.out.println("unify " + vs + " " + vd + " -> " + vNew);
+		markFragile(vs, vd, vNew);
+		nbUnifiedSLt++;
+		modif = true;
+
+		int rep   = vNew.equals(vs) ? s : d;
+		int other = (rep == s) ? d : s;
+		parent[other] = rep;
+		count[rep] = count[s] + count[d];
+		bad[rep]   = bad[s];
+		// the incoming edges of d become "v <= v"; the sources
+		// of the successors of d changed
+		IntVec dIn  = inEdges[d];
+		IntVec dOut = outEdges[d];
+		for(int i = 0; i < dIn.size; i++) {
+		    int e = dIn.elems[i];
+		    if(!dead[e]) selfEdges.add(e);
+		}
+		inEdges[rep]  = inEdges[s];
+		outEdges[rep] = concat(outEdges[s], dOut);
+		inEdges[other]  = null;
+		outEdges[other] = null;
+		if(dOut != null) {
+		    for(int i = 0; i < dOut.size; i++) {
+			int e = dOut.elems[i];
+			if(!dead[e]) toUnify.add(dst[e]);
+		    }
+		}
+	    }
+	}
+
+	// Returns the only source of the (non-dead, non "v <= v")
+	// incoming edges of the representative d, or -1 if there is
+	// no such source, or more than one.  Removes the dead edges and
+	// the edges "v <= v" from the incoming edges of d.
+	private int singleSource(int d) {
+	    IntVec in = inEdges[d];
+	    if(in == null) return -1;
+	    int s = -1;
+	    int k = 0;
+	    for(int i = 0; i < in.size; i++) {
+		int e = in.elems[i];
+		if(dead[e]) continue;
+		int s2 = find(src[e]);
+		if(s2 == d) continue;
+		in.elems[k++] = e;
+		if(s == -1) {
+		    s = s2;
+		}
+		else if(s2 != s) {
+		    // two sources: keep the remaining edges
+		    int rest = in.size - i - 1;
+		    System.arraycopy(in.elems, i + 1, in.elems, k, rest);
+		    in.size = k + rest;
+		    return -1;
+		}
+	    }
+	    in.size = k;
+	    return s;
+	}
+
+	// Eliminates the inclusions whose source is empty (i.e., has no
+	// incoming constraints), starting with the representatives from
+	// toEliminate.  Adds to toUnify the destinations of the
+	// eliminated inclusions.
+	private void eliminateEmpty() {
+	    while(toEliminate.size != 0) {
+		int x = find(toEliminate.elems[--toEliminate.size]);
+		if(count[x] != 0) continue;
+		if(emptyReps.add(var(x))) nbEmptyVars++;
+		IntVec out = outEdges[x];
+		if(out == null) continue;
+		outEdges[x] = null;
+		for(int i = 0; i < out.size; i++) {
+		    int e = out.elems[i];
+		    if(dead[e]) continue;
+		    kill(e);
+		    modif = true;
+		    nbElimCons++;
+		    int d = find(dst[e]);
+		    toUnify.add(d);
+		    if(--count[d] == 0) toEliminate.add(d);
+		}
+	    }
+	}
+
+	// End of a round: drops the edges "v <= v"; the representatives
+	// that have no incoming constraint because of that are
+	// eliminated in the next round.
+	private void dropSelfEdges() {
+	    for(int i = 0; i < selfEdges.size; i++) {
+		int e = selfEdges.elems[i];
+		if(dead[e]) continue;
+		kill(e);
+		int d = find(dst[e]);
+		if(--count[d] == 0) toEliminate.add(d);
+	    }
+	    selfEdges.clear();
+	}
+
+	private void kill(int e) {
+	    dead[e] = true;
+	    cs.set(pos[e], null);
+	}
+
+	private int find(int x) {
+	    while(parent[x] != x) {
+		parent[x] = parent[parent[x]];
+		x = parent[x];
+	    }
+	    return x;
+	}
+
+	@SuppressWarnings("unchecked")
+	private V var(int x) {
+	    return (V) idVar[x];
+	}
+
+	// returns edges[x] (creates it if needed)
+	private IntVec edges(IntVec[] edges, int x) {
+	    IntVec res = edges[x];
+	    if(res == null) {
+		res = new IntVec();
+		edges[x] = res;
+	    }
+	    return res;
+	}
+
+	// returns the concatenation of two edge lists (reuses the bigger one)
+	private IntVec concat(IntVec l1, IntVec l2) {
+	    if(l1 == null) return l2;
+	    if(l2 == null) return l1;
+	    if(l1.size < l2.size) {
+		IntVec aux = l1;
+		l1 = l2;
+		l2 = aux;
+	    }
+	    for(int i = 0; i < l2.size; i++) {
+		l1.add(l2.elems[i]);
+	    }
+	    return l1;
+	}
+    }
+
+
+    // Records that vd (with its entire class) was unified with vs
+    // (the new representative being vNew) because "vs <= vd" is the
+    // only constraint that updates vd: all variables from the class
+    // of vd become fragile.
+    private void markFragile(V vs, V vd, V vNew) {
+	fragile.addAll(takeMembers(vd));
+	// the non-fragile members of the new class are those of vs
+	rep2members.put(vNew, takeMembers(vs));
+    }
+
+    // Offline variable substitution (hash-based value numbering):
+    // labels each variable (representative) with a set of ints that
+    // identifies the way its value is computed, and unifies the
+    // variables with the same non-empty label.  The labels are
+    // computed in topological order of the dependencies: the label
+    // of a variable is the union of the labels of the sources of its
+    // incoming inclusions, plus one int for each other incoming
+    // constraint; two constraints with the same class, the same
+    // signature and inputs with the same labels get the same int.
+    // Variables from non-trivial sccs get unique labels.  Equal
+    // labels imply equal values in the least solution.  Returns true
+    // if it unified some variables.
+    private boolean substituteVars(ArrayList<Constraint<V,Info>> cs) {
+	// map variable -> constraints that update it
+	Relation<V,Constraint<V,Info>> incoming = new MapSetRelation<V,Constraint<V,Info>>();
+	for(Constraint<V,Info> c : cs) {
+	    for(V w : c.out()) {
+		incoming.add(uf.find(w), c);
+	    }
+	}
+
+	// operation (class, signature, input labels) -> int
+	Map<List<Object>,Integer> op2int = new HashMap<List<Object>,Integer>();
+	// label -> label id; variable -> label id
+	Map<BitSet,Integer> label2id = new HashMap<BitSet,Integer>();
+	NonIterableMap<V,Integer> var2label = new NonIterableMap<V,Integer>();
+	List<BitSet> labels = new ArrayList<BitSet>();
+	// last int used in a label
+	int[] lastInt = new int[] { 0 };
+	// label id -> first variable with that label
+	Map<Integer,V> label2var = new HashMap<Integer,V>();
+	boolean modif = false;
+
+	for(SCComponent<V> scc : (new TopSortedCompDiGraph<V>(dependencies(cs))).decrOrder()) {
+	    if(scc.size() > 1) {
+		for(V v : scc.vertices()) {
+		    BitSet label = new BitSet();
+		    label.set(++lastInt[0]);
+		    var2label.put(v, labelId(label, label2id, labels));
+		}
+		continue;
+	    }
+	    V v = DSUtil.getFirst(scc.vertices());
+	    BitSet label = new BitSet();
+	    for(Constraint<V,Info> c : incoming.getValues(v)) {
+		if(c instanceof LtConstraint/*<V,Info>*/) {
+		    V vs = uf.find(((LtConstraint<V,Info>) c).vs);
+		    if(!vs.equals(v)) {
+			label.or(labels.get(var2label.get(vs).intValue()));
+		    }
+		}
+		else {
+		    label.set(opInt(c, v, var2label, op2int, lastInt));
+		}
+	    }
+	    Integer labelId = labelId(label, label2id, labels);
+	    var2label.put(v, labelId);
+	    if(label.isEmpty()) continue;
+
+	    V first = label2var.get(labelId);
+	    if(first == null) {
+		label2var.put(labelId, v);
+	    }
+	    else {
+		V vNew = uf.union(first, v);
+		if(DEBUG_VER) System.out.println("unify " + first + " " + v + " -> " + vNew);
+		unifySubst(first, v, vNew);
+		if(!vNew.equals(first)) label2var.put(labelId, vNew);
+		modif = true;
+	    }
+	}
+	return modif;
+    }
+
+    // returns the id of label (creates a new id for a new label)
+    private static Integer labelId(BitSet label, Map<BitSet,Integer> label2id, List<BitSet> labels) {
+	Integer id = label2id.get(label);
+	if(id == null) {
+	    id = Integer.valueOf(labels.size());
+	    label2id.put(label, id);
+	    labels.add(label);
+	}
+	return id;
+    }
+
+    // returns the int that identifies the operation of the constraint
+    // c that updates the variable v (a fresh int, if unknown)
+    private int opInt(Constraint<V,Info> c, V v, NonIterableMap<V,Integer> var2label,
+		      Map<List<Object>,Integer> op2int, int[] lastInt) {
+	Object sig = c.signature();
+	if((sig == null) || (c.out().size() != 1)) return ++lastInt[0];
+	List<Object> op = new ArrayList<Object>(c.in().size() + 2);
+	op.add(c.getClass());
+	op.add(sig);
+	for(V vIn : c.in()) {
+	    V vIn2 = uf.find(vIn);
+	    // v reads its own value: no label yet
+	    if(vIn2.equals(v)) return ++lastInt[0];
+	    op.add(var2label.get(vIn2));
+	}
+	Integer res = op2int.get(op);
+	if(res == null) {
+	    res = Integer.valueOf(++lastInt[0]);
+	    op2int.put(op, res);
+	}
+	return res.intValue();
+    }
+
+    // Records that v1 and v2 (with their entire classes) were unified
+    // by substituteVars (the new representative being vNew).  The
+    // unification depends on the constraints that update these
+    // variables: all variables from the new class become fragile.
+    private void unifySubst(V v1, V v2, V vNew) {
+	fragile.addAll(takeMembers(v1));
+	fragile.addAll(takeMembers(v2));
+	rep2members.put(vNew, new LinkedList<V>());
+	nbUnifiedSubst++;
+    }
+
+    // Removes and returns the non-fragile members of the class of rep.
+    private LinkedList<V> takeMembers(V rep) {
+	LinkedList<V> members = rep2members.remove(rep);
+	if(members == null) {
+	    members = new LinkedList<V>();
+	    members.add(rep);
+	}
+	return members;
+    }
+
+    
+    // Rewrites the constraints from cs modulo uf, in place; drops the
+    // superfluous ones.  Does not eliminate the duplicates (the
+    // solver structures ignore them).  Returns true if it dropped
+    // a constraint that is not an inclusion.
+    private boolean updateConstraints(ArrayList<Constraint<V,Info>> cs) {
+	boolean dropped = false;
+	for(int i = 0; i < cs.size(); i++) {
+	    Constraint<V,Info> c = cs.get(i);
+	    Constraint<V,Info> c2 = c.rewrite(uf);
+	    if((c2 == null) && !(c instanceof LtConstraint/*<V,Info>*/)) {
+		dropped = true;
+	    }
+	    cs.set(i, c2);
+	}
+	removeNulls(cs);
+	return dropped;
+    }
+
+    // Removes the null elements of list, in place (in linear time).
+    private static <T> void removeNulls(ArrayList<T> list) {
+	int k = 0;
+	for(int i = 0; i < list.size(); i++) {
+	    T elem = list.get(i);
+	    if(elem != null) list.set(k++, elem);
+	}
+	list.subList(k, list.size()).clear();
+    }
+
+
+    private void buildSolverStructs(Collection<Constraint<V,Info>> cs) {
+	structVersion++;
+	// 1. compute dependency graph between variables; an arc from
+	// v to w signifies that the value of variable v influences
+	// the value of variable w.
+	DiGraph<V> deps = dependencies(cs);
+	// 2. compute sets of mutually dependent variables, and sort
+	// them topologically
+	TopSortedCompDiGraph<V> ts_deps = new TopSortedCompDiGraph<V>(deps);
+
+	var2id      = new NonIterableMap<V,Integer>((3 * vars.size()) / 2 + 1);
+	nbVarIds    = 0;
+	idVars      = new Object[16];
+	varScc      = new int[16];
+	varRules    = new IntVec[16];
+	deltaReader = new boolean[16];
+
+	c2id        = new NonIterableMap<Constraint<V,Info>,Integer>();
+	nbConsIds   = 0;
+	idCons      = new Object[16];
+	consIns     = new int[16][];
+	consCost    = new int[16];
+
+	sccOrder    = new ArrayList<SCComponent<V>>();
+	sccRules    = new IntVec[16];
+	sccSuccs    = new IntVec[16];
+	sccNbPreds  = new int[16];
+
+	// 3. ids for the sccs and their variables
+	addSccs(ts_deps.decrOrder());
+	for(int pos = 0; pos < sccOrder.size(); pos++) {
+	    for(SCComponent<V> succ : sccOrder.get(pos).next()) {
+		int posSucc = varScc[varId(DSUtil.getFirst(succ.vertices()))];
+		sccSuccs[pos].add(posSucc);
+		sccNbPreds[posSucc]++;
+	    }
+	}
+	// each variable is mapped to the id of its representative
+	idlessVars = new LinkedList<V>();
+	mapIdlessVars(vars);
+
+	// 4. ids for the constraints
+	for(Constraint<V,Info> c : cs) {
+	    // skip the duplicates (see updateConstraints)
+	    if(c2id.containsKey(c)) continue;
+	    indexConstraint(c);
+	}
+    }
+
+
+    // Appends the sccs (given in topological order) at the end of
+    // sccOrder; gives ids to their variables (the variables from the
+    // same scc get consecutive ids).
+    private void addSccs(List<SCComponent<V>> sccs) {
+	inclStart = null;
+	for(SCComponent<V> scc : sccs) {
+	    int pos = sccOrder.size();
+	    sccOrder.add(scc);
+	    if(pos == sccRules.length) {
+		sccRules   = grow(sccRules);
+		sccSuccs   = grow(sccSuccs);
+		sccNbPreds = grow(sccNbPreds);
+	    }
+	    sccRules[pos] = new IntVec();
+	    sccSuccs[pos] = new IntVec();
+	    for(V v : scc.vertices()) {
+		int id = nbVarIds++;
+		if(id == idVars.length) {
+		    idVars      = grow(idVars);
+		    varScc      = grow(varScc);
+		    varRules    = grow(varRules);
+		    deltaReader = grow(deltaReader);
+		}
+		idVars[id]   = v;
+		varScc[id]   = pos;
+		varRules[id] = new IntVec();
+		var2id.put(v, Integer.valueOf(id));
+	    }
+	}
+    }
+
+
+    // Maps each variable from vs that does not have an id yet to the
+    // id of its representative (constraints are not always rewritten
+    // in terms of representatives, so the solver needs the ids of all
+    // variables); the variables whose representative does not have
+    // an id (yet) go into idlessVars.
+    private void mapIdlessVars(Collection<V> vs) {
+	for(V v : vs) {
+	    if(var2id.get(v) != null) continue;
+	    Integer id = var2id.get(uf.find(v));
+	    if(id != null) {
+		var2id.put(v, id);
+	    }
+	    else {
+		idlessVars.add(v);
+	    }
+	}
+    }
+
+
+    // Gives an id to constraint c (already rewritten modulo uf) and
+    // updates sccRules, varRules and deltaReader; the variables of c
+    // should already have ids.
+    private void indexConstraint(Constraint<V,Info> c) {
+	int cid = nbConsIds++;
+	if(cid == idCons.length) {
+	    idCons   = grow(idCons);
+	    consIns  = grow(consIns);
+	    consCost = grow(consCost);
+	}
+	idCons[cid] = c;
+	c2id.put(c, Integer.valueOf(cid));
+	consCost[cid] = c.cost();
+	consRank  = null;
+	inclStart = null;
+	int[] ins = new int[c.in().size()];
+	int k = 0;
+	for(V v : c.in()) {
+	    ins[k++] = varId(v);
+	}
+	consIns[cid] = ins;
+
+	for(V w : c.out()) {
+	    // mark that constraint c updates at least one
+	    // variable from the scc of w
+	    sccRules[varScc[varId(w)]].addIfNotLast(cid);
+	}
+
+	if(isInclusion(c, ins)) {
+	    // the solver propagates along c directly (see
+	    // inclusionEdges); in the difference propagation mode, it
+	    // needs the deltas of its source
+	    deltaReader[ins[0]] = true;
+	    return;
+	}
+
+	for(int v : ins) {
+	    iterate_outs: for(V w : c.out()) {
+		if(varScc[v] == varScc[varId(w)]) {
+		    // mark that constraint c reads v and updates
+		    // at least one variable from the same scc as v
+		    varRules[v].addIfNotLast(cid);
+		    if(c.isDeltaAware()) {
+			deltaReader[v] = true;
+		    }
+		    break iterate_outs;
+		}
+	    }
+	}
+    }
+
+
+    // Checks whether constraint c (the ids of its inputs being ins)
+    // is an inclusion between two variables from the same scc.
+    private boolean isInclusion(Constraint<V,Info> c, int[] ins) {
+	return
+	    (c instanceof LtConstraint/*<V,Info>*/) &&
+	    (varScc[ins[0]] == varScc[ltDst(c)]);
+    }
+
+    // returns the id of the destination of the LtConstraint c
+    private int ltDst(Constraint<V,Info> c) {
+	return varId(((LtConstraint<V,Info>) c).vd);
+    }
+
+    // Computes inclStart and inclDst (if not already computed).
+    private void inclusionEdges() {
+	if(inclStart != null) return;
+	int[] start = new int[nbVarIds + 1];
+	for(int cid = 0; cid < nbConsIds; cid++) {
+	    if(isInclusion(cons(cid), consIns[cid])) {
+		start[consIns[cid][0] + 1]++;
+	    }
+	}
+	for(int v = 0; v < nbVarIds; v++) {
+	    start[v + 1] += start[v];
+	}
+	int[] dst  = new int[start[nbVarIds]];
+	int[] next = new int[nbVarIds];
+	System.arraycopy(start, 0, next, 0, nbVarIds);
+	for(int cid = 0; cid < nbConsIds; cid++) {
+	    Constraint<V,Info> c = cons(cid);
+	    if(isInclusion(c, consIns[cid])) {
+		dst[next[consIns[cid][0]]++] = ltDst(c);
+	    }
+	}
+	inclDst   = dst;
+	inclStart = start;
+    }
+
+
+    // Returns the reverse postorder ranks of the constraints (see
+    // WorksetStrategy.REVERSE_POSTORDER).  For each scc, we rank its
+    // variables in a reverse postorder of the dependencies between
+    // them; the rank of a constraint is the smallest rank of its
+    // inputs from the scc of its outputs (0 if none).
+    private int[] consRanks() {
+	if(consRank != null) return consRank;
+	inclusionEdges();
+
+	// 1. ranks of the variables
+	int[] varRank = new int[nbVarIds];
+	boolean[] visited = new boolean[nbVarIds];
+	// dfs stack: the variable and the number of its explored rules
+	int[] stack  = new int[16];
+	int[] next   = new int[16];
+	// the postorder of the variables from the current scc
+	IntVec post = new IntVec();
+	for(int pos = 0; pos < sccOrder.size(); pos++) {
+	    Collection<V> vertices = sccOrder.get(pos).vertices();
+	    if(vertices.size() == 1) continue; // rank 0
+	    post.clear();
+	    // roots: first the variables written by the constraints
+	    // that do not read the scc (entry points), next all others
+	    IntVec roots = new IntVec();
+	    IntVec rules = sccRules[pos];
+	    for(int i = 0; i < rules.size; i++) {
+		int cid = rules.elems[i];
+		if(readsScc(cid, pos)) continue;
+		for(V w : cons(cid).out()) {
+		    int wid = varId(w);
+		    if(varScc[wid] == pos) roots.add(wid);
+		}
+	    }
+	    for(V v : vertices) {
+		roots.add(varId(v));
+	    }
+	    for(int r = 0; r < roots.size; r++) {
+		int root = roots.elems[r];
+		if(visited[root]) continue;
+		visited[root] = true;
+		int sp = 0;
+		stack[0] = root;
+		next[0]  = 0;
+		while(sp >= 0) {
+		    int v = stack[sp];
+		    IntVec vRules = varRules[v];
+		    // the successors of v: first its rules, next its inclusions
+		    int nbRules = vRules.size;
+		    if(next[sp] == nbRules + inclStart[v + 1] - inclStart[v]) {
+			post.add(v);
+			sp--;
+			continue;
+		    }
+		    // explore the first unvisited output of the current
+		    // rule; move to the next rule only when there is none
+		    int wid;
+		    if(next[sp] < nbRules) {
+			wid = unvisitedOut(cons(vRules.elems[next[sp]]), pos, visited);
+		    }
+		    else {
+			wid = inclDst[inclStart[v] + next[sp] - nbRules];
+			if(visited[wid]) wid = -1;
+		    }
+		    if(wid == -1) {
+			next[sp]++;
+			continue;
+		    }
+		    visited[wid] = true;
+		    sp++;
+		    if(sp == stack.length) {
+			stack = grow(stack);
+			next  = grow(next);
+		    }
+		    stack[sp] = wid;
+		    next[sp]  = 0;
+		}
+	    }
+	    for(int i = 0; i < post.size; i++) {
+		varRank[post.elems[i]] = post.size - 1 - i;
+	    }
+	}
+
+	// 2. ranks of the constraints
+	consRank = new int[consCost.length];
+	for(int cid = 0; cid < nbConsIds; cid++) {
+	    int rank = Integer.MAX_VALUE;
+	    for(int v : consIns[cid]) {
+		if(writesScc(cid, varScc[v])) {
+		    rank = Math.min(rank, varRank[v]);
+		}
+	    }
+	    consRank[cid] = (rank == Integer.MAX_VALUE) ? 0 : rank;
+	}
+	return consRank;
+    }
+
+    // returns the id of an unvisited output of c from the scc at position pos, or -1 if none
+    private int unvisitedOut(Constraint<V,Info> c, int pos, boolean[] visited) {
+	for(V w : c.out()) {
+	    int wid = varId(w);
+	    if((varScc[wid] == pos) && !visited[wid]) return wid;
+	}
+	return -1;
+    }
+
+    // checks whether constraint cid reads a variable from the scc at position pos
+    private boolean readsScc(int cid, int pos) {
+	for(int v : consIns[cid]) {
+	    if(varScc[v] == pos) return true;
+	}
+	return false;
+    }
+
+    // checks whether constraint cid writes a variable from the scc at position pos
+    private boolean writesScc(int cid, int pos) {
+	for(V w : cons(cid).out()) {
+	    if(varScc[varId(w)] == pos) return true;
+	}
+	return false;
+    }
+
+
+    // records that the scc from position pos2 depends (directly) on the scc from position pos1
+    private void addSccArc(int pos1, int pos2) {
+	if((pos1 == pos2) || sccSuccs[pos1].contains(pos2)) return;
+	sccSuccs[pos1].add(pos2);
+	sccNbPreds[pos2]++;
+    }
+
+    // returns the id of (the representative of) variable v
+    private int varId(V v) {
+	return var2id.get(v).intValue();
+    }
+
+    @SuppressWarnings("unchecked")
+    private V var(int id) {
+	return (V) idVars[id];
+    }
+
+    @SuppressWarnings("unchecked")
+    private Constraint<V,Info> cons(int cid) {
+	return (Constraint<V,Info>) idCons[cid];
+    }
+
+    ///////////////////////////////////////////////////
+    // KEY DATA-STRUCTURES USED BY THE SOLVER
+    //
+    // For speed, the solver refers to representative variables,
+    // constraints and sccs by dense integer ids, and keeps their
+    // properties in arrays indexed by these ids.  The arrays may be
+    // longer than needed (so that addConstraints can extend them).
+
+    // incremented each time the following structures change (see
+    // DemandSolReader)
+    private int structVersion = 0;
+
+    // map variable -> id of its representative
+    private NonIterableMap<V,Integer> var2id;
+    // variables without an id: no constraint reads or writes their representative
+    private List<V> idlessVars;
+    // number of variable ids (the ids are 0, 1, ..., nbVarIds - 1)
+    private int nbVarIds;
+    // variable id -> representative variable
+    private Object[] idVars;
+    // variable id -> position of its scc in sccOrder
+    private int[] varScc;
+    // variable id -> ids of the constraints that read the variable and
+    // write at least one variable from the same scc, except the
+    // inclusions (see inclStart)
+    private IntVec[] varRules;
+    // variable id -> whether the variable is read by at least one
+    // delta-aware constraint from varRules; in the difference
+    // propagation mode, we record deltas only for such variables
+    private boolean[] deltaReader;
+    // The inclusions (LtConstraints) between variables from the same
+    // scc, in compressed sparse row format: the destinations of the
+    // inclusions whose source has the id v are the variables with
+    // the ids inclDst[inclStart[v]], ..., inclDst[inclStart[v+1]-1].
+    // The solver propagates along these inclusions directly, without
+    // executing them (see SCCSolver.propagate).  Computed only when
+    // needed (see inclusionEdges); null if not computed yet.
+    private int[] inclStart;
+    private int[] inclDst;
+
+    // map constraint -> its id
+    private NonIterableMap<Constraint<V,Info>,Integer> c2id;
+    // number of constraint ids
+    private int nbConsIds;
+    // constraint id -> constraint
+    private Object[] idCons;
+    // constraint id -> ids of the variables from its c.in() (same order)
+    private int[][] consIns;
+    // constraint id -> its cost
+    private int[] consCost;
+    // constraint id -> its rank in a reverse postorder of the
+    // dependencies inside its scc; computed only if the workset
+    // strategy needs it (see consRanks)
+    private int[] consRank;
+
+    // the sccs of the dependencies between constraint variables, in
+    // topological order (the order in which we solve them);
+    // addConstraints may append new sccs at its end.  An scc is
+    // identified by its position in this list.
+    private List<SCComponent<V>> sccOrder;
+    // scc position -> ids of the constraints that write at least one var from scc
+    private IntVec[] sccRules;
+    // scc position -> positions of the sccs that depend directly on scc
+    private IntVec[] sccSuccs;
+    // scc position -> number of sccs that scc depends directly on
+    private int[] sccNbPreds;
+    ///////////////////////////////////////////////////
+
+
+    // Growable array of ints.
+    private static final class IntVec {
+	int[] elems = EMPTY;
+	int size = 0;
+
+	void add(int x) {
+	    if(size == elems.length) {
+		int[] elems2 = new int[Math.max(4, 2 * size)];
+		System.arraycopy(elems, 0, elems2, 0, size);
+		elems = elems2;
+	    }
+	    elems[size++] = x;
+	}
+
+	// adds x, unless x is the last element
+	void addIfNotLast(int x) {
+	    if((size == 0) || (elems[size - 1] != x)) {
+		add(x);
+	    }
+	}
+
+	boolean contains(int x) {
+	    for(int i = 0; i < size; i++) {
+		if(elems[i] == x) return true;
+	    }
+	    return false;
+	}
+
+	void clear() {
+	    size = 0;
+	}
+
+	private static final int[] EMPTY = new int[0];
+    }
+
+    // the following methods return a copy of an array, with twice the length
+
+    private static int[] grow(int[] a) {
+	int[] res = new int[2 * a.length];
+	System.arraycopy(a, 0, res, 0, a.length);
+	return res;
+    }
+
+    private static boolean[] grow(boolean[] a) {
+	boolean[] res = new boolean[2 * a.length];
+	System.arraycopy(a, 0, res, 0, a.length);
+	return res;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T[] grow(T[] a) {
+	T[] res = (T[]) Array.newInstance(a.getClass().getComponentType(), 2 * a.length);
+	System.arraycopy(a, 0, res, 0, a.length);
+	return res;
+    }
+
+    private void debugPrintUnifiedVars(PrintStream ps) {
+	Relation<V,V> maj2vars = new MapSetRelation<V,V>();
+	for(V v : vars) {
+	    maj2vars.add(uf.find(v), v);
+	}
+	ps.println("Unified vars: ");
+	for(V major : maj2vars.keys()) {
+	    ps.println("  " + major + " <- " + maj2vars.getValues(major));
+	}
+    }
+
+
+    /* Computes the inter-variable dependencies.  Variable v
+       influences w (i.e., w depends on v) if there exists at least
+       one constraint c that reads v and updates w (i.e., w belongs to
+       c.in() and v belongs to c.out()); in that case the digraph
+       returned by this method contains an arc from v to w.  The
+       vertices of the digraph are all the variables (representatives)
+       mentioned by at least one constraint.
+
+       The successor lists are ArrayLists (not sets): consecutive
+       duplicate arcs are eliminated, and the few remaining ones do
+       not bother the scc computation. */
+    private DiGraph<V> dependencies(Collection<Constraint<V,Info>> cs) {
+	Map<V,List<V>> succs = new LinkedHashMap<V,List<V>>();
+	for(Constraint<V,Info> c : cs) {
+	    for(V v : c.in()) {
+		V v2 = uf.find(v);
+		for(V w : c.out()) {
+		    addArc(succs, v2, uf.find(w));
+		}
+		vertex(succs, v2);
+	    }
+	    for(V w : c.out()) {
+		vertex(succs, uf.find(w));
+	    }
+	}
+	for(List<V> vSuccs : succs.values()) {
+	    ((ArrayList<V>) vSuccs).trimToSize();
+	}
+	return diGraph(succs);
+    }
+
+    // returns the list of successors of v from succs (creates an empty one if needed)
+    private static <T> List<T> vertex(Map<T,List<T>> succs, T v) {
+	List<T> vSuccs = succs.get(v);
+	if(vSuccs == null) {
+	    vSuccs = new ArrayList<T>(2);
+	    succs.put(v, vSuccs);
+	}
+	return vSuccs;
+    }
+
+    // adds the arc v -> w to succs (unless it is the last arc from v)
+    private static <T> void addArc(Map<T,List<T>> succs, T v, T w) {
+	List<T> vSuccs = vertex(succs, v);
+	if(vSuccs.isEmpty() || !vSuccs.get(vSuccs.size() - 1).equals(w)) {
+	    vSuccs.add(w);
+	}
+    }
+
+    // digraph view of succs (the keys of succs are all the vertices)
+    private static <T> DiGraph<T> diGraph(final Map<T,List<T>> succs) {
+	return DiGraph.<T>diGraph(succs.keySet(), new ForwardNavigator<T>() {
+	    public List<T> next(T v) {
+		return succs.get(v);
+	    }
+	});
+    }
+
+
+    /** Solves <code>this</code> system of constraints.  Returns the
+        least solution of the constraints.  Solving the same system
+        twice may return different results, if the constraints use
+        some external values that change in between the two calls to
+        <code>solve()</code>; still, it is very important that these
+        external values (if any) do NOT change during an execution of
+        <code>solve()</code>. 
+
+	<p>The executed constraints may generate new constraints (see
+	{@link GeneratingSolAccessor#addConstraint}).  The solver
+	collects them during a pass over the SCCs; at the end of the
+	pass, it adds them to <code>this</code> system (as
+	{@link #addConstraints addConstraints} does: the SCCs are
+	extended, or recomputed if the new dependencies contradict
+	their current order), and makes another pass, that starts from
+	the values computed so far and solves only the SCCs affected
+	by the new constraints.  The solve ends when a pass generates
+	no new constraint.  The generated constraints remain part of
+	<code>this</code> system.
+
+	<p>Note: this method is reentrant: each call works with its own
+	solver state, and several threads may solve the same system
+	simultaneously (e.g., if the external values used by the
+	constraints are thread-local).  Only the changes of the solver
+	structures (by {@link #addConstraints addConstraints}, or
+	when integrating generated constraints) wait for the passes
+	in progress to finish.
+
+	@see #solveAll
+	@see #solve(SolveBudget) */
+    public SolReader<V,Info> solve() {
+	return solveWith(null, null).sol;
+    }
+
+
+    /** Solves <code>this</code> system of constraints using several
+	threads.  Returns the same solution as {@link #solve()}.
+
+	<p>The sets of mutually dependent variables (the SCCs of the
+	dependency relation) are solved by tasks submitted to
+	<code>executor</code>: the task for an SCC is submitted as soon
+	as all the SCCs it depends on are solved.  Hence, SCCs that do
+	not depend on each other are solved in parallel.  The
+	fixed-point computation inside each SCC is still sequential.
+	This method returns only after all SCCs have been solved.  If
+	a constraint throws an exception, this method rethrows it
+	(wrapped in a <code>RuntimeException</code> if it is a checked
+	exception).
+
+	<p><b>Requirements:</b> <code>executor</code> should run the
+	submitted tasks in other threads (e.g., a
+	<code>java.util.concurrent.ForkJoinPool</code> or a
+	<code>java.util.concurrent.ThreadPoolExecutor</code>); an
+	executor that runs each task in the calling thread gives no
+	parallelism and may lead to very deep recursions.  Constraints
+	from different SCCs may be executed simultaneously: their
+	{@link Constraint#action action} methods must not modify
+	unprotected shared data (other than through the
+	<code>SolAccessor</code>).  Similarly, the {@link Var#copy
+	copy}, {@link Var#join join} and {@link Var#joinDelta
+	joinDelta} methods of different variables may be executed
+	simultaneously.
+
+	<p>The generated constraints (if any) are handled as in {@link
+	#solve()}.  This method is reentrant, as {@link #solve()}.
+
+	@param executor Executor for the tasks that solve the SCCs. */
+    public SolReader<V,Info> solve(Executor executor) {
+	if(executor == null) throw new NullPointerException("executor");
+	return solveWith(executor, null).sol;
+    }
+
+
+    /** Solves <code>this</code> system of constraints, within the
+	limits set by <code>budget</code>: a deadline, a maximal
+	number of constraint executions, and a cancellation token
+	(see {@link SolveBudget}).  If no limit is hit, the result is
+	complete, and gives the same solution as {@link #solve()}.
+	Otherwise, the solve stops, and the result gives the values
+	computed so far: they are below the least solution, but some
+	constraints may not be satisfied (see {@link
+	SolveResult#isComplete}).  An incomplete result does not
+	affect the later solves: e.g., the next solve does not start
+	from it (see {@link #addConstraints addConstraints}).
+
+	@param budget Limits of the solve; <code>null</code> means no limit. */
+    public SolveResult<V,Info> solve(SolveBudget budget) {
+	return solveWith(null, budget);
+    }
+
+    /** Parallel version of {@link #solve(SolveBudget)}: solves
+	<code>this</code> system of constraints as {@link
+	#solve(Executor)} does, within the limits set by
+	<code>budget</code>.  When a limit is hit, the solve waits for
+	the tasks in progress to finish the SCCs they solve (it does
+	not submit new tasks), then returns an incomplete result.
+
+	@param executor Executor for the tasks that solve the SCCs.
+	@param budget Limits of the solve; <code>null</code> means no limit. */
+    public SolveResult<V,Info> solve(Executor executor, SolveBudget budget) {
+	if(executor == null) throw new NullPointerException("executor");
+	return solveWith(executor, budget);
+    }
+
+
+    // Solves this system; sequentially if executor is null, in
+    // parallel (see ParallelSolve) otherwise; stops if a limit from
+    // budget (if non-null) is hit.  The passes over the sccs hold
+    // the read lock of structLock; the parts that read or change
+    // the shared state (the start of the solve, the integration of
+    // the generated constraints, and the end of the solve) hold its
+    // write lock.
+    private SolveResult<V,Info> solveWith(Executor executor, SolveBudget budget) {
+	BudgetCheck check = (budget == null) ? null : new BudgetCheck(budget);
+	Lock readLock  = structLock.readLock();
+	Lock writeLock = structLock.writeLock();
+	SolStore store;
+	StatsCollector collector;
+	writeLock.lock();
+	try {
+	    store = newStore();
+	    store.budget = check;
+	    collector = collectStats ? new StatsCollector() : null;
+	    // downgrade to the read lock
+	    readLock.lock();
+	}
+	finally {
+	    writeLock.unlock();
+	}
+
+	SolveBudget.Limit limit = null;
+	boolean reading = true;
+	try {
+	    if(check != null) check.check(0);
+	    while(true) {
+		if(executor == null) {
+		    solvePass(store, collector);
+		}
+		else {
+		    (new ParallelSolve(store, executor, collector)).run();
+		}
+		if(!store.hasGenerated()) break;
+		readLock.unlock();
+		reading = false;
+		writeLock.lock();
+		try {
+		    SolStore next = nextPass(store, collector);
+		    // nothing new: store is the solution
+		    if(next == null) break;
+		    store = next;
+		    store.budget = check;
+		    readLock.lock();
+		    reading = true;
+		}
+		finally {
+		    writeLock.unlock();
+		}
+	    }
+	}
+	catch(SolveStopped e) {
+	    if(DEBUG) System.out.println("solve stopped: " + e.limit);
+	    limit = e.limit;
+	}
+	finally {
+	    if(reading) readLock.unlock();
+	}
+
+	writeLock.lock();
+	try {
+	    if(limit == null) {
+		finish(store, collector);
+	    }
+	    else {
+		store.dropBase();
+		lastStats = (collector == null) ? null : collector.finish();
+	    }
+	    return new SolveResult<V,Info>(store, limit);
+	}
+	finally {
+	    writeLock.unlock();
+	}
+    }
+
+    // Checks the limits of a solve (see SolveBudget); counts the
+    // constraint executions of all SCCSolvers of the solve.
+    private static final class BudgetCheck {
+	BudgetCheck(SolveBudget budget) {
+	    this.budget = budget;
+	}
+
+	private final SolveBudget budget;
+	private final AtomicLong nbExecutions = new AtomicLong();
+
+	// records nbNew more executions; throws SolveStopped if a limit is hit
+	void check(int nbNew) {
+	    SolveBudget.Limit limit = budget.exceeded(nbExecutions.addAndGet(nbNew));
+	    if(limit != null) throw new SolveStopped(limit);
+	}
+    }
+
+    // Thrown when a limit of the solve is hit; caught by solveWith.
+    private static final class SolveStopped extends RuntimeException {
+	private static final long serialVersionUID = 1L;
+
+	SolveStopped(SolveBudget.Limit limit) {
+	    super("solve stopped: " + limit);
+	    this.limit = limit;
+	}
+
+	final SolveBudget.Limit limit;
+
+	// no stack trace: this exception is part of the normal control flow
+	public Throwable fillInStackTrace() {
+	    return this;
+	}
+    }
+
+    // One sequential pass over the sccs.
+    private void solvePass(SolStore store, StatsCollector collector) {
+	SCCSolver solver = new SCCSolver(store, false, collector);
+
+	// Algorithm: explore the sets of mutually dependent variables
+	// (the SCCs of the dependency relation) in reverse
+	// topological order (i.e., starting with those variables that
+	// do not depend on any variable outside their scc).
+	for(int pos = 0; pos < sccOrder.size(); pos++) {
+	    // Please read the comments inside solveSCC below
+	    if(store.mustSolve(pos)) {
+		solver.solveSCC(pos);
+	    }
+	}
+    }
+
+
+    /** Solves several constraint systems in parallel.  For each
+	system from <code>systems</code>, submits to
+	<code>executor</code> a task that calls {@link #solve()} on
+	it; the systems are solved independently, in parallel.
+	Returns the solutions, in the order of <code>systems</code>.
+	A system may appear several times in <code>systems</code>
+	(see the note about reentrancy from {@link #solve()}).  This
+	method returns only after all tasks finish.  If a solve
+	throws an exception, this method rethrows the first such
+	exception (wrapped in a <code>RuntimeException</code> if it is
+	a checked exception).
+
+	<p><b>Requirements:</b> <code>executor</code> should run the
+	submitted tasks in other threads (see {@link
+	#solve(Executor)}).  The constraints of different systems may
+	be executed simultaneously.
+
+	@param systems Constraint systems to solve.
+	@param executor Executor for the tasks that solve the systems. */
+    public static <V extends Var<Info>, Info> List<SolReader<V,Info>>
+	solveAll(List<? extends ConstraintSystem<V,Info>> systems, Executor executor) {
+	int size = systems.size();
+	final Object[] sols = new Object[size];
+	final CountDownLatch done = new CountDownLatch(size);
+	final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+	int i = 0;
+	for(final ConstraintSystem<V,Info> sys : systems) {
+	    final int index = i++;
+	    executor.execute(new Runnable() {
+		public void run() {
+		    try {
+			if(failure.get() == null) {
+			    sols[index] = sys.solve();
+			}
+		    }
+		    catch(Throwable t) {
+			failure.compareAndSet(null, t);
+		    }
+		    finally {
+			done.countDown();
+		    }
+		}
+	    });
+	}
+	awaitUninterruptibly(done);
+	rethrow(failure.get());
+
+	List<SolReader<V,Info>> res = new ArrayList<SolReader<V,Info>>(size);
+	for(Object sol : sols) {
+	    @SuppressWarnings("unchecked")
+	    SolReader<V,Info> sr = (SolReader<V,Info>) sol;
+	    res.add(sr);
+	}
+	return res;
+    }
+
+    // waits for latch; we cannot abandon the tasks, so an interrupt
+    // does not stop the wait (but the interrupt status is restored)
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+	boolean interrupted = false;
+	while(true) {
+	    try {
+		latch.await();
+		break;
+	    }
+	    catch(InterruptedException e) {
+		interrupted = true;
+	    }
+	}
+	if(interrupted) Thread.currentThread().interrupt();
+    }
+
+    // rethrows t (if non-null), wrapped in a RuntimeException if it is a checked exception
+    private static void rethrow(Throwable t) {
+	if(t == null) return;
+	if(t instanceof RuntimeException) throw (RuntimeException) t;
+	if(t instanceof Error) throw (Error) t;
+	throw new RuntimeException(t);
+    }
+
+
+    /** Demand-driven solving: solves only the part of
+	<code>this</code> system needed to compute the values of the
+	variables from <code>queryVars</code>, i.e., the SCCs of these
+	variables and the SCCs they (transitively) depend on.  For the
+	variables from <code>queryVars</code>, the returned reader
+	gives the same values as the reader returned by {@link
+	#solve()}.  For other variables, the returned reader solves
+	lazily the missing SCCs the first time they are needed,
+	reusing the SCCs that are already solved.  Hence, a sequence
+	of queries never solves an SCC twice, and never solves the
+	SCCs that no query depends on.
+
+	<p>This method always starts from scratch (it does not reuse
+	the previous solutions), does not collect statistics, and
+	uses the current modes of <code>this</code> system (e.g., the
+	difference propagation mode).  The returned reader is
+	thread-safe, and does not block the other solves.  If
+	<code>this</code> system changes (see {@link #addConstraints
+	addConstraints}) a query that needs an unsolved SCC throws an
+	<code>IllegalStateException</code>; the values computed
+	before the change are still available.
+
+	<p>If the constraints executed for a query generate
+	constraints that <code>this</code> system does not contain yet
+	(see {@link GeneratingSolAccessor#addConstraint}), the solved
+	SCCs may be incomplete: the reader falls back to a full {@link #solve()} (that adds
+	the generated constraints to <code>this</code> system), and
+	answers all queries from its solution. */
+    public SolReader<V,Info> solveFor(Collection<V> queryVars) {
+	DemandSolReader reader;
+	structLock.writeLock().lock();
+	try {
+	    reader = new DemandSolReader();
+	}
+	finally {
+	    structLock.writeLock().unlock();
+	}
+	reader.get(queryVars);
+	return reader;
+    }
+
+
+    // Solution reader for solveFor: solves the sccs on demand.
+    // All the accesses to the solver structures are done while
+    // holding the read lock of structLock (the constructor, that
+    // computes some lazy structures, needs the write lock), and the
+    // lock of the reader (for the state of the reader).
+    private final class DemandSolReader implements SolReader<V,Info> {
+	DemandSolReader() {
+	    inclusionEdges();
+	    if(worksetStrategy.needsRanks()) {
+		consRanks();
+	    }
+	    store  = new SolStore(null, true, Collections.<V>emptyList());
+	    store.generated = new ArrayList<Constraint<V,Info>>();
+	    solver = new SCCSolver(store, false, null);
+	    structVersion = ConstraintSystem.this.structVersion;
+	    ids    = var2id;
+	    sccOf  = varScc;
+	    solved = new boolean[sccOrder.size()];
+	    // scc position -> positions of the sccs it depends on directly
+	    sccPreds = new IntVec[sccOrder.size()];
+	    for(int pos = 0; pos < sccPreds.length; pos++) {
+		sccPreds[pos] = new IntVec();
+	    }
+	    for(int pos = 0; pos < sccPreds.length; pos++) {
+		IntVec succs = sccSuccs[pos];
+		for(int i = 0; i < succs.size; i++) {
+		    sccPreds[succs.elems[i]].add(pos);
+		}
+	    }
+	}
+
+	private final SolStore store;
+	private final SCCSolver solver;
+	// the version of the solver structures this reader works with
+	private final int structVersion;
+	// the structures from that version that this reader needs
+	// after a change of the system (the other structures are not
+	// used after a change)
+	private final NonIterableMap<V,Integer> ids;
+	private final int[] sccOf;
+	// scc position -> whether it was solved
+	private final boolean[] solved;
+	private final IntVec[] sccPreds;
+	// the solution of the full solve, after the solved sccs
+	// generated new constraints; null before
+	private SolReader<V,Info> full = null;
+
+	public synchronized Info get(V v) {
+	    if(full != null) return full.get(v);
+	    Integer id = ids.get(v);
+	    // no id: v appears in no constraint; no id yet: v was
+	    // added after this reader was created
+	    if((id == null) || (id.intValue() >= store.sol.length)) return null;
+	    if(!solved[sccOf[id.intValue()]]) {
+		get(Collections.singleton(v));
+		if(full != null) return full.get(v);
+	    }
+	    return store.get(v);
+	}
+
+	// solves (under the read lock) the sccs needed for the values
+	// of vs; falls back to a full solve if they generate new
+	// constraints
+	synchronized void get(Collection<V> vs) {
+	    if(full != null) return;
+	    structLock.readLock().lock();
+	    try {
+		solveFor(vs);
+	    }
+	    finally {
+		structLock.readLock().unlock();
+	    }
+	    if(!store.hasGenerated()) return;
+
+	    boolean complete;
+	    structLock.writeLock().lock();
+	    try {
+		// the solved sccs are complete if the generated
+		// constraints are already part of the system they
+		// were solved for
+		complete = (structVersion == ConstraintSystem.this.structVersion) &&
+		    newGenerated(store.takeGenerated()).isEmpty();
+		store.generated = new ArrayList<Constraint<V,Info>>();
+	    }
+	    finally {
+		structLock.writeLock().unlock();
+	    }
+	    if(!complete) {
+		if(DEBUG) System.out.println("solveFor: generated constraints; full solve");
+		full = solveWith(null, null);
+	    }
+	}
+
+	// solves the unsolved sccs needed to compute the values of vs
+	void solveFor(Collection<V> vs) {
+	    // 1. the unsolved sccs from the backward slice of vs
+	    IntVec slice = new IntVec();
+	    IntVec stack = new IntVec();
+	    boolean[] inSlice = new boolean[solved.length];
+	    for(V v : vs) {
+		Integer id = ids.get(v);
+		if((id == null) || (id.intValue() >= store.sol.length)) continue;
+		int pos = sccOf[id.intValue()];
+		if(solved[pos] || inSlice[pos]) continue;
+		inSlice[pos] = true;
+		stack.add(pos);
+	    }
+	    while(stack.size != 0) {
+		int pos = stack.elems[--stack.size];
+		slice.add(pos);
+		IntVec preds = sccPreds[pos];
+		for(int i = 0; i < preds.size; i++) {
+		    int pred = preds.elems[i];
+		    if(solved[pred] || inSlice[pred]) continue;
+		    inSlice[pred] = true;
+		    stack.add(pred);
+		}
+	    }
+	    if(slice.size == 0) return;
+	    if(structVersion != ConstraintSystem.this.structVersion) {
+		throw new IllegalStateException("The constraint system changed since solveFor");
+	    }
+
+	    // 2. solve them in topological order
+	    int[] order = new int[slice.size];
+	    System.arraycopy(slice.elems, 0, order, 0, slice.size);
+	    Arrays.sort(order);
+	    for(int pos : order) {
+		solver.solveSCC(pos);
+		solved[pos] = true;
+	    }
+	}
+
+	public synchronized String toString() {
+	    return (full != null) ? full.toString() : store.toString();
+	}
+    }
+
+
+    // Creates the solution store for a solve.  If constraints were
+    // added since the last solve, the new store starts from the
+    // last solution (see addConstraints).
+    private SolStore newStore() {
+	SolStore store = newStore(seeds, allDirty, dirtyVars);
+	store.nbChanges = nbChanges;
+	return store;
+    }
+
+    // Creates a solution store that starts from the values base
+    // (see SolStore).  Also prepares the data needed by the
+    // workset strategy.
+    private SolStore newStore(Object[] base, boolean solveAll, Collection<V> updated) {
+	inclusionEdges();
+	if(worksetStrategy.needsRanks()) {
+	    // compute the ranks before the parallel solve starts
+	    consRanks();
+	}
+	SolStore store = new SolStore(base, solveAll, updated);
+	store.generated = new ArrayList<Constraint<V,Info>>();
+	return store;
+    }
+
+    // Adds the constraints generated during a pass over the sccs
+    // (see GeneratingSolAccessor.addConstraint) to this system, and
+    // returns the store for the next pass: the next pass starts from
+    // the values from store, and solves only the affected sccs.
+    // Returns null if store already took into account all generated
+    // constraints: store is the solution.
+    private SolStore nextPass(SolStore store, StatsCollector collector) {
+	List<Constraint<V,Info>> generated = store.takeGenerated();
+	if(store.structVersion == structVersion) {
+	    // store was solved for the current structures: the
+	    // generated constraints that they already contain changed
+	    // nothing.  Otherwise, another solve may have added some
+	    // generated constraints after store was created; we add
+	    // them again, so that their sccs are re-solved.
+	    generated = newGenerated(generated);
+	    if(generated.isEmpty()) return null;
+	}
+	if(DEBUG) System.out.println("solve: " + generated.size() + " generated constraints");
+	// nobody mutates the values from store from now on
+	store.dropBase();
+	NonIterableMap<V,Integer> oldIds = var2id;
+	List<V> updated = integrate(generated);
+	generatedCs.addAll(generated);
+	// the next solve needs the new constraints too
+	updatePending(oldIds, updated);
+	if(collector != null) {
+	    // the sccs may have changed
+	    collector.newPass();
+	}
+	// other solves may have changed the ids since store was created
+	Object[] base = (var2id != store.ids) ? computeSeeds(store) : store.sol;
+	SolStore next = (updated == null) ?
+	    newStore(base, true, Collections.<V>emptyList()) :
+	    newStore(base, false, updated);
+	// the next pass takes into account all changes, unless other
+	// solves or addConstraints changed this system meanwhile
+	next.nbChanges = (store.nbChanges == nbChanges - 1) ? nbChanges : store.nbChanges;
+	return next;
+    }
+
+    // Returns the constraints from generated that this system does
+    // not contain yet (modulo the unifications), without duplicates.
+    private List<Constraint<V,Info>> newGenerated(List<Constraint<V,Info>> generated) {
+	List<Constraint<V,Info>> res = new ArrayList<Constraint<V,Info>>();
+	NonIterableSet<Constraint<V,Info>> seen = new NonIterableSet<Constraint<V,Info>>();
+	for(Constraint<V,Info> c : generated) {
+	    if(generatedCs.contains(c)) continue;
+	    Constraint<V,Info> c2 = c.rewrite(uf);
+	    if((c2 == null) || c2id.containsKey(c2) || !seen.add(c2)) continue;
+	    res.add(c);
+	}
+	return res;
+    }
+
+    private SolStore finish(SolStore store, StatsCollector collector) {
+	store.dropBase();
+	if(store.sharing()) {
+	    store.canonicalize();
+	}
+	if(store.nbChanges == nbChanges) {
+	    // store is the solution of the current system
+	    lastSol = store;
+	    seeds = null;
+	    allDirty = false;
+	    dirtyVars.clear();
+	}
+	lastStats = (collector == null) ? null : collector.finish();
+	return store;
+    }
+
+
+    // Collects the statistics for one solve (see setStatistics).
+    // Each SCCSolver counts the executions of each constraint class
+    // in its own map (no synchronization), and the counters for each
+    // SCC; finish merges all of them.
+    private final class StatsCollector {
+	StatsCollector() {
+	    stats = new SolverStats<V>(nbUnifiedMS, nbUnifiedSLt, nbEmptyVars, nbElimCons,
+					    nbUnifiedSubst);
+	    sccCounters = newSccCounters(sccOrder.size());
+	    start = System.nanoTime();
+	}
+
+	private final SolverStats<V> stats;
+	private final long start;
+
+	// scc position -> its counters, for the current pass over the
+	// sccs (null if the scc was not solved)
+	SolverStats.SccCounters<V>[] sccCounters;
+	// the sccCounters of the previous passes (see nextPass)
+	private final List<SolverStats.SccCounters<V>[]> prevSccCounters =
+	    new ArrayList<SolverStats.SccCounters<V>[]>();
+
+	// starts a new pass over the (maybe changed) sccs
+	void newPass() {
+	    prevSccCounters.add(sccCounters);
+	    sccCounters = newSccCounters(sccOrder.size());
+	}
+
+	// the map constraint class -> counters of each SCCSolver
+	final Queue<Map<Class<?>,SolverStats.Counters>> solverCounters =
+	    new ConcurrentLinkedQueue<Map<Class<?>,SolverStats.Counters>>();
+
+	SolverStats<V> finish() {
+	    stats.solveTime = System.nanoTime() - start;
+	    for(Map<Class<?>,SolverStats.Counters> class2counters : solverCounters) {
+		for(Map.Entry<Class<?>,SolverStats.Counters> entry : class2counters.entrySet()) {
+		    SolverStats.Counters counters = stats.class2counters.get(entry.getKey());
+		    if(counters == null) {
+			counters = new SolverStats.Counters();
+			stats.class2counters.put(entry.getKey(), counters);
+		    }
+		    counters.add(entry.getValue());
+		    stats.totals.add(entry.getValue());
+		}
+	    }
+	    prevSccCounters.add(sccCounters);
+	    for(SolverStats.SccCounters<V>[] passCounters : prevSccCounters) {
+		for(int pos = 0; pos < passCounters.length; pos++) {
+		    if(passCounters[pos] == null) continue;
+		    stats.sccCounters.add(passCounters[pos]);
+		    stats.totals.maxWorksetSize =
+			Math.max(stats.totals.maxWorksetSize, passCounters[pos].maxWorksetSize);
+		}
+	    }
+	    return stats;
+	}
+    }
+
+    @SuppressWarnings("unchecked")
+    private SolverStats.SccCounters<V>[] newSccCounters(int size) {
+	return (SolverStats.SccCounters<V>[]) new SolverStats.SccCounters<?>[size];
+    }
+
+
+    // Solution store: the values of the representative variables and
+    // their versions, indexed by variable ids.  The version of a
+    // variable increases each time its value changes; initially,
+    // each variable has the version -1.  In the parallel mode,
+    // several threads may write simultaneously into a SolStore, but
+    // never into the same element (each variable belongs to a single
+    // scc), and the ordering between the tasks for the sccs ensures
+    // the visibility of the writes.
+    //
+    // An incremental solve starts from the values of a previous
+    // solution (base), without modifying them: we copy a value from
+    // base into this store only when we need to change it.  Only the
+    // dirty sccs (those updated by new constraints, and those that
+    // depend on variables whose values change) are solved.
+    private final class SolStore implements SolReader<V,Info> {
+
+	SolStore(Object[] base, boolean allDirty, Collection<V> dirtyVars) {
+	    sol      = new Object[nbVarIds];
+	    versions = new int[nbVarIds];
+	    Arrays.fill(versions, -1);
+	    this.base = base;
+	    if((base != null) && !allDirty) {
+		dirty = new boolean[sccOrder.size()];
+		for(V v : dirtyVars) {
+		    dirty[varScc[varId(v)]] = true;
+		}
+	    }
+	    else {
+		dirty = null;
+	    }
+	    shared = valueSharing ? new boolean[nbVarIds] : null;
+	    structVersion = ConstraintSystem.this.structVersion;
+	    lcd      = cycleDetection;
+	    diffProp = ConstraintSystem.this.diffProp;
+	}
+
+	// the variable ids used by this solution; addConstraints may
+	// later change the ids of the constraint system.
+	private final NonIterableMap<V,Integer> ids = var2id;
+
+	// variable id -> value
+	private final Object[] sol;
+
+	// variable id -> version of its value
+	private final int[] versions;
+
+	// values from a previous solution; null if we start from
+	// scratch, or after the solve ends (see dropBase)
+	private Object[] base;
+
+	// if non-null, only the sccs whose positions are marked here need to be solved
+	private final boolean[] dirty;
+
+	// the number of changes of the system taken into account by
+	// this store (see ConstraintSystem.nbChanges)
+	int nbChanges;
+
+	// the version of the solver structures this store was created for
+	final int structVersion;
+
+	// the limits of the solve; null if none
+	BudgetCheck budget;
+
+	// lazy cycle detection and difference propagation modes,
+	// fixed when the store is created (under the write lock of
+	// structLock)
+	final boolean lcd;
+	final boolean diffProp;
+
+	// the constraints generated by the executed constraints (see
+	// GeneratingSolAccessor.addConstraint), not yet added to the
+	// system; null after takeGenerated.  Accesses are synchronized
+	// on this list.
+	List<Constraint<V,Info>> generated;
+
+	// value sharing mode: variable id -> whether its value may be
+	// shared with other variables (and must be copied before
+	// being mutated); null if the mode is off, or after the solve
+	// ends (see canonicalize)
+	private boolean[] shared;
+
+	public Info get(V v) {
+	    Integer id = ids.get(v);
+	    if((id == null) || (id.intValue() >= sol.length)) return null;
+	    @SuppressWarnings("unchecked")
+	    Info value = (Info) sol[id.intValue()];
+	    return value;
+	}
+
+	// returns the value of the variable with the given id
+	Info getValue(int id) {
+	    Object value = sol[id];
+	    if((value == null) && (base != null) && (id < base.length)) {
+		value = base[id];
+	    }
+	    @SuppressWarnings("unchecked")
+	    Info res = (Info) value;
+	    return res;
+	}
+
+	// same as getValue, but the returned value (if any) belongs
+	// to this store, and we can mutate it
+	Info getMutableValue(int id) {
+	    Info value = getValue(id);
+	    if((value != null) && ((sol[id] == null) || ((shared != null) && shared[id]))) {
+		value = var(id).copy(value);
+		sol[id] = value;
+		if(shared != null) shared[id] = false;
+	    }
+	    return value;
+	}
+
+	// sets the value of the variable with the given id
+	void setValue(int id, Info value) {
+	    sol[id] = value;
+	}
+
+	// checks whether the value sharing mode is on
+	boolean sharing() {
+	    return shared != null;
+	}
+
+	// records that the value of the variable with the given id
+	// may be shared with other variables
+	void share(int id) {
+	    shared[id] = true;
+	}
+
+	// Hash-consing: makes the variables with equal values (of the
+	// same class) share the same value object.  Called at the end
+	// of the solve, when nobody mutates the values anymore.
+	void canonicalize() {
+	    Map<Object,Object> table = new HashMap<Object,Object>();
+	    for(int id = 0; id < sol.length; id++) {
+		Object value = sol[id];
+		if(value == null) continue;
+		Object canon = table.get(value);
+		if(canon == null) {
+		    table.put(value, value);
+		}
+		else if(canon.getClass() == value.getClass()) {
+		    sol[id] = canon;
+		}
+	    }
+	    shared = null;
+	}
+
+	int getVersion(int id) {
+	    return versions[id];
+	}
+
+	void setVersion(int id, int version) {
+	    versions[id] = version;
+	}
+
+	// records that the value of a variable changed: increments
+	// its version; the first time, marks as dirty the sccs that
+	// depend on it
+	void changed(int id) {
+	    versions[id]++;
+	    if((versions[id] == 0) && (dirty != null)) {
+		IntVec succs = sccSuccs[varScc[id]];
+		for(int i = 0; i < succs.size; i++) {
+		    dirty[succs.elems[i]] = true;
+		}
+	    }
+	}
+
+	// Records the constraint c generated by an executed
+	// constraint, unless it was already generated.  The generated
+	// constraints that this system already contains (modulo the
+	// unifications) are filtered out by nextPass: rewriting them
+	// here would race with the other solves of this system, that
+	// also hold only the read lock of structLock (uf.find
+	// compresses paths).
+	void generate(Constraint<V,Info> c) {
+	    // in the parallel mode, several threads may generate constraints
+	    synchronized(generated) {
+		if(generatedSet == null) {
+		    generatedSet = new NonIterableSet<Constraint<V,Info>>();
+		}
+		if(generatedSet.add(c)) {
+		    generated.add(c);
+		}
+	    }
+	}
+	// the generated constraints (as generated)
+	private NonIterableSet<Constraint<V,Info>> generatedSet;
+
+	// checks whether the executed constraints generated new constraints
+	boolean hasGenerated() {
+	    return (generated != null) && !generated.isEmpty();
+	}
+
+	// returns the generated constraints, and forgets about them
+	List<Constraint<V,Info>> takeGenerated() {
+	    List<Constraint<V,Info>> res = generated;
+	    generated = null;
+	    generatedSet = null;
+	    return res;
+	}
+
+	// checks whether we need to solve the scc from position pos
+	boolean mustSolve(int pos) {
+	    return (dirty == null) || dirty[pos];
+	}
+
+	// copies into this store the values it still takes from
+	// base (without copying the values themselves: nobody
+	// mutates them from now on), such that base can be garbage
+	// collected.
+	void dropBase() {
+	    if(base == null) return;
+	    for(int id = 0; id < sol.length; id++) {
+		if((sol[id] == null) && (id < base.length)) {
+		    sol[id] = base[id];
+		}
+	    }
+	    base = null;
+	}
+
+	public String toString() {
+	    StringBuffer buff = new StringBuffer();
+	    for(V v : vars) {
+		buff.append("  " + v + " -> ");
+		buff.append(get(v));
+		buff.append("\n");
+	    }
+	    return buff.toString();
+	}
+    }
+
+
+    // marks a variable whose full value has to be propagated along
+    // its inclusions (see SCCSolver.inclPending)
+    private static final Object FULL = new Object();
+
+
+    // Fixed-point solver for SCCs.  An SCCSolver contains all the
+    // data structures that change while solving an SCC (except the
+    // solution store); in the parallel mode, each thread uses its
+    // own SCCSolver.  An SCCSolver also plays the role of the
+    // SolAccessor passed to the executed constraints.
+    private final class SCCSolver implements DeltaSolAccessor<V,Info>, GeneratingSolAccessor<V,Info> {
+
+	SCCSolver(SolStore store, boolean parallel, StatsCollector collector) {
+	    this.store    = store;
+	    this.parallel = parallel;
+	    this.lcd      = store.lcd;
+	    if(adaptiveCosts) {
+		costModel  = ConstraintSystem.this.costModel;
+		costKeys   = consCost.clone();
+		classCosts = new CostModel.ClassCost[nbConsIds];
+	    }
+	    else {
+		costModel  = null;
+		costKeys   = consCost;
+		classCosts = null;
+	    }
+	    // consRank and the inclusions were computed by newStore
+	    workset    = worksetStrategy.newWorkset(nbConsIds, costKeys, consRank);
+	    inclStart  = ConstraintSystem.this.inclStart;
+	    inclDst    = ConstraintSystem.this.inclDst;
+	    inVersions = new int[nbConsIds][];
+	    pendings   = store.diffProp ? newPendings(nbConsIds) : null;
+	    budget     = store.budget;
+	    this.collector = collector;
+	    if(collector != null) {
+		class2counters = new LinkedHashMap<Class<?>,SolverStats.Counters>();
+		consCounters   = new SolverStats.Counters[nbConsIds];
+		collector.solverCounters.add(class2counters);
+	    }
+	    else {
+		class2counters = null;
+		consCounters   = null;
+	    }
+	}
+
+	private final SolStore store;
+
+	// Statistics (see setStatistics); all null if statistics are
+	// not collected.  consCounters maps each constraint id to the
+	// counters for the class of that constraint (from
+	// class2counters); cc and sccCounters are the counters for the
+	// executed constraint and for currScc.
+	private final StatsCollector collector;
+	private final Map<Class<?>,SolverStats.Counters> class2counters;
+	private final SolverStats.Counters[] consCounters;
+	private SolverStats.Counters cc;
+	private SolverStats.SccCounters<V> sccCounters;
+
+	// Adaptive cost mode (see setAdaptiveCosts); costModel and
+	// classCosts are null if this mode is off.  costKeys maps each
+	// constraint id to its cost for the workset (consCost if the
+	// mode is off); classCosts maps each constraint id to the
+	// measured costs of its class.  We change the key of a
+	// constraint only while it is not in the workset.
+	private final CostModel costModel;
+	private final int[] costKeys;
+	private final CostModel.ClassCost[] classCosts;
+	// counts the executions, to time one out of SAMPLE_PERIOD
+	private int sampleClock = 0;
+
+	// the limits of the solve (null if none); we check them once
+	// every SolveBudget.CHECK_PERIOD executions (see tickBudget)
+	private final BudgetCheck budget;
+	private int budgetClock = 0;
+
+	// If true, other SCCSolvers may work at the same time on other
+	// SCCs: this solver writes only the variables from currScc.
+	private final boolean parallel;
+
+	// position of the SCC currently solved
+	private int currScc = -1;
+
+	// workset of the (ids of the) constraints that still need to be
+	// evaluated; the workset strategy decides its order
+	private final IntWorkset workset;
+
+	// Map constraint id -> versions of the values of its input
+	// variables, as recorded the last time the constraint was
+	// executed.  We re-execute the constraint only if at least
+	// one of the input variables have a bigger version.
+	private final int[][] inVersions;
+
+	// Map delta-aware constraint id -> deltas of its inputs,
+	// accumulated since its last execution.  No entry for a
+	// constraint means that the constraint was not executed yet,
+	// and it should see the full values of its inputs.  null if
+	// diffProp is off.
+	private final PendingDeltas[] pendings;
+
+	// If CHECK_IN_OUT is true, the sol. accessor needs to know
+	// the currently executed constraint, such that it can check
+	// that c.in() contains each read variable appears, and
+	// c.out() contains each variable c joins to.  The
+	// difference propagation mode also needs its id.
+	private Constraint<V,Info> c;
+	private int cid;
+
+	// join will add here the (ids of the) variables whose value
+	// has been changed by the currently executed constraint.
+	private final IntVec changedVars = new IntVec();
+
+	// the inclusions inside sccs (see inclStart)
+	private final int[] inclStart;
+	private final int[] inclDst;
+	// Stack of the variables (representatives) whose value has to
+	// be propagated along their inclusions.  A variable appears at
+	// most once in this stack; inclPending maps it to the delta to
+	// propagate (FULL: its full value), and inclOwned says whether
+	// we can join other deltas into that delta.
+	private final IntVec inclStack = new IntVec();
+	private final Object[] inclPending = new Object[nbVarIds];
+	private final boolean[] inclOwned = new boolean[nbVarIds];
+	// statistics: the counters for the LtConstraint class (created
+	// the first time we propagate along an inclusion)
+	private SolverStats.Counters inclCounters;
+
+	// In the difference propagation mode, the input deltas for the
+	// currently executed constraint c (see PendingDeltas); null
+	// means that c should see the full values.
+	private Object[] currDeltas;
+
+	// lazy cycle detection mode
+	private final boolean lcd;
+
+	// In the lazy cycle detection mode, the cycles detected
+	// inside currScc: we unify the variables from each cycle
+	// until the end of currScc.  cycleParent is a union-find
+	// forest (with path compression and union by size) over the
+	// variable ids: it maps each unified variable to its parent
+	// (-1 for the roots, i.e., the representatives);
+	// cycleMembers maps each representative to the other
+	// variables from its cycle; cycleRoots lists the
+	// representatives.  Allocated the first time we detect a
+	// cycle.
+	private boolean cyclesFound = false;
+	private int[] cycleParent;
+	private IntVec[] cycleMembers;
+	private boolean[] cycleDeltaReader;
+	private final IntVec cycleRoots = new IntVec();
+	// inclusions (indices in inclDst) that already triggered a cycle search
+	private boolean[] lcdTried;
+
+	// Scratch buffers for the cycle searches (see detectCycle),
+	// allocated the first time we search for a cycle.  dfsIndex
+	// maps each variable visited by the current search to its
+	// (1-based) DFS number, and 0 to the other variables; dfsLow
+	// and dfsOnStack are the lowlink and the stack membership
+	// from Tarjan's algorithm.
+	private int[] dfsIndex;
+	private int[] dfsLow;
+	private boolean[] dfsOnStack;
+	// the variables visited by the current search
+	private final IntVec dfsVisited = new IntVec();
+	// Tarjan's stack of variables
+	private final IntVec dfsStack = new IntVec();
+	// the DFS call stack: (variable v, index k of the current
+	// source in v's cycle, current inclusion e) triples
+	private final IntVec dfsCalls = new IntVec();
+
+
+	void solveSCC(int pos) {
+	    currScc = pos;
+	    long start = 0;
+	    if(collector != null) {
+		sccCounters = new SolverStats.SccCounters<V>(sccOrder.get(pos).vertices());
+		workset.maxSize = 0;
+		start = System.nanoTime();
+	    }
+	    // 1. Execute once all constraints that write at least one var
+	    // from scc.  After this step, the influences from the outer
+	    // sccs will be propagated to this scc (although the
+	    // fixed-point from 2 is required in order to complete this
+	    // propagation inside scc).
+	    //
+	    // NOTE: initially, I thought about executing only those
+	    // constraints that also read one variable from outside scc
+	    // (or do not read any arg. at all).  Still, we cannot be
+	    // sure that a constraint that reads only vars from inside scc
+	    // does not use some constant to produce new values, so this
+	    // tentative "optimization" would be incorrect.
+	    if(DEBUG) System.out.println("scc-init " + sccOrder.get(pos).vertices());
+	    IntVec rules = sccRules[pos];
+	    if(costModel != null) {
+		// the workset is empty: use the latest measured costs
+		for(int i = 0; i < rules.size; i++) {
+		    int cid = rules.elems[i];
+		    costKeys[cid] = costModel.key(classCost(cid), consCost[cid]);
+		}
+	    }
+	    for(int i = 0; i < rules.size; i++) {
+		int cid = rules.elems[i];
+		Constraint<V,Info> c = cons(cid);
+		if(isInclusion(c, consIns[cid])) {
+		    // inclusion inside the scc: no need to execute it
+		    int vs = rep(consIns[cid][0]);
+		    int vd = rep(ltDst(c));
+		    Info value = store.getValue(vs);
+		    if((vs != vd) && (value != null)) {
+			joinInclusion(vs, vd, value);
+		    }
+		    continue;
+		}
+		if(parallel) {
+		    // c may have been executed (by this solver) for
+		    // another scc; as the writes into the variables from
+		    // this scc were ignored then, we have to execute c
+		    // again, with full input values.
+		    inVersions[cid] = null;
+		    if(pendings != null) pendings[cid] = null;
+		}
+		execute(cid);
+	    }
+
+	    // 2. Iterate over constraints that may read (at least) one
+	    // var from scc and may write one or more variable(s) from scc;
+	    // after each constraint, propagate along the inclusions
+	    if(DEBUG) System.out.println("scc-fixed-point");
+	    propagate();
+	    while(!workset.isEmpty()) {
+		execute(workset.extract());
+		propagate();
+	    }
+
+	    if(cyclesFound) {
+		endCycles();
+	    }
+	    if(collector != null) {
+		sccCounters.time = System.nanoTime() - start;
+		sccCounters.maxWorksetSize = workset.maxSize;
+		collector.sccCounters[pos] = sccCounters;
+		sccCounters = null;
+	    }
+	    currScc = -1;
+	}
+
+
+	// Executes one constraint; possibly add into the workset a few
+	// more constraints that need to be re-evaluated.
+	private final void execute(int cid) {
+	    if(budget != null) tickBudget();
+	    Constraint<V,Info> c = cons(cid);
+	    // If we have already executed the constraint for the current
+	    // versions of the input vars, then no need to execute it
+	    // again -> return
+	    if(sameInputs(cid)) {
+		if(DEBUG_VER) System.out.println("Constraint " + c + " has already been seen.");
+		if(collector != null) {
+		    counters(cid).nbSkipped++;
+		    sccCounters.nbSkipped++;
+		}
+		return;
+	    }
+	    if(DEBUG) System.out.println("  Execute " + c);
+
+	    // initially, no changed variables
+	    changedVars.clear();
+
+	    // This store is done such that we can check that all
+	    // variables that are read / updated by c have been declared
+	    // in c.in() / c.out() (in case CHECK_IN_OUT is true).
+	    this.c = c;
+	    this.cid = cid;
+	    currDeltas = null;
+	    if((pendings != null) && c.isDeltaAware()) {
+		PendingDeltas pd = pendings[cid];
+		if(pd == null) {
+		    // first execution: c sees the full values; from now
+		    // on, we accumulate the input deltas for c.
+		    pendings[cid] = new PendingDeltas(consIns[cid].length);
+		}
+		else {
+		    currDeltas = pd.consume();
+		}
+	    }
+	    boolean sample = (costModel != null) &&
+		(((++sampleClock % CostModel.SAMPLE_PERIOD) == 0) ||
+		 (classCost(cid).nbSamples.get() < CostModel.MIN_SAMPLES));
+	    if((collector == null) && !sample) {
+		c.action(this);
+	    }
+	    else {
+		if(collector != null) cc = counters(cid);
+		long start = System.nanoTime();
+		c.action(this);
+		long time = System.nanoTime() - start;
+		if(collector != null) {
+		    cc.nbExecutions++;
+		    cc.time += time;
+		    sccCounters.nbExecutions++;
+		    cc = null;
+		}
+		if(sample) {
+		    CostModel.ClassCost classCost = classCost(cid);
+		    costModel.sample(classCost, consCost[cid], time, changedVars.size != 0);
+		    if(!workset.contains(cid)) {
+			costKeys[cid] = costModel.key(classCost, consCost[cid]);
+		    }
 		}
 	    }
+	    this.c = null; // enable some gc
+	    currDeltas = null;
+
+	    // For each changed variable, put into the workset all
+	    // constraints that read the variable and update at least one
+	    // variable from the same scc.  These constraints will need to
+	    // be (re)evaluated, as they may produce new values.
+	    for(int i = 0; i < changedVars.size; i++) {
+		int v = changedVars.elems[i];
+		if(DEBUG) System.out.println("    changed var: " + var(v));
+		store.changed(v);
+		if(DEBUG_VER) System.out.println("    Version(" + var(v) + ") = " + store.getVersion(v));
+		addRules(v);
+		// in the difference propagation mode, join already pushed the delta
+		if(pendings == null) pushInclusions(v, null);
+	    }
 	}
 
-    }
-
-
-    // Search variables vd such that the only constraint that has vd
-    // on the right side has the form "vs <= vd".  For each such
-    // finding, unify vs and vd.
-    //
-    // NOTE: all this processing is done modulo the already-found unification 
-    // (all constraints have to be projected through uf).
-    //
-    // NOTE2: if CHECK is true, the procedure will just check that no
-    // further unifications of this form are posible, and throw an
-    // error if this is not true.  This is useful for debugging, in
-    // order to make sure that the fixed point alg. really finds all
-    // unifications.
-    private boolean unifySingleLt(Collection<Constraint<V,Info>> cs, boolean CHECK) {
-	// collect in bad all variables that are sources of non-inclusion constraints
-	NonIterableSet<V> bad = new NonIterableSet<V>();
-	// construct successor relation (s2d) and predecessor relation (d2s)
-	Relation<V,V> s2d = new MapSetRelation<V,V>();
-	Relation<V,V> d2s = new MapSetRelation<V,V>();
-	fillInSD(cs, s2d, d2s, bad);
-
-	WorkSet<V> wToUnify = new WorkStack<V>();
 
-	for(V vd : d2s.keys()) {
-	    if(!bad.contains(vd) && (d2s.getValues(vd).size() == 1)) {
-		if(CHECK)
-		    throw new Error("Additional unification possibilities!");
-		wToUnify.add(vd);
+	// Counts one more execution (of a constraint, or of the
+	// propagation along an inclusion) against the limits of the
+	// solve; checks them once every SolveBudget.CHECK_PERIOD
+	// executions.
+	private void tickBudget() {
+	    if(++budgetClock == SolveBudget.CHECK_PERIOD) {
+		budgetClock = 0;
+		budget.check(SolveBudget.CHECK_PERIOD);
 	    }
 	}
-	if(CHECK) return false;
 
-	boolean modif = !wToUnify.isEmpty();
 
-	while(!wToUnify.isEmpty()) {
-	    V vd = wToUnify.extract();
-	    Collection<V> sources = d2s.getValues(vd);
-	    if(sources.size() != 1) {
-		assert sources.size() == 0;
-		continue;
+	// Propagates the values of the variables from inclStack along
+	// the inclusions inside currScc, until nothing changes.  This
+	// loop does not execute the LtConstraints, and allocates
+	// nothing (except the new values, and their deltas).
+	private void propagate() {
+	    if(inclStack.size == 0) return;
+	    long start = (collector != null) ? System.nanoTime() : 0;
+	    while(inclStack.size > 0) {
+		int v = inclStack.elems[--inclStack.size];
+		Object pending = inclPending[v];
+		inclPending[v] = null;
+		inclOwned[v] = false;
+		// v was unified with a cycle: the representative of the
+		// cycle will propagate its full value
+		if(rep(v) != v) continue;
+		@SuppressWarnings("unchecked")
+		Info value = (pending == FULL) ? null : (Info) pending;
+		if(value == null) {
+		    value = store.getValue(v);
+		    if(value == null) continue;
+		}
+		propagate(v, v, value);
+		if(cyclesFound && (cycleMembers[v] != null)) {
+		    IntVec members = cycleMembers[v];
+		    for(int i = 0; i < members.size; i++) {
+			propagate(v, members.elems[i], value);
+		    }
+		}
 	    }
-	    V vs = DSUtil.<V>getFirst(sources);
-	    
-	    V vNew = uf.union(vs, vd);
-	    if(DEBUG_VER) System.out.println("unify " + vs + " " + vd + " -> " + vNew);
-
-	    // unify the constraints for vs and vd
-	    if(bad.contains(vs)) {
-		bad.remove(vs);
-		bad.add(vNew);
+	    if(collector != null) {
+		inclCounters().time += System.nanoTime() - start;
 	    }
+	}
 
-	    changeOut(vs, vNew, d2s, s2d); // no typo!
-	    s2d.remove(vs, vd);
-	    d2s.remove(vd, vs);
-	    changeOut(vs, vNew, s2d, d2s);
-	    changeOut(vd, vNew, s2d, d2s);
-
-	    s2d.remove(vNew, vNew);
-	    d2s.remove(vNew, vNew);
+	// Propagates value (the value of representative v, or its
+	// delta) along the inclusions whose source is variable src (v,
+	// or a variable from its cycle).
+	private void propagate(int v, int src, Info value) {
+	    for(int e = inclStart[src], end = inclStart[src + 1]; e < end; e++) {
+		int w = rep(inclDst[e]);
+		if(w == v) continue;
+		if(DEBUG) System.out.println("  Propagate " + var(v) + " <= " + var(w));
+		if(!joinInclusion(v, w, value) && lcd) {
+		    detectCycle(e, v, w);
+		}
+	    }
+	}
 
-	    if(!vs.equals(vNew) && wToUnify.contains(vs)) {
-		wToUnify.add(vNew);
+	// Joins value (the value of representative v, or its delta)
+	// into representative w, along an inclusion from currScc;
+	// returns true if the value of w changed.  Similar to join.
+	private boolean joinInclusion(int v, int w, Info value) {
+	    // an scc may contain only inclusions: the limits of the
+	    // solve have to be checked here too
+	    if(budget != null) tickBudget();
+	    if(collector != null) {
+		inclCounters().nbExecutions++;
+		sccCounters.nbExecutions++;
 	    }
+	    if(store.sharing() && (store.getValue(w) == value)) return false;
 
-	    for(V v : s2d.getValues(vNew)) {
-		if(!bad.contains(v) && (d2s.getValues(v).size() == 1)) {
-		    wToUnify.add(v);
+	    V rep = var(w);
+	    Info old = store.getMutableValue(w);
+	    boolean recDelta = (pendings != null) && isDeltaReader(w);
+	    Info delta = value;
+	    if(old == null) {
+		if(store.sharing() && (store.getValue(v) == value)) {
+		    // value sharing mode: w shares the value of v
+		    store.setValue(w, value);
+		    store.share(w);
+		    store.share(v);
+		}
+		else {
+		    store.setValue(w, rep.copy(value));
 		}
 	    }
-	}
-	
-	return modif;
-    }
+	    else if(recDelta) {
+		delta = rep.joinDelta(old, value);
+		if(delta == null) return false;
+	    }
+	    else if(!rep.join(old, value)) {
+		return false;
+	    }
 
-    
-    private void fillInSD(Collection<Constraint<V,Info>> cs, Relation<V,V> s2d, Relation<V,V> d2s, 
-			  NonIterableSet<V> bad) {
-	for(Constraint<V,Info> c : cs) {
-	    if(c instanceof LtConstraint/*<Info>*/) {
-		LtConstraint<V,Info> ltc = (LtConstraint<V,Info>) c;
-		V src = uf.find(ltc.vs);
-		V dst = uf.find(ltc.vd);
-		if(!src.equals(dst)) {
-		    s2d.add(src, dst);
-		    d2s.add(dst, src);
-		}
+	    if(collector != null) {
+		inclCounters.nbChangingJoins++;
+		sccCounters.nbChangingJoins++;
+	    }
+	    store.changed(w);
+	    addRules(w);
+	    if(recDelta) {
+		recordDelta(w, delta);
 	    }
 	    else {
-		for(V v : c.out()) {
-		    bad.add(uf.find(v));
-		}
+		pushInclusions(w, null);
 	    }
-	}	
-    }
-    
+	    return true;
+	}
 
-    private void changeOut(V vOld, V vNew, Relation<V,V> s2d, Relation<V,V> d2s) {
-	if(!vNew.equals(vOld)) {
-	    for(V v : new LinkedHashSet<V>(s2d.getValues(vOld))) {
-		s2d.remove(vOld, v);
-		d2s.remove(v, vOld);
-		s2d.add(vNew, v);
-		d2s.add(v, vNew);
+	// Records that the value of representative v has to be
+	// propagated along its inclusions (and those of its cycle);
+	// d is the delta to propagate (null for the full value).
+	private void pushInclusions(int v, Info d) {
+	    if((inclStart[v] == inclStart[v + 1]) &&
+	       !(cyclesFound && (cycleMembers[v] != null))) return;
+	    Object pending = inclPending[v];
+	    if(pending == null) {
+		inclPending[v] = (d == null) ? FULL : d;
+		inclStack.add(v);
+	    }
+	    else if(pending == FULL) {
+		// the full value contains d
+	    }
+	    else if(d == null) {
+		inclPending[v] = FULL;
+	    }
+	    else {
+		// join d into the pending delta
+		@SuppressWarnings("unchecked")
+		Info delta = (Info) pending;
+		V rep = var(v);
+		if(!inclOwned[v]) {
+		    delta = rep.copy(delta);
+		    inclPending[v] = delta;
+		    inclOwned[v] = true;
+		}
+		rep.join(delta, d);
 	    }
 	}
-    }
 
-    private Collection<Constraint<V,Info>> updateConstraints(Collection<Constraint<V,Info>> cs) {
-	Collection<Constraint<V,Info>> cs2 = new LinkedHashSet<Constraint<V,Info>>();
-	for(Constraint<V,Info> c : cs) {
-	    Constraint<V,Info> c2 = c.rewrite(uf);
-	    if(c2 != null)
-		cs2.add(c2);
+	// returns the counters for the LtConstraint class
+	private SolverStats.Counters inclCounters() {
+	    if(inclCounters == null) {
+		inclCounters = classCounters(LtConstraint.class);
+	    }
+	    return inclCounters;
 	}
-	return cs2;
-    }
 
 
-    private boolean eliminateEmpty(Collection<Constraint<V,Info>> cs) {
-	// map variable -> count of incoming constraints (constraints
-	// that may update that variable).  For speed, instead of
-	// immutable Integers (that need to be created again and
-	// again), we use mutable int arrays with 1 element.
-	NonIterableMap<V,int[]> v2incCount = new NonIterableMap<V,int[]>();
-	for(Constraint<V,Info> c : cs) {
-	    for(V v : c.out()) {
-		V v2 = uf.find(v);
-		// count[0] is the counter for v2
-		int[] count = v2incCount.get(v2);
-		if(count == null) {
-		    // no counter yet for v2; create one and initialize it to 1
-		    v2incCount.put(v2, new int[]{1});
-		}
-		else {
-		    // increment the counter for v2
-		    count[0]++;
-		}
+	// returns the measured costs for the class of constraint cid
+	private CostModel.ClassCost classCost(int cid) {
+	    CostModel.ClassCost classCost = classCosts[cid];
+	    if(classCost == null) {
+		classCost = costModel.classCost(cons(cid).getClass());
+		classCosts[cid] = classCost;
 	    }
+	    return classCost;
 	}
 
-	if(DEBUG_VER) {
-	    debugPrintV2incCount(v2incCount);
+
+	// returns the counters for the class of constraint cid
+	private SolverStats.Counters counters(int cid) {
+	    SolverStats.Counters counters = consCounters[cid];
+	    if(counters == null) {
+		counters = classCounters(cons(cid).getClass());
+		consCounters[cid] = counters;
+	    }
+	    return counters;
 	}
 
-	NonIterableSet<V> emptyVars = new NonIterableSet<V>();
-	for(V v : vars()) {
-	    V v2 = uf.find(v);
-	    int[] count = v2incCount.get(v2);
-	    if((count == null) || (count[0] == 0)) {
-		emptyVars.add(v2);
+	// returns the counters for the constraint class cls
+	private SolverStats.Counters classCounters(Class<?> cls) {
+	    SolverStats.Counters counters = class2counters.get(cls);
+	    if(counters == null) {
+		counters = new SolverStats.Counters();
+		class2counters.put(cls, counters);
 	    }
+	    return counters;
 	}
-	
-	if(DEBUG_VER) System.out.println("emptyVars = " + emptyVars);
 
-	boolean modif = false;
 
-	while(!emptyVars.isEmpty()) {
+	// Checks whether constraint cid was already evaluated for the
+	// current versions of its input variables.  Also stores the
+	// current versions for its inputs.
+	private boolean sameInputs(int cid) {
+	    boolean same = true;
 
-	    NonIterableSet<V> newEmptyVars = new NonIterableSet<V>();
+	    int[] ins = consIns[cid];
+	    int[] inVers = inVersions[cid];
+	    if(inVers == null) {
+		inVers = new int[ins.length];
+		inVersions[cid] = inVers;
+		same = false;
+	    }
 
-	    for(Iterator<Constraint<V,Info>> it = cs.iterator(); it.hasNext(); ) {
-		Constraint<V,Info> c = it.next();
-		if(c instanceof LtConstraint/*<V,Info>*/) {
-		    LtConstraint<V,Info> ltc = ((LtConstraint<V,Info>) c);
-		    V vs = uf.find(ltc.vs);
-		    if(emptyVars.contains(vs)) {
-			it.remove();
-			modif = true;
-			V vd = uf.find(ltc.vd);
-			int[] count = v2incCount.get(vd);
-			count[0]--;
-			if(count[0] == 0) {
-			    newEmptyVars.add(vd);
-			}
-		    }
+	    for(int k = 0; k < ins.length; k++) {
+		int currVer = store.getVersion(rep(ins[k]));
+		if(inVers[k] != currVer) {
+		    inVers[k] = currVer;
+		    same = false;
+		}
+	    }
+
+	    if(DEBUG_VER) {
+		System.out.print("  inVers: ");
+		for(int i = 0; i < inVers.length; i++) {
+		    System.out.print(inVers[i] + " ");
 		}
+		System.out.println();
 	    }
 
-	    emptyVars = newEmptyVars;
+	    return same;
 	}
 
-	return modif;
-    }
 
+	// returns the id of the variable that represents variable id in the solver
+	private int rep(int id) {
+	    if(!cyclesFound || (cycleParent[id] < 0)) return id;
+	    int r = cycleParent[id];
+	    while(cycleParent[r] >= 0) {
+		r = cycleParent[r];
+	    }
+	    // path compression
+	    while(cycleParent[id] != r) {
+		int next = cycleParent[id];
+		cycleParent[id] = r;
+		id = next;
+	    }
+	    return r;
+	}
 
-    // debug stuff
-    private void debugPrintV2incCount(NonIterableMap<V,int[]> v2incCount) {
-	System.out.print("v2incCount = [ ");
-	for(V v : vars()) {
-	    int count = v2incCount.get(v)[0];
-	    if(count != 0) {
-		System.out.print(", " + v + " -> " + count);
+	// adds to the workset the constraints that read variable v
+	// (a representative) and update at least one variable from
+	// the same scc
+	private void addRules(int v) {
+	    addToWorkset(varRules[v]);
+	    if(cyclesFound && (cycleMembers[v] != null)) {
+		IntVec members = cycleMembers[v];
+		for(int i = 0; i < members.size; i++) {
+		    addToWorkset(varRules[members.elems[i]]);
+		}
 	    }
 	}
-	System.out.println( "]");
-    }
 
+	private void addToWorkset(IntVec rules) {
+	    for(int i = 0; i < rules.size; i++) {
+		workset.add(rules.elems[i]);
+	    }
+	}
 
-    private void buildSolverStructs(Collection<Constraint<V,Info>> cs) {
-	// 1. compute dependency graph between variables; an arc from
-	// v to w signifies that the value of variable v influences
-	// the value of variable w.
-	DiGraph<V> deps = new ArcBasedDiGraph<V>(dependencies(cs));
-	// 2. compute sets of mutually dependent variables, and sort
-	// them topologically
-	ts_deps = new TopSortedCompDiGraph<V>(deps);
+	private boolean isDeltaReader(int v) {
+	    return deltaReader[v] || (cyclesFound && cycleDeltaReader[v]);
+	}
 
-	// map from each variable to the SCC it belongs to
-	Map<V,SCComponent<V>> v2scc = ts_deps.getVertex2SccMap();
 
-	for(Constraint<V,Info> c : cs) {
-	    for(V w : c.out()) {
-		SCComponent<V> scc = v2scc.get(uf.find(w));
-		assert scc != null;
-		// mark that constraint c updates at least one
-		// variable from scc
-		scc2rules.add(scc, c);
+	// Records that variable v (a representative) changed by delta d:
+	// each delta-aware constraint that reads v will see d the next
+	// time it is executed.  Constraints that were not executed yet
+	// don't need d: they will see the full value anyway.
+	private void recordDelta(int v, Info d) {
+	    recordDelta(v, varRules[v], d);
+	    if(cyclesFound && (cycleMembers[v] != null)) {
+		IntVec members = cycleMembers[v];
+		for(int i = 0; i < members.size; i++) {
+		    recordDelta(v, varRules[members.elems[i]], d);
+		}
 	    }
+	    // the inclusions from v will propagate d
+	    pushInclusions(v, d);
+	}
 
-	    for(V v : c.in()) {
-		V v2 = uf.find(v);
-		SCComponent<V> scc_v = v2scc.get(v2);
-		assert scc_v != null;
-		iterate_outs: for(V w : c.out()) {
-		    SCComponent<V> scc_w = v2scc.get(uf.find(w));
-		    assert scc_w != null;
-		    if(scc_v.equals(scc_w)) {
-			// mark that constraint c reads v and updates
-			// at least one variable from the same scc as v
-			v2rules.add(v2, c);
-			break iterate_outs;
+	private void recordDelta(int v, IntVec rules, Info d) {
+	    for(int i = 0; i < rules.size; i++) {
+		int cid = rules.elems[i];
+		PendingDeltas pd = pendings[cid];
+		if(pd == null) continue;
+		int[] ins = consIns[cid];
+		for(int k = 0; k < ins.length; k++) {
+		    if(rep(ins[k]) == v) {
+			pd.add(k, var(v), d);
 		    }
 		}
 	    }
 	}
-    }
 
-    ///////////////////////////////////////////////////
-    // KEY DATA-STRUCTURES USED BY THE SOLVER
-    // top sorted component graph of the dependencies between constraint variables
-    private TopSortedCompDiGraph<V> ts_deps;
 
-    // map scc -> constraints that write at least one var from scc
-    private Relation<SCComponent<V>,Constraint<V,Info>> scc2rules =
-	new MapSetRelation<SCComponent<V>,Constraint<V,Info>>();
+	public Info get(V v) {
+	    if(CHECK_IN_OUT && (c != null) && !c.in().contains(v)) {
+		throw new Error(" Constraint " + c + " reads illegal data: " + v + " not in " + c.in());
+	    }
 
-    // map var -> constraints that read var and write at least one var from the same scc
-    private Relation<V,Constraint<V,Info>> v2rules = 
-	new MapSetRelation<V,Constraint<V,Info>>();
-    ///////////////////////////////////////////////////
+	    return store.getValue(rep(varId(v)));
+	}
 
-    private void debugPrintUnifiedVars(PrintStream ps) {
-	Relation<V,V> maj2vars = new MapSetRelation<V,V>();
-	for(V v : vars) {
-	    maj2vars.add(uf.find(v), v);
+	public void addConstraint(Constraint<V,Info> c) {
+	    if(DEBUG) System.out.println("    generated: " + c);
+	    store.generate(c);
 	}
-	ps.println("Unified vars: ");
-	for(V major : maj2vars.keys()) {
-	    ps.println("  " + major + " <- " + maj2vars.getValues(major));
+
+	public Info getDelta(V v) {
+	    if((currDeltas == null) || (c == null)) {
+		return get(v);
+	    }
+	    if(CHECK_IN_OUT && !c.in().contains(v)) {
+		throw new Error(" Constraint " + c + " reads illegal data: " + v + " not in " + c.in());
+	    }
+
+	    int id = rep(varId(v));
+	    int[] ins = consIns[cid];
+	    for(int k = 0; k < ins.length; k++) {
+		if(rep(ins[k]) == id) {
+		    @SuppressWarnings("unchecked")
+		    Info delta = (Info) currDeltas[k];
+		    return delta;
+		}
+	    }
+	    // v is not an input of c: play safe
+	    return get(v);
 	}
-    }
 
+	public void join(V v, Info delta) {
+	    if(CHECK_IN_OUT && (c != null) && !c.out().contains(v)) {
+		throw new Error(" Constraint " + c + " writes illegal data " + v + " not in " + c.out());
+	    }
 
-    /* Computes the inter-variable dependencies.  Variable v
-       influences w (i.e., w depends on v) if there exists at least
-       one constraint c that reads v and updates w (i.e., w belongs to
-       c.in() and v belongs to c.out()); in that case the pair <v,w>
-       appears in the relation returned by this method.
+	    // null represents bottom, so we can already return :)
+	    if(delta == null) return;
 
-       As a technicality, the dependencies relation also contains a
-       self-dependency for each variable that is mentioned by at least
-       one constraint.  This is just to make sure that each variable
-       appears in the dependencies graph.
+	    int id = rep(varId(v));
+	    if(parallel && (varScc[id] != currScc)) {
+		// v belongs to another scc, possibly solved by
+		// another thread right now.  We can safely ignore
+		// this write: c writes v, so c will be executed when
+		// v's scc is solved, and by then, all the inputs of c
+		// will have their final values.
+		return;
+	    }
 
-       NOTE: the last paragraph seems to describe bad engineering.
-       Hoping to fix this some day and make the code clearer. */
-    private Relation<V,V> dependencies(Collection<Constraint<V,Info>> cs) {
-	Relation<V,V> succs = new MapSetRelation<V,V>();
-	Set<V> vertices = new LinkedHashSet<V>();
+	    // joining a value to itself changes nothing (and would
+	    // needlessly copy a shared value)
+	    if(store.sharing() && (store.getValue(id) == delta)) return;
 
-	for(Constraint<V,Info> c : cs) {
-	    for(V v : c.in()) {
-		for(V w : c.out()) {
-		    succs.add(uf.find(v), uf.find(w));
+	    V rep = var(id);
+	    Info old = store.getMutableValue(id);
+	    boolean recDelta = (pendings != null) && isDeltaReader(id);
+	    // special case: no previous value for v
+	    if(old == null) {
+		if(shareSource(id, delta)) {
+		    store.setValue(id, delta);
+		    store.share(id);
+		}
+		else {
+		    // for mutation style
+		    store.setValue(id, rep.copy(delta));
 		}
+		markChanged(id);
+		if(recDelta) recordDelta(id, delta);
 	    }
-	    for(V v : c.in()) {
-		vertices.add(uf.find(v));
+	    else if(recDelta) {
+		// difference propagation: we need the real delta
+		Info realDelta = rep.joinDelta(old, delta);
+		if(realDelta != null) {
+		    markChanged(id);
+		    recordDelta(id, realDelta);
+		}
 	    }
-	    for(V w : c.out()) {
-		vertices.add(uf.find(w));
+	    else {
+		// normal case: join to a non-null variable
+		if(rep.join(old, delta)) {
+		    markChanged(id);
+		}
 	    }
 	}
 
-	// tricky: makes sure the digraph sees all relevant vars, even
-	// those that are not involved in some dependency arc.
-	for(V v : vertices) {
-	    succs.add(v, v);
+	// Value sharing mode: checks whether the constraint c that
+	// writes delta into the variable with the given id (no value
+	// yet) is an LtConstraint that passes the value of its source
+	// unchanged; in that case, the two variables can share the
+	// value, and the source has to copy its value before mutating
+	// it (unless its scc is already solved).
+	private boolean shareSource(int id, Info delta) {
+	    if(!store.sharing() || !(c instanceof LtConstraint/*<V,Info>*/)) return false;
+	    int src = rep(consIns[cid][0]);
+	    if((src == id) || (store.getValue(src) != delta)) return false;
+	    if(varScc[src] == currScc) {
+		store.share(src);
+	    }
+	    return true;
 	}
 
-	return succs;
-    }
+	private void markChanged(int id) {
+	    if(!changedVars.contains(id)) {
+		changedVars.add(id);
+	    }
+	    if(cc != null) {
+		cc.nbChangingJoins++;
+		sccCounters.nbChangingJoins++;
+	    }
+	}
 
 
-    /** Solves <code>this</code> system of constraints.  Returns the
-        least solution of the constraints.  Solving the same system
-        twice may return different results, if the constraints use
-        some external values that change in between the two calls to
-        <code>solve()</code>; still, it is very important that these
-        external values (if any) do NOT change during an execution of
-        <code>solve()</code>. 
+	// Lazy cycle detection: the propagation along the inclusion
+	// from vs to vd (with index e in inclDst) did not change vd.
+	// If vs and vd have the same value, they may be on a cycle of
+	// inclusions; we look for such a cycle (inside currScc) and
+	// unify all its variables.
+	private void detectCycle(int e, int vs, int vd) {
+	    vs = rep(vs);
+	    vd = rep(vd);
+	    if((vs == vd) || (varScc[vs] != currScc) || (varScc[vd] != currScc)) return;
+	    if(lcdTried == null) {
+		lcdTried = new boolean[inclDst.length];
+	    }
+	    // at most one search per inclusion
+	    if(lcdTried[e]) return;
+	    lcdTried[e] = true;
+	    Info valueS = store.getValue(vs);
+	    if((valueS == null) || !valueS.equals(store.getValue(vd))) return;
+
+	    // The cycle consists of vs and the variables reachable from
+	    // vd that reach vs; as vs reaches vd, these variables form
+	    // the strongly connected component of vd in the graph of
+	    // the inclusions.  We compute it with Tarjan's algorithm,
+	    // starting from vd: when the DFS is over, the Tarjan stack
+	    // contains exactly that component.
+	    if(dfsIndex == null) {
+		dfsIndex   = new int[nbVarIds];
+		dfsLow     = new int[nbVarIds];
+		dfsOnStack = new boolean[nbVarIds];
+	    }
+	    int counter = 0;
+	    dfsVisit(vd, ++counter);
+	    while(dfsCalls.size > 0) {
+		int top = dfsCalls.size - 3;
+		int v = dfsCalls.elems[top];
+		int k = dfsCalls.elems[top + 1];
+		int e2 = dfsCalls.elems[top + 2];
+		int src = (k == 0) ? v : cycleMembers[v].elems[k - 1];
+		if(e2 < inclStart[src + 1]) {
+		    // next inclusion from src
+		    dfsCalls.elems[top + 2] = e2 + 1;
+		    int w = rep(inclDst[e2]);
+		    if(w == v) continue;
+		    if(dfsIndex[w] == 0) {
+			dfsVisit(w, ++counter);
+		    }
+		    else if(dfsOnStack[w]) {
+			dfsLow[v] = Math.min(dfsLow[v], dfsIndex[w]);
+		    }
+		    continue;
+		}
+		if(k < nbCycleMembers(v)) {
+		    // next variable from the cycle of v
+		    dfsCalls.elems[top + 1] = k + 1;
+		    dfsCalls.elems[top + 2] = inclStart[cycleMembers[v].elems[k]];
+		    continue;
+		}
+		// done with v
+		dfsCalls.size = top;
+		if(v == vd) break;
+		if(dfsLow[v] == dfsIndex[v]) {
+		    // v is the root of a component that does not contain vd
+		    int u;
+		    do {
+			u = dfsStack.elems[--dfsStack.size];
+			dfsOnStack[u] = false;
+		    } while(u != v);
+		}
+		int parent = dfsCalls.elems[dfsCalls.size - 3];
+		dfsLow[parent] = Math.min(dfsLow[parent], dfsLow[v]);
+	    }
 
-	<p>Note: this method is synchronized such that no two threads
-	can execute it simultaneously: there are a few data structures
-	that we create once and reuse in every call; also, there seems
-	to be no reason why two threads would need to solve the same
-	system twice. */
-    public synchronized SolReader<V,Info> solve() {
-	sa = new MySolAccessor();
-	workset.clear();
-	initVersions();
+	    if(dfsOnStack[vs]) {
+		if(DEBUG) System.out.println("  Unify cycle of " + dfsStack.size + " variables");
+		unifyCycle(dfsStack);
+	    }
 
-	// Algorithm: explore the sets of mutually dependent variables
-	// (the SCCs of the dependency relation) in reverse
-	// topological order (i.e., starting with those variables that
-	// do not depend on any variable outside their scc).
-	for(SCComponent<V> scc : ts_deps.decrOrder()) {
-	    // Please read the comments inside solveSCC below
-	    solveSCC(scc);
+	    // reset the scratch buffers for the next search
+	    for(int i = 0; i < dfsVisited.size; i++) {
+		int v = dfsVisited.elems[i];
+		dfsIndex[v] = 0;
+		dfsOnStack[v] = false;
+	    }
+	    dfsVisited.clear();
+	    dfsStack.clear();
 	}
-	SolReader<V,Info> solReader = sa;
-	sa = null;
-	return solReader;
-    }
 
+	// starts the DFS visit of variable v (a representative)
+	private void dfsVisit(int v, int index) {
+	    dfsIndex[v] = index;
+	    dfsLow[v] = index;
+	    dfsOnStack[v] = true;
+	    dfsVisited.add(v);
+	    dfsStack.add(v);
+	    dfsCalls.add(v);
+	    dfsCalls.add(0);
+	    dfsCalls.add(inclStart[v]);
+	}
 
-    ////// BEGIN - VERSIONING SUPPORT 
+	// number of variables unified with representative v
+	private int nbCycleMembers(int v) {
+	    if(!cyclesFound) return 0;
+	    IntVec members = cycleMembers[v];
+	    return (members == null) ? 0 : members.size;
+	}
 
-    // TODO: for speed, we can place the version id(s) in the variable
-    // and the constraint objects themselves.  Restriction: no
-    // variable / constraint appears in two systems simultaneously
-    // solved by two threads - pretty reasonable.  Advantage: no need
-    // for maps.
 
-    // init the version of each variable to -1; init the version of
-    // last-used-inputs to -2 for each constraint
-    private void initVersions() {
-	v2version.clear();
-	c2versions.clear();
-    }
-    // gives the version of variable v
-    private int getVersion(V v) {
-	int[] i = v2version.get(v);
-	if(i == null) return -1;
-	return i[0];
-    }
-    // increments the version of variable v
-    private void incrVersion(V v) {
-	int[] i = v2version.get(v);
-	if(i == null) {
-	    i = new int[]{-1};
-	    v2version.put(v, i);
-	}
-	i[0]++;
-    }
-    // Checks whether constraint c was already evaluated for the
-    // current versions of its input variables.  Also stores the
-    // current versions for c's inputs.
-    private boolean sameInputs(Constraint<V,Info> c) {
-	boolean same = true;
+	// unifies the variables from cycle (all representatives from currScc)
+	private void unifyCycle(IntVec cycle) {
+	    if(cycleParent == null) {
+		cycleParent = new int[nbVarIds];
+		Arrays.fill(cycleParent, -1);
+		cycleMembers = new IntVec[nbVarIds];
+		cycleDeltaReader = new boolean[nbVarIds];
+	    }
+	    // union by size: the new representative r is the variable
+	    // that already represents the most variables
+	    int r = cycle.elems[0];
+	    for(int i = 1; i < cycle.size; i++) {
+		if(nbCycleMembers(cycle.elems[i]) > nbCycleMembers(r)) {
+		    r = cycle.elems[i];
+		}
+	    }
+	    IntVec members = cycleMembers[r];
+	    if(members == null) {
+		members = new IntVec();
+		cycleMembers[r] = members;
+		cycleRoots.add(r);
+	    }
+	    int maxVersion = -1;
+	    boolean dr = false;
+	    // join the values of all variables into the value of r
+	    V rep = var(r);
+	    Info value = store.getMutableValue(r);
+	    for(int i = 0; i < cycle.size; i++) {
+		int v = cycle.elems[i];
+		maxVersion = Math.max(maxVersion, store.getVersion(v));
+		dr = dr || isDeltaReader(v);
+		if(v == r) continue;
+
+		cycleParent[v] = r;
+		members.add(v);
+		IntVec members2 = cycleMembers[v];
+		if(members2 != null) {
+		    for(int j = 0; j < members2.size; j++) {
+			members.add(members2.elems[j]);
+		    }
+		    cycleMembers[v] = null;
+		}
 
-	Collection<V> ins = c.in();
-	int[] inVers = c2versions.get(c);
-	if(inVers == null) {
-	    inVers = new int[ins.size()];
-	    c2versions.put(c, inVers);
-	    same = false;
-	}
-	assert inVers.length == ins.size();
+		Info value2 = store.getValue(v);
+		if(value2 == null) continue;
+		if(value == null) {
+		    value = rep.copy(value2);
+		    store.setValue(r, value);
+		}
+		else {
+		    rep.join(value, value2);
+		}
+	    }
+	    cyclesFound = true;
+	    if(dr) {
+		cycleDeltaReader[r] = true;
+	    }
 
-	int k = 0;
-	for(V v_in : ins) {
-	    int currVer = getVersion(uf.find(v_in));
-	    if(same) {
-		if(inVers[k] != currVer) {
-		    inVers[k] = currVer;
-		    same = false;
+	    // r has a new value (with a version bigger than the
+	    // versions of all unified variables); all constraints
+	    // that read it need to see its full value
+	    store.setVersion(r, maxVersion);
+	    store.changed(r);
+	    addRules(r);
+	    pushInclusions(r, null);
+	    if(pendings != null) {
+		forgetDeltas(varRules[r]);
+		for(int i = 0; i < members.size; i++) {
+		    forgetDeltas(varRules[members.elems[i]]);
 		}
-	    } else {
-		inVers[k] = currVer;
 	    }
-	    k++;
 	}
 
-	if(DEBUG_VER) {
-	    System.out.print("  inVers: ");
-	    for(int i = 0; i < inVers.length; i++) {
-		System.out.print(inVers[i] + " ");
+	// the constraints from rules will see the full values of their inputs
+	private void forgetDeltas(IntVec rules) {
+	    for(int i = 0; i < rules.size; i++) {
+		pendings[rules.elems[i]] = null;
 	    }
-	    System.out.println();
 	}
 
-	return same;
+	// Ends the cycles detected inside currScc: from now on, the
+	// variables unified with a representative r are read
+	// directly, so we give them the value and version of r.
+	private void endCycles() {
+	    for(int i = 0; i < cycleRoots.size; i++) {
+		int r = cycleRoots.elems[i];
+		IntVec members = cycleMembers[r];
+		if(members == null) continue;
+		Info value = store.getValue(r);
+		int version = store.getVersion(r);
+		for(int j = 0; j < members.size; j++) {
+		    int v = members.elems[j];
+		    store.setValue(v, value);
+		    store.setVersion(v, version);
+		    cycleParent[v] = -1;
+		}
+		cycleMembers[r] = null;
+		cycleDeltaReader[r] = false;
+	    }
+	    cycleRoots.clear();
+	    cyclesFound = false;
+	}
     }
 
 
-    // Map variable -> version of its value (the version, an int, is
-    // stored as the element index 0 of an array - it's faster than an
-    // immutable Integer that will need to be recreated again and
-    // again, each time we increment the version)
-    private NonIterableMap<V,int[]> v2version;
-    // Map constraint -> versions of the values of its input
-    // variables, as recorded the last time the constraint was
-    // executed.  We re-execute the constraint only if at least one of
-    // the input variables have a bigger version.
-    private NonIterableMap<Constraint<V,Info>,int[]> c2versions;
+    ////// BEGIN - DIFFERENCE PROPAGATION SUPPORT
+
+    // Deltas of the inputs of a delta-aware constraint; the k-th
+    // element corresponds to the k-th variable from c.in().
+    private final class PendingDeltas {
+	PendingDeltas(int nbIns) {
+	    pending = new Object[nbIns];
+	    owned   = new boolean[nbIns];
+	    spare   = new Object[nbIns];
+	}
+	// deltas accumulated since the last execution of the constraint
+	private Object[] pending;
+	// owned[k] is true iff pending[k] is a private copy that we can mutate
+	private final boolean[] owned;
+	// array reused by consume, to avoid allocating a new array per execution
+	private Object[] spare;
+
+	// joins the delta d of variable v to the k-th pending delta
+	void add(int k, V v, Info d) {
+	    if(pending[k] == null) {
+		// d is not ours: don't mutate it!
+		pending[k] = d;
+		owned[k] = false;
+		return;
+	    }
+	    @SuppressWarnings("unchecked")
+	    Info old = (Info) pending[k];
+	    if(!owned[k]) {
+		old = v.copy(old);
+		pending[k] = old;
+		owned[k] = true;
+	    }
+	    v.join(old, d);
+	}
 
-    ////// END - VERSIONING SUPPORT 
+	// returns the accumulated deltas and starts accumulating anew
+	Object[] consume() {
+	    Object[] res = pending;
+	    pending = spare;
+	    spare = res;
+	    for(int k = 0; k < pending.length; k++) {
+		pending[k] = null;
+		owned[k] = false;
+	    }
+	    return res;
+	}
+    }
 
+    // Java does not allow the creation of arrays of PendingDeltas (an
+    // inner class of a generic class) without this unchecked cast.
+    @SuppressWarnings("unchecked")
+    private PendingDeltas[] newPendings(int size) {
+	return (PendingDeltas[]) new ConstraintSystem<?,?>.PendingDeltas[size];
+    }
 
-    private class MySolAccessor implements SolAccessor<V,Info> {
-	private final NonIterableMap<V,Info> sol = new NonIterableMap<V,Info>(vertexHashCapacity);
+    ////// END - DIFFERENCE PROPAGATION SUPPORT
 
-	// If CHECK_IN_OUT is true, the sol. accessor needs to know
-	// the currently executed constraint, such that it can check
-	// that c.in() contains each read variable appears, and
-	// c.out() contains each variable c joins to.
-	Constraint<V,Info> c;
 
-	// join will add here the variables whose value has been
-	// changed by the currently executed constraint.
-	final Set<V> changedVars = new LinkedHashSet<V>(vertexHashCapacity);
+    // Parallel solving: a task per scc; the task for an scc starts
+    // after the tasks for all the sccs it depends on finish.
+    private final class ParallelSolve {
 
-	public Info get(V v) {
-	    if(CHECK_IN_OUT && (c != null) && !c.in().contains(v)) {
-		throw new Error(" Constraint " + c + " reads illegal data: " + v + " not in " + c.in());
+	ParallelSolve(SolStore store, Executor executor, StatsCollector collector) {
+	    this.store    = store;
+	    this.executor = executor;
+	    this.collector = collector;
+	    int nbSccs = sccOrder.size();
+	    nbUnsolved = new AtomicInteger(nbSccs);
+	    nbPredsLeft = new AtomicIntegerArray(nbSccs);
+	    for(int pos = 0; pos < nbSccs; pos++) {
+		nbPredsLeft.set(pos, sccNbPreds[pos]);
 	    }
-
-	    v = uf.find(v);
-	    return sol.get(v);
 	}
-	public void join(V v, Info delta) {
-	    if(CHECK_IN_OUT && (c != null) && !c.out().contains(v)) {
-		throw new Error(" Constraint " + c + " writes illegal data " + v + " not in " + c.out());
-	    }
-	    
-	    // null represents bottom, so we can already return :)
-	    if(delta == null) return;
 
-	    v = uf.find(v);
-	    Info old = sol.get(v);
-	    // special case: no previous value for v
-	    if(old == null) {
-		// for mutation style
-		sol.put(v, v.copy(delta));
-		changedVars.add(v);
-	    }
-	    else {
-		// normal case: join to a non-null variable
-		if(v.join(old, delta)) {
-		    changedVars.add(v);
+	private final SolStore store;
+	private final Executor executor;
+	private final StatsCollector collector;
+
+	// scc position -> number of its predecessors that are not solved yet
+	private final AtomicIntegerArray nbPredsLeft;
+	// number of sccs that are not solved yet
+	private final AtomicInteger nbUnsolved;
+	// number of tasks scheduled or running (plus one while run
+	// schedules the first tasks)
+	private final AtomicInteger nbTasks = new AtomicInteger(1);
+	// signaled when all sccs are solved, or, after a task fails,
+	// when no task runs anymore (the tasks stop solving new sccs
+	// after a failure; in particular, after a SolveStopped)
+	private final CountDownLatch done = new CountDownLatch(1);
+	// first exception thrown by a task (if any)
+	private volatile Throwable failure = null;
+
+	// SCCSolvers not used by any task right now; reusing them saves
+	// a lot of allocations when most sccs are trivial.
+	private final Queue<SCCSolver> idleSolvers = new ConcurrentLinkedQueue<SCCSolver>();
+
+	void run() {
+	    if(nbUnsolved.get() == 0) return;
+
+	    for(int pos = 0; pos < sccOrder.size(); pos++) {
+		if(sccNbPreds[pos] == 0) {
+		    schedule(pos);
 		}
 	    }
-	}
+	    taskDone();
 
-	public String toString() {
-	    StringBuffer buff = new StringBuffer();
-	    for(V v : vars) {
-		buff.append("  " + v + "(" + uf.find(v) + ") -> ");
-		buff.append(get(v));
-		buff.append("\n");
-	    }
-	    return buff.toString();
+	    awaitUninterruptibly(done);
+	    rethrow(failure);
 	}
-    }
-    
 
-    private MySolAccessor sa;
-
-
-    private void solveSCC(SCComponent<V> scc) {
-	// 1. Execute once all constraints that write at least one var
-	// from scc.  After this step, the influences from the outer
-	// sccs will be propagated to this scc (although the
-	// fixed-point from 2 is required in order to complete this
-	// propagation inside scc).
-	//
-	// NOTE: initially, I thought about executing only those
-	// constraints that also read one variable from outside scc
-	// (or do not read any arg. at all).  Still, we cannot be
-	// sure that a constraint that reads only vars from inside scc
-	// does not use some constant to produce new values, so this
-	// tentative "optimization" would be incorrect.
-	if(DEBUG) System.out.println("scc-init " + scc.vertices());
-	for(Constraint<V, Info> c : scc2rules.getValues(scc)) {
-	    execute(c);
-	}
-
-	// 2. Iterate over constraints that may read (at least) one
-	// var from scc and may write one or more variable(s) from scc
-	if(DEBUG) System.out.println("scc-fixed-point");
-	while(!workset.isEmpty()) {
-	    Constraint<V,Info> c = workset.extract();
-	    execute(c);
-	}
-    }
-    // workset of the constraints that still need to be evaluated
-    private final WorkSet<Constraint<V,Info>> workset = 
-	new WorkPriorityQueue<Constraint<V,Info>>
-	(new Constraint.CostComparator<V,Info>());
-
-
-    // Executes one constraint; possibly add into the workset a few
-    // more constraints that need to be re-evaluated.
-    private final void execute(Constraint<V,Info> c) {
-	// If we have already executed the constraint for the current
-	// versions of the input vars, then no need to execute it
-	// again -> return
-	if(sameInputs(c)) {
-	    if(DEBUG_VER) System.out.println("Constraint " + c + " has already been seen.");
-	    return;
+	private void schedule(final int pos) {
+	    nbTasks.incrementAndGet();
+	    executor.execute(new Runnable() {
+		public void run() {
+		    solveFrom(pos);
+		}
+	    });
 	}
 
-	if(DEBUG) System.out.println("  Execute " + c);
-
-	// initially, no changed variables
-	sa.changedVars.clear();
+	// Solves the scc from position pos; next, solves (in the same
+	// thread) one of the sccs that became ready, and schedules the
+	// others.
+	private void solveFrom(int pos) {
+	    SCCSolver solver = idleSolvers.poll();
+	    if(solver == null) {
+		solver = new SCCSolver(store, true, collector);
+	    }
+	    try {
+		while((pos >= 0) && (failure == null)) {
+		    if(store.mustSolve(pos)) {
+			solver.solveSCC(pos);
+		    }
 
-	// This store is done such that sa can check that all
-	// variables that are read / updated by c have been declared
-	// in c.in() / c.out() (in case CHECK_IN_OUT is true).
-	sa.c = c;
-	c.action(sa);
-	sa.c = null; // enable some gc
+		    int nextPos = -1;
+		    IntVec succs = sccSuccs[pos];
+		    for(int i = 0; i < succs.size; i++) {
+			int succ = succs.elems[i];
+			if(nbPredsLeft.decrementAndGet(succ) == 0) {
+			    if(nextPos < 0) {
+				nextPos = succ;
+			    }
+			    else {
+				schedule(succ);
+			    }
+			}
+		    }
 
-	if(DEBUG && !sa.changedVars.isEmpty()) {
-	    System.out.println("    changed vars: " + sa.changedVars);
+		    if(nbUnsolved.decrementAndGet() == 0) {
+			done.countDown();
+		    }
+		    pos = nextPos;
+		}
+		idleSolvers.add(solver);
+	    }
+	    catch(Throwable t) {
+		if(failure == null) failure = t;
+	    }
+	    finally {
+		taskDone();
+	    }
 	}
-	// For each changed variable, put into the workset all
-	// constraints that read the variable and update at least one
-	// variable from the same scc.  These constraints will need to
-	// be (re)evaluated, as they may produce new values.
-	for(V v : sa.changedVars) {
-	    incrVersion(v);
-	    if(DEBUG_VER) System.out.println("    Version(" + v + ") = " + getVersion(v));
-	    workset.addAll(v2rules.getValues(v));
+
+	// a task (or the initial scheduling) ends
+	private void taskDone() {
+	    if((nbTasks.decrementAndGet() == 0) && (failure != null)) {
+		done.countDown();
+	    }
 	}
     }
- 
+
 
     ///////////////////////////////////////////////////////////////
 
@@ -774,48 +4008,42 @@ public class ConstraintSystem<V extends Var<Info>, Info> {
 	// 1. Print groups of unified vars
 	debugPrintUnifiedVars(ps);
 
-	// 2. Print constraints
-	// give a unique id to each constraint
-	Map<Constraint<V,Info>,Integer> rule2id = new LinkedHashMap<Constraint<V,Info>,Integer>();
-	int counter = 0;
-	for(SCComponent<V> scc : scc2rules.keys()) {
-	    for(Constraint<V,Info> rule : scc2rules.getValues(scc)) {
-		if(rule2id.get(rule) == null) {
-		    rule2id.put(rule, new Integer(counter++));
-		}
-	    }
-	}
+	// 2. Print constraints (identified by their ids)
 	ps.println("Simplified constraints:");
-	for(Constraint<V,Info> c : rule2id.keySet()) {
-	    ps.println("  C" + rule2id.get(c) + ":\t" + c);
+	for(int cid = 0; cid < nbConsIds; cid++) {
+	    ps.println("  C" + cid + ":\t" + cons(cid));
 	}
 
 	// 3. Print dependency SCCs
+	inclusionEdges();
 	ps.println("Dependency SCC(s):");
-	int sccCounter = 0;
-	for(SCComponent<V> scc : ts_deps.decrOrder()) {
-	    ps.println("SCC" + (sccCounter++) + " " + scc.vertices());
-	    Collection<Constraint<V,Info>> inRules = scc2rules.getValues(scc);
-	    if(inRules.size() != 0) {
-		ps.print("  scc-in rules: [");
-		for(Constraint<V,Info> c : inRules) 
-		    ps.print(" C" + rule2id.get(c));
-		ps.println(" ]");
-	    }
+	for(int pos = 0; pos < sccOrder.size(); pos++) {
+	    SCComponent<V> scc = sccOrder.get(pos);
+	    ps.println("SCC" + pos + " " + scc.vertices());
+	    debugPrintRules(ps, "  scc-in rules: [", sccRules[pos]);
 	    for(V v : scc.vertices()) {
-		Collection<Constraint<V,Info>> vRules = v2rules.getValues(v);
-		if(vRules.size() != 0) {
-		    ps.print("  Rules for " + v + ": [");
-		    for(Constraint<V,Info> c : vRules) 
-			ps.print(" C" + rule2id.get(c));
-		    ps.println(" ]");
+		int id = varId(v);
+		debugPrintRules(ps, "  Rules for " + v + ": [", varRules[id]);
+		if(inclStart[id] == inclStart[id + 1]) continue;
+		ps.print("  Inclusions from " + v + ": [");
+		for(int e = inclStart[id]; e < inclStart[id + 1]; e++) {
+		    ps.print(" " + var(inclDst[e]));
 		}
+		ps.println(" ]");
 	    }
 	}
 
 	ps.println("--------------------------------");
     }
 
+    private void debugPrintRules(PrintStream ps, String header, IntVec rules) {
+	if(rules.size == 0) return;
+	ps.print(header);
+	for(int i = 0; i < rules.size; i++) 
+	    ps.print(" C" + rules.elems[i]);
+	ps.println(" ]");
+    }
+
     /** Pretty-printer of solver internals using the standard output
         (<code>System.out</code>). */
     public void debugPrintSolverStructs() {
@@ -847,4 +4075,17 @@ public class ConstraintSystem<V extends Var<Info>, Info> {
 	return res;
     }
 
+    /** Returns the constraints that the solver works with: the
+        constraints of <code>this</code> system, rewritten modulo the
+        variable unifications (see {@link #debugGetVarUnification}),
+        without the eliminated and the duplicate constraints.  Public
+        for the same reason as {@link #vars}. */
+    public List<Constraint<V,Info>> debugSimplifiedConstraints() {
+	List<Constraint<V,Info>> res = new ArrayList<Constraint<V,Info>>(nbConsIds);
+	for(int cid = 0; cid < nbConsIds; cid++) {
+	    res.add(cons(cid));
+	}
+	return res;
+    }
+
 }
@@ -0,0 +1,173 @@
+// CostModel.java, created Fri Oct 16 17:42:08 2026
+// Copyright (C) 2005 Alexandru Salcianu <salcianu@alum.mit.edu>
+// Licensed under the Modified BSD Licence; see COPYING for details.
+package jpaul.Constraints;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <code>CostModel</code> contains the costs of the constraints, as
+ * measured by the solver from {@link ConstraintSystem} in the
+ * adaptive cost mode (see {@link ConstraintSystem#setAdaptiveCosts
+ * ConstraintSystem.setAdaptiveCosts}).  For each class of
+ * constraints, the solver times a sample of the executions, and
+ * records how many of them changed the value of some variable.  The
+ * {@link WorksetStrategy#COST COST} workset strategy orders the
+ * constraints by these measured costs instead of the {@link
+ * Constraint#cost declared} ones.  The measurements accumulate over
+ * all the solves of a constraint system.
+ *
+ * <p>{@link #toString} returns a report that compares the measured
+ * and the declared costs.  All times are in nanoseconds.
+ *
+ * @version $Id$ */
+public class CostModel {
+
+    CostModel() { /* only ConstraintSystem creates CostModels */ }
+
+    /** The solver times one constraint execution out of
+	<code>SAMPLE_PERIOD</code>. */
+    static final int SAMPLE_PERIOD = 8;
+
+    /** Until the solver has <code>MIN_SAMPLES</code> samples for a
+	class of constraints, it times all their executions, and uses
+	their declared costs, converted into nanoseconds. */
+    static final int MIN_SAMPLES = 8;
+
+    private final ConcurrentHashMap<Class<?>,ClassCost> class2cost =
+	new ConcurrentHashMap<Class<?>,ClassCost>();
+    // totals over all the samples (of all classes): time and
+    // declared cost; their ratio converts declared costs into times
+    private final AtomicLong totalTime     = new AtomicLong();
+    private final AtomicLong totalDeclared = new AtomicLong();
+
+
+    /** Costs measured for one class of constraints. */
+    public static final class ClassCost {
+	ClassCost(Class<?> cls) {
+	    this.cls = cls;
+	}
+
+	private final Class<?> cls;
+	final AtomicInteger nbSamples  = new AtomicInteger();
+	final AtomicInteger nbChanging = new AtomicInteger();
+	final AtomicLong time     = new AtomicLong();
+	final AtomicLong declared = new AtomicLong();
+
+	/** Returns the class of constraints. */
+	public Class<?> getConstraintClass() { return cls; }
+
+	/** Returns the number of timed executions. */
+	public int getNbSamples() { return nbSamples.get(); }
+
+	/** Returns the average declared cost (see {@link
+	    Constraint#cost}) of the timed executions. */
+	public double getDeclaredCost() {
+	    int n = nbSamples.get();
+	    return (n == 0) ? 0 : ((double) declared.get()) / n;
+	}
+
+	/** Returns the average time of the timed executions, in
+	    nanoseconds. */
+	public long getMeasuredCost() {
+	    int n = nbSamples.get();
+	    return (n == 0) ? 0 : time.get() / n;
+	}
+
+	/** Returns the fraction of timed executions that changed the
+	    value of some variable. */
+	public double getEffect() {
+	    int n = nbSamples.get();
+	    return (n == 0) ? 0 : ((double) nbChanging.get()) / n;
+	}
+
+	public String toString() {
+	    return
+		cls.getName() + ": declared " + Math.round(getDeclaredCost()) +
+		", measured " + getMeasuredCost() + " ns, " +
+		Math.round(100 * getEffect()) + "% changing, " +
+		getNbSamples() + " samples";
+	}
+    }
+
+
+    // returns the costs of the class cls (creates them if needed)
+    ClassCost classCost(Class<?> cls) {
+	ClassCost cc = class2cost.get(cls);
+	if(cc == null) {
+	    cc = new ClassCost(cls);
+	    ClassCost prev = class2cost.putIfAbsent(cls, cc);
+	    if(prev != null) cc = prev;
+	}
+	return cc;
+    }
+
+    // records one timed execution of a constraint of declared cost declared
+    void sample(ClassCost cc, int declared, long time, boolean changing) {
+	cc.nbSamples.incrementAndGet();
+	if(changing) cc.nbChanging.incrementAndGet();
+	cc.time.addAndGet(time);
+	cc.declared.addAndGet(declared);
+	totalTime.addAndGet(time);
+	totalDeclared.addAndGet(declared);
+    }
+
+    // Returns the key of a constraint from the class cc, of declared
+    // cost declared, for the priority workset: its measured cost, if
+    // there are enough samples, otherwise its declared cost converted
+    // into nanoseconds (if possible).
+    int key(ClassCost cc, int declared) {
+	long res;
+	if(cc.nbSamples.get() >= MIN_SAMPLES) {
+	    res = cc.getMeasuredCost();
+	}
+	else {
+	    long td = totalDeclared.get();
+	    if(td == 0) return declared;
+	    res = (declared * totalTime.get()) / td;
+	}
+	return (int) Math.max(1, Math.min(Integer.MAX_VALUE, res));
+    }
+
+
+    /** Returns the measured costs of all classes of constraints, in
+	decreasing order of their measured costs. */
+    public List<ClassCost> getClassCosts() {
+	List<ClassCost> res = new ArrayList<ClassCost>(class2cost.values());
+	Collections.sort(res, new Comparator<ClassCost>() {
+	    public int compare(ClassCost cc1, ClassCost cc2) {
+		long t1 = cc1.getMeasuredCost();
+		long t2 = cc2.getMeasuredCost();
+		return (t1 > t2) ? -1 : ((t1 == t2) ? 0 : 1);
+	    }
+	});
+	return res;
+    }
+
+    /** Returns a report with the measured and the declared costs of
+	each class of constraints.  The classes whose order by
+	measured cost differs from their order by declared cost are
+	marked with a star. */
+    public String toString() {
+	List<ClassCost> costs = getClassCosts();
+	StringBuffer buff = new StringBuffer("Constraint costs:\n");
+	for(ClassCost cc : costs) {
+	    boolean misordered = false;
+	    for(ClassCost cc2 : costs) {
+		if((cc2.getMeasuredCost() < cc.getMeasuredCost()) &&
+		   (cc2.getDeclaredCost() > cc.getDeclaredCost())) {
+		    misordered = true;
+		}
+	    }
+	    buff.append((misordered ? "* " : "  ") + cc + "\n");
+	}
+	return buff.toString();
+    }
+
+}
@@ -56,6 +56,13 @@ public final class CtConstraint<V extends Var<Info>, Info> extends Constraint<V,
 	sa.join(vd, ct);
     }
 
+    /** Returns <code>true</code>: a constant constraint reads nothing,
+	so it trivially propagates only new information. */
+    public boolean isDeltaAware() { return true; }
+
+    /** Returns the constant <code>ct</code>. */
+    public Object signature() { return ct; }
+
     public Constraint<V,Info> rewrite(UnionFind<V> uf) {
 	V vd2 = uf.find(vd);
 	// nothing changed, so why generate a new constraint ?
@@ -0,0 +1,29 @@
+// DeltaSolAccessor.java, created Sat Oct 17 10:12:40 2026
+// Copyright (C) 2005 Alexandru Salcianu <salcianu@alum.mit.edu>
+// Licensed under the Modified BSD Licence; see COPYING for details.
+package jpaul.Constraints;
+
+/**
+ * <code>DeltaSolAccessor</code> is a <code>SolAccessor</code> that
+ * supports difference propagation: it can tell a {@link
+ * Constraint#isDeltaAware delta-aware} constraint which part of the
+ * value of a variable the constraint has not seen yet.  The accessor
+ * the solver of {@link ConstraintSystem} passes to the constraints
+ * implements this interface; delta-aware constraints should test for
+ * it with <code>instanceof</code> (see {@link Constraint#getDelta
+ * Constraint.getDelta}) and use the full values otherwise.
+ * 
+ * @version $Id$ */
+public interface DeltaSolAccessor<V extends Var<Info>, Info> extends SolAccessor<V,Info> {
+
+    /** Returns the part of the value of <code>v</code> that the
+	currently executed constraint has not seen yet.  If the solver
+	does not do difference propagation, or if the current
+	constraint is not {@link Constraint#isDeltaAware delta-aware},
+	or if this is the first time the constraint is executed, this
+	method simply returns the full value of <code>v</code> (i.e.,
+	<code>get(v)</code>).  <code>null</code> means that nothing
+	new is available. */
+    public Info getDelta(V v);
+
+}
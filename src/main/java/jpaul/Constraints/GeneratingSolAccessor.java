@@ -0,0 +1,39 @@
+// GeneratingSolAccessor.java, created Sat Oct 17 10:41:05 2026
+// Copyright (C) 2005 Alexandru Salcianu <salcianu@alum.mit.edu>
+// Licensed under the Modified BSD Licence; see COPYING for details.
+package jpaul.Constraints;
+
+/**
+ * <code>GeneratingSolAccessor</code> is a <code>SolAccessor</code>
+ * that allows the executed constraints to add new constraints to
+ * the system being solved.  The accessor the solver of {@link
+ * ConstraintSystem} passes to the constraints implements this
+ * interface; a constraint that generates constraints should test for
+ * it with <code>instanceof</code>, and otherwise (e.g., when an
+ * accessor checks an already computed solution) execute the
+ * generated constraints directly.
+ * 
+ * @version $Id$ */
+public interface GeneratingSolAccessor<V extends Var<Info>, Info> extends SolAccessor<V,Info> {
+
+    /** Adds the constraint <code>c</code> to the system being
+	solved.  The currently executed constraint may call this
+	method to generate new constraints as the solution grows:
+	e.g., for a constraint <code>*p &lt;= q</code> from a pointer
+	analysis, an inclusion <code>x &lt;= q</code> for each new
+	location <code>x</code> from the value of <code>p</code>.  The
+	current solve integrates <code>c</code> into the system (see
+	{@link ConstraintSystem#solve()}), and its solution satisfies
+	<code>c</code> too.  Adding the same constraint several times
+	has no effect.
+
+	<p>Note: the solver executes only the constraints that update
+	some variable: a constraint that only adds new constraints
+	should list in its {@link Constraint#out out} set the
+	variables updated by these new constraints.  If the
+	demand-driven solver (see {@link ConstraintSystem#solveFor
+	ConstraintSystem.solveFor}) meets new constraints, it falls
+	back to a full solve. */
+    public void addConstraint(Constraint<V,Info> c);
+
+}
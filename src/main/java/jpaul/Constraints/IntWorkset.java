@@ -0,0 +1,251 @@
+// IntWorkset.java, created Fri Oct 16 13:10:44 2026
+// Copyright (C) 2005 Alexandru Salcianu <salcianu@alum.mit.edu>
+// Licensed under the Modified BSD Licence; see COPYING for details.
+package jpaul.Constraints;
+
+import jpaul.DataStructs.IntWorkSet;
+
+/**
+ * <code>IntWorkset</code> is the workset of the fixed-point solver
+ * from {@link ConstraintSystem}: a set of constraint ids (0, 1, ...,
+ * <code>nbIds-1</code>) that still need to be executed.  Adding an
+ * id that is already in the workset has no effect.  The
+ * implementations work directly on int arrays: no boxing, and no
+ * hashing for the membership test.  Each {@link WorksetStrategy}
+ * creates one kind of <code>IntWorkset</code>: the FIFO and LIFO
+ * worksets are {@link IntWorkSet}s; the priority worksets are
+ * binary heaps.
+ *
+ * @version $Id$ */
+abstract class IntWorkset {
+
+    /** Maximal size of the workset since the last reset (for
+	statistics). */
+    int maxSize = 0;
+
+    abstract boolean isEmpty();
+
+    /** Checks whether <code>id</code> is in the workset. */
+    abstract boolean contains(int id);
+
+    /** Adds <code>id</code> to the workset (if not already there). */
+    abstract void add(int id);
+
+    /** Removes and returns one element of the workset; the workset
+	should not be empty. */
+    abstract int extract();
+
+
+    static int[] grow(int[] a) {
+	int[] res = new int[2 * a.length];
+	System.arraycopy(a, 0, res, 0, a.length);
+	return res;
+    }
+
+
+    /** First-in first-out workset. */
+    static IntWorkset queue() {
+	return new Ordered(new IntWorkSet.Queue());
+    }
+
+    /** Last-in first-out workset. */
+    static IntWorkset stack() {
+	return new Ordered(new IntWorkSet.Stack());
+    }
+
+    // Workset whose order is the order of an IntWorkSet.
+    private static final class Ordered extends IntWorkset {
+	Ordered(IntWorkSet ws) {
+	    this.ws = ws;
+	}
+
+	private final IntWorkSet ws;
+
+	boolean isEmpty() {
+	    return ws.isEmpty();
+	}
+
+	boolean contains(int id) {
+	    return ws.contains(id);
+	}
+
+	void add(int id) {
+	    if(ws.add(id) && (ws.size() > maxSize)) {
+		maxSize = ws.size();
+	    }
+	}
+
+	int extract() {
+	    return ws.extract();
+	}
+    }
+
+
+    // Workset that keeps its elements in a data structure that does
+    // not test membership (a binary heap).
+    abstract static class Keyed extends IntWorkset {
+	Keyed(int nbIds) {
+	    inSet = new boolean[nbIds];
+	}
+
+	// inSet[id] is true iff id is in the workset
+	private final boolean[] inSet;
+	private int size = 0;
+
+	final boolean isEmpty() {
+	    return size == 0;
+	}
+
+	final boolean contains(int id) {
+	    return inSet[id];
+	}
+
+	final void add(int id) {
+	    if(inSet[id]) return;
+	    inSet[id] = true;
+	    insert(id);
+	    size++;
+	    if(size > maxSize) maxSize = size;
+	}
+
+	final int extract() {
+	    int id = remove();
+	    inSet[id] = false;
+	    size--;
+	    return id;
+	}
+
+	// adds id to the underlying data structure
+	protected abstract void insert(int id);
+
+	// removes the next id from the underlying data structure
+	protected abstract int remove();
+    }
+
+
+    /** Priority workset: extracts first the id with the smallest
+	key.  If <code>stamp</code> is true, each extracted id receives
+	a key bigger than all current keys (i.e., the ids that were
+	extracted least recently come first); the keys never change
+	while their ids are in the heap. */
+    static final class Heap extends Keyed {
+	Heap(int nbIds, int[] keys, boolean stamp) {
+	    super(nbIds);
+	    this.heap  = new BinHeap(keys);
+	    this.stamp = stamp;
+	}
+
+	private final BinHeap heap;
+	private final boolean stamp;
+	// last key given by stamping
+	private int clock = 0;
+
+	protected void insert(int id) {
+	    heap.push(id);
+	}
+
+	protected int remove() {
+	    int res = heap.pop();
+	    if(stamp) {
+		heap.keys[res] = ++clock;
+	    }
+	    return res;
+	}
+    }
+
+
+    /** Priority workset that works in rounds: during a round, it
+	extracts the ids in increasing order of their keys; an id
+	added with a key smaller than (or equal to) the key of the
+	last extracted id waits for the next round.  Hence, when the
+	keys are a topological order of the dependencies, each round
+	is one pass over the dependencies, and a dependency that goes
+	back does not restart the pass. */
+    static final class Rounds extends Keyed {
+	Rounds(int nbIds, int[] keys) {
+	    super(nbIds);
+	    this.current = new BinHeap(keys);
+	    this.next    = new BinHeap(keys);
+	}
+
+	private BinHeap current;
+	private BinHeap next;
+	// key of the last extracted id
+	private int lastKey = Integer.MIN_VALUE;
+
+	protected void insert(int id) {
+	    if(current.keys[id] > lastKey) {
+		current.push(id);
+	    }
+	    else {
+		next.push(id);
+	    }
+	}
+
+	protected int remove() {
+	    if(current.isEmpty()) {
+		// start a new round
+		BinHeap aux = current;
+		current = next;
+		next = aux;
+	    }
+	    int res = current.pop();
+	    lastKey = current.keys[res];
+	    return res;
+	}
+    }
+
+
+    // Binary heap of ids, ordered by their keys.
+    private static final class BinHeap {
+	BinHeap(int[] keys) {
+	    this.keys = keys;
+	}
+
+	// id -> key
+	final int[] keys;
+	private int[] heap = new int[16];
+	private int n = 0;
+
+	boolean isEmpty() { return n == 0; }
+
+	void push(int id) {
+	    if(n == heap.length) heap = grow(heap);
+	    // sift up
+	    int k = n++;
+	    int key = keys[id];
+	    while(k > 0) {
+		int parent = (k - 1) >>> 1;
+		if(keys[heap[parent]] <= key) break;
+		heap[k] = heap[parent];
+		k = parent;
+	    }
+	    heap[k] = id;
+	}
+
+	int pop() {
+	    int res = heap[0];
+	    n--;
+	    int last = heap[n];
+	    if(n > 0) {
+		// sift down
+		int k = 0;
+		int key = keys[last];
+		int half = n >>> 1;
+		while(k < half) {
+		    int child = 2*k + 1;
+		    int right = child + 1;
+		    if((right < n) && (keys[heap[right]] < keys[heap[child]])) {
+			child = right;
+		    }
+		    if(key <= keys[heap[child]]) break;
+		    heap[k] = heap[child];
+		    k = child;
+		}
+		heap[k] = last;
+	    }
+	    return res;
+	}
+    }
+
+}
@@ -53,10 +53,14 @@ public final class LtConstraint<V extends Var<Info>,Info> extends Constraint<V,
     public Collection<V> out() { return this.out; }
 
     public void action(SolAccessor<V,Info> sa) {
-	// get the value of vs and join it to the value of vd
-	sa.join(vd, sa.get(vs));
+	// get the (new part of the) value of vs and join it to the value of vd
+	sa.join(vd, getDelta(sa, vs));
     }
 
+    /** Returns <code>true</code>: joining only the new part of the
+	value of <code>vs</code> is enough. */
+    public boolean isDeltaAware() { return true; }
+
     public Constraint<V,Info> rewrite(UnionFind<V> uf) {
 	V vs2 = uf.find(vs);
 	V vd2 = uf.find(vd);
@@ -0,0 +1,297 @@
+// MappedSolReader.java, created Fri Oct 16 15:14:50 2026
+// Copyright (C) 2005 Alexandru Salcianu <salcianu@alum.mit.edu>
+// Licensed under the Modified BSD Licence; see COPYING for details.
+package jpaul.Constraints;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.DataOutputStream;
+import java.io.BufferedOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import jpaul.Misc.Function;
+
+/**
+ * <code>MappedSolReader</code> reads a solution saved in a file by
+ * {@link #write write}.  Saving a solution allows a later process
+ * (possibly, a different JVM) to query it without solving the
+ * constraint system again.
+ *
+ * <p>The variables are identified in the file by string keys: the
+ * caller provides a function that computes the key of each variable;
+ * the keys of different variables must be different, and stable
+ * across JVMs (e.g., do not use {@link Var#toString}, which uses a
+ * counter that depends on the order the variables are created in).
+ * Variables whose values are the same object (e.g., variables that
+ * the solver unified) share the same value in the file.  The values
+ * are encoded by a {@link Codec}.
+ *
+ * <p>The file is memory-mapped: the constructor reads only a small
+ * header, and each value is decoded the first time it is requested
+ * (later requests return the same object).  Looking up a variable
+ * needs no table on the heap: the keys are stored in the file,
+ * sorted by their hash codes.  A <code>MappedSolReader</code> can be
+ * used by several threads simultaneously.  The file should be
+ * smaller than 2GB, and should not change while it is mapped.
+ *
+ * @version $Id$ */
+public class MappedSolReader<V extends Var<Info>, Info> implements SolReader<V,Info> {
+
+    // File format (big-endian):
+    //   header: MAGIC, VERSION, nbVars, nbValues (4 ints);
+    //   var table: nbVars entries (hash of key, offset of key,
+    //     index of value or -1 for null), sorted by hash;
+    //   value table: nbValues ints, offset of each value;
+    //   data: keys (int length + UTF-8 bytes) and values (codec).
+    private static final int MAGIC   = 0x4a50534c; // "JPSL"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int VAR_ENTRY_SIZE = 12;
+
+    /** Creates a <code>MappedSolReader</code> for the solution saved
+	in <code>file</code>.
+
+	@param file File written by {@link #write write}.
+
+	@param varKey Computes the key of a variable; must be the
+	same function as the one given to {@link #write write} (it may
+	be applied to different, but corresponding, objects).
+
+	@param codec Decodes the values of the variables; must be
+	compatible with the codec given to {@link #write write}.
+
+	@throws IOException If the file cannot be mapped, or is not a
+	solution file. */
+    public MappedSolReader(File file, Function<V,String> varKey, Codec<Info> codec) throws IOException {
+	RandomAccessFile raf = new RandomAccessFile(file, "r");
+	try {
+	    FileChannel channel = raf.getChannel();
+	    buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+	}
+	finally {
+	    // the mapping stays valid after the channel is closed
+	    raf.close();
+	}
+	if((buffer.capacity() < HEADER_SIZE) ||
+	   (buffer.getInt(0) != MAGIC) || (buffer.getInt(4) != VERSION)) {
+	    throw new IOException("Not a solution file: " + file);
+	}
+	this.varKey   = varKey;
+	this.codec    = codec;
+	this.nbVars   = buffer.getInt(8);
+	this.nbValues = buffer.getInt(12);
+	this.valueTable = HEADER_SIZE + VAR_ENTRY_SIZE * nbVars;
+	this.cache = new AtomicReferenceArray<Info>(nbValues);
+    }
+
+    private final MappedByteBuffer buffer;
+    private final Function<V,String> varKey;
+    private final Codec<Info> codec;
+    private final int nbVars;
+    private final int nbValues;
+    // position of the value table
+    private final int valueTable;
+    // value index -> decoded value (null if not decoded yet)
+    private final AtomicReferenceArray<Info> cache;
+
+
+    /** Returns the value of <code>v</code> from the saved solution,
+	or <code>null</code> if <code>v</code> had no value, or did
+	not appear in the saved solution. */
+    public Info get(V v) {
+	int index = valueIndex(Codecs.utf8(varKey.f(v)));
+	if(index == -1) return null;
+	Info value = cache.get(index);
+	if(value == null) {
+	    ByteBuffer in = buffer.duplicate();
+	    in.position(buffer.getInt(valueTable + 4 * index));
+	    value = codec.read(in);
+	    // if another thread decoded the value meanwhile, use its copy
+	    if(!cache.compareAndSet(index, null, value)) {
+		value = cache.get(index);
+	    }
+	}
+	return value;
+    }
+
+    /** Returns the number of variables from the saved solution. */
+    public int nbVars() { return nbVars; }
+
+    /** Returns the number of distinct values from the saved
+	solution. */
+    public int nbValues() { return nbValues; }
+
+
+    // returns the index of the value of the variable with the given
+    // key, or -1 if none
+    private int valueIndex(byte[] key) {
+	int hash = hash(key);
+	// binary search for the first entry with this hash
+	int lo = 0;
+	int hi = nbVars;
+	while(lo < hi) {
+	    int mid = (lo + hi) >>> 1;
+	    if(entryHash(mid) < hash) lo = mid + 1;
+	    else hi = mid;
+	}
+	for(int i = lo; (i < nbVars) && (entryHash(i) == hash); i++) {
+	    int entry = HEADER_SIZE + VAR_ENTRY_SIZE * i;
+	    if(sameKey(buffer.getInt(entry + 4), key)) {
+		return buffer.getInt(entry + 8);
+	    }
+	}
+	return -1;
+    }
+
+    private int entryHash(int i) {
+	return buffer.getInt(HEADER_SIZE + VAR_ENTRY_SIZE * i);
+    }
+
+    // checks whether the key stored at the given offset is key
+    private boolean sameKey(int offset, byte[] key) {
+	if(buffer.getInt(offset) != key.length) return false;
+	offset += 4;
+	for(int i = 0; i < key.length; i++) {
+	    if(buffer.get(offset + i) != key[i]) return false;
+	}
+	return true;
+    }
+
+    private static int hash(byte[] key) {
+	return Arrays.hashCode(key);
+    }
+
+
+    /** Saves the solution <code>sol</code> into <code>file</code>,
+	such that a <code>MappedSolReader</code> can read it later.
+
+	@param sol Solution to save (e.g., returned by {@link
+	ConstraintSystem#solve()}).
+
+	@param vars Variables whose values are saved (e.g., {@link
+	ConstraintSystem#vars()}).
+
+	@param varKey Computes the key of a variable.
+
+	@param codec Encodes the values of the variables.
+
+	@throws IllegalArgumentException If two variables have the
+	same key.
+
+	@throws IOException If the file cannot be written, or if it
+	would exceed 2GB. */
+    public static <V extends Var<Info>, Info> void write(SolReader<V,Info> sol, Collection<V> vars,
+							Function<V,String> varKey, Codec<Info> codec,
+							File file) throws IOException {
+	// 1. number the distinct values, and sort the keys by hash
+	List<VarEntry> entries = new ArrayList<VarEntry>(vars.size());
+	Map<Info,Integer> value2index = new IdentityHashMap<Info,Integer>();
+	List<Info> values = new ArrayList<Info>();
+	for(V v : vars) {
+	    Info value = sol.get(v);
+	    int index = -1;
+	    if(value != null) {
+		Integer i = value2index.get(value);
+		if(i == null) {
+		    i = Integer.valueOf(values.size());
+		    value2index.put(value, i);
+		    values.add(value);
+		}
+		index = i.intValue();
+	    }
+	    entries.add(new VarEntry(Codecs.utf8(varKey.f(v)), index));
+	}
+	value2index = null;
+	Collections.sort(entries, new Comparator<VarEntry>() {
+	    public int compare(VarEntry e1, VarEntry e2) {
+		return (e1.hash < e2.hash) ? -1 : ((e1.hash == e2.hash) ? 0 : 1);
+	    }
+	});
+	for(int i = 0; i < entries.size(); i++) {
+	    VarEntry e = entries.get(i);
+	    for(int j = i + 1; (j < entries.size()) && (entries.get(j).hash == e.hash); j++) {
+		if(Arrays.equals(e.key, entries.get(j).key)) {
+		    throw new IllegalArgumentException("Two variables with the same key: " +
+						       Codecs.fromUtf8(e.key));
+		}
+	    }
+	}
+
+	long dataStart = HEADER_SIZE + VAR_ENTRY_SIZE * (long) entries.size() + 4 * (long) values.size();
+	if(dataStart > Integer.MAX_VALUE) throw new IOException("Solution file too large");
+	int[] valueOffsets = new int[values.size()];
+
+	RandomAccessFile raf = new RandomAccessFile(file, "rw");
+	try {
+	    raf.setLength(0);
+	    FileChannel channel = raf.getChannel();
+
+	    // 2. the data: keys and values
+	    channel.position(dataStart);
+	    DataOutputStream out =
+		new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+	    for(VarEntry e : entries) {
+		e.offset = checkOffset(dataStart + out.size());
+		out.writeInt(e.key.length);
+		out.write(e.key);
+	    }
+	    for(int i = 0; i < values.size(); i++) {
+		valueOffsets[i] = checkOffset(dataStart + out.size());
+		codec.write(values.get(i), out);
+	    }
+	    out.flush();
+	    checkOffset(dataStart + out.size());
+
+	    // 3. the header and the tables
+	    ByteBuffer tables = ByteBuffer.allocate((int) dataStart);
+	    tables.putInt(MAGIC).putInt(VERSION).putInt(entries.size()).putInt(values.size());
+	    for(VarEntry e : entries) {
+		tables.putInt(e.hash).putInt(e.offset).putInt(e.index);
+	    }
+	    for(int offset : valueOffsets) {
+		tables.putInt(offset);
+	    }
+	    tables.flip();
+	    long pos = 0;
+	    while(tables.hasRemaining()) {
+		pos += channel.write(tables, pos);
+	    }
+	}
+	finally {
+	    raf.close();
+	}
+    }
+
+    private static int checkOffset(long offset) throws IOException {
+	// DataOutputStream.size() stops at Integer.MAX_VALUE
+	if(offset >= Integer.MAX_VALUE) throw new IOException("Solution file too large");
+	return (int) offset;
+    }
+
+    private static final class VarEntry {
+	VarEntry(byte[] key, int index) {
+	    this.key   = key;
+	    this.hash  = hash(key);
+	    this.index = index;
+	}
+	final byte[] key;
+	final int hash;
+	final int index;
+	// offset of the key in the file
+	int offset;
+    }
+
+}
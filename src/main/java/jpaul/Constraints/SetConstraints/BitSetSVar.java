@@ -0,0 +1,60 @@
+// BitSetSVar.java, created Fri Oct 16 11:25:48 2026
+// Copyright (C) 2005 Alexandru Salcianu <salcianu@alum.mit.edu>
+// Licensed under the Modified BSD Licence; see COPYING for details.
+package jpaul.Constraints.SetConstraints;
+
+import java.util.Set;
+
+import jpaul.DataStructs.BitSetSet;
+import jpaul.DataStructs.SetFacts;
+import jpaul.DataStructs.Universe;
+
+/**
+ * <code>BitSetSVar</code> is a set variable whose values are {@link
+ * BitSetSet}s: the elements are interned in a {@link Universe}
+ * shared by all the variables of a constraint system, and each value
+ * is stored as a sparse bitset of element ids.  The values are still
+ * <code>Set&lt;T&gt;</code>s, so the constraints from this package
+ * (and the solution readers) work unchanged; in addition, {@link
+ * #copy copy}, {@link #join join}, {@link #joinDelta joinDelta},
+ * {@link IntersectConstraint} and {@link FilterConstraint} work
+ * directly on the bitsets.
+ *
+ * <p>Use this kind of variable for systems with many large sets.
+ * All the variables of a system should use the same universe: the
+ * fast operations apply only to sets from the same universe (mixing
+ * universes is correct, but slow).
+ *
+ * @version $Id$ */
+public class BitSetSVar<T> extends SVar<T> {
+
+    /** Creates a <code>BitSetSVar</code> whose values contain
+	elements interned in <code>universe</code>. */
+    public BitSetSVar(Universe<T> universe) {
+	super(SetFacts.<T>bitSet(universe));
+	this.universe = universe;
+    }
+
+    private final Universe<T> universe;
+
+    /** Returns the universe of <code>this</code> variable. */
+    public Universe<T> universe() { return universe; }
+
+    /** Adds all the elements from <code>s2</code> to
+	<code>s1</code> and returns the set of elements that were
+	really new for <code>s1</code> (or <code>null</code> if there
+	was no new element).  If both sets are {@link BitSetSet}s from
+	the same universe, the new elements are computed word by
+	word. */
+    public Set<T> joinDelta(Set<T> s1, Set<T> s2) {
+	if((s1 instanceof BitSetSet/*<T>*/) && (s2 instanceof BitSetSet/*<T>*/)) {
+	    BitSetSet<T> bs1 = (BitSetSet<T>) s1;
+	    BitSetSet<T> bs2 = (BitSetSet<T>) s2;
+	    if(bs1.universe() == bs2.universe()) {
+		return bs1.unionDelta(bs2);
+	    }
+	}
+	return super.joinDelta(s1, s2);
+    }
+
+}
@@ -43,6 +43,10 @@ public class CtDiffConstraint<T> extends FilterConstraint<T> {
 
     private final Collection<T> ctSet;
 
+    /** Returns the constant set <code>ctSet</code> (each
+	<code>CtDiffConstraint</code> has its own predicate). */
+    public Object signature() { return ctSet; }
+
 
     /** We implemented {@link #rewrite}, {@link #equals}, and {@link
         #hashCode}, such that constraints that are identical after
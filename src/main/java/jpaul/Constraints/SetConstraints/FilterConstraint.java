@@ -4,13 +4,13 @@
 package jpaul.Constraints.SetConstraints;
 
 import java.util.Set;
-import java.util.LinkedHashSet;
 import java.util.Collection;
 import java.util.Arrays;
 
 import jpaul.Constraints.Constraint;
 import jpaul.Constraints.SolAccessor;
 import jpaul.Misc.Predicate;
+import jpaul.DataStructs.BitSetSet;
 
 /**
    <code>FilterConstraint</code> models a filtering constraint.
@@ -63,23 +63,42 @@ public class FilterConstraint<T> extends Constraint<SVar<T>,Set<T>> {
     public int cost() { return Constraint.HIGH_COST; }
 
     public void action(SolAccessor<SVar<T>,Set<T>> sa) {
-	Set<T> sIn = sa.get(vIn);
+	// filtering distributes over union: we may look only at the new elements
+	Set<T> sIn = getDelta(sa, vIn);
 	if(sIn == null) return;
 
-	// TODO: "new LinkedHashSet<T>" is correct, but we should try to use
-	// the same set factory that generated sIn1 and sIn2.
-	Set<T> result = new LinkedHashSet<T>();
+	if(sIn instanceof BitSetSet/*<T>*/) {
+	    // bitset values (see BitSetSVar): build the result from ids
+	    BitSetSet<T> result = ((BitSetSet<T>) sIn).filter(pred);
+	    if(!result.isEmpty()) {
+		sa.join(vDest, result);
+	    }
+	    return;
+	}
 
+	// the result is built with the set factory of vDest, only if
+	// some element passes the filter
+	Set<T> result = null;
 	for(T elem : sIn) {
 	    if(pred.check(elem)) {
+		if(result == null) result = vDest.newSet();
 		result.add(elem);
 	    }
 	}
 
 	// update the destination variable
-	sa.join(vDest, result);
+	if(result != null) {
+	    sa.join(vDest, result);
+	}
     }
     
+    /** Returns <code>true</code>: filtering the new elements of
+	<code>vIn</code> is enough. */
+    public boolean isDeltaAware() { return true; }
+
+    /** Returns the predicate <code>pred</code>. */
+    public Object signature() { return pred; }
+
     public String toString() {
 	return "setfilter: " + vIn + " | " + pred + " <= " + vDest;
     }
@@ -4,13 +4,17 @@
 package jpaul.Constraints.SetConstraints;
 
 import java.util.Set;
-import java.util.LinkedHashSet;
+import java.util.SortedSet;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.Arrays;
 
 import jpaul.Constraints.Constraint;
 import jpaul.Constraints.SolAccessor;
+import jpaul.Constraints.DeltaSolAccessor;
 import jpaul.DataStructs.UnionFind;
+import jpaul.DataStructs.BitSetSet;
 
 /**
    <code>IntersectConstraint</code> models a set intersection constraint.
@@ -54,31 +58,132 @@ public class IntersectConstraint<T> extends Constraint<SVar<T>,Set<T>> {
         HIGH_COST}. */
     public int cost() { return Constraint.HIGH_COST; }
 
-
+    /** All <code>IntersectConstraint</code>s perform the same
+	operation: returns a constant. */
+    public Object signature() { return IntersectConstraint.class; }
+
+
+    /** Joins into <code>vDest</code> the new elements of the
+	intersection: as intersection distributes over union, these
+	elements are in <code>(d1 /\ s2) \/ (s1 /\ d2)</code>, where
+	<code>s1</code>, <code>s2</code> are the values of the inputs,
+	and <code>d1</code>, <code>d2</code> are their deltas (see
+	{@link DeltaSolAccessor#getDelta DeltaSolAccessor.getDelta}).
+	The result is built with the set factory of <code>vDest</code>
+	(see {@link SVar#newSet}), only if it is non-empty: an
+	execution that finds no common element allocates nothing and
+	joins nothing. */
     public void action(SolAccessor<SVar<T>,Set<T>> sa) {
 	Set<T> s_in1 = sa.get(vIn1);
 	if(s_in1 == null) return;
 	Set<T> s_in2 = sa.get(vIn2);
 	if(s_in2 == null) return;
+	Set<T> d1 = getDelta(sa, vIn1);
+	Set<T> d2 = getDelta(sa, vIn2);
+
+	Set<T> res;
+	if((d1 == s_in1) || (d2 == s_in2)) {
+	    // full value of one input (e.g., first execution): one
+	    // intersection covers everything
+	    res = intersect(s_in1, s_in2, null);
+	}
+	else {
+	    res = null;
+	    if(d1 != null) res = intersect(d1, s_in2, res);
+	    if(d2 != null) res = intersect(s_in1, d2, res);
+	}
 
-	if(s_in1.size() < s_in2.size()) {
-	    Set<T> temp = s_in1;
-	    s_in1 = s_in2;
-	    s_in2 = temp;
+	// update the destination variable
+	if(res != null) {
+	    sa.join(vDest, res);
 	}
+    }
 
-	// TODO: "new LinkedHashSet<T>" is correct, but we should try to use
-	// the same set factory that generated s_in1 and s_in2.
-	Set<T> intersect = new LinkedHashSet<T>();
+    /** Returns <code>true</code>: the new elements of the
+	intersection come from the new elements of its inputs. */
+    public boolean isDeltaAware() { return true; }
+
+
+    // Adds the elements of s1 /\ s2 to res, and returns res; if res
+    // is null, the result is a new set (null if the intersection is
+    // empty).
+    private Set<T> intersect(Set<T> s1, Set<T> s2, Set<T> res) {
+	if(s1.isEmpty() || s2.isEmpty()) return res;
+
+	if((s1 instanceof BitSetSet/*<T>*/) && (s2 instanceof BitSetSet/*<T>*/) &&
+	   (((BitSetSet<T>) s1).universe() == ((BitSetSet<T>) s2).universe())) {
+	    // bitset values (see BitSetSVar): intersect word by word
+	    BitSetSet<T> bs = BitSetSet.intersection((BitSetSet<T>) s1, (BitSetSet<T>) s2);
+	    if(bs.isEmpty()) return res;
+	    if(res == null) return bs;
+	    res.addAll(bs);
+	    return res;
+	}
 
-	for(T elem : s_in1) {
-	    if(s_in2.contains(elem)) {
-		intersect.add(elem);
+	if(s1.size() > s2.size()) {
+	    Set<T> temp = s1;
+	    s1 = s2;
+	    s2 = temp;
+	}
+
+	// sorted values of comparable sizes: merge them
+	if((s1 instanceof SortedSet/*<T>*/) && (s2 instanceof SortedSet/*<T>*/) &&
+	   (s2.size() <= MERGE_RATIO * s1.size())) {
+	    Comparator<? super T> comp = ((SortedSet<T>) s1).comparator();
+	    if(sameComparator(comp, ((SortedSet<T>) s2).comparator())) {
+		return merge(s1, s2, comp, res);
 	    }
 	}
 
-	// update the destination variable
-	sa.join(vDest, intersect);
+	// iterate over the smaller set, and probe the bigger one (for
+	// a sorted set, each probe is a binary search)
+	for(T elem : s1) {
+	    if(s2.contains(elem)) {
+		if(res == null) res = vDest.newSet();
+		res.add(elem);
+	    }
+	}
+	return res;
+    }
+
+    // Two sorted sets are merged only if the size of the bigger one
+    // is at most MERGE_RATIO times the size of the smaller one;
+    // otherwise, probing the bigger set is faster.
+    private static final int MERGE_RATIO = 8;
+
+    private static boolean sameComparator(Comparator<?> comp1, Comparator<?> comp2) {
+	return (comp1 == null) ? (comp2 == null) : comp1.equals(comp2);
+    }
+
+    // Adds the elements of s1 /\ s2 to res (a new set if null) by
+    // walking simultaneously over the two sets (both sorted by comp);
+    // returns res.
+    private Set<T> merge(Set<T> s1, Set<T> s2, Comparator<? super T> comp, Set<T> res) {
+	Iterator<T> it1 = s1.iterator();
+	Iterator<T> it2 = s2.iterator();
+	T e1 = it1.next();
+	T e2 = it2.next();
+	while(true) {
+	    int c = compare(comp, e1, e2);
+	    if(c == 0) {
+		if(res == null) res = vDest.newSet();
+		res.add(e1);
+	    }
+	    if(c <= 0) {
+		if(!it1.hasNext()) break;
+		e1 = it1.next();
+	    }
+	    if(c >= 0) {
+		if(!it2.hasNext()) break;
+		e2 = it2.next();
+	    }
+	}
+	return res;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> int compare(Comparator<? super T> comp, T e1, T e2) {
+	return (comp == null) ? ((Comparable<? super T>) e1).compareTo(e2) : comp.compare(e1, e2);
     }
 
     /** We implemented {@link #rewrite}, {@link #equals}, and {@link
@@ -50,9 +50,32 @@ public class SVar<T> extends Var<Set<T>> {
 	return setFact.create(s);
     }
 
+    /** Returns a new, empty set, constructed with the set factory
+	passed to the constructor.  The set constraints use it to
+	build the values they join into <code>this</code> variable. */
+    public Set<T> newSet() {
+	return setFact.create();
+    }
+
     /** Adds all the elements from <code>s2</code> to
         <code>s1</code>. */
     public boolean join(Set<T> s1, Set<T> s2) {
 	return s1.addAll(s2);
     }
+
+    /** Adds all the elements from <code>s2</code> to
+	<code>s1</code> and returns the set of elements that were
+	really new for <code>s1</code> (or <code>null</code> if there
+	was no new element).  The returned set is constructed with
+	the set factory passed to the constructor. */
+    public Set<T> joinDelta(Set<T> s1, Set<T> s2) {
+	Set<T> delta = null;
+	for(T elem : s2) {
+	    if(s1.add(elem)) {
+		if(delta == null) delta = setFact.create();
+		delta.add(elem);
+	    }
+	}
+	return delta;
+    }
 }
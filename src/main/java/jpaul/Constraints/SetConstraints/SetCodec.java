@@ -0,0 +1,65 @@
+// SetCodec.java, created Fri Oct 16 15:41:03 2026
+// Copyright (C) 2005 Alexandru Salcianu <salcianu@alum.mit.edu>
+// Licensed under the Modified BSD Licence; see COPYING for details.
+package jpaul.Constraints.SetConstraints;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Set;
+
+import jpaul.Constraints.Codec;
+import jpaul.DataStructs.SetFactory;
+import jpaul.DataStructs.SetFacts;
+
+/**
+ * <code>SetCodec</code> is a codec for the values of {@link SVar}s:
+ * a set is encoded as its size, followed by its elements (encoded by
+ * an element codec).  Use it to save the solution of a system of set
+ * constraints with {@link jpaul.Constraints.MappedSolReader}.
+ *
+ * @version $Id$ */
+public class SetCodec<T> implements Codec<Set<T>> {
+
+    /** Creates a <code>SetCodec</code>.
+
+	@param elemCodec Codec for the set elements.
+
+	@param setFact Set factory used to create the decoded sets;
+	usually, the same factory as the one used by the variables
+	(e.g., {@link SetFacts#bitSet SetFacts.bitSet} for {@link
+	BitSetSVar}s). */
+    public SetCodec(Codec<T> elemCodec, SetFactory<T> setFact) {
+	this.elemCodec = elemCodec;
+	this.setFact   = setFact;
+    }
+
+    /** Creates a <code>SetCodec</code> that decodes sets using a
+	<code>HashSet</code> factory ({@link SetFacts#hash
+	SetFacts.hash}).
+
+	@see #SetCodec(Codec,SetFactory) */
+    public SetCodec(Codec<T> elemCodec) {
+	this(elemCodec, SetFacts.<T>hash());
+    }
+
+    private final Codec<T> elemCodec;
+    private final SetFactory<T> setFact;
+
+    public void write(Set<T> set, DataOutput out) throws IOException {
+	out.writeInt(set.size());
+	for(T elem : set) {
+	    elemCodec.write(elem, out);
+	}
+    }
+
+    public Set<T> read(ByteBuffer in) {
+	int size = in.getInt();
+	Set<T> set = setFact.create();
+	for(int i = 0; i < size; i++) {
+	    set.add(elemCodec.read(in));
+	}
+	return set;
+    }
+
+}
@@ -0,0 +1,108 @@
+// SolveBudget.java, created Sat Oct 17 10:12:37 2026
+// Copyright (C) 2005 Alexandru Salcianu <salcianu@alum.mit.edu>
+// Licensed under the Modified BSD Licence; see COPYING for details.
+package jpaul.Constraints;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <code>SolveBudget</code> limits a solve of a {@link
+ * ConstraintSystem} (see {@link ConstraintSystem#solve(SolveBudget)}):
+ * it can set a deadline and a maximal number of constraint
+ * executions, and it acts as a cancellation token (see {@link
+ * #cancel}).  When a limit is hit, the solve stops and returns the
+ * values computed so far: they are below the least solution, but they
+ * may not satisfy all constraints (see {@link SolveResult}).
+ *
+ * <p>The solver checks the limits once every {@link #CHECK_PERIOD}
+ * constraint executions (the propagation of a value along an {@link
+ * LtConstraint} inside an SCC counts as an execution), in order to
+ * keep the checks cheap; hence, a
+ * solve may slightly exceed its limits, and a long constraint
+ * execution delays the check.  A <code>SolveBudget</code> may be
+ * shared by several solves (e.g., to cancel all of them at once); in
+ * this case, each solve counts its own executions.
+ *
+ * @version $Id$ */
+public class SolveBudget {
+
+    /** Creates a <code>SolveBudget</code> without any limit. */
+    public SolveBudget() { }
+
+    /** The reasons why a solve may stop before reaching the least
+	solution. */
+    public static enum Limit {
+	/** The deadline passed. */
+	DEADLINE,
+	/** The solve executed the maximal number of constraints. */
+	EXECUTIONS,
+	/** The solve was cancelled. */
+	CANCELLED
+    }
+
+    /** The solver checks the limits once every
+	<code>CHECK_PERIOD</code> constraint executions. */
+    public static final int CHECK_PERIOD = 32;
+
+    // deadline, in terms of System.nanoTime(); meaningful only if hasDeadline
+    private volatile long deadline;
+    private volatile boolean hasDeadline = false;
+    private volatile long maxExecutions = Long.MAX_VALUE;
+    private volatile boolean cancelled = false;
+
+
+    /** Sets the deadline of the solves that use <code>this</code>
+	budget.  The deadline is expressed in terms of
+	<code>System.nanoTime()</code>.
+	@see #setTimeout */
+    public void setDeadline(long deadlineNanos) {
+	this.deadline    = deadlineNanos;
+	this.hasDeadline = true;
+    }
+
+    /** Sets the deadline at <code>timeout</code> (in the given
+	<code>unit</code>) after the moment of this call. */
+    public void setTimeout(long timeout, TimeUnit unit) {
+	setDeadline(System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    /** Sets the maximal number of constraint executions of each
+	solve that uses <code>this</code> budget.  The solver counts
+	all the executions it attempts (including those it skips
+	because the inputs of the constraint did not change since its
+	previous execution), and each propagation of a value along an
+	{@link LtConstraint} between variables from the same SCC. */
+    public void setMaxExecutions(long maxExecutions) {
+	if(maxExecutions < 0) throw new IllegalArgumentException("negative budget " + maxExecutions);
+	this.maxExecutions = maxExecutions;
+    }
+
+    /** Cancels the solves that use <code>this</code> budget (the
+	current ones, and the future ones).  May be called from any
+	thread. */
+    public void cancel() {
+	cancelled = true;
+    }
+
+    /** Checks whether {@link #cancel} was called. */
+    public boolean isCancelled() {
+	return cancelled;
+    }
+
+
+    // Returns the limit exceeded by a solve that executed
+    // nbExecutions constraints, or null if none.
+    Limit exceeded(long nbExecutions) {
+	if(cancelled) return Limit.CANCELLED;
+	if(nbExecutions > maxExecutions) return Limit.EXECUTIONS;
+	if(hasDeadline && (System.nanoTime() - deadline > 0)) return Limit.DEADLINE;
+	return null;
+    }
+
+    public String toString() {
+	return "SolveBudget{" +
+	    (hasDeadline ? ("deadline=" + deadline + ", ") : "") +
+	    ((maxExecutions != Long.MAX_VALUE) ? ("maxExecutions=" + maxExecutions + ", ") : "") +
+	    "cancelled=" + cancelled + "}";
+    }
+}
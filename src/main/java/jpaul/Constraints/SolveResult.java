@@ -0,0 +1,46 @@
+// SolveResult.java, created Sat Oct 17 10:31:05 2026
+// Copyright (C) 2005 Alexandru Salcianu <salcianu@alum.mit.edu>
+// Licensed under the Modified BSD Licence; see COPYING for details.
+package jpaul.Constraints;
+
+/**
+ * <code>SolveResult</code> is the result of a solve with a {@link
+ * SolveBudget} (see {@link ConstraintSystem#solve(SolveBudget)}).
+ * If the solve finished, it gives the least solution of the
+ * constraints.  Otherwise, it gives the values computed before the
+ * solve stopped: each value is below the corresponding value from the
+ * least solution (it is "sound so far"), but some constraints may not
+ * be satisfied.
+ *
+ * @version $Id$ */
+public class SolveResult<V extends Var<Info>, Info> implements SolReader<V,Info> {
+
+    SolveResult(SolReader<V,Info> sol, SolveBudget.Limit limit) {
+	this.sol   = sol;
+	this.limit = limit;
+    }
+
+    // the values (ConstraintSystem.solve returns it directly)
+    final SolReader<V,Info> sol;
+    private final SolveBudget.Limit limit;
+
+    public Info get(V v) {
+	return sol.get(v);
+    }
+
+    /** Checks whether the solve finished, i.e., whether
+	<code>this</code> is the least solution of the constraints. */
+    public boolean isComplete() {
+	return limit == null;
+    }
+
+    /** Returns the limit that stopped the solve, or
+	<code>null</code> if the solve finished. */
+    public SolveBudget.Limit getLimit() {
+	return limit;
+    }
+
+    public String toString() {
+	return (isComplete() ? "" : ("Incomplete solution (" + limit + "):\n")) + sol;
+    }
+}
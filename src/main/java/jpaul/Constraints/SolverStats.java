@@ -0,0 +1,222 @@
+// SolverStats.java, created Fri Oct 16 12:02:15 2026
+// Copyright (C) 2005 Alexandru Salcianu <salcianu@alum.mit.edu>
+// Licensed under the Modified BSD Licence; see COPYING for details.
+package jpaul.Constraints;
+
+import java.util.Map;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+
+/**
+ * <code>SolverStats</code> contains statistics about one call to
+ * {@link ConstraintSystem#solve()} (or {@link
+ * ConstraintSystem#solve(java.util.concurrent.Executor)}): how many
+ * times each kind of constraint was executed, how much time these
+ * executions took, which SCCs were the most expensive, etc.  The
+ * solver collects statistics only if asked to (see {@link
+ * ConstraintSystem#setStatistics ConstraintSystem.setStatistics}).
+ *
+ * <p>The statistics about the preprocessing passes describe the
+ * simplifications that the constraint system applied before the
+ * solve (in the constructor, and in {@link
+ * ConstraintSystem#addConstraints ConstraintSystem.addConstraints}).
+ *
+ * <p>All times are in nanoseconds (see
+ * <code>System.nanoTime()</code>); measuring them has a small cost,
+ * so the time per constraint includes some overhead.
+ *
+ * @version $Id$ */
+public class SolverStats<V> {
+
+    SolverStats(int nbUnifiedMutuallySmaller, int nbUnifiedSingleLt,
+		int nbEmptyVars, int nbEliminatedConstraints, int nbUnifiedSubstitution) {
+	this.nbUnifiedMutuallySmaller = nbUnifiedMutuallySmaller;
+	this.nbUnifiedSingleLt        = nbUnifiedSingleLt;
+	this.nbEmptyVars              = nbEmptyVars;
+	this.nbEliminatedConstraints  = nbEliminatedConstraints;
+	this.nbUnifiedSubstitution    = nbUnifiedSubstitution;
+    }
+
+
+    /** Execution counters for a group of constraints (e.g., all
+	constraints of the same class, or all the constraints
+	executed while solving an SCC). */
+    public static class Counters {
+	Counters() { /* only the solver creates Counters */ }
+
+	int  nbExecutions;
+	int  nbSkipped;
+	int  nbChangingJoins;
+	long time;
+	int  maxWorksetSize;
+
+	/** Returns the number of constraint executions. */
+	public int getNbExecutions() { return nbExecutions; }
+
+	/** Returns the number of times the solver did not execute a
+	    constraint from the workset, because the values of its
+	    inputs did not change since its last execution. */
+	public int getNbSkipped() { return nbSkipped; }
+
+	/** Returns the number of calls to {@link SolAccessor#join
+	    SolAccessor.join} that changed the value of a variable. */
+	public int getNbChangingJoins() { return nbChangingJoins; }
+
+	/** Returns the time spent executing constraints (for an SCC:
+	    the time spent solving it), in nanoseconds. */
+	public long getTime() { return time; }
+
+	/** Returns the maximal size of the workset of constraints.  Not
+	    meaningful for the counters of a constraint class. */
+	public int getMaxWorksetSize() { return maxWorksetSize; }
+
+	void add(Counters c) {
+	    nbExecutions    += c.nbExecutions;
+	    nbSkipped       += c.nbSkipped;
+	    nbChangingJoins += c.nbChangingJoins;
+	    time            += c.time;
+	    maxWorksetSize   = Math.max(maxWorksetSize, c.maxWorksetSize);
+	}
+
+	public String toString() {
+	    return
+		nbExecutions + " executions, " +
+		nbSkipped + " skipped, " +
+		nbChangingJoins + " changing joins, " +
+		(time / 1000) + " us" +
+		((maxWorksetSize != 0) ? (", max workset " + maxWorksetSize) : "");
+	}
+    }
+
+
+    /** Execution counters for one SCC of mutually dependent
+	variables. */
+    public static class SccCounters<V> extends Counters {
+	SccCounters(Collection<V> vars) {
+	    this.vars = vars;
+	}
+
+	private final Collection<V> vars;
+
+	/** Returns the variables (representatives of the unified
+	    variables) from this SCC. */
+	public Collection<V> getVars() { return vars; }
+
+	public String toString() {
+	    return "SCC " + vars + ": " + super.toString();
+	}
+    }
+
+
+    private final int nbUnifiedMutuallySmaller;
+    private final int nbUnifiedSingleLt;
+    private final int nbEmptyVars;
+    private final int nbEliminatedConstraints;
+    private final int nbUnifiedSubstitution;
+
+    // set by the solver
+    final Counters totals = new Counters();
+    final Map<Class<?>,Counters> class2counters = new LinkedHashMap<Class<?>,Counters>();
+    final List<SccCounters<V>> sccCounters = new ArrayList<SccCounters<V>>();
+    long solveTime;
+
+
+    /** Returns the number of variables unified with another variable
+	because they are on a cycle of {@link LtConstraint}s. */
+    public int getNbUnifiedMutuallySmaller() { return nbUnifiedMutuallySmaller; }
+
+    /** Returns the number of variables unified with another variable
+	because their only incoming constraint is an {@link
+	LtConstraint}. */
+    public int getNbUnifiedSingleLt() { return nbUnifiedSingleLt; }
+
+    /** Returns the number of variables proved to be empty (i.e., to
+	have the value <code>null</code>) before solving. */
+    public int getNbEmptyVars() { return nbEmptyVars; }
+
+    /** Returns the number of {@link LtConstraint}s eliminated
+	because their source is empty. */
+    public int getNbEliminatedConstraints() { return nbEliminatedConstraints; }
+
+    /** Returns the number of variables unified with another variable
+	by the offline variable substitution pre-pass (see {@link
+	ConstraintSystem.Builder#setOfflineSubstitution
+	ConstraintSystem.Builder.setOfflineSubstitution}). */
+    public int getNbUnifiedSubstitution() { return nbUnifiedSubstitution; }
+
+    /** Returns the counters for all the constraints from the
+	solve. */
+    public Counters getTotals() { return totals; }
+
+    /** Returns a map from each class of executed constraints to the
+	counters for the constraints of that class.  For the {@link
+	LtConstraint}s between variables from the same SCC, which the
+	solver does not execute, the counters count the propagations
+	along them. */
+    public Map<Class<?>,Counters> getClassCounters() {
+	return Collections.unmodifiableMap(class2counters);
+    }
+
+    /** Returns the counters for each SCC solved by the solve, in the
+	order the SCCs were solved in (for parallel solves: in the
+	topological order).  The SCCs that the solver did not need to
+	solve (see {@link ConstraintSystem#addConstraints
+	ConstraintSystem.addConstraints}) do not appear in this
+	list. */
+    public List<SccCounters<V>> getSccCounters() {
+	return Collections.unmodifiableList(sccCounters);
+    }
+
+    /** Returns the duration of the solve, in nanoseconds. */
+    public long getSolveTime() { return solveTime; }
+
+
+    /** Returns a report with all the statistics: the constraint
+	classes sorted by time, and the 10 most expensive SCCs. */
+    public String toString() {
+	StringBuffer buff = new StringBuffer();
+	buff.append("Solve: " + (solveTime / 1000000) + " ms; " + totals + "\n");
+	buff.append("Preprocessing: " +
+		    nbUnifiedMutuallySmaller + " vars unified (cycles), " +
+		    nbUnifiedSingleLt + " vars unified (single inclusions), " +
+		    nbUnifiedSubstitution + " vars unified (substitution), " +
+		    nbEmptyVars + " empty vars, " +
+		    nbEliminatedConstraints + " constraints eliminated\n");
+
+	List<Map.Entry<Class<?>,Counters>> classes =
+	    new ArrayList<Map.Entry<Class<?>,Counters>>(class2counters.entrySet());
+	Collections.sort(classes, new Comparator<Map.Entry<Class<?>,Counters>>() {
+	    public int compare(Map.Entry<Class<?>,Counters> e1, Map.Entry<Class<?>,Counters> e2) {
+		return compareTimes(e1.getValue(), e2.getValue());
+	    }
+	});
+	buff.append("Constraint classes:\n");
+	for(Map.Entry<Class<?>,Counters> entry : classes) {
+	    buff.append("  " + entry.getKey().getName() + ": " + entry.getValue() + "\n");
+	}
+
+	List<SccCounters<V>> sccs = new ArrayList<SccCounters<V>>(sccCounters);
+	Collections.sort(sccs, new Comparator<SccCounters<V>>() {
+	    public int compare(SccCounters<V> c1, SccCounters<V> c2) {
+		return compareTimes(c1, c2);
+	    }
+	});
+	buff.append("Most expensive SCCs (out of " + sccs.size() + "):\n");
+	for(SccCounters<V> c : sccs.subList(0, Math.min(10, sccs.size()))) {
+	    buff.append("  " + c + "\n");
+	}
+	return buff.toString();
+    }
+
+    // decreasing order of times
+    private static int compareTimes(Counters c1, Counters c2) {
+	if(c1.time > c2.time) return -1;
+	if(c1.time < c2.time) return +1;
+	return 0;
+    }
+
+}
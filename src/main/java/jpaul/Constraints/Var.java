@@ -54,4 +54,25 @@ public abstract class Var<Info> {
 	variable takes values.  */
     public abstract boolean join(Info x, Info y);
 
+
+    /** Joins <code>y</code> to <code>x</code> (exactly like {@link
+	#join join}) and returns the part of <code>y</code> that was
+	not already in <code>x</code>.  This method is used by the
+	constraint solver in the difference propagation mode (see
+	{@link ConstraintSystem#setDiffPropagation
+	setDiffPropagation}): the returned delta is what the
+	delta-aware constraints that read this variable will see next.
+
+	<p>The default implementation returns a copy of
+	<code>y</code> if <code>x</code> changed; this is correct (any
+	value between the real difference and <code>y</code> is a good
+	delta), but subclasses may want to return the exact difference.
+
+	@return <code>null</code> if <code>x</code> did not change,
+	the newly joined part of <code>y</code> otherwise.  The solver
+	never mutates the returned value. */
+    public Info joinDelta(Info x, Info y) {
+	return join(x, y) ? copy(y) : null;
+    }
+
 }
@@ -0,0 +1,111 @@
+// WorksetStrategy.java, created Fri Oct 16 13:28:09 2026
+// Copyright (C) 2005 Alexandru Salcianu <salcianu@alum.mit.edu>
+// Licensed under the Modified BSD Licence; see COPYING for details.
+package jpaul.Constraints;
+
+/**
+ * <code>WorksetStrategy</code> decides the order in which the
+ * fixed-point solver from {@link ConstraintSystem} executes the
+ * constraints from its workset, while solving a strongly connected
+ * component (SCC) of mutually dependent variables.  The solution
+ * does not depend on this order, but the number of constraint
+ * executions (and hence, the solving time) may depend a lot on it.
+ *
+ * <p>Use one of the predefined strategies, e.g., {@link #FIFO}, and
+ * pass it to {@link ConstraintSystem#setWorksetStrategy
+ * ConstraintSystem.setWorksetStrategy}.  The default strategy is
+ * {@link #COST}.
+ *
+ * @version $Id$ */
+public abstract class WorksetStrategy {
+
+    WorksetStrategy(String name) {
+	this.name = name;
+    }
+
+    private final String name;
+
+    /** Returns a new, empty workset for the constraint ids 0, 1,
+	..., <code>nbIds-1</code>.  <code>cost</code> maps each id to
+	the {@link Constraint#cost cost} of its constraint;
+	<code>rank</code> maps each id to the rank of its constraint
+	in a reverse postorder of the dependencies inside its SCC (see
+	{@link #needsRanks}). */
+    abstract IntWorkset newWorkset(int nbIds, int[] cost, int[] rank);
+
+    /** Checks whether {@link #newWorkset newWorkset} needs the
+	reverse postorder ranks; computing them takes some time, so
+	the solver does it only if needed. */
+    boolean needsRanks() { return false; }
+
+    public String toString() { return name; }
+
+
+    /** First-in first-out: the constraints are executed in the order
+	they were added to the workset.  Breadth-first propagation. */
+    public static final WorksetStrategy FIFO = new WorksetStrategy("FIFO") {
+	IntWorkset newWorkset(int nbIds, int[] cost, int[] rank) {
+	    return IntWorkset.queue();
+	}
+    };
+
+
+    /** Last-in first-out: the constraint added last is executed
+	first.  Depth-first propagation: a new value travels far
+	before the solver looks at other constraints. */
+    public static final WorksetStrategy LIFO = new WorksetStrategy("LIFO") {
+	IntWorkset newWorkset(int nbIds, int[] cost, int[] rank) {
+	    return IntWorkset.stack();
+	}
+    };
+
+
+    /** Cheap constraints first (see {@link Constraint#cost}): the
+	solver does not execute an expensive constraint before
+	iterating to saturation over the cheaper ones.  In the
+	adaptive cost mode (see {@link
+	ConstraintSystem#setAdaptiveCosts
+	ConstraintSystem.setAdaptiveCosts}), the costs are measured.
+	The default strategy. */
+    public static final WorksetStrategy COST = new WorksetStrategy("COST") {
+	IntWorkset newWorkset(int nbIds, int[] cost, int[] rank) {
+	    return new IntWorkset.Heap(nbIds, cost, false);
+	}
+    };
+
+
+    /** Reverse postorder: inside an SCC, the solver executes first
+	the constraints whose inputs are "upstream" in the
+	dependencies between the variables of the SCC (in a reverse
+	postorder of these dependencies).  The solver works in rounds:
+	a constraint that becomes active because of a dependency that
+	goes back waits until the end of the current pass over the
+	SCC.  Hence, the solver tends to compute the value of a
+	variable before propagating it further, which reduces the
+	number of iterations for large SCCs. */
+    public static final WorksetStrategy REVERSE_POSTORDER = new WorksetStrategy("REVERSE_POSTORDER") {
+	IntWorkset newWorkset(int nbIds, int[] cost, int[] rank) {
+	    return new IntWorkset.Rounds(nbIds, rank);
+	}
+	boolean needsRanks() { return true; }
+    };
+
+
+    /** Least recently fired: the solver executes first the
+	constraint that was executed least recently (or never).  This
+	gives each constraint a fair chance to run. */
+    public static final WorksetStrategy LEAST_RECENTLY_FIRED = new WorksetStrategy("LEAST_RECENTLY_FIRED") {
+	IntWorkset newWorkset(int nbIds, int[] cost, int[] rank) {
+	    return new IntWorkset.Heap(nbIds, new int[nbIds], true);
+	}
+    };
+
+
+    /** Returns all the predefined strategies. */
+    public static WorksetStrategy[] values() {
+	return new WorksetStrategy[] {
+	    FIFO, LIFO, COST, REVERSE_POSTORDER, LEAST_RECENTLY_FIRED
+	};
+    }
+
+}
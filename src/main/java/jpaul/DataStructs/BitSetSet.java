@@ -0,0 +1,478 @@
+// BitSetSet.java, created Fri Oct 16 10:40:07 2026
+// Copyright (C) 2005 Alexandru Salcianu <salcianu@alum.mit.edu>
+// Licensed under the Modified BSD Licence; see COPYING for details.
+package jpaul.DataStructs;
+
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import jpaul.Misc.Predicate;
+
+/**
+ * <code>BitSetSet</code> is a set of elements interned in a {@link
+ * Universe}: each element is represented by the bit of its id.  The
+ * bits are stored as a sparse bitset: a sorted array of the indices
+ * of the non-zero 64-bit words, and a parallel array with the words
+ * themselves.  Hence, the memory consumption is proportional to the
+ * number of non-zero words, not to the size of the universe.
+ *
+ * <p>The bulk operations between two <code>BitSetSet</code>s from
+ * the same universe ({@link #addAll addAll}, {@link #retainAll
+ * retainAll}, {@link #removeAll removeAll}, {@link #containsAll
+ * containsAll}, {@link #equals equals}, {@link #clone clone}, {@link
+ * #unionDelta unionDelta}, {@link #intersection intersection}) work
+ * on entire words, and never look at the elements themselves.  For
+ * all other purposes, a <code>BitSetSet</code> is a normal
+ * <code>Set</code>: it maps ids back to elements on the fly.
+ *
+ * <p>The iteration order is the order of the ids, i.e., the order in
+ * which the elements were interned.
+ *
+ * @see SetFacts#bitSet
+ *
+ * @version $Id$ */
+public class BitSetSet<T> extends AbstractSet<T> implements Cloneable, Serializable {
+
+    private static final long serialVersionUID = 6190423530710938183L;
+
+    /** Creates an empty <code>BitSetSet</code> whose elements are
+	interned in <code>universe</code>. */
+    public BitSetSet(Universe<T> universe) {
+	this.universe = universe;
+	this.keys  = new int[2];
+	this.words = new long[2];
+    }
+
+    /** Creates a <code>BitSetSet</code> whose elements are interned
+	in <code>universe</code>, and that contains the elements from
+	<code>coll</code>. */
+    public BitSetSet(Universe<T> universe, Collection<? extends T> coll) {
+	this(universe);
+	addAll(coll);
+    }
+
+    private final Universe<T> universe;
+
+    // keys[0..n-1]: the indices of the non-zero words, in increasing order
+    private int[] keys;
+    // words[i] is the word with index keys[i]; never 0 for i < n
+    private long[] words;
+    // number of non-zero words
+    private int n = 0;
+    // number of elements (i.e., of set bits)
+    private int size = 0;
+
+
+    /** Returns the universe that the elements of <code>this</code>
+	set are interned in. */
+    public Universe<T> universe() { return universe; }
+
+    public int size() { return size; }
+
+    public boolean isEmpty() { return size == 0; }
+
+    public void clear() {
+	n = 0;
+	size = 0;
+    }
+
+
+    public boolean contains(Object o) {
+	int id = universe.lookup(o);
+	return (id >= 0) && containsId(id);
+    }
+
+    public boolean add(T elem) {
+	return addId(universe.intern(elem));
+    }
+
+    public boolean remove(Object o) {
+	int id = universe.lookup(o);
+	return (id >= 0) && removeId(id);
+    }
+
+
+    /** Checks whether the element with id <code>id</code> belongs
+	to <code>this</code> set. */
+    public boolean containsId(int id) {
+	int i = find(id >>> 6);
+	return (i >= 0) && ((words[i] & (1L << id)) != 0);
+    }
+
+    /** Adds the element with id <code>id</code> to
+	<code>this</code> set.  Returns <code>true</code> iff the
+	element was not already in the set. */
+    public boolean addId(int id) {
+	long bit = 1L << id;
+	int i = find(id >>> 6);
+	if(i >= 0) {
+	    if((words[i] & bit) != 0) return false;
+	    words[i] |= bit;
+	}
+	else {
+	    insertWord(-(i + 1), id >>> 6, bit);
+	}
+	size++;
+	return true;
+    }
+
+    /** Removes the element with id <code>id</code> from
+	<code>this</code> set.  Returns <code>true</code> iff the
+	element was in the set. */
+    public boolean removeId(int id) {
+	long bit = 1L << id;
+	int i = find(id >>> 6);
+	if((i < 0) || ((words[i] & bit) == 0)) return false;
+	words[i] &= ~bit;
+	if(words[i] == 0) {
+	    deleteWord(i);
+	}
+	size--;
+	return true;
+    }
+
+
+    // binary search for the word with index key: returns its position
+    // in keys, or (-(insertion point) - 1) if there is no such word.
+    private int find(int key) {
+	int low  = 0;
+	int high = n - 1;
+	while(low <= high) {
+	    int mid = (low + high) >>> 1;
+	    int midKey = keys[mid];
+	    if(midKey < key) {
+		low = mid + 1;
+	    }
+	    else if(midKey > key) {
+		high = mid - 1;
+	    }
+	    else {
+		return mid;
+	    }
+	}
+	return -(low + 1);
+    }
+
+    private void insertWord(int pos, int key, long word) {
+	if(n == keys.length) {
+	    int[]  newKeys  = new int[2 * n];
+	    long[] newWords = new long[2 * n];
+	    System.arraycopy(keys,  0, newKeys,  0, pos);
+	    System.arraycopy(words, 0, newWords, 0, pos);
+	    System.arraycopy(keys,  pos, newKeys,  pos + 1, n - pos);
+	    System.arraycopy(words, pos, newWords, pos + 1, n - pos);
+	    keys  = newKeys;
+	    words = newWords;
+	}
+	else {
+	    System.arraycopy(keys,  pos, keys,  pos + 1, n - pos);
+	    System.arraycopy(words, pos, words, pos + 1, n - pos);
+	}
+	keys[pos]  = key;
+	words[pos] = word;
+	n++;
+    }
+
+    private void deleteWord(int pos) {
+	System.arraycopy(keys,  pos + 1, keys,  pos, n - pos - 1);
+	System.arraycopy(words, pos + 1, words, pos, n - pos - 1);
+	n--;
+    }
+
+
+    // checks whether c is a BitSetSet from the same universe
+    private BitSetSet<T> sameUniverse(Collection<?> c) {
+	if(!(c instanceof BitSetSet/*<T>*/)) return null;
+	@SuppressWarnings("unchecked")
+	BitSetSet<T> bs = (BitSetSet<T>) c;
+	return (bs.universe == this.universe) ? bs : null;
+    }
+
+
+    public boolean addAll(Collection<? extends T> c) {
+	BitSetSet<T> bs = sameUniverse(c);
+	if(bs == null) return super.addAll(c);
+	return union(bs, null);
+    }
+
+
+    /** Adds all the elements from <code>bs</code> to
+	<code>this</code> set and returns the set of elements that
+	were really new for <code>this</code> set (or
+	<code>null</code> if there was no new element).
+	<code>bs</code> should be from the same universe as
+	<code>this</code> set. */
+    public BitSetSet<T> unionDelta(BitSetSet<T> bs) {
+	if(bs.universe != this.universe) {
+	    throw new IllegalArgumentException("different universes");
+	}
+	BitSetSet<T> delta = new BitSetSet<T>(universe);
+	union(bs, delta);
+	return delta.isEmpty() ? null : delta;
+    }
+
+
+    // this = this \/ bs; if delta is non-null, the new elements are
+    // appended to it (delta should be empty).  Returns true iff
+    // this set changed.
+    private boolean union(BitSetSet<T> bs, BitSetSet<T> delta) {
+	if(bs == this) return false;
+	// 1. count the words of the result, and the new elements
+	int newWords = 0;
+	int newElems = 0;
+	int i = 0;
+	int j = 0;
+	while(j < bs.n) {
+	    if((i < n) && (keys[i] < bs.keys[j])) {
+		i++;
+	    }
+	    else if((i < n) && (keys[i] == bs.keys[j])) {
+		newElems += Long.bitCount(bs.words[j] & ~words[i]);
+		i++;
+		j++;
+	    }
+	    else {
+		newElems += Long.bitCount(bs.words[j]);
+		newWords++;
+		j++;
+	    }
+	}
+	if(newElems == 0) return false;
+
+	// 2. merge; we merge backwards, such that we can do it in place
+	// if the arrays are big enough.
+	int[]  resKeys  = keys;
+	long[] resWords = words;
+	int resN = n + newWords;
+	if(resN > keys.length) {
+	    int capacity = Math.max(resN, 2 * keys.length);
+	    resKeys  = new int[capacity];
+	    resWords = new long[capacity];
+	}
+	i = n - 1;
+	j = bs.n - 1;
+	for(int k = resN - 1; k >= 0; k--) {
+	    if((j < 0) || ((i >= 0) && (keys[i] > bs.keys[j]))) {
+		resKeys[k]  = keys[i];
+		resWords[k] = words[i];
+		i--;
+	    }
+	    else if((i >= 0) && (keys[i] == bs.keys[j])) {
+		long d = bs.words[j] & ~words[i];
+		resKeys[k]  = keys[i];
+		resWords[k] = words[i] | d;
+		if((delta != null) && (d != 0)) delta.appendWord(bs.keys[j], d);
+		i--;
+		j--;
+	    }
+	    else {
+		resKeys[k]  = bs.keys[j];
+		resWords[k] = bs.words[j];
+		if(delta != null) delta.appendWord(bs.keys[j], bs.words[j]);
+		j--;
+	    }
+	}
+	keys  = resKeys;
+	words = resWords;
+	n     = resN;
+	size += newElems;
+	if(delta != null) delta.reverseWords();
+	return true;
+    }
+
+    // appends a word with a key bigger than all current keys (union
+    // appends in decreasing key order, and calls reverseWords at the end)
+    private void appendWord(int key, long word) {
+	if(n == keys.length) {
+	    int[]  newKeys  = new int[2 * n];
+	    long[] newWords = new long[2 * n];
+	    System.arraycopy(keys,  0, newKeys,  0, n);
+	    System.arraycopy(words, 0, newWords, 0, n);
+	    keys  = newKeys;
+	    words = newWords;
+	}
+	keys[n]  = key;
+	words[n] = word;
+	n++;
+	size += Long.bitCount(word);
+    }
+
+    private void reverseWords() {
+	for(int i = 0, j = n - 1; i < j; i++, j--) {
+	    int  key  = keys[i];  keys[i]  = keys[j];  keys[j]  = key;
+	    long word = words[i]; words[i] = words[j]; words[j] = word;
+	}
+    }
+
+
+    public boolean retainAll(Collection<?> c) {
+	BitSetSet<T> bs = sameUniverse(c);
+	if(bs == null) return super.retainAll(c);
+	return filterWords(bs, true);
+    }
+
+    public boolean removeAll(Collection<?> c) {
+	BitSetSet<T> bs = sameUniverse(c);
+	if(bs == null) return super.removeAll(c);
+	return filterWords(bs, false);
+    }
+
+    // this = this /\ bs (if retain is true), or this \ bs (otherwise).
+    private boolean filterWords(BitSetSet<T> bs, boolean retain) {
+	if(bs == this) {
+	    if(retain || (size == 0)) return false;
+	    clear();
+	    return true;
+	}
+	int oldSize = size;
+	int k = 0;
+	int j = 0;
+	size = 0;
+	for(int i = 0; i < n; i++) {
+	    while((j < bs.n) && (bs.keys[j] < keys[i])) j++;
+	    long other = ((j < bs.n) && (bs.keys[j] == keys[i])) ? bs.words[j] : 0L;
+	    long word = retain ? (words[i] & other) : (words[i] & ~other);
+	    if(word != 0) {
+		keys[k]  = keys[i];
+		words[k] = word;
+		k++;
+		size += Long.bitCount(word);
+	    }
+	}
+	n = k;
+	return size != oldSize;
+    }
+
+
+    public boolean containsAll(Collection<?> c) {
+	BitSetSet<T> bs = sameUniverse(c);
+	if(bs == null) return super.containsAll(c);
+	if(bs.size > this.size) return false;
+	int i = 0;
+	for(int j = 0; j < bs.n; j++) {
+	    while((i < n) && (keys[i] < bs.keys[j])) i++;
+	    if((i == n) || (keys[i] != bs.keys[j])) return false;
+	    if((bs.words[j] & ~words[i]) != 0) return false;
+	}
+	return true;
+    }
+
+
+    /** Returns a new set with the elements that belong to both
+	<code>bs1</code> and <code>bs2</code> (two sets from the
+	same universe). */
+    public static <T> BitSetSet<T> intersection(BitSetSet<T> bs1, BitSetSet<T> bs2) {
+	if(bs1.universe != bs2.universe) {
+	    throw new IllegalArgumentException("different universes");
+	}
+	BitSetSet<T> res = new BitSetSet<T>(bs1.universe);
+	int j = 0;
+	for(int i = 0; i < bs1.n; i++) {
+	    while((j < bs2.n) && (bs2.keys[j] < bs1.keys[i])) j++;
+	    if(j == bs2.n) break;
+	    if(bs2.keys[j] != bs1.keys[i]) continue;
+	    long word = bs1.words[i] & bs2.words[j];
+	    if(word != 0) {
+		res.appendWord(bs1.keys[i], word);
+	    }
+	}
+	return res;
+    }
+
+
+    /** Returns a new set with the elements of <code>this</code> set
+	that satisfy <code>pred</code>.  The result is built directly
+	from ids, without re-interning the elements. */
+    public BitSetSet<T> filter(Predicate<T> pred) {
+	BitSetSet<T> res = new BitSetSet<T>(universe);
+	for(int i = 0; i < n; i++) {
+	    long word = words[i];
+	    long resWord = 0L;
+	    for(long rest = word; rest != 0; rest &= rest - 1) {
+		long bit = rest & -rest;
+		int id = (keys[i] << 6) + Long.numberOfTrailingZeros(bit);
+		if(pred.check(universe.elem(id))) {
+		    resWord |= bit;
+		}
+	    }
+	    if(resWord != 0) {
+		res.appendWord(keys[i], resWord);
+	    }
+	}
+	return res;
+    }
+
+
+    public boolean equals(Object o) {
+	if(o == this) return true;
+	BitSetSet<T> bs = (o instanceof Collection/*<?>*/) ? sameUniverse((Collection<?>) o) : null;
+	if(bs == null) return super.equals(o);
+	if((bs.size != this.size) || (bs.n != this.n)) return false;
+	for(int i = 0; i < n; i++) {
+	    if((keys[i] != bs.keys[i]) || (words[i] != bs.words[i])) return false;
+	}
+	return true;
+    }
+
+    // AbstractSet.hashCode is fine: the hashCode of a set must be the
+    // sum of the hashCodes of its elements.
+
+
+    public BitSetSet<T> clone() {
+	try {
+	    @SuppressWarnings("unchecked")
+	    BitSetSet<T> cloneSet = (BitSetSet<T>) super.clone();
+	    int capacity = Math.max(n, 2);
+	    cloneSet.keys  = new int[capacity];
+	    cloneSet.words = new long[capacity];
+	    System.arraycopy(keys,  0, cloneSet.keys,  0, n);
+	    System.arraycopy(words, 0, cloneSet.words, 0, n);
+	    return cloneSet;
+	}
+	catch(CloneNotSupportedException cex) {
+	    // should not happen
+	    throw new Error(cex);
+	}
+    }
+
+
+    public Iterator<T> iterator() {
+	return new Iterator<T>() {
+	    // position of the current word
+	    private int pos = -1;
+	    // bits from the current word that were not returned yet
+	    private long rest = 0L;
+	    // id of the last returned element; -1 if none / already removed
+	    private int last = -1;
+
+	    public boolean hasNext() {
+		return (rest != 0) || (pos + 1 < n);
+	    }
+
+	    public T next() {
+		while(rest == 0) {
+		    pos++;
+		    if(pos >= n) throw new NoSuchElementException();
+		    rest = words[pos];
+		}
+		last = (keys[pos] << 6) + Long.numberOfTrailingZeros(rest);
+		rest &= rest - 1;
+		return universe.elem(last);
+	    }
+
+	    public void remove() {
+		if(last < 0) throw new IllegalStateException();
+		removeId(last);
+		// if the current word became 0, it was deleted
+		if((pos >= n) || (keys[pos] != (last >>> 6))) {
+		    pos--;
+		}
+		last = -1;
+	    }
+	};
+    }
+
+}
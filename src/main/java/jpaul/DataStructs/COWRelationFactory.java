@@ -18,7 +18,9 @@ import jpaul.Misc.Predicate;
    <p>The internal representation of a COW representation maintains a
    "sharing" counter to identify cases when the representation is not
    shared with anyone (and hence, no cloning is necessary before a
-   mutation).
+   mutation).  Similar to the COW sets from {@link COWSetFactory}, the
+   garbage collection of the COW relations is tracked with phantom
+   references (see {@link COWShared}), not with finalizers.
 
    <p>Cloning a COW relation is a constant time operation.  COW
    relations are good when it is hard to determine statically whether
@@ -54,11 +56,10 @@ class COWRelationFactory<K,V> extends RelationFactory<K,V> {
     }
     
 
-    private static class RelWithCount<K,V> {
+    private static class RelWithCount<K,V> extends COWShared {
 	RelWithCount(Relation<K,V> rel) {
 	    this.rel = rel;
 	}
-	int countOthers = 0;
 	final Relation<K,V> rel;
     }
 
@@ -73,6 +74,8 @@ class COWRelationFactory<K,V> extends RelationFactory<K,V> {
 
 	private final RelationFactory<K,V> underRelFact;
 	private RelWithCount<K,V> underRel;
+	// phantom reference to this COWRelation; created by the first clone()
+	private transient COWShared.Tracker tracker = null;
 
 	/* Synchronization: please read the synchronization discussion
 	   from COWSetFactory.  It applies here verbatim.  */
@@ -179,6 +182,7 @@ class COWRelationFactory<K,V> extends RelationFactory<K,V> {
 	}
 
 	public COWRelation<K,V> clone() {
+	    COWShared.processDeaths();
 	    synchronized(underRel) {
 		// do the increment before creating a new reference
 		// (via super.clone() below) such that the sharing
@@ -186,33 +190,27 @@ class COWRelationFactory<K,V> extends RelationFactory<K,V> {
 		underRel.countOthers++;
 	    }
 	    COWRelation<K,V> copy = (COWRelation<K,V>) super.clone();
+	    // both COWRelations now share underRel: track their GC
+	    this.tracker = underRel.track(this, this.tracker);
+	    copy.tracker = underRel.track(copy, null);
 	    return copy;
 	}
 
-	protected void finalize() {
-	    try {
-		try {
-		    synchronized(underRel) {
-			underRel.countOthers--;
-		    }
-		}
-		finally {
-		    super.finalize();
-		}
-	    }
-	    catch(Throwable tex) {
-		throw new Error(tex);
-	    }
+	// Checks whether the underlying relation may be shared with
+	// another COWRelation; before answering yes, accounts for the
+	// COWRelations that were garbage collected.
+	private final boolean shared() {
+	    if(underRel.countOthers <= 0) return false;
+	    COWShared.processDeaths();
+	    return underRel.countOthers > 0;
 	}
 
-	private final boolean shared() { return underRel.countOthers > 0; }
-
 	private final void detach() {
 	    RelWithCount<K,V> oldUnderRel = this.underRel;
 	    this.underRel = new RelWithCount<K,V>(underRelFact.create(oldUnderRel.rel));
 	    // do the decrement HERE, after the real detach, to make
 	    // sure that the sharing count is conservative at any point.
-	    oldUnderRel.countOthers--;
+	    oldUnderRel.release(tracker);
 	}
 
 	public String toString() {
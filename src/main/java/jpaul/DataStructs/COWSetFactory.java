@@ -17,6 +17,9 @@ import java.util.Iterator;
    <p>The internal representation of a COW set maintains a "sharing"
    counter to identify cases when the representation is not shared
    with anyone (and hence, no cloning is necessary before a mutation).
+   The counter is decremented when a COW set that shares the
+   representation is garbage collected; this is detected with phantom
+   references (see {@link COWShared}), not with finalizers.
 
    <p>Cloning a COW set is a constant time operation.  COW sets are
    good when it is hard to determine statically whether a clone of a
@@ -55,11 +58,10 @@ class COWSetFactory<T> extends SetFactory<T> {
 	return super.newColl(coll);
     }
 
-    private static class SetWithCount<E2> {
+    private static class SetWithCount<E2> extends COWShared {
 	SetWithCount(Set<E2> set) {
 	    this.set = set;
 	}
-	int countOthers = 0;
 	final Set<E2> set;
     }
 
@@ -77,6 +79,8 @@ class COWSetFactory<T> extends SetFactory<T> {
 
 	private final SetFactory<E> underSetFact;
 	private SetWithCount<E> underSet;
+	// phantom reference to this COWSet; created by the first clone()
+	private COWShared.Tracker tracker = null;
 
 
 	/* Synchronization: we maintain the following invariants:
@@ -103,7 +107,10 @@ class COWSetFactory<T> extends SetFactory<T> {
 
 	   (2) every time sharing is destroyed (i.e., in detach(), or
 	   during GC), we first destroy sharing, and next decrement
-	   the sharing count.
+	   the sharing count.  For the GC case, the phantom reference
+	   to a COWSet is enqueued only after the COWSet is
+	   unreachable; the decrement happens later, in
+	   COWShared.processDeaths().
 
 
 	   I1 is more delicate.  However, notice how we always detach
@@ -129,17 +136,32 @@ class COWSetFactory<T> extends SetFactory<T> {
 
 	   Final note:
 
-	   Q: Why do we need a finalizer for COWSet?
+	   Q: Why do we need to track the GC of the COWSets?
 
 	   A: To decrement the count of the underlying shared set.  If
 	   we don't do so, the underlying set may seem (artficially)
 	   to be shared, leading to unnecessary copying during the
-	   next mutation operation.
+	   next mutation operation.  We used to do this in a
+	   finalizer; however, making each COWSet finalizable loads
+	   the GC finalizer thread and keeps the dead COWSets around
+	   for an extra GC cycle.  Instead, only the COWSets that are
+	   actually shared get a (phantom reference) tracker, and the
+	   dead ones are processed right before we decide to copy:
+	   see shared().
 
 	 */
 
+	// Checks whether the underlying set may be shared with
+	// another COWSet; before answering yes, accounts for the
+	// COWSets that were garbage collected.
+	private boolean shared() {
+	    if(underSet.countOthers == 0) return false;
+	    COWShared.processDeaths();
+	    return underSet.countOthers != 0;
+	}
+
 	public boolean add(E elem) {
-	    if(underSet.countOthers != 0) {
+	    if(shared()) {
 		if(underSet.set.contains(elem)) {
 		    return false;
 		}
@@ -157,7 +179,7 @@ class COWSetFactory<T> extends SetFactory<T> {
 		if(this.underSet == cowSet2.underSet)
 		    return false;
 	    }
-	    if(underSet.countOthers != 0) {
+	    if(shared()) {
 		if(underSet.set.containsAll(c)) {
 		    return false;
 		}
@@ -169,7 +191,7 @@ class COWSetFactory<T> extends SetFactory<T> {
 	}
 	
 	public void clear() {
-	    if(underSet.countOthers != 0) {
+	    if(shared()) {
 		if(underSet.set.isEmpty()) {
 		    return;
 		}
@@ -206,7 +228,7 @@ class COWSetFactory<T> extends SetFactory<T> {
 	public boolean isEmpty()   { return underSet.set.isEmpty(); }
 
 	public boolean remove(Object o) {
-	    if(underSet.countOthers != 0) {
+	    if(shared()) {
 		if(underSet.set.contains(o)) {
 		    detach();
 		}
@@ -218,7 +240,7 @@ class COWSetFactory<T> extends SetFactory<T> {
 	}
 
 	public boolean removeAll(Collection<?> c) {
-	    if(underSet.countOthers != 0) {
+	    if(shared()) {
 		detach();
 	    }
 	    return underSet.set.removeAll(c);
@@ -234,6 +256,7 @@ class COWSetFactory<T> extends SetFactory<T> {
 
 	public COWSet<E> clone() {
 	    try {
+		COWShared.processDeaths();
 		synchronized(underSet) {
 		    underSet.countOthers++;
 		}
@@ -241,6 +264,9 @@ class COWSetFactory<T> extends SetFactory<T> {
 		// We've already incremented the sharing count, so we preserve I2.
 		@SuppressWarnings("unchecked")
 		COWSet<E> cloneObj = (COWSet<E>) super.clone();
+		// both COWSets now share underSet: track their GC
+		this.tracker = underSet.track(this, this.tracker);
+		cloneObj.tracker = underSet.track(cloneObj, null);
 		return cloneObj;
 	    }
 	    catch(CloneNotSupportedException cex) {
@@ -257,9 +283,7 @@ class COWSetFactory<T> extends SetFactory<T> {
 	    SetWithCount<E> oldUnderSet = this.underSet;
 	    this.underSet = new SetWithCount<E>(underSetFact.create(oldUnderSet.set));
 	    // do the decrement HERE, not before the real detach, to maintain I2
-	    synchronized(oldUnderSet) {
-		oldUnderSet.countOthers--;
-	    }
+	    oldUnderSet.release(tracker);
 	}
 
 	public String toString() {
@@ -270,22 +294,6 @@ class COWSetFactory<T> extends SetFactory<T> {
 		"(shared: " + (underSet.countOthers+1) + ") ; " +
 		underSet.set.toString();
 	}
-
-	protected void finalize() {
-	    try {
-		try {
-		    synchronized(underSet) {
-			underSet.countOthers--;
-		    }
-		}
-		finally {
-		    super.finalize();
-		}
-	    }
-	    catch(Throwable tex) {
-		throw new Error(tex);
-	    }
-	}
     }
     
 }
@@ -0,0 +1,114 @@
+// COWShared.java, created Sat Oct 17 16:42:19 2026
+// Copyright (C) 2005 Alexandru Salcianu <salcianu@alum.mit.edu>
+// Licensed under the Modified BSD Licence; see COPYING for details.
+package jpaul.DataStructs;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+
+/**
+ * <code>COWShared</code> is the sharing count of a representation
+ * shared by several copy-on-write (COW) objects (see {@link
+ * COWSetFactory} and {@link COWRelationFactory}).
+ * <code>countOthers</code> is (at least) the number of reachable COW
+ * objects that share the representation, minus one.
+ *
+ * <p>The count is incremented when a COW object is cloned and
+ * decremented when a COW object detaches from the representation
+ * (to mutate a private copy) or is garbage collected.  Instead of a
+ * finalizer on each COW object, GC deaths are detected with phantom
+ * references: a {@link Tracker} is created only for the COW objects
+ * that actually share their representation (i.e., only on
+ * <code>clone()</code>), and the trackers of the dead objects are
+ * processed by {@link #processDeaths()} when a COW object is about
+ * to be cloned or copied.  Unlike finalizable objects, dead COW
+ * objects are reclaimed in a single GC cycle, and there is no
+ * finalizer thread to keep up with.
+ *
+ * @version $Id$ */
+abstract class COWShared {
+
+    /** Sharing count: the number of other COW objects that may
+	share the representation. */
+    int countOthers = 0;
+
+    // Doubly-linked list of the trackers of the COW objects that
+    // share this representation.  This list keeps the trackers
+    // reachable until the GC enqueues them.
+    private Tracker trackers = null;
+
+
+    /** Phantom reference to a COW object that shares a
+	representation. */
+    static final class Tracker extends PhantomReference<Object> {
+	private Tracker(Object cowObj) {
+	    super(cowObj, QUEUE);
+	}
+	// representation shared by the COW object (null if none)
+	private COWShared shared;
+	private Tracker prev, next;
+    }
+
+    private static final ReferenceQueue<Object> QUEUE = new ReferenceQueue<Object>();
+
+
+    /** Makes sure the COW object <code>cowObj</code>, whose tracker
+	is <code>tracker</code> (possibly <code>null</code>), is
+	tracked as a sharer of <code>this</code> representation.
+	Returns the (possibly new) tracker of <code>cowObj</code>. */
+    final synchronized Tracker track(Object cowObj, Tracker tracker) {
+	if(tracker == null)
+	    tracker = new Tracker(cowObj);
+	if(tracker.shared == this) return tracker;
+	assert tracker.shared == null : "COW object tracked by two representations";
+	tracker.shared = this;
+	tracker.prev = null;
+	tracker.next = trackers;
+	if(trackers != null) trackers.prev = tracker;
+	trackers = tracker;
+	return tracker;
+    }
+
+
+    /** Stops sharing <code>this</code> representation: called by a
+	COW object (whose tracker is <code>tracker</code>, possibly
+	<code>null</code>) that has just detached from
+	<code>this</code> representation. */
+    final synchronized void release(Tracker tracker) {
+	if((tracker != null) && (tracker.shared == this))
+	    unlink(tracker);
+	countOthers--;
+    }
+
+
+    private void unlink(Tracker tracker) {
+	if(tracker.prev != null)
+	    tracker.prev.next = tracker.next;
+	else
+	    trackers = tracker.next;
+	if(tracker.next != null)
+	    tracker.next.prev = tracker.prev;
+	tracker.shared = null;
+	tracker.prev = tracker.next = null;
+    }
+
+
+    /** Decrements the sharing counts of the representations shared
+	by COW objects that were garbage collected.  Cheap if no such
+	object exists. */
+    static void processDeaths() {
+	Tracker tracker;
+	while((tracker = (Tracker) QUEUE.poll()) != null) {
+	    COWShared shared = tracker.shared;
+	    if(shared == null) continue;
+	    synchronized(shared) {
+		// a detach may have sneaked in between
+		if(tracker.shared == shared) {
+		    shared.unlink(tracker);
+		    shared.countOthers--;
+		}
+	    }
+	}
+    }
+
+}
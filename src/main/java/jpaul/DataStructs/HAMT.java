@@ -0,0 +1,406 @@
+// HAMT.java, created Sat Oct 17 13:20:48 2026
+// Copyright (C) 2005 Alexandru Salcianu <salcianu@alum.mit.edu>
+// Licensed under the Modified BSD Licence; see COPYING for details.
+package jpaul.DataStructs;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * <code>HAMT</code> contains the immutable hash array mapped trie
+ * used in the representation of {@link PersistentSet}s and {@link
+ * PersistentMap}s.  A trie node is never mutated once built: an
+ * update copies only the nodes on the path from the root to the
+ * modified entry (at most 7 levels, 32-way branching), and shares
+ * all the other nodes with the previous version.  Hence, a one
+ * element update costs O(log n) time and space, and a snapshot of
+ * the trie is just a pointer to its root.
+ *
+ * <p>Each node has a bitmap of inline entries (key and value stored
+ * directly in the node) and a bitmap of sub-nodes (this is the CHAMP
+ * variant of HAMTs).  Removal keeps the trie canonical (a sub-node
+ * never contains a single entry), so the shape of the trie depends
+ * only on its content.  Keys whose 32-bit hashes are identical end up
+ * in a collision node, at the bottom of the trie.
+ *
+ * <p><code>null</code> keys are not allowed at this level; the
+ * persistent collections replace them with {@link #NULL_KEY}.
+ *
+ * @version $Id$ */
+final class HAMT {
+
+    /** Make sure nobody can instantiate this class. */
+    private HAMT() {/* no instances */ }
+
+    /** Returned by {@link Node#find} for absent keys. */
+    static final Object NOT_FOUND = new Object();
+
+    /** Stands for the <code>null</code> key. */
+    static final Object NULL_KEY = new Object();
+
+    static Object maskNull(Object key) {
+	return (key == null) ? NULL_KEY : key;
+    }
+
+    static Object unmaskNull(Object key) {
+	return (key == NULL_KEY) ? null : key;
+    }
+
+    static int hash(Object key) {
+	int h = key.hashCode();
+	return h ^ (h >>> 16);
+    }
+
+    private static final int BITS = 5;
+    // first shift after the bits of the hash are exhausted
+    private static final int MAX_SHIFT = 32;
+
+    private static int bit(int hash, int shift) {
+	return 1 << ((hash >>> shift) & 31);
+    }
+
+    private static boolean eq(Object k1, Object k2) {
+	return (k1 == k2) || k1.equals(k2);
+    }
+
+
+    /** Records the effect of an update on a trie. */
+    static final class Change {
+	/** True iff a key was added or removed. */
+	boolean sizeChanged;
+	/** Old value of the updated key (<code>null</code> if
+	    none). */
+	Object oldValue;
+    }
+
+
+    /** Empty trie. */
+    static final Node EMPTY = new BitmapNode(0, 0, new Object[0]);
+
+
+    /** Immutable node of the trie. */
+    static abstract class Node {
+	/** Returns the value <code>key</code> is mapped to, or {@link
+	    #NOT_FOUND}. */
+	abstract Object find(Object key, int hash, int shift);
+
+	/** Returns a trie that maps <code>key</code> to
+	    <code>value</code> and is otherwise identical to
+	    <code>this</code> one (which is returned if nothing
+	    changes). */
+	abstract Node put(Object key, Object value, int hash, int shift, Change change);
+
+	/** Returns a trie that does not map <code>key</code> and is
+	    otherwise identical to <code>this</code> one (which is
+	    returned if nothing changes). */
+	abstract Node remove(Object key, int hash, int shift, Change change);
+
+	// inline entries, and sub-nodes
+	abstract int nbEntries();
+	abstract Object keyAt(int i);
+	abstract Object valueAt(int i);
+	abstract int nbNodes();
+	abstract Node nodeAt(int i);
+
+	final boolean isSingleEntry() {
+	    return (nbEntries() == 1) && (nbNodes() == 0);
+	}
+    }
+
+
+    // content: the inline entries (key, value, key, value, ...) in
+    // increasing bit order, followed by the sub-nodes in decreasing
+    // bit order
+    private static final class BitmapNode extends Node {
+	BitmapNode(int dataMap, int nodeMap, Object[] content) {
+	    this.dataMap = dataMap;
+	    this.nodeMap = nodeMap;
+	    this.content = content;
+	}
+
+	final int dataMap;
+	final int nodeMap;
+	final Object[] content;
+
+	private int dataIndex(int bit) {
+	    return Integer.bitCount(dataMap & (bit - 1));
+	}
+
+	private int nodePos(int bit) {
+	    return content.length - 1 - Integer.bitCount(nodeMap & (bit - 1));
+	}
+
+	Object find(Object key, int hash, int shift) {
+	    int bit = bit(hash, shift);
+	    if((dataMap & bit) != 0) {
+		int i = 2 * dataIndex(bit);
+		return eq(key, content[i]) ? content[i+1] : NOT_FOUND;
+	    }
+	    if((nodeMap & bit) != 0)
+		return ((Node) content[nodePos(bit)]).find(key, hash, shift + BITS);
+	    return NOT_FOUND;
+	}
+
+	Node put(Object key, Object value, int hash, int shift, Change change) {
+	    int bit = bit(hash, shift);
+	    if((dataMap & bit) != 0) {
+		int i = 2 * dataIndex(bit);
+		Object k0 = content[i];
+		if(eq(key, k0)) {
+		    Object v0 = content[i+1];
+		    change.oldValue = v0;
+		    if(v0 == value) return this;
+		    Object[] newContent = content.clone();
+		    newContent[i+1] = value;
+		    return new BitmapNode(dataMap, nodeMap, newContent);
+		}
+		// push both entries one level down
+		change.sizeChanged = true;
+		Node sub = merge(k0, content[i+1], hash(k0), key, value, hash, shift + BITS);
+		return entryToNode(bit, i, sub);
+	    }
+	    if((nodeMap & bit) != 0) {
+		int pos = nodePos(bit);
+		Node sub = (Node) content[pos];
+		Node newSub = sub.put(key, value, hash, shift + BITS, change);
+		if(newSub == sub) return this;
+		Object[] newContent = content.clone();
+		newContent[pos] = newSub;
+		return new BitmapNode(dataMap, nodeMap, newContent);
+	    }
+	    // new inline entry
+	    change.sizeChanged = true;
+	    int i = 2 * dataIndex(bit);
+	    Object[] newContent = new Object[content.length + 2];
+	    System.arraycopy(content, 0, newContent, 0, i);
+	    newContent[i]   = key;
+	    newContent[i+1] = value;
+	    System.arraycopy(content, i, newContent, i + 2, content.length - i);
+	    return new BitmapNode(dataMap | bit, nodeMap, newContent);
+	}
+
+	// replaces the inline entry from content[i], content[i+1] with
+	// the sub-node sub
+	private Node entryToNode(int bit, int i, Node sub) {
+	    Object[] newContent = new Object[content.length - 1];
+	    // position of sub in newContent
+	    int pos = newContent.length - 1 - Integer.bitCount(nodeMap & (bit - 1));
+	    System.arraycopy(content, 0, newContent, 0, i);
+	    System.arraycopy(content, i + 2, newContent, i, pos - i);
+	    newContent[pos] = sub;
+	    System.arraycopy(content, pos + 2, newContent, pos + 1, newContent.length - pos - 1);
+	    return new BitmapNode(dataMap ^ bit, nodeMap | bit, newContent);
+	}
+
+	// replaces the sub-node for bit with the entry key, value
+	private Node nodeToEntry(int bit, Object key, Object value) {
+	    int oldPos = nodePos(bit);
+	    int i = 2 * dataIndex(bit);
+	    Object[] newContent = new Object[content.length + 1];
+	    System.arraycopy(content, 0, newContent, 0, i);
+	    newContent[i]   = key;
+	    newContent[i+1] = value;
+	    System.arraycopy(content, i, newContent, i + 2, oldPos - i);
+	    System.arraycopy(content, oldPos + 1, newContent, oldPos + 2, content.length - oldPos - 1);
+	    return new BitmapNode(dataMap | bit, nodeMap ^ bit, newContent);
+	}
+
+	Node remove(Object key, int hash, int shift, Change change) {
+	    int bit = bit(hash, shift);
+	    if((dataMap & bit) != 0) {
+		int i = 2 * dataIndex(bit);
+		if(!eq(key, content[i])) return this;
+		change.sizeChanged = true;
+		change.oldValue = content[i+1];
+		Object[] newContent = new Object[content.length - 2];
+		System.arraycopy(content, 0, newContent, 0, i);
+		System.arraycopy(content, i + 2, newContent, i, content.length - i - 2);
+		return new BitmapNode(dataMap ^ bit, nodeMap, newContent);
+	    }
+	    if((nodeMap & bit) != 0) {
+		int pos = nodePos(bit);
+		Node sub = (Node) content[pos];
+		Node newSub = sub.remove(key, hash, shift + BITS, change);
+		if(newSub == sub) return this;
+		if(newSub.isSingleEntry()) {
+		    // keep the trie canonical: a node with a single
+		    // entry is inlined into its parent (the root never
+		    // gets replaced by it: the position of its entry
+		    // depends on the level)
+		    if((shift > 0) && (dataMap == 0) && (nodeMap == bit))
+			return newSub;
+		    return nodeToEntry(bit, newSub.keyAt(0), newSub.valueAt(0));
+		}
+		Object[] newContent = content.clone();
+		newContent[pos] = newSub;
+		return new BitmapNode(dataMap, nodeMap, newContent);
+	    }
+	    return this;
+	}
+
+	int nbEntries() { return Integer.bitCount(dataMap); }
+	Object keyAt(int i) { return content[2*i]; }
+	Object valueAt(int i) { return content[2*i + 1]; }
+	int nbNodes() { return Integer.bitCount(nodeMap); }
+	Node nodeAt(int i) { return (Node) content[content.length - 1 - i]; }
+    }
+
+
+    // builds a trie with the two entries k0 -> v0 and k1 -> v1
+    private static Node merge(Object k0, Object v0, int h0,
+			      Object k1, Object v1, int h1, int shift) {
+	if(shift >= MAX_SHIFT)
+	    return new CollisionNode(h0, new Object[]{k0, v0, k1, v1});
+	int b0 = bit(h0, shift);
+	int b1 = bit(h1, shift);
+	if(b0 == b1)
+	    return new BitmapNode(0, b0, new Object[]{merge(k0, v0, h0, k1, v1, h1, shift + BITS)});
+	// inline entries are in increasing bit order (b - 1 is a
+	// non-negative mask of the lower bits, hence a signed compare
+	// works even for the sign bit)
+	Object[] content = (b0 - 1 < b1 - 1) ?
+	    new Object[]{k0, v0, k1, v1} : new Object[]{k1, v1, k0, v0};
+	return new BitmapNode(b0 | b1, 0, content);
+    }
+
+
+    // Keys with identical hashes.  Always has at least two entries.
+    private static final class CollisionNode extends Node {
+	CollisionNode(int hash, Object[] kvs) {
+	    this.hash = hash;
+	    this.kvs = kvs;
+	}
+
+	final int hash;
+	// key, value, key, value, ...
+	final Object[] kvs;
+
+	private int indexOf(Object key) {
+	    for(int i = 0; i < kvs.length; i += 2) {
+		if(eq(key, kvs[i])) return i;
+	    }
+	    return -1;
+	}
+
+	Object find(Object key, int hash, int shift) {
+	    int i = indexOf(key);
+	    return (i < 0) ? NOT_FOUND : kvs[i+1];
+	}
+
+	Node put(Object key, Object value, int hash, int shift, Change change) {
+	    int i = indexOf(key);
+	    if(i >= 0) {
+		change.oldValue = kvs[i+1];
+		if(kvs[i+1] == value) return this;
+		Object[] newKvs = kvs.clone();
+		newKvs[i+1] = value;
+		return new CollisionNode(hash, newKvs);
+	    }
+	    change.sizeChanged = true;
+	    Object[] newKvs = new Object[kvs.length + 2];
+	    System.arraycopy(kvs, 0, newKvs, 0, kvs.length);
+	    newKvs[kvs.length]     = key;
+	    newKvs[kvs.length + 1] = value;
+	    return new CollisionNode(hash, newKvs);
+	}
+
+	Node remove(Object key, int hash, int shift, Change change) {
+	    int i = indexOf(key);
+	    if(i < 0) return this;
+	    change.sizeChanged = true;
+	    change.oldValue = kvs[i+1];
+	    if(kvs.length == 4) {
+		// single entry left: the parent inlines it, so the
+		// bitmap does not matter
+		int j = 2 - i;
+		return new BitmapNode(1, 0, new Object[]{kvs[j], kvs[j+1]});
+	    }
+	    Object[] newKvs = new Object[kvs.length - 2];
+	    System.arraycopy(kvs, 0, newKvs, 0, i);
+	    System.arraycopy(kvs, i + 2, newKvs, i, kvs.length - i - 2);
+	    return new CollisionNode(hash, newKvs);
+	}
+
+	int nbEntries() { return kvs.length / 2; }
+	Object keyAt(int i) { return kvs[2*i]; }
+	Object valueAt(int i) { return kvs[2*i + 1]; }
+	int nbNodes() { return 0; }
+	Node nodeAt(int i) { throw new IndexOutOfBoundsException(); }
+    }
+
+
+    /** Iterator over the entries of a trie: in each node, first the
+        inline entries, next the sub-nodes (depth first).  Subclasses
+        decide what to return for each entry.  As tries are
+        immutable, the iteration is not affected by updates of the
+        collection that produced the trie. */
+    static abstract class EntryIterator<T> implements Iterator<T> {
+	EntryIterator(Node root) {
+	    push(root);
+	    advance();
+	}
+
+	// at most 7 bitmap levels + 1 collision level
+	private final Node[] nodes = new Node[MAX_SHIFT / BITS + 2];
+	private final int[] entryIdx = new int[nodes.length];
+	private final int[] nodeIdx = new int[nodes.length];
+	private int depth = -1;
+
+	// current entry
+	private Node node;
+	private int idx;
+
+	private void push(Node n) {
+	    depth++;
+	    nodes[depth] = n;
+	    entryIdx[depth] = 0;
+	    nodeIdx[depth] = 0;
+	}
+
+	// moves to the next entry; node == null at the end
+	private void advance() {
+	    while(depth >= 0) {
+		Node n = nodes[depth];
+		if(entryIdx[depth] < n.nbEntries()) {
+		    node = n;
+		    idx = entryIdx[depth]++;
+		    return;
+		}
+		if(nodeIdx[depth] < n.nbNodes()) {
+		    push(n.nodeAt(nodeIdx[depth]++));
+		    continue;
+		}
+		nodes[depth--] = null;
+	    }
+	    node = null;
+	}
+
+	public boolean hasNext() {
+	    return node != null;
+	}
+
+	public T next() {
+	    if(node == null)
+		throw new NoSuchElementException();
+	    Object key = node.keyAt(idx);
+	    Object value = node.valueAt(idx);
+	    advance();
+	    lastKey = key;
+	    return entry(unmaskNull(key), value);
+	}
+
+	/** Masked key of the last entry returned by
+	    <code>next()</code>; useful for <code>remove()</code>. */
+	protected Object lastKey = NOT_FOUND;
+
+	/** Returns the iteration element for the entry
+	    <code>key -&gt; value</code>; <code>key</code> is already
+	    unmasked. */
+	protected abstract T entry(Object key, Object value);
+
+	public void remove() {
+	    throw new UnsupportedOperationException();
+	}
+    }
+
+}
@@ -0,0 +1,79 @@
+// IntFacts.java, created Sat Oct 17 12:08:14 2026
+// Copyright (C) 2005 Alexandru Salcianu <salcianu@alum.mit.edu>
+// Licensed under the Modified BSD Licence; see COPYING for details.
+package jpaul.DataStructs;
+
+/**
+ * <code>IntFacts</code> contains common factories for the primitive
+ * <code>int</code> data structures ({@link IntSet}, {@link
+ * IntRelation}).  It is the counterpart of {@link SetFacts} and
+ * {@link RelFacts}: for each kind of factory, we have a corresponding
+ * static method.
+ *
+ * @version $Id$ */
+public final class IntFacts {
+
+    /** Make sure nobody can instantiate this class. */
+    private IntFacts() {/* no instances */ }
+
+    /** Returns a set factory that generates {@link OpenHashIntSet}s.
+	Constant time operations, for a few bytes per element.  A good
+	default choice. */
+    public static IntSetFactory hashSet() {
+	return new HashSetFactory();
+    }
+
+    private static class HashSetFactory extends IntSetFactory {
+	private static final long serialVersionUID = 4523918740125532871L;
+	public IntSet create() {
+	    return new OpenHashIntSet();
+	}
+	public IntSet create(IntSet set) {
+	    if(set instanceof OpenHashIntSet)
+		return ((OpenHashIntSet) set).clone();
+	    return new OpenHashIntSet(set);
+	}
+    }
+
+
+    /** Returns a set factory that generates {@link
+	SortedIntArraySet}s.  These are the most compact sets, but
+	their <code>add</code> and <code>remove</code> operations are
+	linear in the size of the set.  Good for many small sets, or
+	for sets that are mostly read. */
+    public static IntSetFactory sortedArraySet() {
+	return new SortedArraySetFactory();
+    }
+
+    private static class SortedArraySetFactory extends IntSetFactory {
+	private static final long serialVersionUID = 7706612450387154419L;
+	public IntSet create() {
+	    return new SortedIntArraySet();
+	}
+	public IntSet create(IntSet set) {
+	    return new SortedIntArraySet(set);
+	}
+    }
+
+
+    /** Returns a relation factory that generates {@link
+	IntMapSetRelation}s whose sets of values are {@link
+	OpenHashIntSet}s. */
+    public static IntRelationFactory mapSet() {
+	return mapSet(hashSet());
+    }
+
+
+    /** Returns a relation factory that generates {@link
+	IntMapSetRelation}s whose sets of values are generated by
+	<code>setFact</code>. */
+    public static IntRelationFactory mapSet(final IntSetFactory setFact) {
+	return new IntRelationFactory() {
+	    private static final long serialVersionUID = 1286519740063317095L;
+	    public IntRelation create() {
+		return new IntMapSetRelation(setFact);
+	    }
+	};
+    }
+
+}
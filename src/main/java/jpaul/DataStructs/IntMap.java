@@ -0,0 +1,367 @@
+// IntMap.java, created Sat Oct 17 10:26:35 2026
+// Copyright (C) 2005 Alexandru Salcianu <salcianu@alum.mit.edu>
+// Licensed under the Modified BSD Licence; see COPYING for details.
+package jpaul.DataStructs;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * <code>IntMap</code> is a map from primitive <code>int</code> keys
+ * to objects.  It is implemented by open addressing (see {@link
+ * OpenHashIntSet}): the keys are stored in an <code>int</code> array
+ * and the values in a parallel <code>Object</code> array; there are
+ * no entry objects and no boxed keys.  All operations have O(1)
+ * expected complexity.
+ *
+ * <p>Similar to <code>HashMap</code>, <code>get</code> returns
+ * <code>null</code> for keys that are not mapped.  The iteration
+ * order (for the keys, the values, and the entries) is
+ * deterministic: it depends only on the sequence of operations
+ * performed on the map.  An <code>IntMap</code> is thread-UNsafe.
+ *
+ * @version $Id$ */
+public class IntMap<V> implements Cloneable, Serializable {
+
+    private static final long serialVersionUID = 4170833602186913346L;
+
+    /** <code>IntMap.EntryVisitor</code> is a wrapper for a function
+	that is called on a map entry of the form
+	<code>&lt;key,value&gt;</code>.  Used by the method {@link
+	IntMap#forAllEntries(jpaul.DataStructs.IntMap.EntryVisitor)}. */
+    public static interface EntryVisitor<Value> {
+	/** Visits a <code>&lt;key,value&gt;</code> entry of a map.
+	    May throw an <code>InterruptTraversalException</code> in
+	    order to terminate the enclosing traversal. */
+	public void visit(int key, Value value) throws InterruptTraversalException;
+    }
+
+    /** Creates an empty <code>IntMap</code> with a small default
+        capacity. */
+    public IntMap() {
+	this(3);
+    }
+
+    /** Creates an empty <code>IntMap</code> that can store
+        <code>expectedSize</code> keys without rehashing. */
+    public IntMap(int expectedSize) {
+	int n = 4;
+	while(n - (n >>> 2) < expectedSize) n <<= 1;
+	allocate(n);
+    }
+
+    // slots whose key is FREE are empty; the mapping for the key FREE
+    // itself is stored in the fields containsFree and freeValue.
+    private static final int FREE = 0;
+
+    private int[] keys;
+    private Object[] vals;
+    private int mask;
+    // number of keys stored in keys (excludes FREE)
+    private int nbUsed;
+    // maximal value of nbUsed before rehashing
+    private int maxUsed;
+    private boolean containsFree;
+    private V freeValue;
+
+    private void allocate(int n) {
+	keys = new int[n];
+	vals = new Object[n];
+	mask = n - 1;
+	maxUsed = n - (n >>> 2);
+    }
+
+    // position of key in keys, or -1 if key is not there
+    private int find(int key) {
+	int pos = OpenHashIntSet.mix(key) & mask;
+	for(int k; (k = keys[pos]) != FREE; pos = (pos + 1) & mask) {
+	    if(k == key) return pos;
+	}
+	return -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V val(int pos) {
+	return (V) vals[pos];
+    }
+
+
+    /** Returns the value <code>key</code> is mapped to, or
+        <code>null</code> if <code>key</code> is not mapped. */
+    public V get(int key) {
+	if(key == FREE) return containsFree ? freeValue : null;
+	int pos = find(key);
+	return (pos < 0) ? null : val(pos);
+    }
+
+
+    /** Checks whether <code>this</code> map contains a mapping for
+        <code>key</code>. */
+    public boolean containsKey(int key) {
+	if(key == FREE) return containsFree;
+	return find(key) >= 0;
+    }
+
+
+    /** Maps <code>key</code> to <code>value</code>.  Returns the
+        previous value <code>key</code> was mapped to (or
+        <code>null</code>). */
+    public V put(int key, V value) {
+	if(key == FREE) {
+	    V old = freeValue;
+	    containsFree = true;
+	    freeValue = value;
+	    return old;
+	}
+	int pos = OpenHashIntSet.mix(key) & mask;
+	for(int k; (k = keys[pos]) != FREE; pos = (pos + 1) & mask) {
+	    if(k == key) {
+		V old = val(pos);
+		vals[pos] = value;
+		return old;
+	    }
+	}
+	keys[pos] = key;
+	vals[pos] = value;
+	if(++nbUsed > maxUsed) rehash(keys.length << 1);
+	return null;
+    }
+
+
+    /** Removes the mapping for <code>key</code>.  Returns the value
+        <code>key</code> was mapped to (or <code>null</code>). */
+    public V remove(int key) {
+	if(key == FREE) {
+	    V old = freeValue;
+	    containsFree = false;
+	    freeValue = null;
+	    return old;
+	}
+	int pos = find(key);
+	if(pos < 0) return null;
+	V old = val(pos);
+	shiftBack(pos);
+	nbUsed--;
+	return old;
+    }
+
+
+    // same as OpenHashIntSet.shiftBack, moving the values along
+    private void shiftBack(int pos) {
+	while(true) {
+	    int last = pos;
+	    int k;
+	    while(true) {
+		pos = (pos + 1) & mask;
+		if((k = keys[pos]) == FREE) {
+		    keys[last] = FREE;
+		    vals[last] = null;
+		    return;
+		}
+		int ideal = OpenHashIntSet.mix(k) & mask;
+		if(last <= pos ? (last >= ideal || ideal > pos) : (last >= ideal && ideal > pos))
+		    break;
+	    }
+	    keys[last] = k;
+	    vals[last] = vals[pos];
+	}
+    }
+
+
+    private void rehash(int n) {
+	int[] oldKeys = keys;
+	Object[] oldVals = vals;
+	allocate(n);
+	for(int i = 0; i < oldKeys.length; i++) {
+	    int k = oldKeys[i];
+	    if(k == FREE) continue;
+	    int pos = OpenHashIntSet.mix(k) & mask;
+	    while(keys[pos] != FREE) pos = (pos + 1) & mask;
+	    keys[pos] = k;
+	    vals[pos] = oldVals[i];
+	}
+    }
+
+
+    /** Returns the number of keys mapped by <code>this</code> map. */
+    public int size() {
+	return containsFree ? nbUsed + 1 : nbUsed;
+    }
+
+    /** Checks whether <code>this</code> map is empty. */
+    public boolean isEmpty() {
+	return size() == 0;
+    }
+
+    /** Removes all mappings from <code>this</code> map. */
+    public void clear() {
+	if(nbUsed > 0) {
+	    java.util.Arrays.fill(keys, FREE);
+	    java.util.Arrays.fill(vals, null);
+	}
+	nbUsed = 0;
+	containsFree = false;
+	freeValue = null;
+    }
+
+
+    // Iterates over the used slots; keys.length stands for the key
+    // FREE.  Subclasses decide what to return for each slot.
+    private abstract class SlotIterator {
+	private int pos = advance(0);
+	private int advance(int i) {
+	    while(i < keys.length && keys[i] == FREE) i++;
+	    if(i == keys.length && !containsFree) i++;
+	    return i;
+	}
+	public boolean hasNext() {
+	    return pos <= keys.length;
+	}
+	int nextSlot() {
+	    int slot = pos;
+	    if(slot > keys.length)
+		throw new NoSuchElementException();
+	    pos = (slot < keys.length) ? advance(slot + 1) : slot + 1;
+	    return slot;
+	}
+	int key(int slot) {
+	    return (slot < keys.length) ? keys[slot] : FREE;
+	}
+	V value(int slot) {
+	    return (slot < keys.length) ? val(slot) : freeValue;
+	}
+    }
+
+
+    /** Returns an IMMUTABLE view of the keys of <code>this</code>
+        map.  Changes in the map show up in this view. */
+    public IntSet keys() {
+	if(keySet == null)
+	    keySet = new KeySet();
+	return keySet;
+    }
+
+    // created on demand by keys()
+    private transient IntSet keySet;
+
+    private class KeySet extends IntSet {
+	private static final long serialVersionUID = 8735170258466901311L;
+	public boolean add(int elem) {
+	    throw new UnsupportedOperationException("immutable view");
+	}
+	public boolean remove(int elem) {
+	    throw new UnsupportedOperationException("immutable view");
+	}
+	public void clear() {
+	    throw new UnsupportedOperationException("immutable view");
+	}
+	public boolean contains(int elem) { return containsKey(elem); }
+	public int size() { return IntMap.this.size(); }
+	public IntIterator iterator() {
+	    class KeyIterator extends SlotIterator implements IntIterator {
+		public int next() { return key(nextSlot()); }
+	    }
+	    return new KeyIterator();
+	}
+    }
+
+
+    /** Returns an IMMUTABLE view of the values of <code>this</code>
+        map.  The view may contain the same value several times, if
+        it is associated with several keys. */
+    public Iterable<V> values() {
+	return new Iterable<V>() {
+	    public Iterator<V> iterator() {
+		class ValueIterator extends SlotIterator implements Iterator<V> {
+		    public V next() { return value(nextSlot()); }
+		    public void remove() {
+			throw new UnsupportedOperationException("immutable view");
+		    }
+		}
+		return new ValueIterator();
+	    }
+	};
+    }
+
+
+    /** Visits all the entries <code>&lt;key,value&gt;</code> of
+	<code>this</code> map and calls <code>visitor.visit</code> on
+	each of them.  The traversal can be stopped at any point by
+	throwing an {@link InterruptTraversalException} from the
+	visitor; the exception is caught internally. */
+    public void forAllEntries(EntryVisitor<V> visitor) {
+	try {
+	    for(int i = 0; i < keys.length; i++) {
+		if(keys[i] != FREE)
+		    visitor.visit(keys[i], val(i));
+	    }
+	    if(containsFree)
+		visitor.visit(FREE, freeValue);
+	}
+	catch(InterruptTraversalException itex) {
+	    // Do nothing; InterruptTraversalException is only a way
+	    // to terminate the traversal prematurely.
+	}
+    }
+
+
+    public boolean equals(Object o) {
+	if(o == this) return true;
+	if(!(o instanceof IntMap/*<V>*/)) return false;
+	IntMap<?> m2 = (IntMap<?>) o;
+	if(m2.size() != this.size()) return false;
+	for(IntSet.IntIterator it = keys().iterator(); it.hasNext(); ) {
+	    int key = it.next();
+	    if(!m2.containsKey(key)) return false;
+	    Object v1 = this.get(key);
+	    Object v2 = m2.get(key);
+	    if(v1 == null ? v2 != null : !v1.equals(v2)) return false;
+	}
+	return true;
+    }
+
+    /** Same hash code as a <code>Map&lt;Integer,V&gt;</code> with
+        the same mappings. */
+    public int hashCode() {
+	int h = 0;
+	for(int i = 0; i < keys.length; i++) {
+	    if(keys[i] != FREE)
+		h += keys[i] ^ (vals[i] == null ? 0 : vals[i].hashCode());
+	}
+	if(containsFree)
+	    h += FREE ^ (freeValue == null ? 0 : freeValue.hashCode());
+	return h;
+    }
+
+    /** Returns a shallow copy of <code>this</code> map: the values
+        are not cloned. */
+    public IntMap<V> clone() {
+	try {
+	    @SuppressWarnings("unchecked")
+	    IntMap<V> res = (IntMap<V>) super.clone();
+	    res.keys = keys.clone();
+	    res.vals = vals.clone();
+	    // the clone needs its own view of its keys
+	    res.keySet = null;
+	    return res;
+	}
+	catch(CloneNotSupportedException e) {
+	    // should not happen ...
+	    throw new Error(e);
+	}
+    }
+
+    public String toString() {
+	int[] sortedKeys = keys().toArray();
+	java.util.Arrays.sort(sortedKeys);
+	StringBuffer buffer = new StringBuffer("{");
+	for(int i = 0; i < sortedKeys.length; i++) {
+	    if(i > 0) buffer.append(", ");
+	    buffer.append(sortedKeys[i]).append("=").append(get(sortedKeys[i]));
+	}
+	buffer.append("}");
+	return buffer.toString();
+    }
+
+}
@@ -0,0 +1,124 @@
+// IntMapSetRelation.java, created Sat Oct 17 11:27:46 2026
+// Copyright (C) 2005 Alexandru Salcianu <salcianu@alum.mit.edu>
+// Licensed under the Modified BSD Licence; see COPYING for details.
+package jpaul.DataStructs;
+
+/**
+ * <code>IntMapSetRelation</code> is an implementation of
+ * <code>IntRelation</code> based on an {@link IntMap} from keys to
+ * {@link IntSet}s of values.  It is the primitive counterpart of
+ * {@link MapSetRelation}: neither keys nor values are boxed.
+ *
+ * @version $Id$ */
+public class IntMapSetRelation extends IntRelation {
+
+    private static final long serialVersionUID = 6619027383341758210L;
+
+    /** Constructs an <code>IntRelation</code> whose sets of values
+	are {@link OpenHashIntSet}s. */
+    public IntMapSetRelation() {
+	this(IntFacts.hashSet());
+    }
+
+    /** Constructs an <code>IntRelation</code> whose sets of values
+	are created by <code>setFact</code>.
+
+	@see IntFacts */
+    public IntMapSetRelation(IntSetFactory setFact) {
+	this.setFact = setFact;
+	this.map = new IntMap<IntSet>();
+    }
+
+    private final IntSetFactory setFact;
+
+    // invariant: map never maps a key to an empty set
+    private IntMap<IntSet> map;
+
+
+    public boolean add(int key, int value) {
+	IntSet set = map.get(key);
+	if(set == null) {
+	    set = setFact.create();
+	    map.put(key, set);
+	}
+	return set.add(value);
+    }
+
+
+    public boolean addAll(int key, IntSet values) {
+	if(values.isEmpty()) return false;
+	IntSet set = map.get(key);
+	if(set == null) {
+	    map.put(key, setFact.create(values));
+	    return true;
+	}
+	return set.addAll(values);
+    }
+
+
+    public void clear() {
+	map.clear();
+    }
+
+
+    public boolean remove(int key, int value) {
+	IntSet set = map.get(key);
+	if(set == null) return false;
+	boolean changed = set.remove(value);
+	if(set.isEmpty())
+	    map.remove(key);
+	return changed;
+    }
+
+
+    public boolean removeAll(int key, IntSet values) {
+	IntSet set = map.get(key);
+	if(set == null) return false;
+	boolean changed = set.removeAll(values);
+	if(set.isEmpty())
+	    map.remove(key);
+	return changed;
+    }
+
+
+    public boolean removeKey(int key) {
+	// key was mapped to at least one value iff map maps key to a
+	// non-null (non-empty) set
+	return (map.remove(key) != null);
+    }
+
+
+    public boolean containsKey(int key) {
+	return map.containsKey(key);
+    }
+
+
+    public boolean isEmpty() {
+	return map.isEmpty();
+    }
+
+
+    protected final IntSet _getValues(int key) {
+	return map.get(key);
+    }
+
+
+    public IntSet keys() {
+	return map.keys();
+    }
+
+
+    /** Creates a new, independent relation (independent = the
+	operations on the new relation won't affect the old one). */
+    public IntMapSetRelation clone() {
+	final IntMapSetRelation newRel = (IntMapSetRelation) super.clone();
+	newRel.map = new IntMap<IntSet>(map.size());
+	map.forAllEntries(new IntMap.EntryVisitor<IntSet>() {
+	    public void visit(int key, IntSet values) {
+		newRel.map.put(key, setFact.create(values));
+	    }
+	});
+	return newRel;
+    }
+
+}
@@ -0,0 +1,234 @@
+// IntRelation.java, created Sat Oct 17 11:03:20 2026
+// Copyright (C) 2005 Alexandru Salcianu <salcianu@alum.mit.edu>
+// Licensed under the Modified BSD Licence; see COPYING for details.
+package jpaul.DataStructs;
+
+import java.io.Serializable;
+
+/**
+ * <code>IntRelation</code> is a binary relation between primitive
+ * <code>int</code>s, accepting one to many and many to one mappings.
+ * It is the primitive counterpart of a
+ * <code>Relation&lt;Integer,Integer&gt;</code>, and it offers
+ * essentially the same operations.  The only implementation is
+ * currently {@link IntMapSetRelation}; relation factories are
+ * available in the class {@link IntFacts IntFacts}.
+ *
+ * <p>Unless otherwise specified an <code>IntRelation</code> is
+ * modifiable and thread-UNsafe.
+ *
+ * @see Relation
+ *
+ * @version $Id$ */
+public abstract class IntRelation implements Cloneable, Serializable {
+
+    private static final long serialVersionUID = 2950381166046215993L;
+
+    /** <code>IntRelation.EntryVisitor</code> is a wrapper for a
+	function that is called on a relation entry of the form
+	<code>&lt;key,value&gt;</code>.  Used by the method {@link
+	IntRelation#forAllEntries(jpaul.DataStructs.IntRelation.EntryVisitor)}. */
+    public static interface EntryVisitor {
+	/** Visits a <code>&lt;key,value&gt;</code> entry of a
+	    relation.  May throw an
+	    <code>InterruptTraversalException</code> in order to
+	    terminate the enclosing relation traversal. */
+	public void visit(int key, int value) throws InterruptTraversalException;
+    }
+
+    /** Adds the pair <code>&lt;key, value&gt;</code> to the relation.
+	Returns <code>true</code> if the new relation is bigger. */
+    public abstract boolean add(int key, int value);
+
+    /** Puts <code>key</code> in relation to each element of the set
+	<code>values</code>.  Returns <code>true</code> if the
+	relation becomes bigger. */
+    public abstract boolean addAll(int key, IntSet values);
+
+    /** Removes all mappings stored in <code>this</code> relation. */
+    public abstract void clear();
+
+    /** Removes the relation between <code>key</code> and
+	<code>value</code>.
+	@return <code>true</code> iff the relation changed */
+    public abstract boolean remove(int key, int value);
+
+    /** Removes the relation between <code>key</code> and
+	any element from <code>values</code>.
+	@return <code>true</code> iff the relation changed */
+    public abstract boolean removeAll(int key, IntSet values);
+
+    /** Removes all the relations attached to <code>key</code>.
+	@return <code>true</code> iff the relation changed */
+    public abstract boolean removeKey(int key);
+
+    /** Checks the existence of the relation <code>&lt;key,value&gt;</code>. */
+    public boolean contains(int key, int value) {
+	IntSet set = _getValues(key);
+	return (set != null) && set.contains(value);
+    }
+
+    /** Checks the existence of the <code>key</code> key in this relation. */
+    public abstract boolean containsKey(int key);
+
+    /** Tests if this relation is empty or not. */
+    public abstract boolean isEmpty();
+
+
+    /** Returns the image of <code>key</code> through this relation.
+	The returned set IS IMMUTABLE.  Returns {@link
+	IntSet#EMPTY_SET} if no value is attached to
+	<code>key</code>. */
+    public final IntSet getValues(int key) {
+	IntSet set = _getValues(key);
+	if(set == null)
+	    return IntSet.EMPTY_SET;
+	else
+	    return IntSet.unmodifiableIntSet(set);
+    }
+
+    /** Method used by the internal implementation of the
+        <code>IntRelation</code> or its subclasses.  Similar to the
+        user-level {@link #getValues} but the returned set IS MUTABLE
+        (and may be <code>null</code> if no value is attached to
+        <code>key</code>). */
+    protected abstract IntSet _getValues(int key);
+
+
+    /** Returns an IMMUTABLE view of all the keys appearing in
+	<code>this</code> relation.  If you want to delete a key, then
+	use {@link #removeKey}.  */
+    public abstract IntSet keys();
+
+
+    /** Combines <code>this</code> relation with relation
+	<code>rel</code>.  A <code>null</code> parameter is considered
+	to be an empty relation.
+
+	@return <code>true</code> iff <code>this</code> relation has
+	changed. */
+    public boolean union(IntRelation rel) {
+	if(rel == null) return false;
+	boolean changed = false;
+	for(IntSet.IntIterator it = rel.keys().iterator(); it.hasNext(); ) {
+	    int key = it.next();
+	    if(addAll(key, rel._getValues(key)))
+		changed = true;
+	}
+	return changed;
+    }
+
+
+    /** Visits all the entries <code>&lt;key,value&gt;</code> of
+	<code>this</code> relation and calls
+	<code>visitor.visit</code> on each of them.  This traversal of
+	the relation entries can be stopped at any point by throwing
+	an {@link jpaul.DataStructs.InterruptTraversalException
+	InterruptTraversalException} from the visitor; the exception
+	is caught internally by the implementation of this method. */
+    public void forAllEntries(EntryVisitor visitor) {
+	try {
+	    for(IntSet.IntIterator itK = keys().iterator(); itK.hasNext(); ) {
+		int key = itK.next();
+		for(IntSet.IntIterator itV = _getValues(key).iterator(); itV.hasNext(); ) {
+		    visitor.visit(key, itV.next());
+		}
+	    }
+	}
+	catch(InterruptTraversalException itex) {
+	    // Do nothing; InterruptTraversalException is only a way
+	    // to terminate the traversal prematurely.
+	}
+    }
+
+
+    /** Return a relation that is the reverse of <code>this</code>
+	relation, represented as an {@link IntMapSetRelation} with
+	the default set factory.  See {@link #revert(IntRelation)}. */
+    public IntRelation revert() {
+	return revert(new IntMapSetRelation());
+    }
+
+
+    /** Revert <code>this</code> relation and store the result into
+	the relation <code>result</code>. &lt;a,b&gt; appears in the
+	reverse relation iff &lt;b,a&gt; appears in <code>this</code>
+	relation.  Returns the new relation (ie,
+	<code>result</code>). */
+    public IntRelation revert(final IntRelation result) {
+	forAllEntries(new EntryVisitor() {
+		public void visit(int key, int value) {
+		    result.add(value, key);
+		}
+	    });
+	return result;
+    }
+
+
+    /** Returns the number of &lt;key,value&gt; pairs in
+        <code>this</code> relation.  Linear in the number of keys. */
+    public int size() {
+	int size = 0;
+	for(IntSet.IntIterator it = keys().iterator(); it.hasNext(); ) {
+	    size += _getValues(it.next()).size();
+	}
+	return size;
+    }
+
+
+    /** Checks the equality of two relations. */
+    public boolean equals(Object o) {
+	if(o == this) return true;
+	if(!(o instanceof IntRelation)) return false;
+	IntRelation rel2 = (IntRelation) o;
+	IntSet keys = this.keys();
+	if(!keys.equals(rel2.keys())) return false;
+	for(IntSet.IntIterator it = keys.iterator(); it.hasNext(); ) {
+	    int key = it.next();
+	    if(!this._getValues(key).equals(rel2._getValues(key)))
+		return false;
+	}
+	return true;
+    }
+
+    public int hashCode() {
+	int h = 0;
+	for(IntSet.IntIterator it = keys().iterator(); it.hasNext(); ) {
+	    int key = it.next();
+	    h += key ^ _getValues(key).hashCode();
+	}
+	return h;
+    }
+
+
+    public IntRelation clone() {
+	try {
+	    return (IntRelation) super.clone();
+	}
+	catch(CloneNotSupportedException e) {
+	    // should not happen ...
+	    throw new Error(e);
+	}
+    }
+
+
+    /** Pretty-print function for debug.
+	<code>rel1.equals(rel2) <==> rel1.toString().equals(rel2.toString())</code> */
+    public String toString() {
+	int[] keys = keys().toArray();
+	java.util.Arrays.sort(keys);
+
+	StringBuffer buffer = new StringBuffer();
+	buffer.append("{");
+	for(int i = 0; i < keys.length; i++) {
+	    buffer.append("\n  ");
+	    buffer.append(keys[i]);
+	    buffer.append(" -> ");
+	    buffer.append(_getValues(keys[i]));
+	}
+	buffer.append("\n }\n");
+
+	return buffer.toString();
+    }
+
+}
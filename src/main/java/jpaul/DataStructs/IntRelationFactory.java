@@ -0,0 +1,32 @@
+// IntRelationFactory.java, created Sat Oct 17 11:40:09 2026
+// Copyright (C) 2005 Alexandru Salcianu <salcianu@alum.mit.edu>
+// Licensed under the Modified BSD Licence; see COPYING for details.
+package jpaul.DataStructs;
+
+import java.io.Serializable;
+
+/**
+ * <code>IntRelationFactory</code> is the {@link IntRelation}
+ * counterpart of {@link RelationFactory}.
+ *
+ * <p>Various <code>IntRelation</code> factories are available in the
+ * class {@link IntFacts IntFacts}.
+ *
+ * @version $Id$ */
+public abstract class IntRelationFactory implements Serializable {
+
+    private static final long serialVersionUID = 3308765013985624091L;
+
+    /** Creates an empty <code>IntRelation</code>. */
+    public abstract IntRelation create();
+
+    /** Default implementation: uses {@link #create()} to create an
+        empty relation, and next adds each pair from <code>r</code>
+        to the new relation. */
+    public IntRelation create(IntRelation r) {
+	IntRelation r2 = this.create();
+	r2.union(r);
+	return r2;
+    }
+
+}
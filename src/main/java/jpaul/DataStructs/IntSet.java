@@ -0,0 +1,213 @@
+// IntSet.java, created Sat Oct 17 09:12:40 2026
+// Copyright (C) 2005 Alexandru Salcianu <salcianu@alum.mit.edu>
+// Licensed under the Modified BSD Licence; see COPYING for details.
+package jpaul.DataStructs;
+
+import java.io.Serializable;
+import java.util.NoSuchElementException;
+
+/**
+ * <code>IntSet</code> is a set of primitive <code>int</code>s.  It is
+ * the primitive counterpart of a <code>Set&lt;Integer&gt;</code>: no
+ * element is boxed, and the implementations store the elements
+ * directly in <code>int</code> arrays.  This matters for program
+ * analyses whose variables, vertices, etc. are already dense ints:
+ * an <code>IntSet</code> uses 4 to 8 bytes per element, instead of an
+ * <code>Integer</code> plus a hash entry.
+ *
+ * <p>Current implementations: {@link OpenHashIntSet} (open
+ * addressing; constant time operations) and {@link
+ * SortedIntArraySet} (sorted array; very compact, good for small or
+ * read-mostly sets).  Set factories for them are available in the
+ * class {@link IntFacts IntFacts}.
+ *
+ * <p>Similar to <code>Set&lt;Integer&gt;</code>, two
+ * <code>IntSet</code>s are equal iff they contain the same elements,
+ * and the hash code of an <code>IntSet</code> is the sum of its
+ * elements.  Unless otherwise specified, an <code>IntSet</code> is
+ * modifiable and thread-UNsafe.
+ *
+ * @version $Id$ */
+public abstract class IntSet implements Cloneable, Serializable {
+
+    private static final long serialVersionUID = 7342619083455120327L;
+
+    /** <code>IntIterator</code> is an iterator over primitive
+        <code>int</code>s.  The results of an iteration are undefined
+        if the underlying set is mutated during the iteration. */
+    public static interface IntIterator {
+	/** Checks whether the iteration has more elements. */
+	public boolean hasNext();
+	/** Returns the next element of the iteration.  Throws a
+	    <code>NoSuchElementException</code> if there is no such
+	    element. */
+	public int next();
+    }
+
+    /** Adds <code>elem</code> to <code>this</code> set.
+
+	@return <code>true</code> iff the set changed. */
+    public abstract boolean add(int elem);
+
+    /** Removes <code>elem</code> from <code>this</code> set.
+
+	@return <code>true</code> iff the set changed. */
+    public abstract boolean remove(int elem);
+
+    /** Checks whether <code>elem</code> is in <code>this</code> set. */
+    public abstract boolean contains(int elem);
+
+    /** Returns the number of elements of <code>this</code> set. */
+    public abstract int size();
+
+    /** Removes all elements from <code>this</code> set. */
+    public abstract void clear();
+
+    /** Returns an iterator over the elements of <code>this</code>
+        set.  The iteration order is specific to each implementation
+        but deterministic: it depends only on the sequence of
+        operations performed on the set. */
+    public abstract IntIterator iterator();
+
+
+    /** Checks whether <code>this</code> set is empty. */
+    public boolean isEmpty() {
+	return size() == 0;
+    }
+
+    /** Adds all elements from <code>elems</code> to
+        <code>this</code> set.
+
+	@return <code>true</code> iff the set changed. */
+    public boolean addAll(IntSet elems) {
+	boolean changed = false;
+	for(IntIterator it = elems.iterator(); it.hasNext(); ) {
+	    if(add(it.next()))
+		changed = true;
+	}
+	return changed;
+    }
+
+    /** Removes all elements from <code>elems</code> from
+        <code>this</code> set.
+
+	@return <code>true</code> iff the set changed. */
+    public boolean removeAll(IntSet elems) {
+	boolean changed = false;
+	for(IntIterator it = elems.iterator(); it.hasNext(); ) {
+	    if(remove(it.next()))
+		changed = true;
+	}
+	return changed;
+    }
+
+    /** Checks whether <code>this</code> set contains all elements
+        from <code>elems</code>. */
+    public boolean containsAll(IntSet elems) {
+	if(elems.size() > this.size()) return false;
+	for(IntIterator it = elems.iterator(); it.hasNext(); ) {
+	    if(!contains(it.next()))
+		return false;
+	}
+	return true;
+    }
+
+    /** Returns a fresh array with the elements of
+        <code>this</code> set, in iteration order. */
+    public int[] toArray() {
+	int[] res = new int[size()];
+	int i = 0;
+	for(IntIterator it = iterator(); it.hasNext(); ) {
+	    res[i++] = it.next();
+	}
+	return res;
+    }
+
+
+    public boolean equals(Object o) {
+	if(o == this) return true;
+	if(!(o instanceof IntSet)) return false;
+	IntSet s2 = (IntSet) o;
+	return (this.size() == s2.size()) && this.containsAll(s2);
+    }
+
+    public int hashCode() {
+	int h = 0;
+	for(IntIterator it = iterator(); it.hasNext(); ) {
+	    h += it.next();
+	}
+	return h;
+    }
+
+    public IntSet clone() {
+	try {
+	    return (IntSet) super.clone();
+	}
+	catch(CloneNotSupportedException e) {
+	    // should not happen ...
+	    throw new Error(e);
+	}
+    }
+
+    /** Pretty-print function: the elements are listed in increasing
+        order, such that equal sets have equal string
+        representations. */
+    public String toString() {
+	int[] elems = toArray();
+	java.util.Arrays.sort(elems);
+	StringBuffer buffer = new StringBuffer("[");
+	for(int i = 0; i < elems.length; i++) {
+	    if(i > 0) buffer.append(", ");
+	    buffer.append(elems[i]);
+	}
+	buffer.append("]");
+	return buffer.toString();
+    }
+
+
+    /** Iterator over no element at all. */
+    static final IntIterator EMPTY_ITERATOR = new IntIterator() {
+	public boolean hasNext() { return false; }
+	public int next() { throw new NoSuchElementException(); }
+    };
+
+
+    /** Returns an unmodifiable wrapper backed by the given set
+	<code>set</code>.  This allows "read-only" access, although
+	changes in the backing set show up in this view.  Attempts to
+	modify the set will fail with {@link
+	UnsupportedOperationException}. */
+    public static IntSet unmodifiableIntSet(IntSet set) {
+	return new UnmodifiableIntSet(set);
+    }
+
+    private static class UnmodifiableIntSet extends IntSet {
+
+	private static final long serialVersionUID = 2248301739486610012L;
+
+	UnmodifiableIntSet(IntSet set) {
+	    this.set = set;
+	}
+
+	// underlying set
+	private final IntSet set;
+
+	public boolean add(int elem) {
+	    throw new UnsupportedOperationException("unmodifiable IntSet");
+	}
+	public boolean remove(int elem) {
+	    throw new UnsupportedOperationException("unmodifiable IntSet");
+	}
+	public void clear() {
+	    throw new UnsupportedOperationException("unmodifiable IntSet");
+	}
+	public boolean contains(int elem) { return set.contains(elem); }
+	public int size() { return set.size(); }
+	public IntIterator iterator() { return set.iterator(); }
+    }
+
+
+    /** Immutable empty set. */
+    public static final IntSet EMPTY_SET = unmodifiableIntSet(new SortedIntArraySet(0));
+
+}
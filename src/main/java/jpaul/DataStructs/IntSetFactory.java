@@ -0,0 +1,34 @@
+// IntSetFactory.java, created Sat Oct 17 10:14:51 2026
+// Copyright (C) 2005 Alexandru Salcianu <salcianu@alum.mit.edu>
+// Licensed under the Modified BSD Licence; see COPYING for details.
+package jpaul.DataStructs;
+
+import java.io.Serializable;
+
+/**
+ * <code>IntSetFactory</code> is the {@link IntSet} counterpart of
+ * {@link SetFactory}.  Subclasses must implement the
+ * <code>create()</code> method; for efficiency reasons, they may
+ * also override {@link #create(IntSet)}.
+ *
+ * <p>Various <code>IntSet</code> factories are available in the
+ * class {@link IntFacts IntFacts}.
+ *
+ * @version $Id$ */
+public abstract class IntSetFactory implements Serializable {
+
+    private static final long serialVersionUID = 1602587384710299538L;
+
+    /** Creates an empty <code>IntSet</code>. */
+    public abstract IntSet create();
+
+    /** Default implementation: uses {@link #create()} to create an
+        empty set, and next adds all elements from <code>set</code>
+        to the newly-created set. */
+    public IntSet create(IntSet set) {
+	IntSet newSet = this.create();
+	newSet.addAll(set);
+	return newSet;
+    }
+
+}
@@ -0,0 +1,169 @@
+// IntWorkSet.java, created Sat Oct 17 11:52:33 2026
+// Copyright (C) 2005 Alexandru Salcianu <salcianu@alum.mit.edu>
+// Licensed under the Modified BSD Licence; see COPYING for details.
+package jpaul.DataStructs;
+
+import java.io.Serializable;
+import java.util.BitSet;
+import java.util.NoSuchElementException;
+
+/**
+ * <code>IntWorkSet</code> is the primitive counterpart of {@link
+ * WorkSet}: an ordered set of non-negative <code>int</code>s (e.g.,
+ * dense ids of vertices or variables).  The membership test is done
+ * with a bit set, and the order is kept in a circular
+ * <code>int</code> array; there is no boxing and no hashing.  The
+ * <code>add</code>/<code>extract</code> operations have O(1)
+ * (amortized) complexity.
+ *
+ * <p>Two implementations are available: {@link IntWorkSet.Queue}
+ * (FIFO order) and {@link IntWorkSet.Stack} (LIFO order).  Adding a
+ * negative element throws an
+ * <code>IndexOutOfBoundsException</code>.
+ *
+ * @version $Id$ */
+public abstract class IntWorkSet implements Serializable {
+
+    private static final long serialVersionUID = 8122290358716651930L;
+
+    // invariant: inSet and the elements from the circular buffer are
+    // the same set of ints
+    private final BitSet inSet = new BitSet();
+
+    // circular buffer: the elements are elems[head], ...,
+    // elems[(head + size - 1) % elems.length]
+    protected int[] elems = new int[16];
+    protected int head = 0;
+    protected int size = 0;
+
+    /** Adds the element <code>elem</code> to <code>this</code>
+        workset.
+
+	@return <code>true</code> if <code>elem</code> was not already
+        in the workset.  If <code>elem</code> was already in the
+        workset, the workset does not change in any way, and
+        <code>add</code> returns <code>false</code>.  */
+    public boolean add(int elem) {
+	if(inSet.get(elem)) return false;
+	inSet.set(elem);
+	if(size == elems.length) grow();
+	elems[(head + size) & (elems.length - 1)] = elem;
+	size++;
+	return true;
+    }
+
+    /** Adds all elements from <code>elems</code> to
+        <code>this</code> workset.
+
+	@return <code>true</code> if any of the added elements was not
+	already in <code>this</code> workset. */
+    public boolean addAll(IntSet elems) {
+	boolean newInfo = false;
+	for(IntSet.IntIterator it = elems.iterator(); it.hasNext(); ) {
+	    if(add(it.next()))
+		newInfo = true;
+	}
+	return newInfo;
+    }
+
+    /** Returns the first element of <code>this</code> workset
+        (according to the order specific to <code>this</code>
+        workset).  The element is removed from the workset.  Throws a
+        {@link java.util.NoSuchElementException
+        NoSuchElementException} if the workset is empty. */
+    public int extract() {
+	if(size == 0)
+	    throw new NoSuchElementException();
+	int elem = extractInOrder();
+	size--;
+	inSet.clear(elem);
+	return elem;
+    }
+
+    /** Removes the first element from the circular buffer; updates
+        <code>head</code>, but not <code>size</code>. */
+    protected abstract int extractInOrder();
+
+    // doubles the capacity of the circular buffer; the elements are
+    // moved to the beginning of the new array
+    private void grow() {
+	int[] newElems = new int[2 * elems.length];
+	int firstPart = Math.min(size, elems.length - head);
+	System.arraycopy(elems, head, newElems, 0, firstPart);
+	System.arraycopy(elems, 0, newElems, firstPart, size - firstPart);
+	elems = newElems;
+	head = 0;
+    }
+
+    /** Removes all elements from the workset. */
+    public void clear() {
+	inSet.clear();
+	head = 0;
+	size = 0;
+    }
+
+    /** Checks whether <code>this</code> workset is empty.<br>
+        Complexity: O(1). */
+    public boolean isEmpty() {
+	return size == 0;
+    }
+
+    /** Checks whether <code>this</code> workset contains the element
+        <code>elem</code>.<br> Complexity: O(1). */
+    public boolean contains(int elem) {
+	return (elem >= 0) && inSet.get(elem);
+    }
+
+    /** Returns the size of <code>this</code> workset.<br>
+        Complexity: O(1). */
+    public int size() {
+	return size;
+    }
+
+    /** Lists the elements in the order they would be extracted. */
+    public String toString() {
+	StringBuffer buffer = new StringBuffer("[");
+	for(int i = 0; i < size; i++) {
+	    if(i > 0) buffer.append(", ");
+	    buffer.append(elems[orderedPos(i)]);
+	}
+	buffer.append("]");
+	return buffer.toString();
+    }
+
+    /** Position in the circular buffer of the <code>i</code>-th
+        element to be extracted. */
+    protected abstract int orderedPos(int i);
+
+
+    /** <code>IntWorkSet</code> with FIFO order. */
+    public static class Queue extends IntWorkSet {
+	private static final long serialVersionUID = 1766140329458816123L;
+
+	protected int extractInOrder() {
+	    int elem = elems[head];
+	    head = (head + 1) & (elems.length - 1);
+	    return elem;
+	}
+
+	protected int orderedPos(int i) {
+	    return (head + i) & (elems.length - 1);
+	}
+    }
+
+
+    /** <code>IntWorkSet</code> with LIFO order. */
+    public static class Stack extends IntWorkSet {
+	private static final long serialVersionUID = 5320987213462608551L;
+
+	protected int extractInOrder() {
+	    // the last element of the buffer; head does not change
+	    return elems[(head + size - 1) & (elems.length - 1)];
+	}
+
+	protected int orderedPos(int i) {
+	    return (head + size - 1 - i) & (elems.length - 1);
+	}
+    }
+
+}
@@ -141,6 +141,7 @@ class MapBasedSet<E> implements Set<E>, Cloneable, Serializable {
 	    }
 	    private E lastNext = null;
 	    public void remove() {
+		itKeys.remove();
 		hashCode -= (lastNext == null) ? 0 : lastNext.hashCode();
 	    }
 	};
@@ -65,6 +65,41 @@ public abstract class MapFacts {
 
 
 
+    /** Returns a map factory that generates {@link OpenHashMap}s:
+	compact hash maps that use open addressing over flat arrays,
+	without one entry object per mapping.  Good for applications
+	that use many small maps.  Like <code>LinkedHashMap</code>s,
+	they iterate in insertion order.  The generated maps cache the
+	hash codes of their keys.
+
+	@see #openHash(boolean) */
+    public static <K,V> MapFactory<K,V> openHash() {
+	return openHash(true);
+    }
+
+
+    /** Returns a map factory that generates {@link OpenHashMap}s.
+
+	@param cacheHashes Whether the generated maps cache the hash
+	codes of their keys (see {@link
+	OpenHashMap#OpenHashMap(boolean)}). */
+    public static <K,V> MapFactory<K,V> openHash(final boolean cacheHashes) {
+	return new MapFactory<K,V>() {
+	    private static final long serialVersionUID = -3815960424475139904L;
+
+	    public Map<K,V> create() { return new OpenHashMap<K,V>(cacheHashes); }
+
+	    public Map<K,V> create(Map<K,V> m) {
+		if(m instanceof OpenHashMap/*<K,V>*/) {
+		    return ((OpenHashMap<K,V>) m).clone();
+		}
+		return super.create(m);
+	    }
+	};
+    }
+
+
+
     /** Returns a map factory that generates <code>TreeMap</code>s.
 	<code>TreeMap</code>s are great for applications that use many
 	small maps. 
@@ -113,10 +148,31 @@ public abstract class MapFacts {
     }
 
 
+    /** Returns a map factory that generates {@link PersistentMap}s:
+	maps backed by immutable hash array mapped tries.  Cloning a
+	persistent map (e.g., via {@link MapFactory#create(Map)}) is a
+	constant time operation, and each later update costs O(log
+	n). */
+    public static <K,V> MapFactory<K,V> persistent() {
+	return new MapFactory<K,V>() {
+	    private static final long serialVersionUID = 2206148913557307162L;
+
+	    public Map<K,V> create() { return new PersistentMap<K,V>(); }
+
+	    public Map<K,V> create(Map<K,V> m) {
+		if(m instanceof PersistentMap/*<K,V>*/) {
+		    return ((PersistentMap<K,V>) m).clone();
+		}
+		return super.create(m);
+	    }
+	};
+    }
+
+
     /** Returns a map factory that generates
         <code>NoCompTreeMap</code>.  {@link
-        jpaul.DataStructs.NoCompTreeMap NoCompTreeMap} is a binary
-        tree-backed map that does not require a user-defined {@link
+        jpaul.DataStructs.NoCompTreeMap NoCompTreeMap} is a balanced
+        (AVL) tree-backed map that does not require a user-defined {@link
         java.util.Comparator Comparator} between keys. */
     public static <K,V> MapFactory<K,V> noCompTree() {
 	return new MapFactory<K,V>() {
@@ -129,7 +185,8 @@ public abstract class MapFacts {
 		if(m instanceof NoCompTreeMap/*<K,V>*/) {
 		    return ((NoCompTreeMap<K,V>) m).clone();
 		}
-		return super.create(m);
+		// bulk-builds the tree
+		return new NoCompTreeMap<K,V>(m);
 	    }
 	};
     }
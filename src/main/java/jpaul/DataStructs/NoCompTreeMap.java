@@ -10,24 +10,30 @@ import java.util.Map;
 import java.util.Collection;
 import java.util.AbstractCollection;
 import java.util.Iterator;
-import jpaul.Graphs.BinTreeUtil;
-import jpaul.Graphs.BinTreeNavigator;
+import java.util.NoSuchElementException;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 
 /**
  * <code>NoCompTreeMap</code> is tree map that does not require any
  * used-defined <code>Comparator</code>.  Instead, the tree is ordered
  * by the relative ordering between the haashcodes of the keys.  The
  * implementation is able to cope with the situation when two
- * non-equal keys have the same hashcode: intuitively, the key that is
- * put first in the map is considered lower than the other one.
+ * non-equal keys have the same hashcode.
  *
- * <p>For the curious programmer, when we add a new mapping, if the
- * key to add has the same hashcode as the key from a tree node, we
- * decend into the right subtree (unless the keys are equal).  This
- * means that if two many keys have the same hashcode, the tree can
- * degenerate into a list.  Still, we think this is unlikely to happen
- * frequently in practice; in practice, we expect the complexity of
- * operations to be more or less logarithmic in the size of the tree.
+ * <p>For the curious programmer, the tree is an AVL tree with one
+ * node per distinct hashcode: the heights of the two subtrees of
+ * each node differ by at most one, so <code>get</code>,
+ * <code>put</code> and <code>remove</code> take O(log n) time no
+ * matter in what order the keys are added (e.g., even for
+ * sequential <code>Integer</code>s).  Non-equal keys with the same
+ * hashcode are chained together in the node of their hashcode; as
+ * long as the hashcodes are decent, these chains are very short.
+ * The iteration order is the increasing order of the hashcodes of
+ * the keys.  The serialized form of the AVL tree is not compatible
+ * with the one of the older, unbalanced versions of this class.
  *
  * <p>This map is useful to use in programs with many small maps or
  * when coming out with a total ordering between elements is difficult
@@ -36,10 +42,10 @@ import jpaul.Graphs.BinTreeNavigator;
  * @author  Alexandru Salcianu - salcianu@alum.mit.edu
  * @version $Id: NoCompTreeMap.java,v 1.10 2006/03/14 02:29:31 salcianu Exp $ */
 public class NoCompTreeMap<K,V> implements Map<K,V>, Cloneable, Serializable {
-    private static final long serialVersionUID = -1874980975202189491L;
+    private static final long serialVersionUID = 2318046152399340287L;
 	// the number of mappings in this map
     private int size = 0;
-    // the root of the binary tree used to store the mapping
+    // the root of the AVL tree used to store the mapping
     private BinTreeNode<K,V> root = null;
 
     /** Creates a <code>NoCompTreeMap</code>. */
@@ -49,7 +55,97 @@ public class NoCompTreeMap<K,V> implements Map<K,V>, Cloneable, Serializable {
      *  given map. */
     public NoCompTreeMap(Map<? extends K, ? extends V> map) {
 	this();
-	putAll(map);
+	if(map instanceof NoCompTreeMap/*<K,V>*/) {
+	    // already sorted by the hashcodes of the keys
+	    @SuppressWarnings("unchecked")
+	    NoCompTreeMap<K,V> map2 = (NoCompTreeMap<K,V>) map;
+	    root = copy_tree(map2.root);
+	    size = map2.size;
+	    cachedHashCode = map2.cachedHashCode;
+	    return;
+	}
+	List<Map.Entry<? extends K, ? extends V>> entries =
+	    new ArrayList<Map.Entry<? extends K, ? extends V>>(map.entrySet());
+	Collections.sort(entries, ENTRY_HASH_ORDER);
+	@SuppressWarnings("unchecked")
+	K[] keys = (K[]) new Object[entries.size()];
+	@SuppressWarnings("unchecked")
+	V[] values = (V[]) new Object[entries.size()];
+	int i = 0;
+	for(Map.Entry<? extends K, ? extends V> entry : entries) {
+	    keys[i]   = entry.getKey();
+	    values[i] = entry.getValue();
+	    i++;
+	}
+	build(keys, values);
+    }
+
+    /** Creates a <code>NoCompTreeMap</code> that maps each
+	<code>keys[i]</code> to <code>values[i]</code>, in O(n) time.
+	The keys must be sorted in the increasing order of their
+	hashcodes (ties are allowed); if the same key appears several
+	times, its last value wins.
+
+	@throws IllegalArgumentException if the two arrays have
+	different lengths, or if <code>keys</code> is not sorted. */
+    public NoCompTreeMap(K[] keys, V[] values) {
+	this();
+	if(keys.length != values.length)
+	    throw new IllegalArgumentException("different number of keys and values");
+	build(keys, values);
+    }
+
+    private static final Comparator<Map.Entry<?,?>> ENTRY_HASH_ORDER = new Comparator<Map.Entry<?,?>>() {
+	public int compare(Map.Entry<?,?> e1, Map.Entry<?,?> e2) {
+	    int h1 = e1.getKey().hashCode();
+	    int h2 = e2.getKey().hashCode();
+	    return (h1 < h2) ? -1 : ((h1 == h2) ? 0 : 1);
+	}
+    };
+
+    // Builds a perfectly balanced tree from the sorted array keys
+    // (and the corresponding values).
+    private void build(K[] keys, V[] values) {
+	// one tree node per distinct hashcode
+	@SuppressWarnings("unchecked")
+	BinTreeNode<K,V>[] nodes = (BinTreeNode<K,V>[]) new BinTreeNode<?,?>[keys.length];
+	int nbNodes = 0;
+	for(int i = 0; i < keys.length; i++) {
+	    BinTreeNode<K,V> node = new BinTreeNode<K,V>(keys[i], values[i]);
+	    BinTreeNode<K,V> last = (nbNodes == 0) ? null : nodes[nbNodes-1];
+	    if((last == null) || (node.keyHashCode > last.keyHashCode)) {
+		nodes[nbNodes++] = node;
+		size++;
+		cachedHashCode += node.hashCode();
+		continue;
+	    }
+	    if(node.keyHashCode < last.keyHashCode)
+		throw new IllegalArgumentException("keys not sorted by hashcode at index " + i);
+	    // same hashcode as the last node: add to its chain
+	    BinTreeNode<K,V> old = find_in_chain(last, node.key);
+	    if(old != null) {
+		cachedHashCode -= old.hashCode();
+		old.value = node.value;
+		cachedHashCode += old.hashCode();
+	    }
+	    else {
+		node.sameHash = last.sameHash;
+		last.sameHash = node;
+		size++;
+		cachedHashCode += node.hashCode();
+	    }
+	}
+	root = build_tree(nodes, 0, nbNodes - 1);
+    }
+
+    private static <K,V> BinTreeNode<K,V> build_tree(BinTreeNode<K,V>[] nodes, int lo, int hi) {
+	if(lo > hi) return null;
+	int mid = (lo + hi) >>> 1;
+	BinTreeNode<K,V> node = nodes[mid];
+	node.left  = build_tree(nodes, lo, mid - 1);
+	node.right = build_tree(nodes, mid + 1, hi);
+	update_height(node);
+	return node;
     }
 
     public final int size() { return size; }
@@ -60,9 +156,15 @@ public class NoCompTreeMap<K,V> implements Map<K,V>, Cloneable, Serializable {
 	return _get(key) != null;
     }
 
-    /** Unsupported yet. */
+    /** Checks whether some key is mapped to <code>value</code>.
+	Takes O(n) time. */
     public final boolean containsValue(Object value) {
-	throw new UnsupportedOperationException();
+	for(Iterator<Map.Entry<K,V>> it = entryIterator(); it.hasNext(); ) {
+	    V v = it.next().getValue();
+	    if((value == null) ? (v == null) : value.equals(v))
+		return true;
+	}
+	return false;
     }
 
     public V get(Object key) {
@@ -80,70 +182,80 @@ public class NoCompTreeMap<K,V> implements Map<K,V>, Cloneable, Serializable {
 	    if(key_hash_code < p.keyHashCode) {
 		p = p.left;
 	    }
+	    else if(key_hash_code > p.keyHashCode) {
+		p = p.right;
+	    }
 	    else {
-		if(key_hash_code > p.keyHashCode) {
-		    p = p.right;
-		}
-		else {
-		    if(p.key.equals(key)) {
-			return p;
-		    }
-		    else {
-			p = p.right;
-		    }
-		}
+		return find_in_chain(p, key);
 	    }
 	}
 
 	return null;
     }
 
+    // Returns the node from the chain that starts with node whose key
+    // is equal to key, or null if none.
+    private static <K,V> BinTreeNode<K,V> find_in_chain(BinTreeNode<K,V> node, Object key) {
+	for( ; node != null; node = node.sameHash) {
+	    if(node.key.equals(key))
+		return node;
+	}
+	return null;
+    }
+
 
     /** Associates the specified value with the specified key in this map. */
     public final V put(K key, V value) {
-	BinTreeNode<K,V> prev = null;
-	BinTreeNode<K,V> node = root;
 	int key_hash_code = key.hashCode();
 
-	while(node != null) {
-	    prev = node;
-	    if(key_hash_code < node.keyHashCode) {
-		node = node.left;
+	BinTreeNode<K,V> p = root;
+	while(p != null) {
+	    if(key_hash_code < p.keyHashCode) {
+		p = p.left;
+	    }
+	    else if(key_hash_code > p.keyHashCode) {
+		p = p.right;
 	    }
 	    else {
-		if((key_hash_code > node.keyHashCode) || !node.key.equals(key)) {
-		    node = node.right;
-		}
-		else {
+		BinTreeNode<K,V> node = find_in_chain(p, key);
+		if(node != null) {
 		    cachedHashCode -= node.hashCode();
 		    V temp = node.value;
 		    node.value = value;
 		    cachedHashCode += node.hashCode();
 		    return temp;
 		}
+		// new key with an existing hashcode: the tree shape
+		// does not change
+		BinTreeNode<K,V> new_node = new BinTreeNode<K,V>(key, value);
+		new_node.sameHash = p.sameHash;
+		p.sameHash = new_node;
+		size++;
+		cachedHashCode += new_node.hashCode();
+		return null;
 	    }
 	}
 
-	size++;
-
+	// new hashcode: insert a new tree node and rebalance
 	BinTreeNode<K,V> new_node = new BinTreeNode<K,V>(key, value);
-	cachedHashCode += new_node.hashCode(); // invalidate the cached hash code
-
-	if(prev == null) {
-	    root = new_node;
-	    return null;
-	}
-
-	if(key_hash_code < prev.keyHashCode) {
-	    prev.left = new_node;
-	}
-	else {
-	    prev.right = new_node;
-	}
-
+	size++;
+	cachedHashCode += new_node.hashCode();
+	root = insert(root, new_node);
 	return null;
     }
 
+    // Inserts new_node (whose hashcode does not appear in the subtree
+    // rooted in node) into that subtree; returns the new (rebalanced)
+    // root of the subtree.
+    private static <K,V> BinTreeNode<K,V> insert(BinTreeNode<K,V> node, BinTreeNode<K,V> new_node) {
+	if(node == null) return new_node;
+	if(new_node.keyHashCode < node.keyHashCode)
+	    node.left  = insert(node.left,  new_node);
+	else
+	    node.right = insert(node.right, new_node);
+	return balance(node);
+    }
+
 
     /** Removes the mapping previously attached to <code>key</code>.
 	Returns the old mapping if any, or <code>null</code> otherwise. */
@@ -152,130 +264,140 @@ public class NoCompTreeMap<K,V> implements Map<K,V>, Cloneable, Serializable {
 	if(key == null) return null;
 
 	int key_hash_code = key.hashCode();
-	BinTreeNode<K,V> prev = null;
-	int son = 0;
+	// parent of node in the tree (null if node is the root)
+	BinTreeNode<K,V> parent = null;
 	BinTreeNode<K,V> node = root;
 
 	while(node != null) {
 	    if(key_hash_code < node.keyHashCode) {
-		prev = node;
+		parent = node;
 		node = node.left;
-		son  = 0;
 	    }
-	    else {
-		if((key_hash_code > node.keyHashCode) || !node.key.equals(key)) {
-		    prev = node;
-		    node = node.right;
-		    son  = 1;
-		}
-		else {
-		    size--;
-		    cachedHashCode -= node.hashCode();
-		    return remove_node(node, prev, son);
-		}
+	    else if(key_hash_code > node.keyHashCode) {
+		parent = node;
+		node = node.right;
 	    }
+	    else break;
 	}
-	return null;
-    }
-
-    // Remove the BinTreeNode pointed to by node. prev is supposed to be the
-    // parent node, pointing to node through his left (son == 0) respectively
-    // right (son == 1) link. Returns the old value attached to node.
-    private final V remove_node(BinTreeNode<K,V> node, BinTreeNode<K,V> prev, int son) {
-	if(node.left == null)
-	    return remove_semi_leaf(node, prev, son, node.right);
-	if(node.right == null)
-	    return remove_semi_leaf(node, prev, son, node.left);
-
-	// The BinTreeNode to replace node in the tree. This is either the
-	// next or the precedent node (in the order of the hashCode's.
-	// We decide a bit randomly, to gain some balanceness.
-	BinTreeNode<K,V> m = 
-	    (node.keyHashCode % 2 == 0) ?
-	    extract_next(node) : extract_prev(node);
+	if(node == null) return null;
 
-	return finish_removal(node, prev, son, m);
-    }
+	// look for key in the chain of node
+	BinTreeNode<K,V> prev = null;
+	BinTreeNode<K,V> curr = node;
+	while((curr != null) && !curr.key.equals(key)) {
+	    prev = curr;
+	    curr = curr.sameHash;
+	}
+	if(curr == null) return null;
 
+	size--;
+	cachedHashCode -= curr.hashCode();
 
-    // Remove a [semi]-leaf (a node with at least one of its sons absent.
-    // In this case, we simply "bypass" the link from the predecessor (if any)
-    // to the only predecessor of node that could exist.
-    private final V remove_semi_leaf(BinTreeNode<K,V> node, BinTreeNode<K,V> prev,
-				     int son, BinTreeNode<K,V> m) {
-	if(prev == null) {
-	    root = m;
+	if(prev != null) {
+	    // not in the tree: just unlink it from the chain
+	    prev.sameHash = curr.sameHash;
 	}
-	else {
-	    if(son == 0)
-		prev.left = m;
+	else if(curr.sameHash != null) {
+	    // the next node from the chain takes the tree position of curr
+	    BinTreeNode<K,V> m = curr.sameHash;
+	    m.left   = curr.left;
+	    m.right  = curr.right;
+	    m.height = curr.height;
+	    if(parent == null)
+		root = m;
+	    else if(parent.left == curr)
+		parent.left = m;
 	    else
-		prev.right = m;
+		parent.right = m;
+	}
+	else {
+	    // last key with this hashcode: remove the tree node and rebalance
+	    root = delete(root, key_hash_code);
 	}
 
-	return node.value;
+	return curr.value;
     }
 
-
-    // Terminal phase of the node removal. Returns the old value attached to
-    // node. node, prev and son are as for remove_node; m points to the
-    // BinTreeNode that should replace node in the tree.
-    private final V finish_removal(BinTreeNode<K,V> node, BinTreeNode<K,V> prev,
-				   int son, BinTreeNode<K,V> m) {
-	if(m != null) { // set up the links for m
-	    m.left  = node.left;
-	    m.right = node.right;
+    // Removes the tree node with hashcode key_hash_code from the
+    // subtree rooted in node; returns the new (rebalanced) root of
+    // the subtree.
+    private static <K,V> BinTreeNode<K,V> delete(BinTreeNode<K,V> node, int key_hash_code) {
+	if(key_hash_code < node.keyHashCode) {
+	    node.left = delete(node.left, key_hash_code);
+	}
+	else if(key_hash_code > node.keyHashCode) {
+	    node.right = delete(node.right, key_hash_code);
 	}
-	if(prev == null)
-	    root = m;
 	else {
-	    if(son == 0)
-		prev.left = m;
-	    else
-		prev.right = m;
+	    if(node.left  == null) return node.right;
+	    if(node.right == null) return node.left;
+	    // replace node with the leftmost node from its right subtree
+	    BinTreeNode<K,V> m = leftmost(node.right);
+	    m.right = delete_leftmost(node.right);
+	    m.left  = node.left;
+	    node = m;
 	}
-
-	return node.value;
+	return balance(node);
     }
 
-    // Finds the leftmost BinTreeNode from the right subtree of node;
-    // removes it from that subtree and returns it.
-    private final BinTreeNode<K,V> extract_next(BinTreeNode<K,V> node) {
-	BinTreeNode<K,V> prev = node.right;
-	BinTreeNode<K,V> curr = prev.left;
+    private static <K,V> BinTreeNode<K,V> leftmost(BinTreeNode<K,V> node) {
+	while(node.left != null)
+	    node = node.left;
+	return node;
+    }
 
-	if(curr == null) {
-	    node.right = node.right.right;
-	    return prev;
-	}
+    // Removes the leftmost node from the subtree rooted in node;
+    // returns the new (rebalanced) root of the subtree.
+    private static <K,V> BinTreeNode<K,V> delete_leftmost(BinTreeNode<K,V> node) {
+	if(node.left == null) return node.right;
+	node.left = delete_leftmost(node.left);
+	return balance(node);
+    }
 
-	while(curr.left != null) {
-	    prev = curr;
-	    curr = curr.left;
-	}
 
-	prev.left = curr.right;
-	return curr;
+    private static int height(BinTreeNode<?,?> node) {
+	return (node == null) ? 0 : node.height;
     }
 
-    // Finds the rightmost BinTreeNode from the left subtree of node;
-    // removes it from that subtree and returns it.
-    private final BinTreeNode<K,V> extract_prev(BinTreeNode<K,V> node) {
-	BinTreeNode<K,V> prev = node.left;
-	BinTreeNode<K,V> curr = prev.right;
+    private static void update_height(BinTreeNode<?,?> node) {
+	node.height = 1 + Math.max(height(node.left), height(node.right));
+    }
 
-	if(curr == null) {
-	    node.left = node.left.left;
-	    return prev;
+    // Restores the AVL invariant for node, whose subtrees are AVL
+    // trees whose heights differ by at most two; returns the new root
+    // of the subtree.
+    private static <K,V> BinTreeNode<K,V> balance(BinTreeNode<K,V> node) {
+	int diff = height(node.left) - height(node.right);
+	if(diff > 1) {
+	    if(height(node.left.left) < height(node.left.right))
+		node.left = rotate_left(node.left);
+	    return rotate_right(node);
 	}
-
-	while(curr.right != null) {
-	    prev = curr;
-	    curr = curr.right;
+	if(diff < -1) {
+	    if(height(node.right.right) < height(node.right.left))
+		node.right = rotate_right(node.right);
+	    return rotate_left(node);
 	}
+	update_height(node);
+	return node;
+    }
+
+    private static <K,V> BinTreeNode<K,V> rotate_right(BinTreeNode<K,V> node) {
+	BinTreeNode<K,V> l = node.left;
+	node.left = l.right;
+	l.right = node;
+	update_height(node);
+	update_height(l);
+	return l;
+    }
 
-	prev.right = curr.left;
-	return curr;
+    private static <K,V> BinTreeNode<K,V> rotate_left(BinTreeNode<K,V> node) {
+	BinTreeNode<K,V> r = node.right;
+	node.right = r.left;
+	r.left = node;
+	update_height(node);
+	update_height(r);
+	return r;
     }
 
 
@@ -313,7 +435,52 @@ public class NoCompTreeMap<K,V> implements Map<K,V>, Cloneable, Serializable {
 
 
     private Iterator<Map.Entry<K,V>> entryIterator() {
-	return BinTreeUtil.<Map.Entry<K,V>,BinTreeNode<K,V>>inOrder(root, binTreeNav);
+	return new EntryIterator<K,V>(root);
+    }
+
+    // In-order iterator over the nodes of the tree (and of their
+    // chains).  The explicit stack is a plain array: its size is
+    // bounded by the height of the AVL tree.
+    private static class EntryIterator<K,V> implements Iterator<Map.Entry<K,V>> {
+	EntryIterator(BinTreeNode<K,V> root) {
+	    @SuppressWarnings("unchecked")
+	    BinTreeNode<K,V>[] stack = (BinTreeNode<K,V>[]) new BinTreeNode<?,?>[height(root)];
+	    this.stack = stack;
+	    push_left_spine(root);
+	    next = pop();
+	}
+
+	// stack[0..sp-1] contains the tree nodes whose left subtree
+	// was (or is being) explored, but which were not returned yet.
+	private final BinTreeNode<K,V>[] stack;
+	private int sp = 0;
+	// next node to return (null if none)
+	private BinTreeNode<K,V> next;
+
+	private void push_left_spine(BinTreeNode<K,V> node) {
+	    for( ; node != null; node = node.left)
+		stack[sp++] = node;
+	}
+
+	// pops the next tree node in order, and pushes the left spine
+	// of its right subtree
+	private BinTreeNode<K,V> pop() {
+	    if(sp == 0) return null;
+	    BinTreeNode<K,V> node = stack[--sp];
+	    push_left_spine(node.right);
+	    return node;
+	}
+
+	public boolean hasNext() { return next != null; }
+
+	public Map.Entry<K,V> next() {
+	    if(next == null) throw new NoSuchElementException();
+	    BinTreeNode<K,V> node = next;
+	    next = (node.sameHash != null) ? node.sameHash : pop();
+	    return node;
+	}
+
+	public void remove() { throw new UnsupportedOperationException(); }
     }
 
 
@@ -327,6 +494,13 @@ public class NoCompTreeMap<K,V> implements Map<K,V>, Cloneable, Serializable {
 	    public int size() {
 		return size;
 	    }
+	    public boolean contains(Object o) {
+		if(!(o instanceof Map.Entry/*<K,V>*/)) return false;
+		Map.Entry<?,?> entry = (Map.Entry<?,?>) o;
+		if(entry.getKey() == null) return false;
+		BinTreeNode<K,V> node = _get(entry.getKey());
+		return (node != null) && node.equals(entry);
+	    }
 	};
     }
 
@@ -344,16 +518,28 @@ public class NoCompTreeMap<K,V> implements Map<K,V>, Cloneable, Serializable {
 	    public int size() {
 		return size;
 	    }
+	    public boolean contains(Object o) {
+		return (o != null) && containsKey(o);
+	    }
 	};
     }
 
 
-    private BinTreeNode<K,V> copy_tree(BinTreeNode<K,V> node) {
+    private static <K,V> BinTreeNode<K,V> copy_tree(BinTreeNode<K,V> node) {
 	if(node == null) return null;
-	BinTreeNode<K,V> newnode = new BinTreeNode<K,V>(node.key, node.value);
+	BinTreeNode<K,V> newnode = new BinTreeNode<K,V>(node);
+
+	// copy the chain of nodes with the same hashcode
+	BinTreeNode<K,V> last = newnode;
+	for(BinTreeNode<K,V> p = node.sameHash; p != null; p = p.sameHash) {
+	    last.sameHash = new BinTreeNode<K,V>(p);
+	    last = last.sameHash;
+	}
 
-	newnode.left  = copy_tree(node.left);
-	newnode.right = copy_tree(node.right);
+	// recursion depth is bounded by the (logarithmic) height of the tree
+	newnode.left   = copy_tree(node.left);
+	newnode.right  = copy_tree(node.right);
+	newnode.height = node.height;
 	
 	return newnode;
     }
@@ -380,6 +566,11 @@ public class NoCompTreeMap<K,V> implements Map<K,V>, Cloneable, Serializable {
 	@SuppressWarnings("unchecked")
 	Map<K,V> m2 = (Map<K,V>) o;
 
+	if(m2.size() != size) return false;
+	if((m2 instanceof NoCompTreeMap/*<K,V>*/) &&
+	   (((NoCompTreeMap<K,V>) m2).cachedHashCode != cachedHashCode))
+	    return false;
+
 	Set<Map.Entry<K,V>> set1 = this.entrySet();
 	Set<Map.Entry<K,V>> set2 = m2.entrySet();
 
@@ -395,13 +586,18 @@ public class NoCompTreeMap<K,V> implements Map<K,V>, Cloneable, Serializable {
 
 
     private static class BinTreeNode<K,V> implements Map.Entry<K,V>, Serializable {
-	private static final long serialVersionUID = -3462363742216115133L;
+	private static final long serialVersionUID = 4790375829138561202L;
 	final K key;
 	V value;
 	final int keyHashCode;
 
 	BinTreeNode<K,V> left  = null;
 	BinTreeNode<K,V> right = null;
+	// height of the subtree rooted in this node
+	int height = 1;
+	// next node whose key has the same hashcode (only the first
+	// node of such a chain is part of the tree)
+	BinTreeNode<K,V> sameHash = null;
 
 	BinTreeNode(final K key, final V value) {
 	    this.key    = key;
@@ -409,6 +605,13 @@ public class NoCompTreeMap<K,V> implements Map<K,V>, Cloneable, Serializable {
 	    keyHashCode = key.hashCode();
 	}
 
+	// copy constructor (no links)
+	BinTreeNode(final BinTreeNode<K,V> node) {
+	    this.key    = node.key;
+	    this.value  = node.value;
+	    keyHashCode = node.keyHashCode;
+	}
+
 	public String toString() {
 	    return "<" + key + "," + value + ">";
 	}
@@ -442,28 +645,14 @@ public class NoCompTreeMap<K,V> implements Map<K,V>, Cloneable, Serializable {
 	}
     }
 
-    private transient final BinTreeNavigator<BinTreeNode<K,V>> binTreeNav = new BinTreeNavigator<BinTreeNode<K,V>>() {
-	public BinTreeNode<K,V> left(BinTreeNode<K,V> node) {
-	    return node.left;
-	}
-	public BinTreeNode<K,V> right(BinTreeNode<K,V> node) {
-	    return node.right;
-	}
-    };
-
     public String toString() {
 	StringBuffer buffer = new StringBuffer();
 	buffer.append("[");
-	build_str(root, buffer);
+	for(Iterator<Map.Entry<K,V>> it = entryIterator(); it.hasNext(); ) {
+	    buffer.append(" ").append(it.next());
+	}
 	buffer.append(" ]");
 	return buffer.toString();
     }
 
-    private void build_str(final BinTreeNode<K,V> node, final StringBuffer buffer) {
-	if(node == null) return;
-	build_str(node.left,  buffer);
-	buffer.append(" <" + node.key + "," + node.value + ">");
-	build_str(node.right, buffer);
-    }
-
 }
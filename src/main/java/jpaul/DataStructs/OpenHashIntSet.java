@@ -0,0 +1,208 @@
+// OpenHashIntSet.java, created Sat Oct 17 09:31:02 2026
+// Copyright (C) 2005 Alexandru Salcianu <salcianu@alum.mit.edu>
+// Licensed under the Modified BSD Licence; see COPYING for details.
+package jpaul.DataStructs;
+
+import java.util.NoSuchElementException;
+
+/**
+ * <code>OpenHashIntSet</code> is an {@link IntSet} implemented by
+ * open addressing: the elements are stored directly in a single
+ * <code>int</code> array, and collisions are resolved by linear
+ * probing.  There are no entry objects and no tombstones: removal
+ * shifts back the elements of the collision chain.  All operations
+ * have O(1) expected complexity.
+ *
+ * <p>The table is at most 3/4 full.  The iteration order is the
+ * order of the elements in the table, which depends only on the
+ * sequence of operations performed on the set (it is deterministic
+ * across runs).
+ *
+ * @version $Id$ */
+public class OpenHashIntSet extends IntSet {
+
+    private static final long serialVersionUID = 5011843962243091375L;
+
+    /** Creates an empty <code>OpenHashIntSet</code> with a small
+        default capacity. */
+    public OpenHashIntSet() {
+	this(DEFAULT_CAPACITY);
+    }
+
+    /** Creates an empty <code>OpenHashIntSet</code> that can store
+        <code>expectedSize</code> elements without rehashing. */
+    public OpenHashIntSet(int expectedSize) {
+	allocate(tableSize(expectedSize));
+    }
+
+    /** Creates an <code>OpenHashIntSet</code> with the elements of
+        <code>set</code>. */
+    public OpenHashIntSet(IntSet set) {
+	this(set.size());
+	addAll(set);
+    }
+
+    private static final int DEFAULT_CAPACITY = 3;
+
+    // slots equal to FREE are empty; the element FREE itself is
+    // recorded by the flag containsFree.
+    private static final int FREE = 0;
+
+    private int[] table;
+    private int mask;
+    // number of elements stored in table (excludes FREE)
+    private int nbUsed;
+    // maximal value of nbUsed before rehashing
+    private int maxUsed;
+    private boolean containsFree;
+
+
+    // smallest power of two whose 3/4 is at least expectedSize
+    private static int tableSize(int expectedSize) {
+	int n = 4;
+	while(n - (n >>> 2) < expectedSize) n <<= 1;
+	return n;
+    }
+
+    private void allocate(int n) {
+	table = new int[n];
+	mask = n - 1;
+	maxUsed = n - (n >>> 2);
+    }
+
+    // spreads the bits of elem, such that dense ints do not form
+    // long collision chains
+    static int mix(int elem) {
+	int h = elem * 0x9E3779B9;
+	return h ^ (h >>> 16);
+    }
+
+
+    public boolean add(int elem) {
+	if(elem == FREE) {
+	    if(containsFree) return false;
+	    containsFree = true;
+	    return true;
+	}
+	int pos = mix(elem) & mask;
+	for(int e; (e = table[pos]) != FREE; pos = (pos + 1) & mask) {
+	    if(e == elem) return false;
+	}
+	table[pos] = elem;
+	if(++nbUsed > maxUsed) rehash(table.length << 1);
+	return true;
+    }
+
+
+    public boolean contains(int elem) {
+	if(elem == FREE) return containsFree;
+	int pos = mix(elem) & mask;
+	for(int e; (e = table[pos]) != FREE; pos = (pos + 1) & mask) {
+	    if(e == elem) return true;
+	}
+	return false;
+    }
+
+
+    public boolean remove(int elem) {
+	if(elem == FREE) {
+	    if(!containsFree) return false;
+	    containsFree = false;
+	    return true;
+	}
+	int pos = mix(elem) & mask;
+	for(int e; (e = table[pos]) != FREE; pos = (pos + 1) & mask) {
+	    if(e == elem) {
+		shiftBack(pos);
+		nbUsed--;
+		return true;
+	    }
+	}
+	return false;
+    }
+
+
+    // Empties slot pos; moves back the following elements of the
+    // collision chain that would become unreachable otherwise.
+    private void shiftBack(int pos) {
+	while(true) {
+	    int last = pos;
+	    int e;
+	    while(true) {
+		pos = (pos + 1) & mask;
+		if((e = table[pos]) == FREE) {
+		    table[last] = FREE;
+		    return;
+		}
+		int ideal = mix(e) & mask;
+		// e may move to last iff last is (cyclically) between
+		// the ideal position of e and the current position of e
+		if(last <= pos ? (last >= ideal || ideal > pos) : (last >= ideal && ideal > pos))
+		    break;
+	    }
+	    table[last] = e;
+	}
+    }
+
+
+    private void rehash(int n) {
+	int[] old = table;
+	allocate(n);
+	for(int i = 0; i < old.length; i++) {
+	    int e = old[i];
+	    if(e == FREE) continue;
+	    int pos = mix(e) & mask;
+	    while(table[pos] != FREE) pos = (pos + 1) & mask;
+	    table[pos] = e;
+	}
+    }
+
+
+    public int size() {
+	return containsFree ? nbUsed + 1 : nbUsed;
+    }
+
+
+    public void clear() {
+	if(nbUsed > 0)
+	    java.util.Arrays.fill(table, FREE);
+	nbUsed = 0;
+	containsFree = false;
+    }
+
+
+    public IntIterator iterator() {
+	return new IntIterator() {
+	    // next slot to inspect; table.length stands for FREE itself
+	    private int pos = advance(0);
+	    private int advance(int i) {
+		while(i < table.length && table[i] == FREE) i++;
+		if(i == table.length && !containsFree) i++;
+		return i;
+	    }
+	    public boolean hasNext() {
+		return pos <= table.length;
+	    }
+	    public int next() {
+		if(pos < table.length) {
+		    int e = table[pos];
+		    pos = advance(pos + 1);
+		    return e;
+		}
+		if(pos == table.length) {
+		    pos++;
+		    return FREE;
+		}
+		throw new NoSuchElementException();
+	    }
+	};
+    }
+
+
+    public OpenHashIntSet clone() {
+	OpenHashIntSet res = (OpenHashIntSet) super.clone();
+	res.table = table.clone();
+	return res;
+    }
+
+}
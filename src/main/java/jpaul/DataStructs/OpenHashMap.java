@@ -0,0 +1,303 @@
+// OpenHashMap.java, created Sat Oct 17 18:52:37 2026
+// Copyright (C) 2005 Alexandru Salcianu <salcianu@alum.mit.edu>
+// Licensed under the Modified BSD Licence; see COPYING for details.
+package jpaul.DataStructs;
+
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * <code>OpenHashMap</code> is a compact hash map that uses open
+ * addressing over flat arrays instead of one entry object per
+ * mapping: keys and values are stored in two parallel
+ * <code>Object</code> arrays, next to an <code>int</code> index table
+ * searched with linear probing, and (optionally) an <code>int</code>
+ * array with the cached hash codes of the keys.  See {@link
+ * OpenHashSet} for the memory tradeoffs.
+ *
+ * <p>The iteration order is deterministic: the order in which the
+ * keys were added (updating the value of an existing key does not
+ * change it).  The iterators of the views support
+ * <code>remove</code>; their behavior is undefined if the map is
+ * otherwise mutated during the iteration.  The values of the entries
+ * returned by the <code>entrySet()</code> iterators are read from
+ * (and written to) the map, until a new key is added.
+ * <code>null</code> is a legal key and a legal value.
+ *
+ * @see MapFacts#openHash()
+ * @version $Id$ */
+public class OpenHashMap<K,V> extends OpenHashTable implements Map<K,V> {
+
+    private static final long serialVersionUID = 5260387426431957718L;
+
+    /** Creates an empty <code>OpenHashMap</code> that caches the
+        hash codes of its keys. */
+    public OpenHashMap() {
+	this(true);
+    }
+
+    /** Creates an empty <code>OpenHashMap</code>.
+
+	@param cacheHashes Whether to cache the hash codes of the keys
+	(4 more bytes per mapping). */
+    public OpenHashMap(boolean cacheHashes) {
+	super(cacheHashes, true);
+    }
+
+    /** Creates an <code>OpenHashMap</code> with the same mappings as
+        <code>map</code>. */
+    public OpenHashMap(Map<? extends K, ? extends V> map) {
+	this();
+	putAll(map);
+    }
+
+
+    public int size() { return size; }
+
+    public boolean isEmpty() { return size == 0; }
+
+    public boolean containsKey(Object key) { return _find(key) >= 0; }
+
+    public boolean containsValue(Object value) {
+	for(int pos = _nextPos(0); pos >= 0; pos = _nextPos(pos + 1)) {
+	    if((value == null) ? (values[pos] == null) : value.equals(values[pos]))
+		return true;
+	}
+	return false;
+    }
+
+    public V get(Object key) {
+	int pos = _find(key);
+	return (pos < 0) ? null : value(pos);
+    }
+
+    @SuppressWarnings("unchecked")
+    private V value(int pos) {
+	return (V) values[pos];
+    }
+
+    public V put(K key, V value) {
+	int pos = _add(key);
+	if(pos < 0) {
+	    values[-(pos + 1)] = value;
+	    return null;
+	}
+	V oldValue = value(pos);
+	values[pos] = value;
+	return oldValue;
+    }
+
+    public V remove(Object key) {
+	int pos = _find(key);
+	if(pos < 0) return null;
+	V oldValue = value(pos);
+	_removeAt(pos);
+	return oldValue;
+    }
+
+    public void putAll(Map<? extends K, ? extends V> map) {
+	for(Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+	    put(entry.getKey(), entry.getValue());
+	}
+    }
+
+    public void clear() { _clear(); }
+
+
+    // Iterator over the dense positions of the mappings.
+    private abstract class PosIterator<T> implements Iterator<T> {
+	private int pos = _nextPos(0);
+	private int last = -1;
+	public boolean hasNext() { return pos >= 0; }
+	public T next() {
+	    if(pos < 0) throw new NoSuchElementException();
+	    last = pos;
+	    pos = _nextPos(pos + 1);
+	    return get(last);
+	}
+	// returns the iteration element for the dense position pos
+	protected abstract T get(int pos);
+	public void remove() {
+	    if(last < 0) throw new IllegalStateException();
+	    _removeAt(last);
+	    last = -1;
+	}
+    }
+
+    /** Returns a set view of the keys of this map.  The view
+	supports removals. */
+    public Set<K> keySet() {
+	return new AbstractSet<K>() {
+	    public Iterator<K> iterator() {
+		return new PosIterator<K>() {
+		    @SuppressWarnings("unchecked")
+		    protected K get(int pos) { return (K) key(pos); }
+		};
+	    }
+	    public int size() { return size; }
+	    public boolean contains(Object o) { return containsKey(o); }
+	    public boolean remove(Object o) {
+		int pos = _find(o);
+		if(pos < 0) return false;
+		_removeAt(pos);
+		return true;
+	    }
+	    public void clear() { _clear(); }
+	};
+    }
+
+    /** Returns a collection view of the values of this map.  The
+	view supports removals. */
+    public Collection<V> values() {
+	return new AbstractCollection<V>() {
+	    public Iterator<V> iterator() {
+		return new PosIterator<V>() {
+		    protected V get(int pos) { return value(pos); }
+		};
+	    }
+	    public int size() { return size; }
+	    public boolean contains(Object o) { return containsValue(o); }
+	    public void clear() { _clear(); }
+	};
+    }
+
+    /** Returns a set view of the mappings of this map.  The view
+	supports removals. */
+    public Set<Map.Entry<K,V>> entrySet() {
+	return new AbstractSet<Map.Entry<K,V>>() {
+	    public Iterator<Map.Entry<K,V>> iterator() {
+		return new PosIterator<Map.Entry<K,V>>() {
+		    protected Map.Entry<K,V> get(int pos) { return new Entry(pos); }
+		};
+	    }
+	    public int size() { return size; }
+	    public boolean contains(Object o) {
+		int pos = posOf(o);
+		return pos >= 0;
+	    }
+	    public boolean remove(Object o) {
+		int pos = posOf(o);
+		if(pos < 0) return false;
+		_removeAt(pos);
+		return true;
+	    }
+	    public void clear() { _clear(); }
+	};
+    }
+
+    // dense position of the mapping o (a Map.Entry), or -1 if none
+    private int posOf(Object o) {
+	if(!(o instanceof Map.Entry/*<K,V>*/)) return -1;
+	Map.Entry<?,?> entry = (Map.Entry<?,?>) o;
+	int pos = _find(entry.getKey());
+	if(pos < 0) return -1;
+	Object value = entry.getValue();
+	if((value == null) ? (values[pos] == null) : value.equals(values[pos]))
+	    return pos;
+	return -1;
+    }
+
+    // Map entry for the dense position pos.
+    private class Entry implements Map.Entry<K,V> {
+	@SuppressWarnings("unchecked")
+	Entry(int pos) {
+	    this.pos = pos;
+	    this.key = (K) key(pos);
+	}
+	private final int pos;
+	private final K key;
+
+	public K getKey() { return key; }
+	public V getValue() { return value(pos); }
+	public V setValue(V value) {
+	    V oldValue = value(pos);
+	    values[pos] = value;
+	    return oldValue;
+	}
+	public int hashCode() {
+	    Object value = values[pos];
+	    return
+		((key == null)   ? 0 : key.hashCode()) ^
+		((value == null) ? 0 : value.hashCode());
+	}
+	public boolean equals(Object o) {
+	    if(o == null) return false;
+	    if(o == this) return true;
+	    if(!(o instanceof Map.Entry/*<K,V>*/)) return false;
+	    Map.Entry<?,?> e2 = (Map.Entry<?,?>) o;
+	    Object value = values[pos];
+	    return
+		(key == null ?
+		 e2.getKey() == null : key.equals(e2.getKey()))  &&
+		(value == null ?
+		 e2.getValue() == null : value.equals(e2.getValue()));
+	}
+	public String toString() {
+	    return key + "=" + values[pos];
+	}
+    }
+
+
+    public boolean equals(Object o) {
+	if(o == null) return false;
+	if(o == this) return true;
+	if(!(o instanceof Map/*<K,V>*/)) return false;
+	Map<?,?> m2 = (Map<?,?>) o;
+	if(m2.size() != size) return false;
+	try {
+	    for(int pos = _nextPos(0); pos >= 0; pos = _nextPos(pos + 1)) {
+		Object key = key(pos);
+		Object value = values[pos];
+		if(value == null) {
+		    if((m2.get(key) != null) || !m2.containsKey(key))
+			return false;
+		}
+		else if(!value.equals(m2.get(key)))
+		    return false;
+	    }
+	}
+	catch(ClassCastException e) {
+	    return false;
+	}
+	return true;
+    }
+
+    public int hashCode() {
+	int hashCode = 0;
+	for(int pos = _nextPos(0); pos >= 0; pos = _nextPos(pos + 1)) {
+	    Object key = key(pos);
+	    Object value = values[pos];
+	    hashCode +=
+		((key == null)   ? 0 : key.hashCode()) ^
+		((value == null) ? 0 : value.hashCode());
+	}
+	return hashCode;
+    }
+
+    public String toString() {
+	StringBuffer buffer = new StringBuffer("{");
+	for(int pos = _nextPos(0); pos >= 0; pos = _nextPos(pos + 1)) {
+	    if(buffer.length() > 1) buffer.append(", ");
+	    Object key = key(pos);
+	    Object value = values[pos];
+	    buffer.append((key == this) ? "(this Map)" : String.valueOf(key));
+	    buffer.append("=");
+	    buffer.append((value == this) ? "(this Map)" : String.valueOf(value));
+	}
+	buffer.append("}");
+	return buffer.toString();
+    }
+
+
+    public OpenHashMap<K,V> clone() {
+	@SuppressWarnings("unchecked")
+	OpenHashMap<K,V> newMap = (OpenHashMap<K,V>) super.clone();
+	return newMap;
+    }
+
+}
@@ -0,0 +1,205 @@
+// OpenHashSet.java, created Sat Oct 17 18:31:14 2026
+// Copyright (C) 2005 Alexandru Salcianu <salcianu@alum.mit.edu>
+// Licensed under the Modified BSD Licence; see COPYING for details.
+package jpaul.DataStructs;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * <code>OpenHashSet</code> is a compact hash set that uses open
+ * addressing over flat arrays instead of one entry object per
+ * element: the elements are stored in a plain <code>Object</code>
+ * array, next to an <code>int</code> index table searched with
+ * linear probing, and (optionally) an <code>int</code> array with the
+ * cached hash codes of the elements.  Each array slot costs 12 to
+ * 16 bytes (a reference, two index slots, and the optional hash
+ * code) and the arrays are at least 3/8 full, instead of the 32 to
+ * 48 bytes of a <code>HashSet</code> entry; an empty set allocates
+ * no array at all.  This makes <code>OpenHashSet</code> a good choice
+ * for applications with many small sets.
+ *
+ * <p>The iteration order is deterministic: the order in which the
+ * elements were added (an element that is removed and next added
+ * again moves to the end).  The iterators support
+ * <code>remove</code>; their behavior is undefined if the set is
+ * otherwise mutated during the iteration.  <code>null</code> is a
+ * legal element.
+ *
+ * @see SetFacts#openHash()
+ * @version $Id$ */
+public class OpenHashSet<E> extends OpenHashTable implements Set<E> {
+
+    private static final long serialVersionUID = -2837461910524378413L;
+
+    /** Creates an empty <code>OpenHashSet</code> that caches the
+        hash codes of its elements. */
+    public OpenHashSet() {
+	this(true);
+    }
+
+    /** Creates an empty <code>OpenHashSet</code>.
+
+	@param cacheHashes Whether to cache the hash codes of the
+	elements (4 more bytes per element).  Worth doing unless
+	<code>hashCode()</code> and <code>equals</code> are trivial
+	for the elements (e.g., <code>Integer</code>s). */
+    public OpenHashSet(boolean cacheHashes) {
+	super(cacheHashes, false);
+    }
+
+    /** Creates an <code>OpenHashSet</code> with the elements of
+        <code>c</code>. */
+    public OpenHashSet(Collection<? extends E> c) {
+	this();
+	addAll(c);
+    }
+
+
+    public int size() { return size; }
+
+    public boolean isEmpty() { return size == 0; }
+
+    public boolean contains(Object o) { return _find(o) >= 0; }
+
+    public boolean add(E elem) { return _add(elem) < 0; }
+
+    public boolean remove(Object o) {
+	int pos = _find(o);
+	if(pos < 0) return false;
+	_removeAt(pos);
+	return true;
+    }
+
+    public void clear() { _clear(); }
+
+
+    public boolean containsAll(Collection<?> c) {
+	for(Object o : c) {
+	    if(!contains(o)) {
+		return false;
+	    }
+	}
+	return true;
+    }
+
+    public boolean addAll(Collection<? extends E> c) {
+	boolean changed = false;
+	for(E elem : c) {
+	    if(add(elem)) {
+		changed = true;
+	    }
+	}
+	return changed;
+    }
+
+    public boolean removeAll(Collection<?> c) {
+	boolean changed = false;
+	for(Object o : c) {
+	    if(remove(o)) {
+		changed = true;
+	    }
+	}
+	return changed;
+    }
+
+    public boolean retainAll(Collection<?> c) {
+	boolean changed = false;
+	for(int pos = _nextPos(0); pos >= 0; pos = _nextPos(pos + 1)) {
+	    if(!c.contains(key(pos))) {
+		_removeAt(pos);
+		changed = true;
+	    }
+	}
+	return changed;
+    }
+
+
+    public Iterator<E> iterator() {
+	return new Iterator<E>() {
+	    private int pos = _nextPos(0);
+	    private int last = -1;
+	    public boolean hasNext() { return pos >= 0; }
+	    public E next() {
+		if(pos < 0) throw new NoSuchElementException();
+		last = pos;
+		pos = _nextPos(pos + 1);
+		@SuppressWarnings("unchecked")
+		E elem = (E) key(last);
+		return elem;
+	    }
+	    public void remove() {
+		if(last < 0) throw new IllegalStateException();
+		_removeAt(last);
+		last = -1;
+	    }
+	};
+    }
+
+
+    public Object[] toArray() {
+	return toArray(new Object[size]);
+    }
+
+    public <T> T[] toArray(T[] a) {
+	if(a.length < size) {
+	    @SuppressWarnings("unchecked")
+	    T[] a2 = (T[]) Array.newInstance(a.getClass().getComponentType(), size);
+	    a = a2;
+	}
+	int i = 0;
+	for(int pos = _nextPos(0); pos >= 0; pos = _nextPos(pos + 1)) {
+	    @SuppressWarnings("unchecked")
+	    T elem = (T) key(pos);
+	    a[i++] = elem;
+	}
+	if(a.length > size) a[size] = null;
+	return a;
+    }
+
+
+    public boolean equals(Object o) {
+	if(o == null) return false;
+	if(o == this) return true;
+	if(!(o instanceof Set/*<E>*/)) return false;
+	Set<?> set2 = (Set<?>) o;
+	if(set2.size() != size) return false;
+	try {
+	    return set2.containsAll(this);
+	}
+	catch(ClassCastException e) {
+	    return false;
+	}
+    }
+
+    public int hashCode() {
+	int hashCode = 0;
+	for(int pos = _nextPos(0); pos >= 0; pos = _nextPos(pos + 1)) {
+	    Object elem = key(pos);
+	    hashCode += (elem == null) ? 0 : elem.hashCode();
+	}
+	return hashCode;
+    }
+
+    public String toString() {
+	StringBuffer buffer = new StringBuffer("[");
+	for(int pos = _nextPos(0); pos >= 0; pos = _nextPos(pos + 1)) {
+	    if(buffer.length() > 1) buffer.append(", ");
+	    Object elem = key(pos);
+	    buffer.append((elem == this) ? "(this Set)" : String.valueOf(elem));
+	}
+	buffer.append("]");
+	return buffer.toString();
+    }
+
+
+    public OpenHashSet<E> clone() {
+	@SuppressWarnings("unchecked")
+	OpenHashSet<E> newSet = (OpenHashSet<E>) super.clone();
+	return newSet;
+    }
+
+}
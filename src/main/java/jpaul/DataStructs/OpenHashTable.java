@@ -0,0 +1,259 @@
+// OpenHashTable.java, created Sat Oct 17 18:05:51 2026
+// Copyright (C) 2005 Alexandru Salcianu <salcianu@alum.mit.edu>
+// Licensed under the Modified BSD Licence; see COPYING for details.
+package jpaul.DataStructs;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+/**
+ * <code>OpenHashTable</code> is the common representation of {@link
+ * OpenHashSet} and {@link OpenHashMap}: a hash table without entry
+ * objects.  The keys (and the values, for maps) are stored in flat,
+ * "dense" arrays, in insertion order; an <code>int</code> index
+ * table, searched with linear probing, maps each hash slot to a
+ * position in the dense arrays.  Optionally, the hash codes of the
+ * keys are cached in a third dense array: this avoids calling
+ * <code>hashCode()</code> during resizing and removal, and
+ * <code>equals</code> on keys with different hash codes.
+ *
+ * <p>Removing a key leaves a hole in the dense arrays (the index
+ * table is cleaned up immediately, by backward shifting); the holes
+ * are compacted away when the dense arrays fill up.  Hence, the
+ * position of a key in the dense arrays changes only when a new key
+ * is added, and iteration follows the insertion order.
+ *
+ * @version $Id$ */
+abstract class OpenHashTable implements Cloneable, Serializable {
+
+    private static final long serialVersionUID = 3061742895510237784L;
+
+    OpenHashTable(boolean cacheHashes, boolean withValues) {
+	this.cacheHashes = cacheHashes;
+	this.withValues  = withValues;
+    }
+
+    // whether the hash codes of the keys are cached in hashes
+    private final boolean cacheHashes;
+    // whether we store values too (maps)
+    private final boolean withValues;
+
+    // dense arrays; only the positions [0, used) are in use
+    transient Object[] keys = EMPTY;
+    transient Object[] values = null;
+    private transient int[] hashes = null;
+    // hash slot -> 1 + position in the dense arrays (0 = free slot);
+    // its length is a power of two, twice the dense capacity
+    private transient int[] index = null;
+    // number of keys
+    transient int size = 0;
+    // number of used positions in the dense arrays (including holes)
+    transient int used = 0;
+
+    private static final Object[] EMPTY = new Object[0];
+    private static final int INITIAL_CAPACITY = 2;
+
+    // stands for the null key
+    private static final Object NULL_KEY = new Object();
+    // marks a hole in the dense arrays
+    private static final Object REMOVED = new Object();
+
+    private static Object mask(Object key) {
+	return (key == null) ? NULL_KEY : key;
+    }
+
+    /** Returns the key at the dense position <code>pos</code>. */
+    final Object key(int pos) {
+	Object key = keys[pos];
+	return (key == NULL_KEY) ? null : key;
+    }
+
+    private static int hash(Object maskedKey) {
+	return (maskedKey == NULL_KEY) ? 0 : maskedKey.hashCode();
+    }
+
+    private int hashAt(int pos) {
+	return (hashes != null) ? hashes[pos] : hash(keys[pos]);
+    }
+
+    private int slot(int hash) {
+	return OpenHashIntSet.mix(hash) & (index.length - 1);
+    }
+
+
+    /** Returns the dense position of <code>key</code>, or -1 if
+	<code>key</code> is not in the table. */
+    final int _find(Object key) {
+	Object k = mask(key);
+	return _find(k, hash(k));
+    }
+
+    // same as _find, for a masked key k with the hash code h
+    private int _find(Object k, int h) {
+	if(size == 0) return -1;
+	int mask = index.length - 1;
+	for(int j = slot(h); ; j = (j + 1) & mask) {
+	    int pos = index[j] - 1;
+	    if(pos < 0) return -1;
+	    Object k2 = keys[pos];
+	    if((k2 == k) || (((hashes == null) || (hashes[pos] == h)) && k.equals(k2)))
+		return pos;
+	}
+    }
+
+
+    /** Adds <code>key</code> to the table, if not already there.
+	Returns the dense position <code>pos</code> of
+	<code>key</code> if <code>key</code> was already in the table,
+	and <code>-(pos+1)</code> if <code>key</code> was just added.
+	Only the insertion of a new key may move the other keys in
+	the dense arrays. */
+    final int _add(Object key) {
+	Object k = mask(key);
+	int h = hash(k);
+	int pos = _find(k, h);
+	if(pos >= 0) return pos;
+
+	if(used == keys.length) ensureRoom();
+	int mask = index.length - 1;
+	int j = slot(h);
+	while(index[j] != 0)
+	    j = (j + 1) & mask;
+
+	pos = used++;
+	keys[pos] = k;
+	if(hashes != null) hashes[pos] = h;
+	index[j] = pos + 1;
+	size++;
+	return -(pos + 1);
+    }
+
+    // makes room for one more key at the end of the dense arrays:
+    // doubles their capacity if they are mostly live, compacts them
+    // otherwise
+    private void ensureRoom() {
+	int cap = keys.length;
+	if(cap == 0)
+	    resize(INITIAL_CAPACITY);
+	else
+	    resize((size >= cap - (cap >> 2)) ? (cap << 1) : cap);
+    }
+
+    private void resize(int newCap) {
+	Object[] newKeys   = new Object[newCap];
+	int[]    newHashes = cacheHashes ? new int[newCap] : null;
+	Object[] newValues = withValues ? new Object[newCap] : null;
+
+	int n = 0;
+	for(int pos = 0; pos < used; pos++) {
+	    Object k = keys[pos];
+	    if(k == REMOVED) continue;
+	    newKeys[n] = k;
+	    if(newHashes != null) newHashes[n] = hashAt(pos);
+	    if(newValues != null) newValues[n] = values[pos];
+	    n++;
+	}
+	keys   = newKeys;
+	hashes = newHashes;
+	values = newValues;
+	used   = n;
+
+	index = new int[newCap << 1];
+	int mask = index.length - 1;
+	for(int pos = 0; pos < n; pos++) {
+	    int j = slot(hashAt(pos));
+	    while(index[j] != 0)
+		j = (j + 1) & mask;
+	    index[j] = pos + 1;
+	}
+    }
+
+
+    /** Removes the key from the dense position <code>pos</code>.
+	Does not move the other keys. */
+    final void _removeAt(int pos) {
+	int mask = index.length - 1;
+	int j = slot(hashAt(pos));
+	while(index[j] != pos + 1)
+	    j = (j + 1) & mask;
+
+	// backward shift deletion: move back the entries from the
+	// same probe run that can no longer be found past slot j
+	for(int k = (j + 1) & mask; index[k] != 0; k = (k + 1) & mask) {
+	    int ideal = slot(hashAt(index[k] - 1));
+	    if(((k - ideal) & mask) >= ((k - j) & mask)) {
+		index[j] = index[k];
+		j = k;
+	    }
+	}
+	index[j] = 0;
+
+	keys[pos] = REMOVED;
+	if(values != null) values[pos] = null;
+	size--;
+	// trailing holes are reclaimed immediately
+	while((used > 0) && (keys[used - 1] == REMOVED))
+	    used--;
+    }
+
+
+    /** Returns the first dense position at or after
+	<code>pos</code> that contains a key, or -1 if none. */
+    final int _nextPos(int pos) {
+	for( ; pos < used; pos++) {
+	    if(keys[pos] != REMOVED)
+		return pos;
+	}
+	return -1;
+    }
+
+
+    final void _clear() {
+	keys   = EMPTY;
+	values = null;
+	hashes = null;
+	index  = null;
+	size = used = 0;
+    }
+
+
+    public OpenHashTable clone() {
+	try {
+	    OpenHashTable newTable = (OpenHashTable) super.clone();
+	    if(keys != EMPTY) {
+		newTable.keys  = keys.clone();
+		newTable.index = index.clone();
+		if(hashes != null) newTable.hashes = hashes.clone();
+		if(values != null) newTable.values = values.clone();
+	    }
+	    return newTable;
+	}
+	catch(CloneNotSupportedException e) {
+	    // should not happen
+	    throw new InternalError();
+	}
+    }
+
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+	out.defaultWriteObject();
+	out.writeInt(size);
+	for(int pos = _nextPos(0); pos >= 0; pos = _nextPos(pos + 1)) {
+	    out.writeObject(key(pos));
+	    if(withValues) out.writeObject(values[pos]);
+	}
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+	in.defaultReadObject();
+	keys = EMPTY;
+	int n = in.readInt();
+	for(int i = 0; i < n; i++) {
+	    int pos = -(_add(in.readObject()) + 1);
+	    if(withValues) values[pos] = in.readObject();
+	}
+    }
+
+}
@@ -0,0 +1,191 @@
+// PersistentMap.java, created Sat Oct 17 14:25:37 2026
+// Copyright (C) 2005 Alexandru Salcianu <salcianu@alum.mit.edu>
+// Licensed under the Modified BSD Licence; see COPYING for details.
+package jpaul.DataStructs;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <code>PersistentMap</code> is a map backed by an immutable hash
+ * array mapped trie (see {@link HAMT}).  Similar to {@link
+ * PersistentSet}, cloning a <code>PersistentMap</code> takes O(1) time
+ * and memory, and each update costs O(log n) time and memory: the
+ * new version of the trie shares all unchanged nodes with the old
+ * one.  The iterators (of the entries, keys, and values) work on a
+ * snapshot of the map.
+ *
+ * @see MapFacts#persistent()
+ *
+ * @version $Id$ */
+public class PersistentMap<K,V> extends AbstractMap<K,V> implements Cloneable, Serializable {
+
+    private static final long serialVersionUID = 3147720853116640829L;
+
+    /** Creates an empty <code>PersistentMap</code>. */
+    public PersistentMap() { }
+
+    /** Creates a <code>PersistentMap</code> with the same mappings
+	as <code>m</code>. */
+    public PersistentMap(Map<? extends K, ? extends V> m) {
+	putAll(m);
+    }
+
+    private transient HAMT.Node root = HAMT.EMPTY;
+    private transient int size = 0;
+
+
+    public V get(Object key) {
+	Object k = HAMT.maskNull(key);
+	Object v = root.find(k, HAMT.hash(k), 0);
+	if(v == HAMT.NOT_FOUND) return null;
+	@SuppressWarnings("unchecked")
+	V value = (V) v;
+	return value;
+    }
+
+
+    public boolean containsKey(Object key) {
+	Object k = HAMT.maskNull(key);
+	return root.find(k, HAMT.hash(k), 0) != HAMT.NOT_FOUND;
+    }
+
+
+    public V put(K key, V value) {
+	Object k = HAMT.maskNull(key);
+	HAMT.Change change = new HAMT.Change();
+	root = root.put(k, value, HAMT.hash(k), 0, change);
+	if(change.sizeChanged) size++;
+	@SuppressWarnings("unchecked")
+	V oldValue = (V) change.oldValue;
+	return oldValue;
+    }
+
+
+    public V remove(Object key) {
+	Object k = HAMT.maskNull(key);
+	HAMT.Change change = new HAMT.Change();
+	root = root.remove(k, HAMT.hash(k), 0, change);
+	if(change.sizeChanged) size--;
+	@SuppressWarnings("unchecked")
+	V oldValue = (V) change.oldValue;
+	return oldValue;
+    }
+
+
+    public int size() {
+	return size;
+    }
+
+
+    public void clear() {
+	root = HAMT.EMPTY;
+	size = 0;
+    }
+
+
+    public Set<Map.Entry<K,V>> entrySet() {
+	return new AbstractSet<Map.Entry<K,V>>() {
+	    public Iterator<Map.Entry<K,V>> iterator() {
+		return new HAMT.EntryIterator<Map.Entry<K,V>>(root) {
+		    protected Map.Entry<K,V> entry(Object key, Object value) {
+			return new Entry(key, value);
+		    }
+		    public void remove() {
+			if(lastKey == HAMT.NOT_FOUND)
+			    throw new IllegalStateException();
+			PersistentMap.this.remove(HAMT.unmaskNull(lastKey));
+			lastKey = HAMT.NOT_FOUND;
+		    }
+		};
+	    }
+	    public int size() {
+		return size;
+	    }
+	    public boolean contains(Object o) {
+		if(!(o instanceof Map.Entry)) return false;
+		Map.Entry<?,?> e = (Map.Entry<?,?>) o;
+		Object k = HAMT.maskNull(e.getKey());
+		Object v = root.find(k, HAMT.hash(k), 0);
+		return (v != HAMT.NOT_FOUND) && DSUtil.checkEq(v, e.getValue());
+	    }
+	    public boolean remove(Object o) {
+		if(!contains(o)) return false;
+		PersistentMap.this.remove(((Map.Entry<?,?>) o).getKey());
+		return true;
+	    }
+	    public void clear() {
+		PersistentMap.this.clear();
+	    }
+	};
+    }
+
+    // Entry of the snapshot an iterator works on; setValue writes
+    // through to the map.
+    private class Entry extends AbstractMapEntry<K,V> {
+	@SuppressWarnings("unchecked")
+	Entry(Object key, Object value) {
+	    this.key = (K) key;
+	    this.value = (V) value;
+	}
+	private final K key;
+	private V value;
+	public K getKey() { return key; }
+	public V getValue() { return value; }
+	public V setValue(V newValue) {
+	    V old = value;
+	    value = newValue;
+	    put(key, newValue);
+	    return old;
+	}
+    }
+
+
+    /** Returns a <code>PersistentMap</code> with the same mappings as
+	<code>this</code> map.  O(1) time and memory: the two maps
+	share their representation, and the mutations of one of them
+	do not affect the other one. */
+    public PersistentMap<K,V> clone() {
+	try {
+	    @SuppressWarnings("unchecked")
+	    PersistentMap<K,V> res = (PersistentMap<K,V>) super.clone();
+	    return res;
+	}
+	catch(CloneNotSupportedException e) {
+	    // should not happen ...
+	    throw new Error(e);
+	}
+    }
+
+
+    // the trie nodes are not serializable; we write the entries
+    private void writeObject(ObjectOutputStream out) throws IOException {
+	out.defaultWriteObject();
+	out.writeInt(size);
+	for(Map.Entry<K,V> entry : entrySet()) {
+	    out.writeObject(entry.getKey());
+	    out.writeObject(entry.getValue());
+	}
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+	in.defaultReadObject();
+	root = HAMT.EMPTY;
+	int n = in.readInt();
+	for(int i = 0; i < n; i++) {
+	    @SuppressWarnings("unchecked")
+	    K key = (K) in.readObject();
+	    @SuppressWarnings("unchecked")
+	    V value = (V) in.readObject();
+	    put(key, value);
+	}
+    }
+
+}
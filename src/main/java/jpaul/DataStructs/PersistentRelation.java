@@ -0,0 +1,241 @@
+// PersistentRelation.java, created Sat Oct 17 14:51:05 2026
+// Copyright (C) 2005 Alexandru Salcianu <salcianu@alum.mit.edu>
+// Licensed under the Modified BSD Licence; see COPYING for details.
+package jpaul.DataStructs;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import jpaul.Misc.Function;
+import jpaul.Misc.Predicate;
+
+/**
+ * <code>PersistentRelation</code> is a <code>Relation</code>
+ * represented by a {@link PersistentMap} from keys to {@link
+ * PersistentSet}s of values.  Cloning a
+ * <code>PersistentRelation</code> takes O(1) time and memory, and
+ * adding / removing a pair costs O(log n): the clones share the
+ * unchanged parts of their representations.
+ *
+ * <p>Implementation note: the sets of values from the map are never
+ * mutated once stored; an update of the values of a key clones
+ * (in O(1)) the old set, mutates the clone, and stores it in the
+ * map.  Hence, several clones of a relation can safely share these
+ * sets.
+ *
+ * @see RelFacts#persistent()
+ *
+ * @version $Id$ */
+public class PersistentRelation<K,V> extends Relation<K,V> {
+
+    private static final long serialVersionUID = 1822496313305547741L;
+
+    /** Creates an empty <code>PersistentRelation</code>. */
+    public PersistentRelation() { }
+
+    // invariant: map never maps a key to an empty set
+    private PersistentMap<K,PersistentSet<V>> map = new PersistentMap<K,PersistentSet<V>>();
+
+    // returns a private copy of the set of values of key (a new,
+    // empty set if key has no values)
+    private PersistentSet<V> copyValues(K key) {
+	PersistentSet<V> set = map.get(key);
+	return (set == null) ? new PersistentSet<V>() : set.clone();
+    }
+
+    // stores set as the values of key
+    private void setValues(K key, PersistentSet<V> set) {
+	if(set.isEmpty())
+	    map.remove(key);
+	else
+	    map.put(key, set);
+    }
+
+
+    public boolean add(K key, V value) {
+	PersistentSet<V> set = map.get(key);
+	if((set != null) && set.contains(value)) return false;
+	set = copyValues(key);
+	set.add(value);
+	map.put(key, set);
+	return true;
+    }
+
+
+    public boolean addAll(K key, Collection<V> values) {
+	if(values.isEmpty()) return false;
+	if((values instanceof PersistentSet/*<V>*/) && !map.containsKey(key)) {
+	    // share the representation of values
+	    map.put(key, ((PersistentSet<V>) values).clone());
+	    return true;
+	}
+	return addAll2(key, values);
+    }
+
+
+    public boolean addAll2(K key, Collection<? extends V> values) {
+	if(values.isEmpty()) return false;
+	PersistentSet<V> set = copyValues(key);
+	if(!set.addAll(values)) return false;
+	map.put(key, set);
+	return true;
+    }
+
+
+    public void clear() {
+	map.clear();
+    }
+
+
+    public boolean remove(K key, V value) {
+	PersistentSet<V> set = map.get(key);
+	if((set == null) || !set.contains(value)) return false;
+	set = set.clone();
+	set.remove(value);
+	setValues(key, set);
+	return true;
+    }
+
+
+    public boolean removeAll(K key, Collection<V> values) {
+	if(!map.containsKey(key)) return false;
+	PersistentSet<V> set = copyValues(key);
+	if(!set.removeAll(values)) return false;
+	setValues(key, set);
+	return true;
+    }
+
+
+    public boolean removeKey(K key) {
+	return (map.remove(key) != null);
+    }
+
+
+    public boolean removeKeys(Predicate<K> predicate) {
+	boolean changed = false;
+	// the iterator works on a snapshot of the map
+	for(K key : map.keySet()) {
+	    if(predicate.check(key)) {
+		map.remove(key);
+		changed = true;
+	    }
+	}
+	return changed;
+    }
+
+
+    public boolean removeValues(Predicate<V> predicate) {
+	boolean changed = false;
+	for(Map.Entry<K,PersistentSet<V>> entry : map.entrySet()) {
+	    PersistentSet<V> set = null;
+	    for(V value : entry.getValue()) {
+		if(predicate.check(value)) {
+		    if(set == null) set = entry.getValue().clone();
+		    set.remove(value);
+		}
+	    }
+	    if(set != null) {
+		setValues(entry.getKey(), set);
+		changed = true;
+	    }
+	}
+	return changed;
+    }
+
+
+    public boolean containsKey(K key) {
+	return map.containsKey(key);
+    }
+
+
+    public boolean isEmpty() {
+	return map.isEmpty();
+    }
+
+
+    /** The returned set must not be mutated: it may be shared with
+	clones of <code>this</code> relation. */
+    protected final Set<V> _getValues(K key) {
+	Set<V> res = map.get(key);
+	if(res == null) {
+	    return Collections.emptySet();
+	}
+	return res;
+    }
+
+
+    public Set<K> keys() {
+	return Collections.<K>unmodifiableSet(map.keySet());
+    }
+
+
+    public Iterable<V> values() {
+	return
+	    new ImmutableCompoundIterable<K,V>
+	    (keys(),
+	     new Function<K,Iterable<V>>() {
+		public Iterable<V> f(K key) {
+		    return getValues(key);
+		}
+	    });
+    }
+
+
+    public boolean union(Relation<K,V> rel) {
+	if(rel == null) return false;
+	boolean changed = false;
+	for(K key : rel.keys()) {
+	    if(this.addAll(key, rel._getValues(key))) {
+		changed = true;
+	    }
+	}
+	return changed;
+    }
+
+
+    /** Same hash code as a {@link MapSetRelation} with the same
+	pairs. */
+    public int hashCode() {
+	int h = 0;
+	for(Map.Entry<K,PersistentSet<V>> entry : map.entrySet()) {
+	    int hKey = entry.getKey().hashCode();
+	    for(V value : entry.getValue()) {
+		h += hKey + value.hashCode();
+	    }
+	}
+	return h;
+    }
+
+
+    public boolean equals(Object o) {
+	if(o == null) return false;
+	if(o == this) return true;
+	if(!(o instanceof Relation)) return false;
+
+	@SuppressWarnings("unchecked")
+	Relation<K,V> r2 = (Relation<K,V>) o;
+
+	// 1. check the relations have the same keys
+	Set<K> set1 = this.keys();
+	if(!set1.equals(r2.keys())) return false;
+
+	// 2. check each key is mapped to the same values
+	for(K key : set1) {
+	    if(!this._getValues(key).equals(r2._getValues(key))) return false;
+	}
+	return true;
+    }
+
+
+    /** Creates a new, independent relation (independent = the
+	operations on the new relation won't affect the old one).
+	O(1) time and memory. */
+    public PersistentRelation<K,V> clone() {
+	PersistentRelation<K,V> newRel = (PersistentRelation<K,V>) super.clone();
+	newRel.map = map.clone();
+	return newRel;
+    }
+
+}
@@ -0,0 +1,144 @@
+// PersistentSet.java, created Sat Oct 17 14:02:11 2026
+// Copyright (C) 2005 Alexandru Salcianu <salcianu@alum.mit.edu>
+// Licensed under the Modified BSD Licence; see COPYING for details.
+package jpaul.DataStructs;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * <code>PersistentSet</code> is a set backed by an immutable hash
+ * array mapped trie (see {@link HAMT}).  Cloning a
+ * <code>PersistentSet</code> takes O(1) time and memory: the clone
+ * shares the trie with the original set.  A mutation never modifies
+ * a trie node; it builds a new version of the trie that shares all
+ * unchanged nodes with the old one.  Hence, a one-element update
+ * costs O(log n) time and memory, independently of how many clones
+ * share the original trie.
+ *
+ * <p>Compared with the copy-on-write sets from {@link SetFacts#cow
+ * SetFacts.cow}, a persistent set never copies its entire
+ * representation: good when large sets are cloned and next changed
+ * by only a few elements.  The iterators work on a snapshot of the
+ * set: they are not affected by (and do not fail because of)
+ * concurrent mutations of the set they come from.
+ *
+ * @see SetFacts#persistent()
+ *
+ * @version $Id$ */
+public class PersistentSet<E> extends AbstractSet<E> implements Cloneable, Serializable {
+
+    private static final long serialVersionUID = 6405391277230187426L;
+
+    /** Creates an empty <code>PersistentSet</code>. */
+    public PersistentSet() { }
+
+    /** Creates a <code>PersistentSet</code> that contains the
+	elements of <code>c</code>. */
+    public PersistentSet(Collection<? extends E> c) {
+	addAll(c);
+    }
+
+    // the trie maps each element of this set to PRESENT
+    private transient HAMT.Node root = HAMT.EMPTY;
+    private transient int size = 0;
+
+    private static final Object PRESENT = Boolean.TRUE;
+
+
+    public boolean add(E elem) {
+	Object key = HAMT.maskNull(elem);
+	HAMT.Change change = new HAMT.Change();
+	root = root.put(key, PRESENT, HAMT.hash(key), 0, change);
+	if(!change.sizeChanged) return false;
+	size++;
+	return true;
+    }
+
+
+    public boolean remove(Object elem) {
+	Object key = HAMT.maskNull(elem);
+	HAMT.Change change = new HAMT.Change();
+	root = root.remove(key, HAMT.hash(key), 0, change);
+	if(!change.sizeChanged) return false;
+	size--;
+	return true;
+    }
+
+
+    public boolean contains(Object elem) {
+	Object key = HAMT.maskNull(elem);
+	return root.find(key, HAMT.hash(key), 0) != HAMT.NOT_FOUND;
+    }
+
+
+    public int size() {
+	return size;
+    }
+
+
+    public void clear() {
+	root = HAMT.EMPTY;
+	size = 0;
+    }
+
+
+    public Iterator<E> iterator() {
+	return new HAMT.EntryIterator<E>(root) {
+	    @SuppressWarnings("unchecked")
+	    protected E entry(Object key, Object value) {
+		return (E) key;
+	    }
+	    public void remove() {
+		if(lastKey == HAMT.NOT_FOUND)
+		    throw new IllegalStateException();
+		PersistentSet.this.remove(HAMT.unmaskNull(lastKey));
+		lastKey = HAMT.NOT_FOUND;
+	    }
+	};
+    }
+
+
+    /** Returns a <code>PersistentSet</code> with the same elements
+	as <code>this</code> set.  O(1) time and memory: the two sets
+	share their representation, and the mutations of one of them
+	do not affect the other one. */
+    public PersistentSet<E> clone() {
+	try {
+	    @SuppressWarnings("unchecked")
+	    PersistentSet<E> res = (PersistentSet<E>) super.clone();
+	    return res;
+	}
+	catch(CloneNotSupportedException e) {
+	    // should not happen ...
+	    throw new Error(e);
+	}
+    }
+
+
+    // the trie nodes are not serializable; we write the elements
+    private void writeObject(ObjectOutputStream out) throws IOException {
+	out.defaultWriteObject();
+	out.writeInt(size);
+	for(E elem : this) {
+	    out.writeObject(elem);
+	}
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+	in.defaultReadObject();
+	root = HAMT.EMPTY;
+	int n = in.readInt();
+	for(int i = 0; i < n; i++) {
+	    @SuppressWarnings("unchecked")
+	    E elem = (E) in.readObject();
+	    add(elem);
+	}
+    }
+
+}
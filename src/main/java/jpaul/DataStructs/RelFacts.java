@@ -68,6 +68,30 @@ public abstract class RelFacts {
     }
 
 
+    /** Returns a relation factory that generates {@link
+	PersistentRelation}s: relations represented by a persistent
+	map (see {@link MapFacts#persistent()}) from keys to persistent
+	sets of values (see {@link SetFacts#persistent()}).  Cloning a
+	persistent relation is a constant time operation, and adding
+	or removing a pair later costs O(log n).  Unlike {@link
+	#cow(RelationFactory) COW relations}, a persistent relation
+	never copies its whole representation. */
+    public static <K,V> RelationFactory<K,V> persistent() {
+	return new RelationFactory<K,V>() {
+	    public Relation<K,V> create() {
+		return new PersistentRelation<K,V>();
+	    }
+
+	    public Relation<K,V> create(Relation<K,V> r) {
+		if(r instanceof PersistentRelation/*<K,V>*/) {
+		    return ((PersistentRelation<K,V>) r).clone();
+		}
+		return super.create(r);
+	    }
+	};
+    }
+
+
     /** Returns a relation factory that generates "copy-on-write"
 	(COW) relations.  A COW relation shares its representation
 	(also a relation) with other COW relations, until a mutation
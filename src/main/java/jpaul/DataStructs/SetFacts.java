@@ -68,6 +68,41 @@ public final class SetFacts {
     
     
 
+    /** Returns a set factory that generates {@link OpenHashSet}s:
+	compact hash sets that use open addressing over flat arrays,
+	without one entry object per element.  Good for applications
+	that use many small sets.  Like <code>LinkedHashSet</code>s,
+	they iterate in insertion order.  The generated sets cache the
+	hash codes of their elements.
+
+	@see #openHash(boolean) */
+    public static <E> SetFactory<E> openHash() {
+	return openHash(true);
+    }
+
+
+    /** Returns a set factory that generates {@link OpenHashSet}s.
+
+	@param cacheHashes Whether the generated sets cache the hash
+	codes of their elements (see {@link
+	OpenHashSet#OpenHashSet(boolean)}). */
+    public static <E> SetFactory<E> openHash(final boolean cacheHashes) {
+	return new SetFactory<E>() {
+	    private static final long serialVersionUID = 6419305716828542367L;
+
+	    public Set<E> create() { return new OpenHashSet<E>(cacheHashes); }
+
+	    public Set<E> newColl(Collection<E> c) {
+		if(c instanceof OpenHashSet/*<E>*/) {
+		    return ((OpenHashSet<E>) c).clone();
+		}
+		return super.newColl(c);
+	    }
+	};
+    }
+
+
+
     /** Returns a set factory that generates <code>TreeSet</code>s.
 	<code>TreeSet</code>s are great for applications that use many
 	small sets.*/
@@ -150,6 +185,30 @@ public final class SetFacts {
     }
 
 
+    /** Returns a set factory that generates {@link PersistentSet}s:
+	sets backed by immutable hash array mapped tries.  Cloning a
+	persistent set (e.g., via {@link SetFactory#newColl(Collection)
+	newColl}) is a constant time operation, and each later mutation
+	costs O(log n): unlike the {@link #cow copy-on-write sets}, a
+	persistent set never copies its whole representation.  Good
+	for applications that clone large sets and next change them by
+	only a few elements. */
+    public static <E> SetFactory<E> persistent() {
+	return new SetFactory<E>() {
+	    private static final long serialVersionUID = 4817026335921658094L;
+
+	    public Set<E> create() { return new PersistentSet<E>(); }
+
+	    public Set<E> newColl(Collection<E> c) {
+		if(c instanceof PersistentSet/*<E>*/) {
+		    return ((PersistentSet<E>) c).clone();
+		}
+		return super.newColl(c);
+	    }
+	};
+    }
+
+
     /** Returns a set factory that generates map-backed sets.  The
         elements from the set are the keys of the map; the values they
         are mapped to do not matter; in practice, the implementation
@@ -176,8 +235,8 @@ public final class SetFacts {
 
     /** Returns a set factory that generates sets backed by
         <code>NoCompTreeMap</code>s.  {@link
-        jpaul.DataStructs.NoCompTreeMap NoCompTreeMap} is a binary
-        tree-backed map that does not require a user-defined {@link
+        jpaul.DataStructs.NoCompTreeMap NoCompTreeMap} is a balanced
+        (AVL) tree-backed map that does not require a user-defined {@link
         java.util.Comparator Comparator} between keys.  This set
         factory is good for applications that use many small trees and
         when a total order <code>Comparator</code> is hard to
@@ -188,4 +247,27 @@ public final class SetFacts {
 	return mapBased(MapFacts.<E,Object>noCompTree());
     }
 
+
+    /** Returns a set factory that generates {@link BitSetSet}s whose
+	elements are interned in <code>universe</code>.  The sets
+	generated by the same factory can be combined with fast,
+	word-parallel operations; this is the factory of choice for
+	applications that use many large sets of elements from a
+	common pool (e.g., set constraints: see {@link
+	jpaul.Constraints.SetConstraints.BitSetSVar BitSetSVar}). */
+    public static <E> SetFactory<E> bitSet(final Universe<E> universe) {
+	return new SetFactory<E>() {
+	    private static final long serialVersionUID = -2318450976318520361L;
+
+	    public Set<E> create() { return new BitSetSet<E>(universe); }
+
+	    public Set<E> newColl(Collection<E> c) {
+		if((c instanceof BitSetSet/*<E>*/) && (((BitSetSet<E>) c).universe() == universe)) {
+		    return ((BitSetSet<E>) c).clone();
+		}
+		return super.newColl(c);
+	    }
+	};
+    }
+
 }
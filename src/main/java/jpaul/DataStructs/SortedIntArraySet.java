@@ -0,0 +1,178 @@
+// SortedIntArraySet.java, created Sat Oct 17 09:58:17 2026
+// Copyright (C) 2005 Alexandru Salcianu <salcianu@alum.mit.edu>
+// Licensed under the Modified BSD Licence; see COPYING for details.
+package jpaul.DataStructs;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * <code>SortedIntArraySet</code> is an {@link IntSet} that stores its
+ * elements in a sorted <code>int</code> array.  This is the most
+ * compact representation (4 bytes per element, plus the unused
+ * capacity).  Membership test is logarithmic (binary search);
+ * <code>add</code> and <code>remove</code> are linear in the worst
+ * case, as they shift the array elements.  Adding an entire
+ * <code>SortedIntArraySet</code> is done by a linear merge.
+ *
+ * <p>Good for small sets, and for sets that are built once and next
+ * mostly read.  The iteration order is the increasing order of the
+ * elements.
+ *
+ * @version $Id$ */
+public class SortedIntArraySet extends IntSet {
+
+    private static final long serialVersionUID = 3886024173317208854L;
+
+    /** Creates an empty <code>SortedIntArraySet</code>. */
+    public SortedIntArraySet() {
+	this(4);
+    }
+
+    /** Creates an empty <code>SortedIntArraySet</code> that can
+        store <code>capacity</code> elements without reallocating its
+        array. */
+    public SortedIntArraySet(int capacity) {
+	elems = new int[capacity];
+    }
+
+    /** Creates a <code>SortedIntArraySet</code> with the elements of
+        <code>set</code>. */
+    public SortedIntArraySet(IntSet set) {
+	elems = set.toArray();
+	size = elems.length;
+	if(!(set instanceof SortedIntArraySet))
+	    Arrays.sort(elems);
+    }
+
+    // elems[0..size-1] are the elements of this set, in strictly
+    // increasing order
+    private int[] elems;
+    private int size;
+
+
+    public boolean add(int elem) {
+	int pos = Arrays.binarySearch(elems, 0, size, elem);
+	if(pos >= 0) return false;
+	pos = -(pos + 1);
+	if(size == elems.length) {
+	    int[] newElems = new int[newCapacity(size + 1)];
+	    System.arraycopy(elems, 0, newElems, 0, pos);
+	    System.arraycopy(elems, pos, newElems, pos + 1, size - pos);
+	    elems = newElems;
+	}
+	else {
+	    System.arraycopy(elems, pos, elems, pos + 1, size - pos);
+	}
+	elems[pos] = elem;
+	size++;
+	return true;
+    }
+
+    private int newCapacity(int minCapacity) {
+	return Math.max(minCapacity, elems.length + (elems.length >> 1) + 1);
+    }
+
+
+    public boolean addAll(IntSet set) {
+	if(!(set instanceof SortedIntArraySet))
+	    return super.addAll(set);
+	SortedIntArraySet s2 = (SortedIntArraySet) set;
+	if(s2.size == 0) return false;
+
+	// linear merge of the two sorted arrays
+	int[] res = new int[size + s2.size];
+	int i = 0, j = 0, k = 0;
+	while(i < size && j < s2.size) {
+	    int a = elems[i], b = s2.elems[j];
+	    if(a < b)      { res[k++] = a; i++; }
+	    else if(b < a) { res[k++] = b; j++; }
+	    else           { res[k++] = a; i++; j++; }
+	}
+	while(i < size)    res[k++] = elems[i++];
+	while(j < s2.size) res[k++] = s2.elems[j++];
+
+	if(k == size) return false;
+	elems = res;
+	size = k;
+	return true;
+    }
+
+
+    public boolean remove(int elem) {
+	int pos = Arrays.binarySearch(elems, 0, size, elem);
+	if(pos < 0) return false;
+	System.arraycopy(elems, pos + 1, elems, pos, size - pos - 1);
+	size--;
+	return true;
+    }
+
+
+    public boolean contains(int elem) {
+	return Arrays.binarySearch(elems, 0, size, elem) >= 0;
+    }
+
+
+    public int size() {
+	return size;
+    }
+
+
+    public void clear() {
+	size = 0;
+    }
+
+
+    /** Shrinks the underlying array to the size of
+        <code>this</code> set. */
+    public void trimToSize() {
+	if(size < elems.length) {
+	    int[] newElems = new int[size];
+	    System.arraycopy(elems, 0, newElems, 0, size);
+	    elems = newElems;
+	}
+    }
+
+
+    public IntIterator iterator() {
+	return new IntIterator() {
+	    private int pos = 0;
+	    public boolean hasNext() {
+		return pos < size;
+	    }
+	    public int next() {
+		if(pos >= size)
+		    throw new NoSuchElementException();
+		return elems[pos++];
+	    }
+	};
+    }
+
+
+    public int[] toArray() {
+	int[] res = new int[size];
+	System.arraycopy(elems, 0, res, 0, size);
+	return res;
+    }
+
+
+    public boolean equals(Object o) {
+	if(!(o instanceof SortedIntArraySet))
+	    return super.equals(o);
+	SortedIntArraySet s2 = (SortedIntArraySet) o;
+	if(s2.size != this.size) return false;
+	for(int i = 0; i < size; i++) {
+	    if(elems[i] != s2.elems[i]) return false;
+	}
+	return true;
+    }
+
+
+    public SortedIntArraySet clone() {
+	SortedIntArraySet res = (SortedIntArraySet) super.clone();
+	// the clone gets an array of the exact size
+	res.elems = toArray();
+	return res;
+    }
+
+}
@@ -0,0 +1,107 @@
+// Universe.java, created Fri Oct 16 10:12:31 2026
+// Copyright (C) 2005 Alexandru Salcianu <salcianu@alum.mit.edu>
+// Licensed under the Modified BSD Licence; see COPYING for details.
+package jpaul.DataStructs;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <code>Universe</code> is an interning table: it maps each element
+ * of type <code>T</code> to a small, dense integer id (0, 1, 2, ...),
+ * and each id back to its element.  Ids are never reused: once
+ * interned, an element keeps its id for the lifetime of the universe.
+ *
+ * <p>The sets from {@link BitSetSet} represent their elements as the
+ * bits of their ids; all the sets from the same universe can be
+ * combined with fast, word-parallel operations.
+ *
+ * <p>A universe can be used by several threads at the same time:
+ * {@link #intern intern} is synchronized, and {@link #lookup lookup}
+ * and {@link #elem elem} do not need any lock.
+ *
+ * @see SetFacts#bitSet
+ *
+ * @version $Id$ */
+public class Universe<T> implements Serializable {
+
+    private static final long serialVersionUID = -3405812651189622406L;
+
+    /** Creates an empty <code>Universe</code>. */
+    public Universe() {
+	this(16);
+    }
+
+    /** Creates an empty <code>Universe</code> with room for
+	<code>initialCapacity</code> elements (it grows as needed). */
+    public Universe(int initialCapacity) {
+	elems  = new Object[Math.max(initialCapacity, 1)];
+	elem2id = new ConcurrentHashMap<T,Integer>(Math.max(initialCapacity, 1));
+    }
+
+    // map element -> its id
+    private final Map<T,Integer> elem2id;
+    // map id -> element; replaced by a bigger array when full
+    private volatile Object[] elems;
+    // number of interned elements
+    private volatile int size = 0;
+
+
+    /** Returns the id of <code>elem</code>; if <code>elem</code> was
+	not interned yet, gives it the next available id.
+	<code>elem</code> should not be <code>null</code>. */
+    public int intern(T elem) {
+	Integer id = elem2id.get(elem);
+	if(id != null) return id.intValue();
+	synchronized(this) {
+	    id = elem2id.get(elem);
+	    if(id != null) return id.intValue();
+	    int newId = size;
+	    Object[] array = elems;
+	    if(newId == array.length) {
+		Object[] newArray = new Object[2 * array.length];
+		System.arraycopy(array, 0, newArray, 0, array.length);
+		array = newArray;
+	    }
+	    array[newId] = elem;
+	    // publish the element before its id
+	    elems = array;
+	    size  = newId + 1;
+	    elem2id.put(elem, Integer.valueOf(newId));
+	    return newId;
+	}
+    }
+
+
+    /** Returns the id of <code>elem</code>, or -1 if
+	<code>elem</code> was not interned in <code>this</code>
+	universe.  Unlike {@link #intern intern}, this method does not
+	change the universe. */
+    public int lookup(Object elem) {
+	if(elem == null) return -1;
+	Integer id = elem2id.get(elem);
+	return (id == null) ? -1 : id.intValue();
+    }
+
+
+    /** Returns the element whose id is <code>id</code>. */
+    public T elem(int id) {
+	@SuppressWarnings("unchecked")
+	T elem = (T) elems[id];
+	return elem;
+    }
+
+
+    /** Returns the number of elements interned in <code>this</code>
+	universe.  The ids in use are 0, 1, ..., <code>size()-1</code>. */
+    public int size() {
+	return size;
+    }
+
+
+    public String toString() {
+	return "Universe(" + size + " elements)";
+    }
+
+}
@@ -0,0 +1,609 @@
+// PreprocessingBenchmark.java, created Fri Oct 16 19:05:37 2026
+// Copyright (C) 2005 Alexandru Salcianu <salcianu@alum.mit.edu>
+// Licensed under the Modified BSD Licence; see COPYING for details.
+package jpaul.Constraints;
+
+import java.util.Set;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Arrays;
+import java.util.Random;
+
+import jpaul.Constraints.SetConstraints.SVar;
+import jpaul.Constraints.SetConstraints.SetConstraints;
+import jpaul.Constraints.SetConstraints.FilterConstraint;
+import jpaul.DataStructs.DSUtil;
+import jpaul.DataStructs.MapSetRelation;
+import jpaul.DataStructs.NonIterableMap;
+import jpaul.DataStructs.NonIterableSet;
+import jpaul.DataStructs.Relation;
+import jpaul.DataStructs.UnionFind;
+import jpaul.DataStructs.WorkSet;
+import jpaul.DataStructs.WorkStack;
+import jpaul.Graphs.DiGraph;
+import jpaul.Graphs.ForwardNavigator;
+import jpaul.Graphs.SCComponent;
+import jpaul.Graphs.TopSortedCompDiGraph;
+import jpaul.Misc.Predicate;
+
+/**
+ * <code>PreprocessingBenchmark</code> compares the two
+ * implementations of the preprocessing passes that unify the
+ * variables with a single incoming inclusion and eliminate the
+ * inclusions from empty variables: the single-pass one from {@link
+ * ConstraintSystem}, and the old, multi-pass one, that alternates
+ * full passes over the constraints until nothing changes (kept here,
+ * see {@link MultiPass}).  For each synthetic system, it checks that
+ * both implementations produce the same unifications and the same
+ * simplified constraints, checks the solution against a naive
+ * worklist solver (without any preprocessing), and prints the median
+ * times of the two implementations.  The single-pass time is the
+ * time to construct the <code>ConstraintSystem</code>: it also
+ * includes the construction of the solver structures.  Not a JUnit
+ * test; run it with
+ *
+ * <pre>
+ *   mvn test-compile
+ *   java -cp target/classes:target/test-classes jpaul.Constraints.PreprocessingBenchmark [scale]
+ * </pre>
+ *
+ * where the optional <code>scale</code> (default 1) multiplies the
+ * size of the systems.
+ *
+ * @version $Id$ */
+public class PreprocessingBenchmark {
+
+    public static void main(String[] args) {
+	int scale = (args.length > 0) ? Integer.parseInt(args[0]) : 1;
+
+	System.out.println("system              constraints  multi-pass(ms)  single-pass(ms)");
+	run("forest", forest(new Random(1), 100000 * scale));
+	run("random", random(new Random(2), 50000 * scale, 150000 * scale));
+	run("empty-cascades", cascades(new Random(3), 20000 * scale));
+    }
+
+
+    private static void run(String name, SetConstraints<Integer> sc) {
+	long[] multi  = new long[5];
+	long[] single = new long[5];
+	MultiPass<SVar<Integer>,Set<Integer>> mp = null;
+	ConstraintSystem<SVar<Integer>,Set<Integer>> sys = null;
+	// alternate the two implementations; the first runs warm up the JIT
+	for(int i = 0; i < multi.length; i++) {
+	    long start = System.nanoTime();
+	    mp = new MultiPass<SVar<Integer>,Set<Integer>>(sc);
+	    multi[i] = System.nanoTime() - start;
+
+	    start = System.nanoTime();
+	    sys = new ConstraintSystem<SVar<Integer>,Set<Integer>>(sc);
+	    single[i] = System.nanoTime() - start;
+	}
+	compare(name, sc, mp, sys);
+	Arrays.sort(multi);
+	Arrays.sort(single);
+
+	System.out.println(pad(name, 20) + lpad(sc.size(), 11) +
+			   lpad(multi[multi.length / 2] / 1000000, 16) +
+			   lpad(single[single.length / 2] / 1000000, 17));
+    }
+
+
+    // checks that the two implementations produce the same
+    // unifications and the same simplifications, and that sys
+    // computes the right solution
+    private static void compare(String name, SetConstraints<Integer> sc,
+				MultiPass<SVar<Integer>,Set<Integer>> mp,
+				ConstraintSystem<SVar<Integer>,Set<Integer>> sys) {
+	Map<SVar<Integer>,Set<SVar<Integer>>> classes1 = classes(mp.unification(), sys.vars());
+	Map<SVar<Integer>,Set<SVar<Integer>>> classes2 = classes(sys.debugGetVarUnification(), sys.vars());
+	for(SVar<Integer> v : sys.vars()) {
+	    check(name, "unification of " + v, classes1.get(v), classes2.get(v));
+	}
+	check(name, "simplified constraints",
+	      constraints(mp.cs, classes1), constraints(sys.debugSimplifiedConstraints(), classes2));
+
+	sys.setStatistics(true);
+	SolReader<SVar<Integer>,Set<Integer>> sol = sys.solve();
+	SolverStats<SVar<Integer>> stats = sys.getLastStatistics();
+	check(name, "unified vars", Integer.valueOf(mp.nbUnifiedSLt), Integer.valueOf(stats.getNbUnifiedSingleLt()));
+	check(name, "empty vars", Integer.valueOf(mp.nbEmptyVars), Integer.valueOf(stats.getNbEmptyVars()));
+	check(name, "eliminated constraints",
+	      Integer.valueOf(mp.nbElimCons), Integer.valueOf(stats.getNbEliminatedConstraints()));
+
+	NaiveSolver<SVar<Integer>,Set<Integer>> ref = new NaiveSolver<SVar<Integer>,Set<Integer>>(sc);
+	for(SVar<Integer> v : sys.vars()) {
+	    check(name, "value of " + v, ref.get(v), sol.get(v));
+	}
+    }
+
+    // maps each variable to its class of unified variables, given
+    // the map variable -> representative of its class (for the
+    // unified variables only)
+    private static Map<SVar<Integer>,Set<SVar<Integer>>> classes(Map<SVar<Integer>,SVar<Integer>> unification,
+								  Collection<SVar<Integer>> vars) {
+	Map<SVar<Integer>,Set<SVar<Integer>>> rep2class = new HashMap<SVar<Integer>,Set<SVar<Integer>>>();
+	Map<SVar<Integer>,Set<SVar<Integer>>> res = new HashMap<SVar<Integer>,Set<SVar<Integer>>>();
+	for(Map.Entry<SVar<Integer>,SVar<Integer>> entry : unification.entrySet()) {
+	    Set<SVar<Integer>> cls = rep2class.get(entry.getValue());
+	    if(cls == null) {
+		cls = new HashSet<SVar<Integer>>();
+		rep2class.put(entry.getValue(), cls);
+	    }
+	    cls.add(entry.getKey());
+	    res.put(entry.getKey(), cls);
+	}
+	for(SVar<Integer> v : vars) {
+	    if(!res.containsKey(v)) {
+		res.put(v, new HashSet<SVar<Integer>>(Arrays.asList(v)));
+	    }
+	}
+	return res;
+    }
+
+    // The constraints cs, with their variables replaced by their
+    // classes (the representatives may be different).
+    private static Set<Object> constraints(Collection<Constraint<SVar<Integer>,Set<Integer>>> cs,
+					   Map<SVar<Integer>,Set<SVar<Integer>>> classes) {
+	Set<Object> res = new HashSet<Object>();
+	for(Constraint<SVar<Integer>,Set<Integer>> c : cs) {
+	    List<Object> cls = new ArrayList<Object>();
+	    cls.add(c.getClass());
+	    cls.add(c.signature());
+	    for(SVar<Integer> v : c.in()) {
+		cls.add(classes.get(v));
+	    }
+	    cls.add("<=");
+	    for(SVar<Integer> v : c.out()) {
+		cls.add(classes.get(v));
+	    }
+	    res.add(cls);
+	}
+	return res;
+    }
+
+    private static void check(String name, String what, Object o1, Object o2) {
+	if((o1 == null) ? (o2 != null) : !o1.equals(o2)) {
+	    throw new Error(name + ": different " + what + ": " + o1 + " vs. " + o2);
+	}
+    }
+
+
+    /** The old, multi-pass implementation of the preprocessing of
+	{@link ConstraintSystem} (without the offline variable
+	substitution): unifies the mutually smaller variables, then
+	alternates full passes of <code>unifySingleLt</code> and
+	<code>eliminateEmpty</code> over the constraints (rewriting
+	them modulo the unifications after each round), until nothing
+	changes. */
+    static class MultiPass<V extends Var<Info>, Info> {
+
+	MultiPass(Collection<Constraint<V,Info>> origCs) {
+	    // the constraint system eliminates the duplicates too
+	    cs = new ArrayList<Constraint<V,Info>>(new LinkedHashSet<Constraint<V,Info>>(origCs));
+	    for(Constraint<V,Info> c : cs) {
+		vars.addAll(c.in());
+		vars.addAll(c.out());
+	    }
+	    unifyMutuallySmaller();
+	    boolean changed = true;
+	    while(changed) {
+		changed = false;
+		if(simplify()) {
+		    // the rewriting may drop some constraints that are
+		    // not inclusions, and enable new simplifications
+		    changed = updateConstraints();
+		}
+	    }
+	}
+
+	// the simplified constraints
+	final ArrayList<Constraint<V,Info>> cs;
+	private final Set<V> vars = new LinkedHashSet<V>();
+	private final UnionFind<V> uf = new UnionFind<V>();
+	private final NonIterableSet<V> emptyReps = new NonIterableSet<V>();
+	int nbUnifiedSLt = 0;
+	int nbEmptyVars  = 0;
+	int nbElimCons   = 0;
+
+	// maps each unified variable to the representative of its class
+	Map<V,V> unification() {
+	    Map<V,V> res = new LinkedHashMap<V,V>();
+	    for(Set<V> cls : uf.allNonTrivialEquivalenceClasses()) {
+		V rep = uf.find(DSUtil.getFirst(cls));
+		for(V v : cls) {
+		    res.put(v, rep);
+		}
+	    }
+	    return res;
+	}
+
+	// unify groups of mutually smaller variables
+	private void unifyMutuallySmaller() {
+	    final Map<V,List<V>> succs = new LinkedHashMap<V,List<V>>();
+	    for(Constraint<V,Info> c : cs) {
+		if(c instanceof LtConstraint/*<V,Info>*/) {
+		    LtConstraint<V,Info> ltc = (LtConstraint<V,Info>) c;
+		    vertex(succs, ltc.vs).add(ltc.vd);
+		    vertex(succs, ltc.vd);
+		}
+	    }
+	    DiGraph<V> dg = DiGraph.<V>diGraph(succs.keySet(), new ForwardNavigator<V>() {
+		public List<V> next(V v) {
+		    return succs.get(v);
+		}
+	    });
+	    for(SCComponent<V> scc : (new TopSortedCompDiGraph<V>(dg)).incrOrder()) {
+		V major = null;
+		for(V v : scc.vertices()) {
+		    if(major == null) major = v;
+		    else uf.union(v, major);
+		}
+	    }
+	    // remove superfluous inclusions of the form "v <= v"
+	    for(int i = 0; i < cs.size(); i++) {
+		Constraint<V,Info> c = cs.get(i);
+		if(c instanceof LtConstraint/*<V,Info>*/) {
+		    LtConstraint<V,Info> ltc = (LtConstraint<V,Info>) c;
+		    if(uf.find(ltc.vs).equals(uf.find(ltc.vd))) {
+			cs.set(i, null);
+		    }
+		}
+	    }
+	    removeNulls(cs);
+	}
+
+	private static <T> List<T> vertex(Map<T,List<T>> succs, T v) {
+	    List<T> vSuccs = succs.get(v);
+	    if(vSuccs == null) {
+		vSuccs = new ArrayList<T>(2);
+		succs.put(v, vSuccs);
+	    }
+	    return vSuccs;
+	}
+
+	// alternates the passes unifySingleLt and eliminateEmpty (and
+	// rewrites all constraints) until nothing changes
+	private boolean simplify() {
+	    boolean modif = false;
+	    boolean changed = true;
+	    while(changed) {
+		changed = unifySingleLt();
+		if(eliminateEmpty()) {
+		    changed = true;
+		}
+		if(changed) {
+		    modif = true;
+		    updateConstraints();
+		}
+	    }
+	    return modif;
+	}
+
+	// Search variables vd such that the only constraint that has
+	// vd on the right side has the form "vs <= vd".  For each such
+	// finding, unify vs and vd.
+	private boolean unifySingleLt() {
+	    // collect in bad all variables that are sources of non-inclusion constraints
+	    NonIterableSet<V> bad = new NonIterableSet<V>();
+	    // construct successor relation (s2d) and predecessor relation (d2s)
+	    Relation<V,V> s2d = new MapSetRelation<V,V>();
+	    Relation<V,V> d2s = new MapSetRelation<V,V>();
+	    for(Constraint<V,Info> c : cs) {
+		if(c instanceof LtConstraint/*<V,Info>*/) {
+		    LtConstraint<V,Info> ltc = (LtConstraint<V,Info>) c;
+		    V src = uf.find(ltc.vs);
+		    V dst = uf.find(ltc.vd);
+		    if(!src.equals(dst)) {
+			s2d.add(src, dst);
+			d2s.add(dst, src);
+		    }
+		}
+		else {
+		    for(V v : c.out()) {
+			bad.add(uf.find(v));
+		    }
+		}
+	    }
+
+	    WorkSet<V> wToUnify = new WorkStack<V>();
+	    for(V vd : d2s.keys()) {
+		if(!bad.contains(vd) && (d2s.getValues(vd).size() == 1)) {
+		    wToUnify.add(vd);
+		}
+	    }
+	    boolean modif = !wToUnify.isEmpty();
+
+	    while(!wToUnify.isEmpty()) {
+		V vd = wToUnify.extract();
+		Collection<V> sources = d2s.getValues(vd);
+		if(sources.size() != 1) continue;
+		V vs = DSUtil.<V>getFirst(sources);
+
+		V vNew = uf.union(vs, vd);
+		nbUnifiedSLt++;
+
+		// unify the constraints for vs and vd
+		if(bad.contains(vs)) {
+		    bad.remove(vs);
+		    bad.add(vNew);
+		}
+
+		changeOut(vs, vNew, d2s, s2d); // no typo!
+		s2d.remove(vs, vd);
+		d2s.remove(vd, vs);
+		changeOut(vs, vNew, s2d, d2s);
+		changeOut(vd, vNew, s2d, d2s);
+
+		s2d.remove(vNew, vNew);
+		d2s.remove(vNew, vNew);
+
+		if(!vs.equals(vNew) && wToUnify.contains(vs)) {
+		    wToUnify.add(vNew);
+		}
+
+		for(V v : s2d.getValues(vNew)) {
+		    if(!bad.contains(v) && (d2s.getValues(v).size() == 1)) {
+			wToUnify.add(v);
+		    }
+		}
+	    }
+
+	    return modif;
+	}
+
+	private static <V> void changeOut(V vOld, V vNew, Relation<V,V> s2d, Relation<V,V> d2s) {
+	    if(!vNew.equals(vOld)) {
+		for(V v : new LinkedHashSet<V>(s2d.getValues(vOld))) {
+		    s2d.remove(vOld, v);
+		    d2s.remove(v, vOld);
+		    s2d.add(vNew, v);
+		    d2s.add(v, vNew);
+		}
+	    }
+	}
+
+	// Eliminates the inclusions whose source has no incoming
+	// constraints, until no variable becomes empty.
+	private boolean eliminateEmpty() {
+	    // map variable -> count of incoming constraints
+	    NonIterableMap<V,int[]> v2incCount = new NonIterableMap<V,int[]>();
+	    for(Constraint<V,Info> c : cs) {
+		for(V v : c.out()) {
+		    V v2 = uf.find(v);
+		    int[] count = v2incCount.get(v2);
+		    if(count == null) {
+			v2incCount.put(v2, new int[]{1});
+		    }
+		    else {
+			count[0]++;
+		    }
+		}
+	    }
+
+	    NonIterableSet<V> emptyVars = new NonIterableSet<V>();
+	    for(V v : vars) {
+		V v2 = uf.find(v);
+		int[] count = v2incCount.get(v2);
+		if((count == null) || (count[0] == 0)) {
+		    emptyVars.add(v2);
+		    if(emptyReps.add(v2)) nbEmptyVars++;
+		}
+	    }
+
+	    boolean modif = false;
+	    while(!emptyVars.isEmpty()) {
+		NonIterableSet<V> newEmptyVars = new NonIterableSet<V>();
+		for(int i = 0; i < cs.size(); i++) {
+		    Constraint<V,Info> c = cs.get(i);
+		    if(c instanceof LtConstraint/*<V,Info>*/) {
+			LtConstraint<V,Info> ltc = (LtConstraint<V,Info>) c;
+			V vs = uf.find(ltc.vs);
+			if(emptyVars.contains(vs)) {
+			    cs.set(i, null);
+			    modif = true;
+			    nbElimCons++;
+			    V vd = uf.find(ltc.vd);
+			    int[] count = v2incCount.get(vd);
+			    count[0]--;
+			    if(count[0] == 0) {
+				newEmptyVars.add(vd);
+				if(emptyReps.add(vd)) nbEmptyVars++;
+			    }
+			}
+		    }
+		}
+		removeNulls(cs);
+		emptyVars = newEmptyVars;
+	    }
+
+	    return modif;
+	}
+
+	// Rewrites the constraints modulo uf, in place; drops the
+	// superfluous ones.  Returns true if it dropped a constraint
+	// that is not an inclusion.
+	private boolean updateConstraints() {
+	    boolean dropped = false;
+	    for(int i = 0; i < cs.size(); i++) {
+		Constraint<V,Info> c = cs.get(i);
+		Constraint<V,Info> c2 = c.rewrite(uf);
+		if((c2 == null) && !(c instanceof LtConstraint/*<V,Info>*/)) {
+		    dropped = true;
+		}
+		cs.set(i, c2);
+	    }
+	    removeNulls(cs);
+	    return dropped;
+	}
+
+	// removes the null elements of list, in place
+	private static <T> void removeNulls(ArrayList<T> list) {
+	    int k = 0;
+	    for(int i = 0; i < list.size(); i++) {
+		T elem = list.get(i);
+		if(elem != null) list.set(k++, elem);
+	    }
+	    list.subList(k, list.size()).clear();
+	}
+    }
+
+
+    // Reference solver: executes the constraints, without any
+    // preprocessing, until nothing changes; each time a variable
+    // changes, the constraints that read it are executed again.
+    private static class NaiveSolver<V extends Var<Info>, Info> implements SolAccessor<V,Info> {
+
+	NaiveSolver(Iterable<Constraint<V,Info>> cs) {
+	    for(Constraint<V,Info> c : cs) {
+		for(V v : c.in()) {
+		    List<Constraint<V,Info>> readers = var2readers.get(v);
+		    if(readers == null) {
+			readers = new ArrayList<Constraint<V,Info>>();
+			var2readers.put(v, readers);
+		    }
+		    readers.add(c);
+		}
+		workList.add(c);
+	    }
+	    while(!workList.isEmpty()) {
+		workList.remove(workList.size() - 1).action(this);
+	    }
+	}
+
+	private final Map<V,Info> values = new HashMap<V,Info>();
+	private final Map<V,List<Constraint<V,Info>>> var2readers = new HashMap<V,List<Constraint<V,Info>>>();
+	private final List<Constraint<V,Info>> workList = new ArrayList<Constraint<V,Info>>();
+
+	public Info get(V v) { return values.get(v); }
+
+	public void join(V v, Info delta) {
+	    if(delta == null) return;
+	    Info old = values.get(v);
+	    if(old == null) {
+		values.put(v, v.copy(delta));
+	    }
+	    else if(!v.join(old, delta)) {
+		return;
+	    }
+	    List<Constraint<V,Info>> readers = var2readers.get(v);
+	    if(readers != null) workList.addAll(readers);
+	}
+    }
+
+
+    // Trees of inclusions (most variables have a single incoming
+    // inclusion), with a few filters and constant sources; some
+    // trees have no constant source at all (empty trees).
+    private static SetConstraints<Integer> forest(Random rand, int nbVars) {
+	SVar<Integer>[] vars = newVars(nbVars);
+	SetConstraints<Integer> sc = new SetConstraints<Integer>();
+	for(int i = 1; i < nbVars; i++) {
+	    if(rand.nextInt(50) == 0) {
+		// root of a new tree
+		if(rand.nextBoolean()) {
+		    sc.addCtSource(Arrays.asList(new Integer(rand.nextInt(100))), vars[i]);
+		}
+		continue;
+	    }
+	    SVar<Integer> parent = vars[Math.max(0, i - 1 - rand.nextInt(20))];
+	    if(rand.nextInt(20) == 0) {
+		sc.add(new FilterConstraint<Integer>(parent, EVEN, vars[i]));
+	    }
+	    else {
+		sc.addInclusion(parent, vars[i]);
+	    }
+	    // a few joins between the trees
+	    if(rand.nextInt(10) == 0) {
+		sc.addInclusion(vars[rand.nextInt(i)], vars[i]);
+	    }
+	}
+	return sc;
+    }
+
+
+    // Random inclusions between nbVars variables, ordered such that
+    // there are few cycles, and a few constant sources.
+    private static SetConstraints<Integer> random(Random rand, int nbVars, int nbCons) {
+	SVar<Integer>[] vars = newVars(nbVars);
+	SetConstraints<Integer> sc = new SetConstraints<Integer>();
+	for(int i = 0; i < nbCons; i++) {
+	    int s = rand.nextInt(nbVars);
+	    int d = rand.nextInt(nbVars);
+	    if((s > d) && (rand.nextInt(100) != 0)) {
+		int aux = s; s = d; d = aux;
+	    }
+	    sc.addInclusion(vars[s], vars[d]);
+	}
+	for(int i = 0; i < nbVars / 100; i++) {
+	    sc.addCtSource(Arrays.asList(new Integer(rand.nextInt(100))), vars[rand.nextInt(nbVars)]);
+	}
+	return sc;
+    }
+
+
+    // Ladders where each elimination enables a unification and each
+    // unification with an empty variable enables new eliminations:
+    // the multi-pass implementation needs many rounds.
+    private static SetConstraints<Integer> cascades(Random rand, int nbVars) {
+	SVar<Integer>[] vars = newVars(nbVars);
+	SVar<Integer> source = new SVar<Integer>();
+	SetConstraints<Integer> sc = new SetConstraints<Integer>();
+	sc.addCtSource(Arrays.asList(new Integer(1)), source);
+	List<SVar<Integer>> ladder = new ArrayList<SVar<Integer>>();
+	for(int i = 0; i < nbVars; i++) {
+	    if(i % 200 == 0) ladder.clear();
+	    SVar<Integer> v = vars[i];
+	    int n = ladder.size();
+	    if(n == 0) {
+		// empty bottom of the ladder; nothing to do
+	    }
+	    else if(n % 2 == 1) {
+		// single inclusion from the previous step
+		sc.addInclusion(ladder.get(n - 1), v);
+	    }
+	    else {
+		// the previous two steps, and (sometimes) a real source
+		sc.addInclusion(ladder.get(n - 1), v);
+		sc.addInclusion(ladder.get(n - 2), v);
+		if(rand.nextInt(4) == 0) sc.addInclusion(source, v);
+	    }
+	    ladder.add(v);
+	}
+	return sc;
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private static SVar<Integer>[] newVars(int nbVars) {
+	SVar<Integer>[] vars = new SVar[nbVars];
+	for(int i = 0; i < nbVars; i++) {
+	    vars[i] = new SVar<Integer>();
+	}
+	return vars;
+    }
+
+    private static final Predicate<Integer> EVEN = new Predicate<Integer>() {
+	public boolean check(Integer i) { return i.intValue() % 2 == 0; }
+	public String toString() { return "even"; }
+    };
+
+
+    private static String pad(String s, int width) {
+	StringBuffer buff = new StringBuffer(s);
+	while(buff.length() < width) buff.append(' ');
+	return buff.toString();
+    }
+
+    private static String lpad(long n, int width) {
+	StringBuffer buff = new StringBuffer(Long.toString(n));
+	while(buff.length() < width) buff.insert(0, ' ');
+	return buff.toString();
+    }
+
+}
@@ -3,10 +3,23 @@
 // Licensed under the Modified BSD Licence; see COPYING for details.
 package jpaul.Constraints.SetConstraints;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Set;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.LinkedList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import junit.framework.TestCase;
 import junit.framework.Test;
@@ -15,11 +28,24 @@ import junit.framework.Assert;
 
 import jpaul.Constraints.ConstraintSystem;
 import jpaul.Constraints.Constraint;
+import jpaul.Constraints.LtConstraint;
 import jpaul.Constraints.SolReader;
 import jpaul.Constraints.SolAccessor;
+import jpaul.Constraints.GeneratingSolAccessor;
+import jpaul.Constraints.SolverStats;
+import jpaul.Constraints.SolveBudget;
+import jpaul.Constraints.SolveResult;
+import jpaul.Constraints.CostModel;
+import jpaul.Constraints.WorksetStrategy;
 import jpaul.Constraints.Var;
+import jpaul.Constraints.Codecs;
+import jpaul.Constraints.MappedSolReader;
 
 import jpaul.Misc.Predicate;
+import jpaul.Misc.Function;
+import jpaul.DataStructs.BitSetSet;
+import jpaul.DataStructs.SetFacts;
+import jpaul.DataStructs.Universe;
 
 /**
  * <code>TestSetConstraints</code>
@@ -173,6 +199,1133 @@ public class TestSetConstraints extends TestCase {
     }
 
 
+    public void testDiffPropagation() {
+	SetConstraints<Integer> sc = new SetConstraints<Integer>();
+
+	sc.addCtSource(Arrays.asList(new Integer(1), new Integer(2)), si1);
+	sc.addInclusion(si1, si2);
+	sc.addInclusion(si2, si3);
+	sc.addInclusion(si3, si4);
+	sc.addInclusion(si4, si2);
+	sc.addCtSource(Arrays.asList(new Integer(3)), si3);
+	sc.add(new FunnyIncrement(si3));
+	sc.add
+	    (new CtDiffConstraint<Integer>
+	     (si3, Arrays.asList(new Integer(0), new Integer(1)), si5));
+	sc.addCtSource(Arrays.asList(new Integer(0), new Integer(1), 
+		new Integer(2), new Integer(3)), si6);
+	sc.add(new IntersectConstraint<Integer>(si5, si6, si7));
+	sc.addInclusion(si7, si5);
+
+	compareDiffPropagation(sc);
+	compareDiffPropagation(randomSystem(new Random(17), 60, 150));
+    }
+
+
+    public void testInclusionPropagation() {
+	// rings of inclusions, each closed by a filter (so the
+	// constructor cannot unify their variables), with chords
+	// between the rings: one big scc, mostly of inclusions
+	Random rand = new Random(47);
+	SVar<Integer>[] vars = newVars(120);
+	SetConstraints<Integer> sc = new SetConstraints<Integer>();
+	for(int r = 0; r < 4; r++) {
+	    for(int i = 0; i < 29; i++) {
+		sc.addInclusion(vars[30 * r + i], vars[30 * r + i + 1]);
+	    }
+	    sc.add(new FilterConstraint<Integer>(vars[30 * r + 29], EVEN, vars[30 * r]));
+	    sc.addCtSource(Arrays.asList(new Integer(r), new Integer(10 + r)), vars[30 * r + rand.nextInt(30)]);
+	}
+	for(int i = 0; i < 40; i++) {
+	    sc.addInclusion(vars[rand.nextInt(120)], vars[rand.nextInt(120)]);
+	}
+
+	SolReader<SVar<Integer>,Set<Integer>> ref = null;
+	for(int mode = 0; mode < 8; mode++) {
+	    ConstraintSystem<SVar<Integer>,Set<Integer>> sys = new ConstraintSystem<SVar<Integer>,Set<Integer>>(sc);
+	    sys.setDiffPropagation((mode & 1) != 0);
+	    sys.setCycleDetection((mode & 2) != 0);
+	    sys.setValueSharing((mode & 4) != 0);
+	    sys.setStatistics(true);
+	    SolReader<SVar<Integer>,Set<Integer>> sol = sys.solve();
+	    verify(sc, sol);
+	    checkStatistics(sys, sol);
+	    // the inclusions inside the scc are propagated, not executed
+	    SolverStats.Counters lt = sys.getLastStatistics().getClassCounters().get(LtConstraint.class);
+	    assertNotNull(lt);
+	    assertTrue(lt.getNbChangingJoins() > 0);
+	    if(ref == null) {
+		ref = sol;
+		continue;
+	    }
+	    for(SVar<Integer> v : vars) {
+		assertEquals("mode " + mode + ": different values for " + v, ref.get(v), sol.get(v));
+	    }
+	}
+    }
+
+
+    public void testParallelSolve() {
+	ExecutorService executor = Executors.newFixedThreadPool(4);
+	try {
+	    Random rand = new Random(23);
+	    for(int i = 0; i < 10; i++) {
+		// sparse systems: many small sccs
+		compareParallel(randomSystem(rand, 400, 300 + 40 * i), executor);
+	    }
+	    compareParallel(randomSystem(rand, 100, 300), executor);
+	}
+	finally {
+	    executor.shutdown();
+	}
+    }
+
+
+    public void testBitSetSVar() {
+	// all systems share the same universe
+	Universe<Integer> universe = new Universe<Integer>();
+	for(int i = 0; i < 10; i++) {
+	    compareBitSets(i, universe, i % 2 == 1);
+	}
+    }
+
+
+    public void testIntersections() {
+	for(int i = 0; i < 10; i++) {
+	    // hash sets and sorted sets (merged by IntersectConstraint)
+	    SVar<Integer>[] vars1 = newVars(80);
+	    SVar<Integer>[] vars2 = newSortedVars(80);
+	    SetConstraints<Integer> sc1 = new SetConstraints<Integer>();
+	    SetConstraints<Integer> sc2 = new SetConstraints<Integer>();
+	    addRandomWithIntersections(new Random(i), vars1, sc1);
+	    addRandomWithIntersections(new Random(i), vars2, sc2);
+
+	    ConstraintSystem<SVar<Integer>,Set<Integer>> sys1 = new ConstraintSystem<SVar<Integer>,Set<Integer>>(sc1);
+	    SolReader<SVar<Integer>,Set<Integer>> sol1 = sys1.solve();
+	    for(boolean diffProp : new boolean[]{false, true}) {
+		ConstraintSystem<SVar<Integer>,Set<Integer>> sys2 = new ConstraintSystem<SVar<Integer>,Set<Integer>>(sc2);
+		sys2.setDiffPropagation(diffProp);
+		SolReader<SVar<Integer>,Set<Integer>> sol2 = sys2.solve();
+		for(int k = 0; k < vars1.length; k++) {
+		    assertEquals("different values for " + vars2[k], sol1.get(vars1[k]), sol2.get(vars2[k]));
+		}
+		verify(sc2, sol2);
+	    }
+	    compareDiffPropagation(sc1);
+
+	    // open-addressing hash sets
+	    SVar<Integer>[] vars3 = newOpenHashVars(80);
+	    SetConstraints<Integer> sc3 = new SetConstraints<Integer>();
+	    addRandomWithIntersections(new Random(i), vars3, sc3);
+	    SolReader<SVar<Integer>,Set<Integer>> sol3 = (new ConstraintSystem<SVar<Integer>,Set<Integer>>(sc3)).solve();
+	    for(int k = 0; k < vars1.length; k++) {
+		assertEquals("different values for " + vars3[k], sol1.get(vars1[k]), sol3.get(vars3[k]));
+	    }
+	    verify(sc3, sol3);
+	}
+    }
+
+    @SuppressWarnings("unchecked")
+    private static SVar<Integer>[] newSortedVars(int nbVars) {
+	SVar<Integer>[] vars = new SVar[nbVars];
+	for(int i = 0; i < nbVars; i++) {
+	    vars[i] = new SVar<Integer>(SetFacts.<Integer>tree(null));
+	}
+	return vars;
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private static SVar<Integer>[] newOpenHashVars(int nbVars) {
+	SVar<Integer>[] vars = new SVar[nbVars];
+	for(int i = 0; i < nbVars; i++) {
+	    vars[i] = new SVar<Integer>(SetFacts.<Integer>openHash());
+	}
+	return vars;
+    }
+
+
+    public void testWorksetStrategies() {
+	ExecutorService executor = Executors.newFixedThreadPool(4);
+	try {
+	    for(int i = 0; i < 6; i++) {
+		Random rand = new Random(31 + i);
+		SVar<Integer>[] vars = newVars(120);
+		SetConstraints<Integer> sc = new SetConstraints<Integer>();
+		addRandom(rand, vars, 0, 100, 25, 300, sc);
+		compareStrategies(sc, null, executor, i);
+		// new constraints: the ranks have to be recomputed
+		SetConstraints<Integer> sc2 = new SetConstraints<Integer>();
+		addRandom(rand, vars, 100, 120, 5, 40, sc2);
+		compareStrategies(sc, sc2, executor, i);
+	    }
+	}
+	finally {
+	    executor.shutdown();
+	}
+    }
+
+    // solves sc (plus sc2, if non-null, added with addConstraints)
+    // with each workset strategy, and compares the solutions with
+    // the solution for the default strategy.
+    private static void compareStrategies(SetConstraints<Integer> sc, SetConstraints<Integer> sc2,
+					  ExecutorService executor, int i) {
+	SetConstraints<Integer> all = new SetConstraints<Integer>();
+	all.addAll(sc);
+	if(sc2 != null) all.addAll(sc2);
+	SolReader<SVar<Integer>,Set<Integer>> ref =
+	    (new ConstraintSystem<SVar<Integer>,Set<Integer>>(all)).solve();
+	for(WorksetStrategy ws : WorksetStrategy.values()) {
+	    ConstraintSystem<SVar<Integer>,Set<Integer>> sys = new ConstraintSystem<SVar<Integer>,Set<Integer>>(sc);
+	    sys.setWorksetStrategy(ws);
+	    sys.setDiffPropagation(i % 2 == 1);
+	    sys.setCycleDetection(i % 3 == 0);
+	    SolReader<SVar<Integer>,Set<Integer>> sol = sys.solve();
+	    if(sc2 != null) {
+		sys.addConstraints(sc2);
+		sol = (i % 2 == 0) ? sys.solve() : sys.solve(executor);
+	    }
+	    for(SVar<Integer> v : sys.vars()) {
+		assertEquals(ws + ": different values for " + v, ref.get(v), sol.get(v));
+	    }
+	}
+    }
+
+
+    public void testAdaptiveCosts() {
+	ExecutorService executor = Executors.newFixedThreadPool(4);
+	try {
+	    Random rand = new Random(47);
+	    for(int i = 0; i < 6; i++) {
+		SVar<Integer>[] vars = newVars(150);
+		SetConstraints<Integer> sc = new SetConstraints<Integer>();
+		addRandomWithIntersections(rand, vars, sc);
+		ConstraintSystem<SVar<Integer>,Set<Integer>> sys = new ConstraintSystem<SVar<Integer>,Set<Integer>>(sc);
+		assertNull(sys.getCostModel());
+		sys.setAdaptiveCosts(true);
+		sys.setStatistics(i % 2 == 0);
+		SolReader<SVar<Integer>,Set<Integer>> ref = (new ConstraintSystem<SVar<Integer>,Set<Integer>>(sc)).solve();
+		// the second and the third solves use the measured costs
+		for(int k = 0; k < 3; k++) {
+		    SolReader<SVar<Integer>,Set<Integer>> sol = (k == 1) ? sys.solve(executor) : sys.solve();
+		    for(SVar<Integer> v : sys.vars()) {
+			assertEquals("different values for " + v, ref.get(v), sol.get(v));
+		    }
+		}
+
+		CostModel costs = sys.getCostModel();
+		assertNotNull(costs);
+		assertFalse(costs.getClassCosts().isEmpty());
+		long prevCost = Long.MAX_VALUE;
+		for(CostModel.ClassCost cc : costs.getClassCosts()) {
+		    assertTrue(cc.getNbSamples() > 0);
+		    assertTrue(cc.getMeasuredCost() <= prevCost);
+		    assertTrue((cc.getEffect() >= 0) && (cc.getEffect() <= 1));
+		    prevCost = cc.getMeasuredCost();
+		}
+		if(i == 0) System.out.println(costs);
+	    }
+	}
+	finally {
+	    executor.shutdown();
+	}
+    }
+
+
+    public void testStatistics() {
+	ExecutorService executor = Executors.newFixedThreadPool(4);
+	try {
+	    SetConstraints<Integer> sc = randomSystem(new Random(29), 200, 400);
+	    ConstraintSystem<SVar<Integer>,Set<Integer>> sys = new ConstraintSystem<SVar<Integer>,Set<Integer>>(sc);
+	    sys.solve();
+	    assertNull(sys.getLastStatistics());
+
+	    sys.setStatistics(true);
+	    checkStatistics(sys, sys.solve());
+	    checkStatistics(sys, sys.solve(executor));
+	    System.out.println(sys.getLastStatistics());
+	}
+	finally {
+	    executor.shutdown();
+	}
+    }
+
+    // checks that the statistics of the last solve of sys are consistent
+    private static void checkStatistics(ConstraintSystem<SVar<Integer>,Set<Integer>> sys,
+					SolReader<SVar<Integer>,Set<Integer>> sol) {
+	SolverStats<SVar<Integer>> stats = sys.getLastStatistics();
+	assertNotNull(stats);
+	// each unification merges two classes of variables
+	assertEquals(sys.vars().size() - sys.debugUniqueVars().size(),
+		     stats.getNbUnifiedMutuallySmaller() + stats.getNbUnifiedSingleLt());
+
+	int nbExecutions = 0;
+	int nbChangingJoins = 0;
+	for(SolverStats.Counters counters : stats.getClassCounters().values()) {
+	    nbExecutions += counters.getNbExecutions();
+	    nbChangingJoins += counters.getNbChangingJoins();
+	}
+	assertEquals(stats.getTotals().getNbExecutions(), nbExecutions);
+	assertEquals(stats.getTotals().getNbChangingJoins(), nbChangingJoins);
+
+	int sccExecutions = 0;
+	for(SolverStats.SccCounters<SVar<Integer>> counters : stats.getSccCounters()) {
+	    sccExecutions += counters.getNbExecutions();
+	    // each changing join makes a variable from the scc non-empty or bigger
+	    if(counters.getNbChangingJoins() > 0) {
+		boolean someValue = false;
+		for(SVar<Integer> v : counters.getVars()) {
+		    if(sol.get(v) != null) someValue = true;
+		}
+		assertTrue(someValue);
+	    }
+	}
+	assertEquals(nbExecutions, sccExecutions);
+	assertTrue(nbExecutions > 0);
+	assertTrue(stats.getTotals().getMaxWorksetSize() > 0);
+	assertFalse(stats.getSccCounters().isEmpty());
+    }
+
+
+    public void testBuilder() {
+	for(int i = 0; i < 4; i++) {
+	    SetConstraints<Integer> sc = randomSystem(new Random(41 + i), 200, 500);
+	    ConstraintSystem.Builder<SVar<Integer>,Set<Integer>> builder =
+		new ConstraintSystem.Builder<SVar<Integer>,Set<Integer>>();
+	    builder.addAll(sc.iterator());
+	    int size = builder.size();
+	    // duplicates are ignored
+	    for(Constraint<SVar<Integer>,Set<Integer>> c : sc) {
+		assertFalse(builder.add(c));
+	    }
+	    assertEquals(size, builder.size());
+	    ConstraintSystem<SVar<Integer>,Set<Integer>> sys = builder.build();
+	    try {
+		builder.add(new LtConstraint<SVar<Integer>,Set<Integer>>(new SVar<Integer>(), new SVar<Integer>()));
+		fail("builder used after build");
+	    }
+	    catch(IllegalStateException e) {
+		// expected
+	    }
+
+	    ConstraintSystem<SVar<Integer>,Set<Integer>> ref = new ConstraintSystem<SVar<Integer>,Set<Integer>>(sc);
+	    assertEquals(ref.vars(), sys.vars());
+	    SolReader<SVar<Integer>,Set<Integer>> refSol = ref.solve();
+	    SolReader<SVar<Integer>,Set<Integer>> sol = sys.solve();
+	    for(SVar<Integer> v : sys.vars()) {
+		assertEquals("different values for " + v, refSol.get(v), sol.get(v));
+	    }
+	}
+    }
+
+
+    public void testOfflineSubstitution() {
+	// a and b have the same constant source, c and d filter them
+	// with the same predicate, e and f include both: three pairs
+	// of equal variables that no inclusion cycle / single inclusion
+	// reveals.
+	SVar<Integer>[] vars = newVars(6);
+	SetConstraints<Integer> sc = new SetConstraints<Integer>();
+	for(int i = 0; i < 2; i++) {
+	    sc.addCtSource(Arrays.asList(new Integer(1), new Integer(2)), vars[i]);
+	    sc.add(new FilterConstraint<Integer>(vars[i], EVEN, vars[2 + i]));
+	    sc.addInclusion(vars[i], vars[4 + i]);
+	    sc.addInclusion(vars[2 + i], vars[4 + i]);
+	}
+	ConstraintSystem<SVar<Integer>,Set<Integer>> sys = substSystem(sc);
+	assertEquals(3, sys.debugUniqueVars().size());
+	sys.setStatistics(true);
+	SolReader<SVar<Integer>,Set<Integer>> sol = sys.solve();
+	assertEquals(3, sys.getLastStatistics().getNbUnifiedSubstitution());
+	verify(sc, sol);
+	assertEquals(new HashSet<Integer>(Arrays.asList(new Integer(1), new Integer(2))), sol.get(vars[5]));
+
+	// random systems, each with a mirror image that reads the same
+	// first 10 variables; new constraints invalidate the unifications
+	Random rand = new Random(43);
+	int nbUnified = 0;
+	for(int i = 0; i < 10; i++) {
+	    int nbVars = 100;
+	    SVar<Integer>[] vars1 = newVars(nbVars);
+	    SVar<Integer>[] vars2 = newVars(nbVars);
+	    System.arraycopy(vars1, 0, vars2, 0, 10);
+	    sc = new SetConstraints<Integer>();
+	    for(int k = 0; k < 10; k++) {
+		sc.addCtSource(Arrays.asList(new Integer(rand.nextInt(10))), vars1[k]);
+	    }
+	    for(int k = 0; k < 150; k++) {
+		int s = rand.nextInt(nbVars);
+		int d = 10 + rand.nextInt(nbVars - 10);
+		if(k % 4 == 0) {
+		    sc.add(new FilterConstraint<Integer>(vars1[s], EVEN, vars1[d]));
+		    sc.add(new FilterConstraint<Integer>(vars2[s], EVEN, vars2[d]));
+		}
+		else {
+		    sc.addInclusion(vars1[s], vars1[d]);
+		    sc.addInclusion(vars2[s], vars2[d]);
+		}
+	    }
+	    sys = substSystem(sc);
+	    sys.setStatistics(true);
+	    sol = sys.solve();
+	    nbUnified += sys.getLastStatistics().getNbUnifiedSubstitution();
+	    verify(sc, sol);
+	    SolReader<SVar<Integer>,Set<Integer>> ref = (new ConstraintSystem<SVar<Integer>,Set<Integer>>(sc)).solve();
+	    for(SVar<Integer> v : sys.vars()) {
+		assertEquals("different values for " + v, ref.get(v), sol.get(v));
+	    }
+
+	    SetConstraints<Integer> sc2 = new SetConstraints<Integer>();
+	    sc2.addCtSource(Arrays.asList(new Integer(100 + i)), vars1[10 + rand.nextInt(nbVars - 10)]);
+	    sc2.addInclusion(vars2[rand.nextInt(nbVars)], vars2[10 + rand.nextInt(nbVars - 10)]);
+	    sys.addConstraints(sc2);
+	    sc.addAll(sc2);
+	    sol = sys.solve();
+	    ref = (new ConstraintSystem<SVar<Integer>,Set<Integer>>(sc)).solve();
+	    for(SVar<Integer> v : sys.vars()) {
+		assertEquals("different values for " + v, ref.get(v), sol.get(v));
+	    }
+	}
+	assertTrue(nbUnified > 0);
+    }
+
+    private static ConstraintSystem<SVar<Integer>,Set<Integer>> substSystem(Collection<Constraint<SVar<Integer>,Set<Integer>>> sc) {
+	ConstraintSystem.Builder<SVar<Integer>,Set<Integer>> builder =
+	    new ConstraintSystem.Builder<SVar<Integer>,Set<Integer>>();
+	builder.setOfflineSubstitution(true);
+	builder.addAll(sc);
+	ConstraintSystem<SVar<Integer>,Set<Integer>> sys = builder.build();
+	assertTrue(sys.getOfflineSubstitution());
+	return sys;
+    }
+
+
+    public void testSolutionFile() throws IOException {
+	File file = File.createTempFile("jpaul", ".sol");
+	try {
+	    Random rand = new Random(37);
+	    final SVar<Integer>[] vars = newVars(300);
+	    SetConstraints<Integer> sc = new SetConstraints<Integer>();
+	    addRandom(rand, vars, 0, 300, 40, 600, sc);
+	    ConstraintSystem<SVar<Integer>,Set<Integer>> sys = new ConstraintSystem<SVar<Integer>,Set<Integer>>(sc);
+	    SolReader<SVar<Integer>,Set<Integer>> sol = sys.solve();
+
+	    // the keys should not depend on the creation order of the vars
+	    final Map<SVar<Integer>,String> keys = new HashMap<SVar<Integer>,String>();
+	    for(int i = 0; i < vars.length; i++) {
+		keys.put(vars[i], "var" + i);
+	    }
+	    Function<SVar<Integer>,String> varKey = new Function<SVar<Integer>,String>() {
+		public String f(SVar<Integer> v) { return keys.get(v); }
+	    };
+	    SetCodec<Integer> codec = new SetCodec<Integer>(Codecs.integer());
+	    MappedSolReader.write(sol, Arrays.asList(vars), varKey, codec, file);
+
+	    MappedSolReader<SVar<Integer>,Set<Integer>> sol2 =
+		new MappedSolReader<SVar<Integer>,Set<Integer>>(file, varKey, codec);
+	    assertEquals(vars.length, sol2.nbVars());
+	    // unified variables share their values
+	    assertTrue(sol2.nbValues() <= sys.debugUniqueVars().size());
+	    for(SVar<Integer> v : vars) {
+		assertEquals("different values for " + v, sol.get(v), sol2.get(v));
+	    }
+	    for(Map.Entry<SVar<Integer>,SVar<Integer>> entry : sys.debugGetVarUnification().entrySet()) {
+		if(sol.get(entry.getKey()) == null) continue;
+		assertSame(sol2.get(entry.getKey()), sol2.get(entry.getValue()));
+	    }
+	    // a variable that is not in the file
+	    SVar<Integer> other = new SVar<Integer>();
+	    keys.put(other, "unknown");
+	    assertNull(sol2.get(other));
+	}
+	finally {
+	    file.delete();
+	}
+    }
+
+
+    public void testSolveFor() {
+	// two independent parts: the query for a2 should not solve the second one
+	SVar<Integer>[] a = newVars(3);
+	SVar<Integer>[] b = newVars(3);
+	CountingPred countA = new CountingPred();
+	CountingPred countB = new CountingPred();
+	SetConstraints<Integer> sc = new SetConstraints<Integer>();
+	sc.addCtSource(Arrays.asList(new Integer(1), new Integer(2)), a[0]);
+	sc.add(new FilterConstraint<Integer>(a[0], countA, a[1]));
+	sc.addInclusion(a[1], a[2]);
+	sc.addCtSource(Arrays.asList(new Integer(3), new Integer(4)), b[0]);
+	sc.add(new FilterConstraint<Integer>(b[0], countB, b[1]));
+	sc.addInclusion(b[1], b[2]);
+	ConstraintSystem<SVar<Integer>,Set<Integer>> sys = new ConstraintSystem<SVar<Integer>,Set<Integer>>(sc);
+	SolReader<SVar<Integer>,Set<Integer>> sol = sys.solveFor(Collections.singleton(a[2]));
+	assertEquals(new HashSet<Integer>(Arrays.asList(new Integer(2))), sol.get(a[2]));
+	assertTrue(countA.count > 0);
+	assertEquals(0, countB.count);
+	// lazy extension
+	assertEquals(new HashSet<Integer>(Arrays.asList(new Integer(4))), sol.get(b[1]));
+	assertTrue(countB.count > 0);
+	// no SCC is solved twice
+	int count = countA.count + countB.count;
+	for(SVar<Integer> v : sys.vars()) {
+	    sol.get(v);
+	}
+	assertEquals(count, countA.count + countB.count);
+
+	// random systems: same values as a full solve, for any sequence of queries
+	for(int i = 0; i < 10; i++) {
+	    Random rand = new Random(47 + i);
+	    SVar<Integer>[] vars = newVars(300);
+	    SetConstraints<Integer> sc2 = new SetConstraints<Integer>();
+	    addRandom(rand, vars, 0, 300, 30, 450, sc2);
+	    ConstraintSystem<SVar<Integer>,Set<Integer>> sys2 = new ConstraintSystem<SVar<Integer>,Set<Integer>>(sc2);
+	    sys2.setDiffPropagation(i % 2 == 1);
+	    sys2.setCycleDetection(i % 3 == 0);
+	    SolReader<SVar<Integer>,Set<Integer>> ref = sys2.solve();
+	    List<SVar<Integer>> query = new LinkedList<SVar<Integer>>();
+	    for(int k = 0; k < 5; k++) {
+		query.add(vars[rand.nextInt(vars.length)]);
+	    }
+	    SolReader<SVar<Integer>,Set<Integer>> sol2 = sys2.solveFor(query);
+	    for(SVar<Integer> v : query) {
+		assertEquals("different values for " + v, ref.get(v), sol2.get(v));
+	    }
+	    for(SVar<Integer> v : vars) {
+		assertEquals("different values for " + v, ref.get(v), sol2.get(v));
+	    }
+	}
+    }
+
+    // predicate that accepts the even numbers and counts its calls
+    private static class CountingPred extends Predicate<Integer> {
+	int count = 0;
+	public boolean check(Integer i) {
+	    count++;
+	    return i.intValue() % 2 == 0;
+	}
+    }
+
+
+    public void testValueSharing() {
+	ExecutorService executor = Executors.newFixedThreadPool(4);
+	try {
+	    Random rand = new Random(43);
+	    for(int i = 0; i < 12; i++) {
+		SVar<Integer>[] vars = newVars(200);
+		List<SetConstraints<Integer>> batches = new LinkedList<SetConstraints<Integer>>();
+		for(int k = 1; k <= 3; k++) {
+		    SetConstraints<Integer> batch = new SetConstraints<Integer>();
+		    addRandom(rand, vars, (k == 1) ? 0 : 20 * k, 60 * k, (k == 1) ? 10 : 2, (k == 1) ? 150 : 60, batch);
+		    batches.add(batch);
+		}
+		compareIncremental(batches, (i % 2 == 0) ? null : executor, i % 3 == 0, true);
+	    }
+	}
+	finally {
+	    executor.shutdown();
+	}
+    }
+
+    // checks that the variables with equal values share the same value object
+    private static void checkSharing(Collection<SVar<Integer>> vars, SolReader<SVar<Integer>,Set<Integer>> sol) {
+	Map<Set<Integer>,Set<Integer>> canon = new HashMap<Set<Integer>,Set<Integer>>();
+	for(SVar<Integer> v : vars) {
+	    Set<Integer> value = sol.get(v);
+	    if(value == null) continue;
+	    Set<Integer> value2 = canon.get(value);
+	    if(value2 == null) {
+		canon.put(value, value);
+	    }
+	    else {
+		assertSame("unshared value for " + v, value2, value);
+	    }
+	}
+    }
+
+
+    public void testAddConstraints() {
+	// si3 is unified with si2, and si2 with si1 (single incoming
+	// inclusion); the second batch invalidates this unification.
+	SetConstraints<Integer> sc1 = new SetConstraints<Integer>();
+	sc1.addCtSource(Arrays.asList(new Integer(1)), si1);
+	sc1.addInclusion(si1, si2);
+	sc1.addInclusion(si2, si3);
+	SetConstraints<Integer> sc2 = new SetConstraints<Integer>();
+	sc2.addCtSource(Arrays.asList(new Integer(2)), si3);
+	sc2.addInclusion(si3, si4);
+	// new variables, a new cycle, and a dependency against the
+	// current order of the sccs
+	SetConstraints<Integer> sc3 = new SetConstraints<Integer>();
+	sc3.addInclusion(si4, si5);
+	sc3.addInclusion(si5, si6);
+	sc3.addInclusion(si6, si5);
+	sc3.addInclusion(si6, si1);
+	List<SetConstraints<Integer>> batches = new LinkedList<SetConstraints<Integer>>();
+	batches.add(sc1);
+	batches.add(sc2);
+	batches.add(sc3);
+	compareIncremental(batches, null, false, false);
+
+	ExecutorService executor = Executors.newFixedThreadPool(4);
+	try {
+	    Random rand = new Random(31);
+	    for(int i = 0; i < 20; i++) {
+		SVar<Integer>[] vars = newVars(200);
+		batches = new LinkedList<SetConstraints<Integer>>();
+		// each batch uses a few new variables, and updates
+		// only them (for half of the systems), or mostly them
+		for(int k = 1; k <= 5; k++) {
+		    SetConstraints<Integer> batch = new SetConstraints<Integer>();
+		    int firstDst = (k == 1) ? 0 : (40 * (k - 1) - ((i < 10) ? 0 : 5));
+		    addRandom(rand, vars, firstDst, 40 * k, (k == 1) ? 10 : 1, (k == 1) ? 60 : 30, batch);
+		    batches.add(batch);
+		}
+		compareIncremental(batches, (i % 2 == 0) ? null : executor, false, false);
+	    }
+	}
+	finally {
+	    executor.shutdown();
+	}
+    }
+
+
+    public void testCycleDetection() {
+	// the last batch closes the cycle si1 -> si2 -> si3 -> si1;
+	// the constant sources prevent the unification of these variables
+	SVar<Integer>[] vars = newVars(4);
+	SetConstraints<Integer> sc1 = new SetConstraints<Integer>();
+	for(int i = 0; i < 3; i++) {
+	    sc1.addCtSource(Arrays.asList(new Integer(i)), vars[i]);
+	}
+	sc1.addInclusion(vars[0], vars[1]);
+	sc1.addInclusion(vars[1], vars[2]);
+	SetConstraints<Integer> sc2 = new SetConstraints<Integer>();
+	sc2.addInclusion(vars[2], vars[0]);
+	sc2.addInclusion(vars[2], vars[3]);
+	List<SetConstraints<Integer>> batches = new LinkedList<SetConstraints<Integer>>();
+	batches.add(sc1);
+	batches.add(sc2);
+	compareIncremental(batches, null, true, false);
+
+	ExecutorService executor = Executors.newFixedThreadPool(4);
+	try {
+	    Random rand = new Random(37);
+	    for(int i = 0; i < 20; i++) {
+		// dense first batch: few variables have a single incoming inclusion
+		vars = newVars(80);
+		batches = new LinkedList<SetConstraints<Integer>>();
+		SetConstraints<Integer> batch = new SetConstraints<Integer>();
+		addRandom(rand, vars, 0, 80, 20, 160, batch);
+		batches.add(batch);
+		for(int k = 0; k < 4; k++) {
+		    batch = new SetConstraints<Integer>();
+		    addRandom(rand, vars, 0, 80, 0, 8, batch);
+		    batches.add(batch);
+		}
+		compareIncremental(batches, (i % 2 == 0) ? null : executor, true, false);
+	    }
+	}
+	finally {
+	    executor.shutdown();
+	}
+    }
+
+
+    // Pointer analysis style load "*p <= q": for each integer i from
+    // the value of p, generates the inclusion vars[i % vars.length] <= q.
+    private static class LoadConstraint extends Constraint<SVar<Integer>,Set<Integer>> {
+	public LoadConstraint(SVar<Integer>[] vars, SVar<Integer> p, SVar<Integer> q) {
+	    this.vars = vars;
+	    this.p    = p;
+	    this.q    = q;
+	}
+
+	private final SVar<Integer>[] vars;
+	private final SVar<Integer> p;
+	private final SVar<Integer> q;
+
+	public Collection<SVar<Integer>> in()  { return Collections.<SVar<Integer>>singleton(p); }
+	public Collection<SVar<Integer>> out() { return Collections.<SVar<Integer>>singleton(q); }
+
+	public void action(SolAccessor<SVar<Integer>,Set<Integer>> sa) {
+	    Set<Integer> locs = sa.get(p);
+	    if(locs == null) return;
+	    for(Integer i : locs) {
+		Constraint<SVar<Integer>,Set<Integer>> c =
+		    new LtConstraint<SVar<Integer>,Set<Integer>>(vars[i.intValue() % vars.length], q);
+		if(sa instanceof GeneratingSolAccessor/*<SVar<Integer>,Set<Integer>>*/) {
+		    ((GeneratingSolAccessor<SVar<Integer>,Set<Integer>>) sa).addConstraint(c);
+		}
+		else {
+		    // e.g., SolVerifier: the solution should satisfy the
+		    // generated constraints too
+		    c.action(sa);
+		}
+	    }
+	}
+
+	// the inclusions generated for the value locs of p
+	Collection<Constraint<SVar<Integer>,Set<Integer>>> generated(Set<Integer> locs) {
+	    Collection<Constraint<SVar<Integer>,Set<Integer>>> res =
+		new LinkedList<Constraint<SVar<Integer>,Set<Integer>>>();
+	    if(locs == null) return res;
+	    for(Integer i : locs) {
+		res.add(new LtConstraint<SVar<Integer>,Set<Integer>>(vars[i.intValue() % vars.length], q));
+	    }
+	    return res;
+	}
+
+	public String toString() {
+	    return "*" + p + " <= " + q;
+	}
+    }
+
+
+    public void testGeneratedConstraints() {
+	ExecutorService executor = Executors.newFixedThreadPool(4);
+	try {
+	    Random rand = new Random(41);
+	    for(int i = 0; i < 20; i++) {
+		SVar<Integer>[] vars = newVars(60);
+		SetConstraints<Integer> sc = new SetConstraints<Integer>();
+		addRandom(rand, vars, 0, vars.length, 8, 50, sc);
+		List<LoadConstraint> loads = new LinkedList<LoadConstraint>();
+		for(int k = 0; k < 15; k++) {
+		    loads.add(new LoadConstraint(vars, vars[rand.nextInt(vars.length)], vars[rand.nextInt(vars.length)]));
+		}
+
+		// reference: re-solve the explicit constraints until no load generates a new one
+		Set<Constraint<SVar<Integer>,Set<Integer>>> explicit =
+		    new LinkedHashSet<Constraint<SVar<Integer>,Set<Integer>>>(sc);
+		SolReader<SVar<Integer>,Set<Integer>> expected;
+		while(true) {
+		    expected = (new ConstraintSystem<SVar<Integer>,Set<Integer>>(explicit)).solve();
+		    boolean changed = false;
+		    for(LoadConstraint load : loads) {
+			changed |= explicit.addAll(load.generated(expected.get(load.p)));
+		    }
+		    if(!changed) break;
+		}
+
+		Collection<Constraint<SVar<Integer>,Set<Integer>>> cs =
+		    new LinkedList<Constraint<SVar<Integer>,Set<Integer>>>(sc);
+		cs.addAll(loads);
+		ConstraintSystem<SVar<Integer>,Set<Integer>> sys = (i % 3 == 2) ?
+		    substSystem(cs) : new ConstraintSystem<SVar<Integer>,Set<Integer>>(cs);
+		sys.setDiffPropagation(i % 2 == 0);
+		sys.setCycleDetection(i % 3 == 0);
+		sys.setStatistics(i % 4 == 0);
+		SolReader<SVar<Integer>,Set<Integer>> sol = (i % 5 < 2) ? sys.solve(executor) : sys.solve();
+		for(SVar<Integer> v : vars) {
+		    assertEquals("different values for " + v, expected.get(v), sol.get(v));
+		}
+		verify(cs, sol);
+		// the generated constraints are now part of the system
+		SolReader<SVar<Integer>,Set<Integer>> sol2 = sys.solve();
+		for(SVar<Integer> v : vars) {
+		    assertEquals("different values for " + v, expected.get(v), sol2.get(v));
+		}
+	    }
+	}
+	finally {
+	    executor.shutdown();
+	}
+
+	// solveFor falls back to a full solve when the solved sccs
+	// generate new constraints: vars[1] needs the inclusion
+	// vars[0] <= vars[1] generated by the load
+	SVar<Integer>[] vars = newVars(2);
+	SetConstraints<Integer> sc = new SetConstraints<Integer>();
+	sc.addCtSource(Arrays.asList(new Integer(0)), vars[0]);
+	Collection<Constraint<SVar<Integer>,Set<Integer>>> cs =
+	    new LinkedList<Constraint<SVar<Integer>,Set<Integer>>>(sc);
+	cs.add(new LoadConstraint(vars, vars[0], vars[1]));
+	ConstraintSystem<SVar<Integer>,Set<Integer>> sys = new ConstraintSystem<SVar<Integer>,Set<Integer>>(cs);
+	Set<Integer> expected = Collections.singleton(new Integer(0));
+	SolReader<SVar<Integer>,Set<Integer>> sol = sys.solveFor(Collections.singleton(vars[1]));
+	assertEquals(expected, sol.get(vars[1]));
+	assertEquals(expected, sol.get(vars[0]));
+	// the generated inclusion is now part of the system: no fallback needed
+	sol = sys.solveFor(Collections.singleton(vars[1]));
+	assertEquals(expected, sol.get(vars[1]));
+
+	// random systems with loads
+	Random rand = new Random(43);
+	for(int i = 0; i < 10; i++) {
+	    vars = newVars(60);
+	    sc = new SetConstraints<Integer>();
+	    addRandom(rand, vars, 0, vars.length, 8, 50, sc);
+	    cs = new LinkedList<Constraint<SVar<Integer>,Set<Integer>>>(sc);
+	    for(int k = 0; k < 15; k++) {
+		cs.add(new LoadConstraint(vars, vars[rand.nextInt(vars.length)], vars[rand.nextInt(vars.length)]));
+	    }
+	    SolReader<SVar<Integer>,Set<Integer>> ref = (new ConstraintSystem<SVar<Integer>,Set<Integer>>(cs)).solve();
+	    sys = new ConstraintSystem<SVar<Integer>,Set<Integer>>(cs);
+	    sys.setDiffPropagation(i % 2 == 0);
+	    List<SVar<Integer>> query = new LinkedList<SVar<Integer>>();
+	    for(int k = 0; k < 3; k++) {
+		query.add(vars[rand.nextInt(vars.length)]);
+	    }
+	    sol = sys.solveFor(query);
+	    for(SVar<Integer> v : vars) {
+		assertEquals("different values for " + v, ref.get(v), sol.get(v));
+	    }
+	}
+
+	// with offline substitution, each generated constraint redoes
+	// the unifications, that eliminate the inclusion e <= q (e is
+	// empty) again: the solve should still terminate
+	SVar<Integer>[] e = newVars(1);
+	vars = newVars(4);
+	SVar<Integer> p = vars[0], x = vars[1], y = vars[2], q = vars[3];
+	sc = new SetConstraints<Integer>();
+	sc.addCtSource(Arrays.asList(Integer.valueOf(0)), p);
+	sc.addCtSource(Arrays.asList(Integer.valueOf(7)), x);
+	sc.addCtSource(Arrays.asList(Integer.valueOf(7)), y);
+	sc.addInclusion(x, q);
+	sc.add(new LoadConstraint(e, p, q));
+	sys = substSystem(sc);
+	sol = sys.solve();
+	assertEquals(Collections.singleton(Integer.valueOf(7)), sol.get(q));
+	assertNull(sol.get(e[0]));
+	sol = sys.solve();
+	assertEquals(Collections.singleton(Integer.valueOf(7)), sol.get(q));
+    }
+
+
+    public void testSolveAll() {
+	ExecutorService executor = Executors.newFixedThreadPool(4);
+	try {
+	    Random rand = new Random(43);
+	    List<ConstraintSystem<SVar<Integer>,Set<Integer>>> systems =
+		new LinkedList<ConstraintSystem<SVar<Integer>,Set<Integer>>>();
+	    List<SVar<Integer>[]> systemVars = new LinkedList<SVar<Integer>[]>();
+	    List<SolReader<SVar<Integer>,Set<Integer>>> expected =
+		new LinkedList<SolReader<SVar<Integer>,Set<Integer>>>();
+	    for(int i = 0; i < 10; i++) {
+		SVar<Integer>[] vars = newVars(60);
+		SetConstraints<Integer> sc = new SetConstraints<Integer>();
+		addRandom(rand, vars, 0, vars.length, 8, 80, sc);
+		Collection<Constraint<SVar<Integer>,Set<Integer>>> cs =
+		    new LinkedList<Constraint<SVar<Integer>,Set<Integer>>>(sc);
+		if(i % 2 == 0) {
+		    // generated constraints change the solver structures during the solves
+		    for(int k = 0; k < 10; k++) {
+			cs.add(new LoadConstraint(vars, vars[rand.nextInt(vars.length)], vars[rand.nextInt(vars.length)]));
+		    }
+		}
+		ConstraintSystem<SVar<Integer>,Set<Integer>> sys = new ConstraintSystem<SVar<Integer>,Set<Integer>>(cs);
+		sys.setDiffPropagation(i % 3 == 0);
+		// each system is solved several times, simultaneously
+		for(int k = 0; k < 4; k++) {
+		    systems.add(sys);
+		    systemVars.add(vars);
+		}
+		expected.add((new ConstraintSystem<SVar<Integer>,Set<Integer>>(cs)).solve());
+	    }
+
+	    List<SolReader<SVar<Integer>,Set<Integer>>> sols = ConstraintSystem.solveAll(systems, executor);
+	    assertEquals(systems.size(), sols.size());
+	    for(int j = 0; j < sols.size(); j++) {
+		SolReader<SVar<Integer>,Set<Integer>> exp = expected.get(j / 4);
+		for(SVar<Integer> v : systemVars.get(j)) {
+		    assertEquals("different values for " + v, exp.get(v), sols.get(j).get(v));
+		}
+	    }
+	}
+	finally {
+	    executor.shutdown();
+	}
+    }
+
+
+    public void testSolveBudget() {
+	ExecutorService executor = Executors.newFixedThreadPool(4);
+	try {
+	    Random rand = new Random(47);
+	    for(int i = 0; i < 10; i++) {
+		SVar<Integer>[] vars = newVars(200);
+		SetConstraints<Integer> sc = new SetConstraints<Integer>();
+		addRandom(rand, vars, 0, 150, 30, 300, sc);
+		SetConstraints<Integer> sc2 = new SetConstraints<Integer>();
+		addRandom(rand, vars, 100, 200, 10, 100, sc2);
+		SetConstraints<Integer> all = new SetConstraints<Integer>();
+		all.addAll(sc);
+		all.addAll(sc2);
+		SolReader<SVar<Integer>,Set<Integer>> expected =
+		    (new ConstraintSystem<SVar<Integer>,Set<Integer>>(all)).solve();
+
+		ConstraintSystem<SVar<Integer>,Set<Integer>> sys = new ConstraintSystem<SVar<Integer>,Set<Integer>>(sc);
+		sys.setDiffPropagation(i % 2 == 0);
+		sys.solve();
+		sys.addConstraints(sc2);
+
+		// the solves that hit a limit return values below the least solution
+		SolveBudget budget = new SolveBudget();
+		budget.setMaxExecutions(10);
+		SolveResult<SVar<Integer>,Set<Integer>> res =
+		    (i % 3 == 0) ? sys.solve(executor, budget) : sys.solve(budget);
+		assertFalse(res.isComplete());
+		assertEquals(SolveBudget.Limit.EXECUTIONS, res.getLimit());
+		checkBelow(vars, res, expected);
+
+		budget = new SolveBudget();
+		budget.setDeadline(System.nanoTime() - 1);
+		res = sys.solve(budget);
+		assertEquals(SolveBudget.Limit.DEADLINE, res.getLimit());
+		checkBelow(vars, res, expected);
+
+		budget = new SolveBudget();
+		budget.cancel();
+		res = sys.solve(executor, budget);
+		assertEquals(SolveBudget.Limit.CANCELLED, res.getLimit());
+		checkBelow(vars, res, expected);
+
+		// the incomplete solves do not affect the next ones
+		budget = new SolveBudget();
+		budget.setTimeout(1, TimeUnit.HOURS);
+		budget.setMaxExecutions(1000000);
+		res = (i % 3 == 1) ? sys.solve(executor, budget) : sys.solve(budget);
+		assertTrue(res.isComplete());
+		assertNull(res.getLimit());
+		for(SVar<Integer> v : vars) {
+		    assertEquals("different values for " + v, expected.get(v), res.get(v));
+		}
+	    }
+	}
+	finally {
+	    executor.shutdown();
+	}
+    }
+
+    public void testSolveBudgetInclusions() {
+	// one big scc of inclusions: a ring closed by a filter, plus
+	// inclusions from the first variable into all the others; the
+	// second constant source prevents the constructor from
+	// unifying the variables.  Besides the propagation along the
+	// inclusions, the solver executes only the constant sources
+	// and the filter.
+	int n = 1000;
+	SVar<Integer>[] vars = newVars(n);
+	SetConstraints<Integer> sc = new SetConstraints<Integer>();
+	sc.addCtSource(Arrays.asList(new Integer(2), new Integer(4)), vars[0]);
+	sc.addCtSource(Arrays.asList(new Integer(2)), vars[1]);
+	for(int i = 0; i < n - 1; i++) {
+	    sc.addInclusion(vars[i], vars[i + 1]);
+	    if(i > 0) sc.addInclusion(vars[0], vars[i + 1]);
+	}
+	sc.add(new FilterConstraint<Integer>(vars[n - 1], EVEN, vars[0]));
+	Set<Integer> full = new HashSet<Integer>(Arrays.asList(new Integer(2), new Integer(4)));
+
+	ExecutorService executor = Executors.newFixedThreadPool(4);
+	try {
+	    for(int mode = 0; mode < 8; mode++) {
+		ConstraintSystem<SVar<Integer>,Set<Integer>> sys = new ConstraintSystem<SVar<Integer>,Set<Integer>>(sc);
+		assertEquals(n, sys.debugUniqueVars().size());
+		sys.setDiffPropagation((mode & 1) != 0);
+		sys.setCycleDetection((mode & 2) != 0);
+
+		SolveBudget budget = new SolveBudget();
+		budget.setMaxExecutions(100);
+		SolveResult<SVar<Integer>,Set<Integer>> res =
+		    ((mode & 4) != 0) ? sys.solve(executor, budget) : sys.solve(budget);
+		assertEquals(SolveBudget.Limit.EXECUTIONS, res.getLimit());
+		int nbFull = 0;
+		for(SVar<Integer> v : vars) {
+		    Set<Integer> value = res.get(v);
+		    if(value == null) continue;
+		    assertTrue("value of " + v + " above the least solution", full.containsAll(value));
+		    if(value.equals(full)) nbFull++;
+		}
+		assertTrue(nbFull < n);
+
+		res = sys.solve(new SolveBudget());
+		assertTrue(res.isComplete());
+		for(SVar<Integer> v : vars) {
+		    assertEquals("different values for " + v, full, res.get(v));
+		}
+	    }
+	}
+	finally {
+	    executor.shutdown();
+	}
+    }
+
+    // checks that the values from partial are below those from expected
+    private static void checkBelow(SVar<Integer>[] vars, SolReader<SVar<Integer>,Set<Integer>> partial,
+				   SolReader<SVar<Integer>,Set<Integer>> expected) {
+	for(SVar<Integer> v : vars) {
+	    Set<Integer> value = partial.get(v);
+	    if(value == null) continue;
+	    Set<Integer> full = expected.get(v);
+	    assertTrue("value of " + v + " above the least solution", (full != null) && full.containsAll(value));
+	}
+    }
+
+
+    // checks that the parallel solver produces the same solution as the sequential one
+    // Solves the same random systems with SVars and with BitSetSVars
+    // (that share a universe), and compares the solutions.
+    private static void compareBitSets(long seed, Universe<Integer> universe, boolean diffProp) {
+	SVar<Integer>[] vars1 = newVars(80);
+	SVar<Integer>[] vars2 = newVars(80, universe);
+	SetConstraints<Integer> sc1 = new SetConstraints<Integer>();
+	SetConstraints<Integer> sc2 = new SetConstraints<Integer>();
+	addRandomWithIntersections(new Random(seed), vars1, sc1);
+	addRandomWithIntersections(new Random(seed), vars2, sc2);
+
+	ConstraintSystem<SVar<Integer>,Set<Integer>> sys1 = new ConstraintSystem<SVar<Integer>,Set<Integer>>(sc1);
+	ConstraintSystem<SVar<Integer>,Set<Integer>> sys2 = new ConstraintSystem<SVar<Integer>,Set<Integer>>(sc2);
+	sys1.setDiffPropagation(diffProp);
+	sys2.setDiffPropagation(diffProp);
+	SolReader<SVar<Integer>,Set<Integer>> sol1 = sys1.solve();
+	SolReader<SVar<Integer>,Set<Integer>> sol2 = sys2.solve();
+	for(int i = 0; i < vars1.length; i++) {
+	    Set<Integer> value = sol2.get(vars2[i]);
+	    assertEquals("different values for " + vars2[i], sol1.get(vars1[i]), value);
+	    assertTrue("not a bitset value: " + value, (value == null) || (value instanceof BitSetSet));
+	}
+	verify(sc2, sol2);
+    }
+
+    private static void addRandomWithIntersections(Random rand, SVar<Integer>[] vars, SetConstraints<Integer> sc) {
+	addRandom(rand, vars, 0, vars.length, vars.length / 4, 160, sc);
+	for(int i = 0; i < 20; i++) {
+	    sc.add(new IntersectConstraint<Integer>(vars[rand.nextInt(vars.length)],
+						    vars[rand.nextInt(vars.length)],
+						    vars[rand.nextInt(vars.length)]));
+	}
+    }
+
+
+    // checks that the parallel solver produces the same solution as the sequential one
+    private static <V extends Var<Info>, Info> void compareParallel(Collection<Constraint<V,Info>> sc,
+								    ExecutorService executor) {
+	ConstraintSystem<V,Info> sys = new ConstraintSystem<V,Info>(sc);
+	SolReader<V,Info> sol1 = sys.solve();
+	SolReader<V,Info> sol2 = sys.solve(executor);
+	sys.setDiffPropagation(true);
+	SolReader<V,Info> sol3 = sys.solve(executor);
+	for(V v : sys.vars()) {
+	    assertEquals("different values for " + v, sol1.get(v), sol2.get(v));
+	    assertEquals("different values for " + v, sol1.get(v), sol3.get(v));
+	}
+	verify(sc, sol2);
+    }
+
+
+    // Adds the batches of constraints, one by one, to a constraint
+    // system, and compares each incremental solution with the
+    // solution computed from scratch.  If executor is non-null, the
+    // incremental solves are parallel.
+    private static void compareIncremental(List<SetConstraints<Integer>> batches, ExecutorService executor,
+					   boolean cycleDetection, boolean valueSharing) {
+	SetConstraints<Integer> all = new SetConstraints<Integer>();
+	ConstraintSystem<SVar<Integer>,Set<Integer>> sys = null;
+	SolReader<SVar<Integer>,Set<Integer>> prevSol = null;
+	Map<SVar<Integer>,Set<Integer>> prevValues = null;
+	int k = 0;
+	for(SetConstraints<Integer> batch : batches) {
+	    all.addAll(batch);
+	    if(sys == null) {
+		sys = new ConstraintSystem<SVar<Integer>,Set<Integer>>(batch);
+	    }
+	    else {
+		sys.addConstraints(batch);
+	    }
+	    sys.setDiffPropagation((k++ % 2) == 1);
+	    sys.setCycleDetection(cycleDetection);
+	    sys.setValueSharing(valueSharing);
+	    SolReader<SVar<Integer>,Set<Integer>> sol = (executor == null) ? sys.solve() : sys.solve(executor);
+	    if(valueSharing) checkSharing(sys.vars(), sol);
+	    SolReader<SVar<Integer>,Set<Integer>> ref = 
+		(new ConstraintSystem<SVar<Integer>,Set<Integer>>(all)).solve();
+	    for(SVar<Integer> v : sys.vars()) {
+		assertEquals("different values for " + v, ref.get(v), sol.get(v));
+	    }
+	    // previous solutions are not affected
+	    if(prevSol != null) {
+		for(Map.Entry<SVar<Integer>,Set<Integer>> entry : prevValues.entrySet()) {
+		    assertEquals("old solution changed for " + entry.getKey(),
+				 entry.getValue(), prevSol.get(entry.getKey()));
+		}
+	    }
+	    prevSol = sol;
+	    prevValues = new LinkedHashMap<SVar<Integer>,Set<Integer>>();
+	    for(SVar<Integer> v : sys.vars()) {
+		Set<Integer> value = sol.get(v);
+		prevValues.put(v, (value == null) ? null : new HashSet<Integer>(value));
+	    }
+	}
+	// a non-incremental solve gives the same solution
+	SolReader<SVar<Integer>,Set<Integer>> sol = sys.solve();
+	for(SVar<Integer> v : sys.vars()) {
+	    assertEquals("different values for " + v, prevSol.get(v), sol.get(v));
+	}
+    }
+
+
+    // random system of inclusions and filters, with many cycles
+    private static SetConstraints<Integer> randomSystem(Random rand, int nbVars, int nbCons) {
+	SetConstraints<Integer> sc = new SetConstraints<Integer>();
+	addRandom(rand, newVars(nbVars), 0, nbVars, nbVars / 4, nbCons, sc);
+	return sc;
+    }
+
+    // adds to sc nbCts random constant sources and nbCons random
+    // constraints, using the first nbVars variables from vars; the
+    // constraints update only variables starting from index firstDst.
+    private static void addRandom(Random rand, SVar<Integer>[] vars, int firstDst, int nbVars, int nbCts, int nbCons,
+				  SetConstraints<Integer> sc) {
+	for(int i = 0; i < nbCts; i++) {
+	    sc.addCtSource(Arrays.asList(new Integer(rand.nextInt(100)), new Integer(rand.nextInt(100))),
+			   vars[firstDst + rand.nextInt(nbVars - firstDst)]);
+	}
+	for(int i = 0; i < nbCons; i++) {
+	    SVar<Integer> vs = vars[rand.nextInt(nbVars)];
+	    SVar<Integer> vd = vars[firstDst + rand.nextInt(nbVars - firstDst)];
+	    if(i % 10 == 0) {
+		sc.add(new FilterConstraint<Integer>(vs, EVEN, vd));
+	    }
+	    else {
+		sc.addInclusion(vs, vd);
+	    }
+	}
+    }
+
+    private static SVar<Integer>[] newVars(int nbVars) {
+	return newVars(nbVars, null);
+    }
+
+    // if universe is non-null, creates BitSetSVars that use it
+    @SuppressWarnings("unchecked")
+    private static SVar<Integer>[] newVars(int nbVars, Universe<Integer> universe) {
+	SVar<Integer>[] vars = new SVar[nbVars];
+	for(int i = 0; i < nbVars; i++) {
+	    vars[i] = (universe == null) ? new SVar<Integer>() : new BitSetSVar<Integer>(universe);
+	}
+	return vars;
+    }
+
+    private static final Predicate<Integer> EVEN = new Predicate<Integer>() {
+	public boolean check(Integer i) { return i.intValue() % 2 == 0; }
+	public String toString() { return "even"; }
+    };
+
+
+    // checks that the difference propagation mode produces the same solution
+    private static <V extends Var<Info>, Info> void compareDiffPropagation(Collection<Constraint<V,Info>> sc) {
+	ConstraintSystem<V,Info> sys = new ConstraintSystem<V,Info>(sc);
+	SolReader<V,Info> sol1 = sys.solve();
+	sys.setDiffPropagation(true);
+	SolReader<V,Info> sol2 = sys.solve();
+	for(V v : sys.vars()) {
+	    assertEquals("different values for " + v, sol1.get(v), sol2.get(v));
+	}
+	verify(sc, sol2);
+    }
+
+
     private static <V extends Var<Info>, Info> void solve(Collection<Constraint<V,Info>> sc) {
 	//System.out.println("Original constraints: " + sc);
 
@@ -184,6 +1337,12 @@ public class TestSetConstraints extends TestCase {
 
 	System.out.print("Solution:\n" + sol);
 
+	verify(sc, sol);
+    }
+
+
+    private static <V extends Var<Info>, Info> void verify(Collection<Constraint<V,Info>> sc,
+							   SolReader<V,Info> sol) {
 	SolAccessor<V,Info> ver = new SolVerifier<V,Info>(sol);
 	for(Constraint<V,Info> c : sc) {
 	    System.out.print("Verifying constraint " + c + " ... ");
@@ -202,6 +1361,8 @@ public class TestSetConstraints extends TestCase {
 	public Info get(V v) { return sr.get(v); }
 
 	public void join(V v, Info delta) {
+	    // null represents bottom
+	    if(delta == null) return;
 	    Info old = this.get(v);
 	    // special case: no previous value for v
 	    if(old == null) {
@@ -0,0 +1,175 @@
+// WorksetBenchmark.java, created Fri Oct 16 14:05:51 2026
+// Copyright (C) 2005 Alexandru Salcianu <salcianu@alum.mit.edu>
+// Licensed under the Modified BSD Licence; see COPYING for details.
+package jpaul.Constraints.SetConstraints;
+
+import java.util.Set;
+import java.util.Arrays;
+import java.util.Random;
+
+import jpaul.Constraints.ConstraintSystem;
+import jpaul.Constraints.SolverStats;
+import jpaul.Constraints.WorksetStrategy;
+import jpaul.Misc.Predicate;
+
+/**
+ * <code>WorksetBenchmark</code> compares the workset strategies of
+ * the constraint solver (see {@link WorksetStrategy}) on a few
+ * synthetic set constraint systems with large SCCs.  For each system
+ * and each strategy, it prints the number of constraint executions
+ * (and skipped executions) and the median wall time of several
+ * solves.  Not a JUnit test; run it with
+ *
+ * <pre>
+ *   mvn test-compile
+ *   java -cp target/classes:target/test-classes jpaul.Constraints.SetConstraints.WorksetBenchmark [scale]
+ * </pre>
+ *
+ * where the optional <code>scale</code> (default 1) multiplies the
+ * size of the systems.
+ *
+ * @version $Id$ */
+public class WorksetBenchmark {
+
+    public static void main(String[] args) {
+	int scale = (args.length > 0) ? Integer.parseInt(args[0]) : 1;
+
+	System.out.println("system              strategy               executions    skipped   time(ms)");
+	run("ring+chords", ring(new Random(1), 400 * scale, 200 * scale));
+	run("random", random(new Random(2), 1000 * scale, 4000 * scale));
+	run("layers+back-edges", layers(new Random(3), 40 * scale, 25));
+    }
+
+
+    private static void run(String name, SetConstraints<Integer> sc) {
+	for(WorksetStrategy ws : WorksetStrategy.values()) {
+	    ConstraintSystem<SVar<Integer>,Set<Integer>> sys =
+		new ConstraintSystem<SVar<Integer>,Set<Integer>>(sc);
+	    sys.setWorksetStrategy(ws);
+
+	    // 1. number of iterations
+	    sys.setStatistics(true);
+	    sys.solve();
+	    SolverStats<SVar<Integer>> stats = sys.getLastStatistics();
+	    sys.setStatistics(false);
+
+	    // 2. time (without the cost of the statistics); the first
+	    // solves warm up the JIT.
+	    long[] times = new long[7];
+	    for(int i = 0; i < times.length; i++) {
+		long start = System.nanoTime();
+		sys.solve();
+		times[i] = System.nanoTime() - start;
+	    }
+	    Arrays.sort(times);
+
+	    System.out.println(pad(name, 20) + pad(ws.toString(), 22) +
+			       lpad(stats.getTotals().getNbExecutions(), 11) +
+			       lpad(stats.getTotals().getNbSkipped(), 11) +
+			       lpad(times[times.length / 2] / 1000000, 11));
+	}
+	System.out.println();
+    }
+
+
+    // Ring of filters v0 -> v1 -> ... -> v0, plus random chords and a
+    // few constant sources: one big SCC (filters are not unified).
+    private static SetConstraints<Integer> ring(Random rand, int nbVars, int nbChords) {
+	SVar<Integer>[] vars = newVars(nbVars);
+	SetConstraints<Integer> sc = new SetConstraints<Integer>();
+	for(int i = 0; i < nbVars; i++) {
+	    sc.add(new FilterConstraint<Integer>(vars[i], MOST, vars[(i + 1) % nbVars]));
+	}
+	for(int i = 0; i < nbChords; i++) {
+	    sc.addInclusion(vars[rand.nextInt(nbVars)], vars[rand.nextInt(nbVars)]);
+	}
+	addSources(rand, vars, nbVars / 10, sc);
+	return sc;
+    }
+
+
+    // Random inclusions and filters between nbVars variables.
+    private static SetConstraints<Integer> random(Random rand, int nbVars, int nbCons) {
+	SVar<Integer>[] vars = newVars(nbVars);
+	SetConstraints<Integer> sc = new SetConstraints<Integer>();
+	for(int i = 0; i < nbCons; i++) {
+	    SVar<Integer> vs = vars[rand.nextInt(nbVars)];
+	    SVar<Integer> vd = vars[rand.nextInt(nbVars)];
+	    if(i % 3 == 0) {
+		sc.add(new FilterConstraint<Integer>(vs, MOST, vd));
+	    }
+	    else {
+		sc.addInclusion(vs, vd);
+	    }
+	}
+	addSources(rand, vars, nbVars / 10, sc);
+	return sc;
+    }
+
+
+    // nbLayers layers of width variables; filters from each layer to
+    // the next one, and a few back edges from each layer to the
+    // first layers.
+    private static SetConstraints<Integer> layers(Random rand, int nbLayers, int width) {
+	SVar<Integer>[] vars = newVars(nbLayers * width);
+	SetConstraints<Integer> sc = new SetConstraints<Integer>();
+	for(int l = 0; l + 1 < nbLayers; l++) {
+	    for(int i = 0; i < width; i++) {
+		for(int k = 0; k < 2; k++) {
+		    sc.add(new FilterConstraint<Integer>(vars[l * width + i], MOST,
+							 vars[(l + 1) * width + rand.nextInt(width)]));
+		}
+	    }
+	    sc.addInclusion(vars[(l + 1) * width + rand.nextInt(width)], vars[rand.nextInt(width)]);
+	}
+	// sources only in the first layer
+	for(int i = 0; i < width; i++) {
+	    sc.addCtSource(elems(rand), vars[i]);
+	}
+	return sc;
+    }
+
+
+    private static void addSources(Random rand, SVar<Integer>[] vars, int nbSources, SetConstraints<Integer> sc) {
+	for(int i = 0; i < nbSources; i++) {
+	    sc.addCtSource(elems(rand), vars[rand.nextInt(vars.length)]);
+	}
+    }
+
+    private static Set<Integer> elems(Random rand) {
+	Set<Integer> elems = new java.util.LinkedHashSet<Integer>();
+	for(int i = 0; i < 20; i++) {
+	    elems.add(new Integer(rand.nextInt(5000)));
+	}
+	return elems;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static SVar<Integer>[] newVars(int nbVars) {
+	SVar<Integer>[] vars = new SVar[nbVars];
+	for(int i = 0; i < nbVars; i++) {
+	    vars[i] = new SVar<Integer>();
+	}
+	return vars;
+    }
+
+    // lets most elements pass
+    private static final Predicate<Integer> MOST = new Predicate<Integer>() {
+	public boolean check(Integer i) { return i.intValue() % 97 != 0; }
+	public String toString() { return "most"; }
+    };
+
+
+    private static String pad(String s, int width) {
+	StringBuffer buff = new StringBuffer(s);
+	while(buff.length() < width) buff.append(' ');
+	return buff.toString();
+    }
+
+    private static String lpad(long n, int width) {
+	StringBuffer buff = new StringBuffer(Long.toString(n));
+	while(buff.length() < width) buff.insert(0, ' ');
+	return buff.toString();
+    }
+
+}
@@ -0,0 +1,221 @@
+// COWBenchmark.java, created Sat Oct 17 16:10:26 2026
+// Copyright (C) 2005 Alexandru Salcianu <salcianu@alum.mit.edu>
+// Licensed under the Modified BSD Licence; see COPYING for details.
+package jpaul.DataStructs;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * <code>COWBenchmark</code> measures the copy-on-write sets and
+ * relations (see {@link SetFacts#cow SetFacts.cow} and {@link
+ * RelFacts#cow RelFacts.cow}) on a dataflow-like workload: each
+ * step clones the value of a random predecessor, mutates the clone
+ * with some probability, and drops the old value; in addition, some
+ * steps take a temporary snapshot (a clone that dies immediately)
+ * and next mutate the original.  For each kind of structure it
+ * prints the number of copies of the underlying representation (the
+ * copy avoidance), the allocated bytes, the GC count and time, the
+ * maximal number of objects pending finalization, and the median
+ * wall time.  Not a JUnit test; run it with
+ *
+ * <pre>
+ *   mvn test-compile
+ *   java -cp target/classes:target/test-classes jpaul.DataStructs.COWBenchmark [scale]
+ * </pre>
+ *
+ * where the optional <code>scale</code> (default 1) multiplies the
+ * number of steps.
+ *
+ * @version $Id$ */
+public class COWBenchmark {
+
+    public static void main(String[] args) {
+	int scale = (args.length > 0) ? Integer.parseInt(args[0]) : 1;
+	int nbSteps = 500000 * scale;
+
+	System.out.println("structure       copies     alloc(MB)  gc-count  gc-time(ms)  max-pending-fin  time(ms)");
+	runSets(nbSteps);
+	runRelations(nbSteps / 4);
+    }
+
+
+    private static final int NB_NODES = 2000;
+
+    // Underlying set factory that counts the copies.
+    private static class CountingSetFactory extends SetFactory<Integer> {
+	private static final long serialVersionUID = 1L;
+	private final SetFactory<Integer> fact = SetFacts.<Integer>hash();
+	long nbCopies = 0;
+	public Set<Integer> create() { return fact.create(); }
+	public Set<Integer> newColl(Collection<Integer> c) {
+	    nbCopies++;
+	    return fact.newColl(c);
+	}
+    }
+
+    // Underlying relation factory that counts the copies.
+    private static class CountingRelationFactory extends RelationFactory<Integer,Integer> {
+	private final RelationFactory<Integer,Integer> fact = RelFacts.<Integer,Integer>mapSet();
+	long nbCopies = 0;
+	public Relation<Integer,Integer> create() { return fact.create(); }
+	public Relation<Integer,Integer> create(Relation<Integer,Integer> r) {
+	    nbCopies++;
+	    return fact.create(r);
+	}
+    }
+
+
+    private static void runSets(int nbSteps) {
+	long[] times = new long[3];
+	Measure m = null;
+	for(int run = 0; run < times.length; run++) {
+	    CountingSetFactory under = new CountingSetFactory();
+	    SetFactory<Integer> fact = SetFacts.cow(under);
+	    Random rand = new Random(1);
+	    m = new Measure();
+
+	    @SuppressWarnings("unchecked")
+	    Set<Integer>[] values = new Set[NB_NODES];
+	    for(int i = 0; i < NB_NODES; i++) {
+		values[i] = fact.create();
+		for(int j = 0; j < 50; j++) values[i].add(rand.nextInt(1000));
+	    }
+	    for(int step = 0; step < nbSteps; step++) {
+		int node = rand.nextInt(NB_NODES);
+		if(rand.nextInt(4) == 0) {
+		    // temporary snapshot, next mutation of the original
+		    Set<Integer> snapshot = fact.create(values[node]);
+		    if(snapshot.size() < 0) throw new Error();
+		    values[node].add(rand.nextInt(1000));
+		}
+		else {
+		    Set<Integer> clone = fact.create(values[rand.nextInt(NB_NODES)]);
+		    if(rand.nextInt(3) == 0)
+			clone.add(rand.nextInt(1000));
+		    values[node] = clone;
+		}
+		if(step % 10000 == 0) m.sample();
+	    }
+	    m.stop(under.nbCopies);
+	    times[run] = m.time;
+	}
+	m.print("cow-set", times);
+    }
+
+
+    private static void runRelations(int nbSteps) {
+	long[] times = new long[3];
+	Measure m = null;
+	for(int run = 0; run < times.length; run++) {
+	    CountingRelationFactory under = new CountingRelationFactory();
+	    RelationFactory<Integer,Integer> fact = RelFacts.cow(under);
+	    Random rand = new Random(2);
+	    m = new Measure();
+
+	    @SuppressWarnings("unchecked")
+	    Relation<Integer,Integer>[] values = new Relation[NB_NODES];
+	    for(int i = 0; i < NB_NODES; i++) {
+		values[i] = fact.create();
+		for(int j = 0; j < 20; j++) values[i].add(rand.nextInt(10), rand.nextInt(100));
+	    }
+	    for(int step = 0; step < nbSteps; step++) {
+		int node = rand.nextInt(NB_NODES);
+		if(rand.nextInt(4) == 0) {
+		    Relation<Integer,Integer> snapshot = fact.create(values[node]);
+		    if(snapshot.isEmpty()) throw new Error();
+		    values[node].add(rand.nextInt(10), rand.nextInt(100));
+		}
+		else {
+		    Relation<Integer,Integer> clone = fact.create(values[rand.nextInt(NB_NODES)]);
+		    if(rand.nextInt(3) == 0)
+			clone.add(rand.nextInt(10), rand.nextInt(100));
+		    values[node] = clone;
+		}
+		if(step % 10000 == 0) m.sample();
+	    }
+	    m.stop(under.nbCopies);
+	    times[run] = m.time;
+	}
+	m.print("cow-relation", times);
+    }
+
+
+    // Allocation, GC and finalization statistics for one run.
+    private static class Measure {
+	Measure() {
+	    gcCount = -gcCount();
+	    gcTime  = -gcTime();
+	    alloc   = -allocatedBytes();
+	    time    = -System.nanoTime();
+	}
+
+	long gcCount, gcTime, alloc, time, copies;
+	int maxPendingFin = 0;
+
+	void sample() {
+	    maxPendingFin = Math.max(maxPendingFin,
+				     ManagementFactory.getMemoryMXBean().getObjectPendingFinalizationCount());
+	}
+
+	void stop(long copies) {
+	    time    += System.nanoTime();
+	    alloc   += allocatedBytes();
+	    gcCount += gcCount();
+	    gcTime  += gcTime();
+	    this.copies = copies;
+	}
+
+	// prints the statistics of the last run, and the median time
+	void print(String name, long[] times) {
+	    Arrays.sort(times);
+	    System.out.println(pad(name, 16) +
+			       lpad(copies, 6) +
+			       lpad(alloc / (1024 * 1024), 14) +
+			       lpad(gcCount, 10) +
+			       lpad(gcTime, 13) +
+			       lpad(maxPendingFin, 17) +
+			       lpad(times[times.length / 2] / 1000000, 10));
+	}
+    }
+
+    private static long gcCount() {
+	long count = 0;
+	for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+	    count += Math.max(0, gc.getCollectionCount());
+	return count;
+    }
+
+    private static long gcTime() {
+	long time = 0;
+	for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+	    time += Math.max(0, gc.getCollectionTime());
+	return time;
+    }
+
+    // bytes allocated by the current thread; -1 if the JVM cannot
+    // tell
+    private static long allocatedBytes() {
+	java.lang.management.ThreadMXBean tmx = ManagementFactory.getThreadMXBean();
+	if(tmx instanceof com.sun.management.ThreadMXBean)
+	    return ((com.sun.management.ThreadMXBean) tmx).getThreadAllocatedBytes(Thread.currentThread().getId());
+	return -1;
+    }
+
+    private static String pad(String s, int n) {
+	StringBuffer buff = new StringBuffer(s);
+	while(buff.length() < n) buff.append(' ');
+	return buff.toString();
+    }
+
+    private static String lpad(long x, int n) {
+	StringBuffer buff = new StringBuffer(Long.toString(x));
+	while(buff.length() < n) buff.insert(0, ' ');
+	return buff.toString();
+    }
+
+}
@@ -0,0 +1,128 @@
+// OpenHashBenchmark.java, created Sat Oct 17 19:58:40 2026
+// Copyright (C) 2005 Alexandru Salcianu <salcianu@alum.mit.edu>
+// Licensed under the Modified BSD Licence; see COPYING for details.
+package jpaul.DataStructs;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * <code>OpenHashBenchmark</code> compares the open-addressing sets
+ * (see {@link SetFacts#openHash SetFacts.openHash}) against the
+ * <code>LinkedHashSet</code>s of {@link SetFacts#hash
+ * SetFacts.hash}, on many small sets (1 to 64 elements).  For each
+ * set size and each factory, it prints the retained memory per
+ * element (the elements themselves are shared, and not counted), and
+ * the median time of building the sets, of looking up elements (half
+ * hits, half misses), and of iterating over the sets.  Not a JUnit
+ * test; run it with
+ *
+ * <pre>
+ *   mvn test-compile
+ *   java -cp target/classes:target/test-classes jpaul.DataStructs.OpenHashBenchmark [scale]
+ * </pre>
+ *
+ * where the optional <code>scale</code> (default 1) multiplies the
+ * total number of elements.
+ *
+ * @version $Id$ */
+public class OpenHashBenchmark {
+
+    public static void main(String[] args) {
+	int scale = (args.length > 0) ? Integer.parseInt(args[0]) : 1;
+	int nbElems = 1000000 * scale;
+
+	elems = new Integer[UNIVERSE_SIZE];
+	for(int i = 0; i < UNIVERSE_SIZE; i++)
+	    elems[i] = new Integer(i * 7919);
+
+	System.out.println("size  structure         bytes/elem  build(ms)  lookup(ms)  iterate(ms)");
+	for(int size : new int[] {1, 2, 4, 8, 16, 32, 64}) {
+	    run(size, nbElems / size, "hash",            SetFacts.<Integer>hash());
+	    run(size, nbElems / size, "openHash",        SetFacts.<Integer>openHash());
+	    run(size, nbElems / size, "openHash(false)", SetFacts.<Integer>openHash(false));
+	}
+    }
+
+    private static final int UNIVERSE_SIZE = 1000;
+    private static Integer[] elems;
+
+    private static final int NB_RUNS = 5;
+
+
+    private static void run(int size, int nbSets, String name, SetFactory<Integer> fact) {
+	long[] buildTimes  = new long[NB_RUNS];
+	long[] lookupTimes = new long[NB_RUNS];
+	long[] iterTimes   = new long[NB_RUNS];
+	long bytes = 0;
+	long check = 0;
+
+	for(int run = 0; run < NB_RUNS; run++) {
+	    Random rand = new Random(size);
+	    long mem0 = usedMemory();
+
+	    long time = System.nanoTime();
+	    @SuppressWarnings("unchecked")
+	    Set<Integer>[] sets = new Set[nbSets];
+	    for(int i = 0; i < nbSets; i++) {
+		Set<Integer> set = fact.create();
+		while(set.size() < size)
+		    set.add(elems[rand.nextInt(UNIVERSE_SIZE)]);
+		sets[i] = set;
+	    }
+	    buildTimes[run] = System.nanoTime() - time;
+
+	    bytes = (usedMemory() - mem0) - 4L * nbSets;
+
+	    time = System.nanoTime();
+	    for(int i = 0; i < nbSets; i++) {
+		Set<Integer> set = sets[i];
+		for(int k = 0; k < size; k++)
+		    if(set.contains(elems[rand.nextInt(UNIVERSE_SIZE)])) check++;
+	    }
+	    lookupTimes[run] = System.nanoTime() - time;
+
+	    time = System.nanoTime();
+	    for(int i = 0; i < nbSets; i++) {
+		for(Integer elem : sets[i])
+		    check += elem.intValue();
+	    }
+	    iterTimes[run] = System.nanoTime() - time;
+
+	    sets = null;
+	}
+	if(check == 42) System.out.println();
+
+	System.out.println(lpad(size, 4) + "  " + pad(name, 16) +
+			   lpad(bytes / ((long) nbSets * size), 12) +
+			   lpad(median(buildTimes), 11) +
+			   lpad(median(lookupTimes), 12) +
+			   lpad(median(iterTimes), 13));
+    }
+
+    private static long usedMemory() {
+	Runtime rt = Runtime.getRuntime();
+	for(int i = 0; i < 3; i++) System.gc();
+	return rt.totalMemory() - rt.freeMemory();
+    }
+
+    private static long median(long[] times) {
+	long[] sorted = times.clone();
+	Arrays.sort(sorted);
+	return sorted[sorted.length / 2] / 1000000;
+    }
+
+    private static String pad(String s, int n) {
+	StringBuffer buff = new StringBuffer(s);
+	while(buff.length() < n) buff.append(' ');
+	return buff.toString();
+    }
+
+    private static String lpad(long x, int n) {
+	StringBuffer buff = new StringBuffer(Long.toString(x));
+	while(buff.length() < n) buff.insert(0, ' ');
+	return buff.toString();
+    }
+
+}
@@ -0,0 +1,216 @@
+// TestIntDataStructs.java, created Sat Oct 17 12:31:55 2026
+// Copyright (C) 2005 Alexandru Salcianu <salcianu@alum.mit.edu>
+// Licensed under the Modified BSD Licence; see COPYING for details.
+package jpaul.DataStructs;
+
+import java.util.Set;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * <code>TestIntDataStructs</code> contains regression tests for the
+ * primitive <code>int</code> data structures.  Similar to {@link
+ * TestSetFactory}, each test runs a long chain of random operations
+ * in parallel on the structure under test and on a trusted
+ * <code>java.util</code> structure, and checks that the results are
+ * the same at each step.
+ *
+ * @version $Id$ */
+public class TestIntDataStructs extends TestCase {
+
+    private final Random random = new Random(System.currentTimeMillis());
+
+    private static final int NB_OPERS = 20000;
+
+    // small universe with 0 (the free slot marker of the open
+    // addressing tables) and negative ints, to stress the collisions
+    private int randomElem(int universeSize) {
+	return random.nextInt(universeSize) - universeSize / 4;
+    }
+
+
+    public void testIntSets() {
+	checkSet(IntFacts.hashSet(), 40);
+	checkSet(IntFacts.hashSet(), 5000);
+	checkSet(IntFacts.sortedArraySet(), 40);
+	checkSet(IntFacts.sortedArraySet(), 500);
+    }
+
+    private void checkSet(IntSetFactory fact, int universeSize) {
+	IntSet set = fact.create();
+	Set<Integer> ref = new HashSet<Integer>();
+
+	for(int i = 0; i < NB_OPERS; i++) {
+	    int elem = randomElem(universeSize);
+	    switch(random.nextInt(8)) {
+	    case 0: case 1: case 2:
+		assertEquals(ref.add(elem), set.add(elem));
+		break;
+	    case 3: case 4:
+		assertEquals(ref.remove(elem), set.remove(elem));
+		break;
+	    case 5: {
+		IntSet other = fact.create();
+		for(int j = random.nextInt(5); j > 0; j--) {
+		    other.add(randomElem(universeSize));
+		}
+		assertEquals(ref.addAll(toSet(other)), set.addAll(other));
+		break;
+	    }
+	    case 6:
+		// work on a clone from now on; the old set must not change
+		IntSet old = set;
+		Set<Integer> oldRef = new HashSet<Integer>(ref);
+		set = (random.nextBoolean() ? set.clone() : fact.create(set));
+		set.add(elem);
+		ref.add(elem);
+		assertEquals(oldRef, toSet(old));
+		break;
+	    default:
+		assertEquals(ref.contains(elem), set.contains(elem));
+	    }
+	    assertEquals(ref.size(), set.size());
+	    if(i % 100 == 0) {
+		assertEquals(ref, toSet(set));
+		assertEquals(ref.hashCode(), set.hashCode());
+		assertEquals(new OpenHashIntSet(set), set);
+		assertEquals(new SortedIntArraySet(set), set);
+	    }
+	}
+	set.clear();
+	assertTrue(set.isEmpty());
+	assertFalse(set.iterator().hasNext());
+    }
+
+    private static Set<Integer> toSet(IntSet set) {
+	Set<Integer> res = new HashSet<Integer>();
+	for(IntSet.IntIterator it = set.iterator(); it.hasNext(); ) {
+	    assertTrue("duplicate element", res.add(it.next()));
+	}
+	return res;
+    }
+
+
+    public void testIntMap() {
+	IntMap<String> map = new IntMap<String>();
+	Map<Integer,String> ref = new HashMap<Integer,String>();
+
+	for(int i = 0; i < NB_OPERS; i++) {
+	    int key = randomElem(1000);
+	    switch(random.nextInt(4)) {
+	    case 0: case 1:
+		String value = "v" + random.nextInt(10);
+		assertEquals(ref.put(key, value), map.put(key, value));
+		break;
+	    case 2:
+		assertEquals(ref.remove(key), map.remove(key));
+		break;
+	    default:
+		assertEquals(ref.containsKey(key), map.containsKey(key));
+		assertEquals(ref.get(key), map.get(key));
+	    }
+	    assertEquals(ref.size(), map.size());
+	    if(i % 500 == 0) {
+		assertEquals(ref.keySet(), toSet(map.keys()));
+		assertEquals(ref.hashCode(), map.hashCode());
+		IntMap<String> clone = map.clone();
+		assertEquals(map, clone);
+		clone.put(key, "other");
+		assertEquals(ref.get(key), map.get(key));
+		LinkedList<String> values = new LinkedList<String>();
+		for(String v : map.values()) values.add(v);
+		assertEquals(ref.size(), values.size());
+		assertTrue(values.containsAll(ref.values()));
+	    }
+	}
+    }
+
+
+    public void testIntRelation() {
+	checkRelation(IntFacts.mapSet());
+	checkRelation(IntFacts.mapSet(IntFacts.sortedArraySet()));
+    }
+
+    private void checkRelation(IntRelationFactory fact) {
+	IntRelation rel = fact.create();
+	Relation<Integer,Integer> ref = new MapSetRelation<Integer,Integer>();
+
+	for(int i = 0; i < NB_OPERS; i++) {
+	    int key = randomElem(50);
+	    int value = randomElem(50);
+	    switch(random.nextInt(6)) {
+	    case 0: case 1:
+		assertEquals(ref.add(key, value), rel.add(key, value));
+		break;
+	    case 2:
+		assertEquals(ref.remove(key, value), rel.remove(key, value));
+		break;
+	    case 3:
+		if(random.nextInt(10) == 0)
+		    assertEquals(ref.removeKey(key), rel.removeKey(key));
+		break;
+	    case 4: {
+		IntSet values = IntFacts.hashSet().create();
+		values.add(value);
+		values.add(randomElem(50));
+		assertEquals(ref.addAll(key, toSet(values)), rel.addAll(key, values));
+		break;
+	    }
+	    default:
+		assertEquals(ref.contains(key, value), rel.contains(key, value));
+		assertEquals(ref.containsKey(key), rel.containsKey(key));
+		assertEquals(ref.getValues(key), toSet(rel.getValues(key)));
+	    }
+	    if(i % 500 == 0) {
+		assertEquals(ref.size(), rel.size());
+		assertEquals(ref.keys(), toSet(rel.keys()));
+		IntRelation clone = rel.clone();
+		assertEquals(rel, clone);
+		clone.add(key, value);
+		clone.removeKey(key + 1);
+		assertEquals(ref.getValues(key + 1), toSet(rel.getValues(key + 1)));
+		assertEquals(rel, rel.revert().revert());
+		assertEquals(rel, fact.create(rel));
+	    }
+	}
+    }
+
+
+    public void testIntWorkSet() {
+	checkWorkSet(new IntWorkSet.Queue(), true);
+	checkWorkSet(new IntWorkSet.Stack(), false);
+    }
+
+    private void checkWorkSet(IntWorkSet ws, boolean fifo) {
+	LinkedList<Integer> ref = new LinkedList<Integer>();
+	for(int i = 0; i < NB_OPERS; i++) {
+	    if(random.nextInt(3) > 0) {
+		int elem = random.nextInt(100);
+		boolean isNew = !ref.contains(elem);
+		if(isNew) ref.addLast(elem);
+		assertEquals(isNew, ws.add(elem));
+	    }
+	    else if(!ref.isEmpty()) {
+		int expected = fifo ? ref.removeFirst() : ref.removeLast();
+		assertEquals(expected, ws.extract());
+		assertFalse(ws.contains(expected));
+	    }
+	    assertEquals(ref.size(), ws.size());
+	}
+	assertEquals(fifo ? ref.toString() : reverse(ref).toString(), ws.toString());
+	ws.clear();
+	assertTrue(ws.isEmpty());
+    }
+
+    private static LinkedList<Integer> reverse(LinkedList<Integer> list) {
+	LinkedList<Integer> res = new LinkedList<Integer>();
+	for(Integer i : list) res.addFirst(i);
+	return res;
+    }
+
+}
@@ -0,0 +1,145 @@
+// TestNoCompTreeMap.java, created Sat Oct 17 17:32:08 2026
+// Copyright (C) 2005 Alexandru Salcianu <salcianu@alum.mit.edu>
+// Licensed under the Modified BSD Licence; see COPYING for details.
+package jpaul.DataStructs;
+
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * <code>TestNoCompTreeMap</code> contains regression tests for the
+ * balanced {@link NoCompTreeMap}: random operations are checked
+ * against a <code>HashMap</code>, with keys that include colliding
+ * hash codes; keys added in increasing hash order must not make the
+ * tree degenerate; the bulk-build constructor must produce the same
+ * map as a sequence of <code>put</code>s.
+ *
+ * @version $Id$ */
+public class TestNoCompTreeMap extends TestCase {
+
+    private final Random random = new Random(System.currentTimeMillis());
+
+    /** Key with a user-chosen hash code. */
+    private static class Key {
+	Key(int id, int hash) { this.id = id; this.hash = hash; }
+	final int id;
+	final int hash;
+	public int hashCode() { return hash; }
+	public boolean equals(Object o) {
+	    return (o instanceof Key) && ((Key) o).id == id;
+	}
+	public String toString() { return "k" + id; }
+    }
+
+    private Key randomKey() {
+	int id = random.nextInt(2000);
+	// ids < 200 collide in groups of 8
+	return new Key(id, (id < 200) ? (id / 8) : id);
+    }
+
+
+    public void testRandomOps() {
+	Map<Key,Integer> ref = new HashMap<Key,Integer>();
+	NoCompTreeMap<Key,Integer> map = new NoCompTreeMap<Key,Integer>();
+
+	for(int i = 0; i < 50000; i++) {
+	    Key key = randomKey();
+	    switch(random.nextInt(3)) {
+	    case 0:
+		assertEquals(ref.remove(key), map.remove(key));
+		break;
+	    case 1:
+		assertEquals(ref.get(key), map.get(key));
+		break;
+	    default:
+		assertEquals(ref.put(key, i), map.put(key, i));
+	    }
+	    if(i % 1000 == 0) {
+		check(ref, map);
+		check(ref, map.clone());
+		check(ref, new NoCompTreeMap<Key,Integer>(ref));
+	    }
+	}
+	check(ref, map);
+    }
+
+    private void check(Map<Key,Integer> ref, NoCompTreeMap<Key,Integer> map) {
+	assertEquals(ref.size(), map.size());
+	assertEquals(ref, map);
+	assertEquals(map, ref);
+	assertEquals(ref.hashCode(), map.hashCode());
+	assertEquals(ref.entrySet(), map.entrySet());
+	assertEquals(ref.keySet(), map.keySet());
+
+	// iteration order: increasing hash codes
+	int count = 0;
+	int lastHash = Integer.MIN_VALUE;
+	for(Key key : map.keySet()) {
+	    assertTrue(key.hashCode() >= lastHash);
+	    lastHash = key.hashCode();
+	    count++;
+	}
+	assertEquals(ref.size(), count);
+    }
+
+
+    public void testSequentialKeys() {
+	// with an unbalanced tree, this takes quadratic time
+	int n = 200000;
+	NoCompTreeMap<Integer,Integer> map = new NoCompTreeMap<Integer,Integer>();
+	for(int i = 0; i < n; i++)
+	    map.put(i, -i);
+	assertEquals(n, map.size());
+	for(int i = 0; i < n; i++)
+	    assertEquals(new Integer(-i), map.get(i));
+
+	Iterator<Integer> it = map.keySet().iterator();
+	for(int i = 0; i < n; i++)
+	    assertEquals(new Integer(i), it.next());
+	assertFalse(it.hasNext());
+
+	for(int i = 0; i < n; i += 2)
+	    assertEquals(new Integer(-i), map.remove(i));
+	assertEquals(n / 2, map.size());
+	assertFalse(map.containsKey(0));
+	assertTrue(map.containsKey(1));
+	assertTrue(map.containsValue(-1));
+	assertFalse(map.containsValue(-2));
+    }
+
+
+    public void testBulkBuild() {
+	Integer[] keys = new Integer[1000];
+	String[] values = new String[1000];
+	NoCompTreeMap<Integer,String> map = new NoCompTreeMap<Integer,String>();
+	for(int i = 0; i < keys.length; i++) {
+	    // duplicates: the last value wins
+	    keys[i] = i / 2;
+	    values[i] = "v" + i;
+	    map.put(keys[i], values[i]);
+	}
+	NoCompTreeMap<Integer,String> map2 = new NoCompTreeMap<Integer,String>(keys, values);
+	assertEquals(map, map2);
+	assertEquals(map.hashCode(), map2.hashCode());
+	assertEquals(500, map2.size());
+	assertEquals("v999", map2.get(499));
+
+	// the bulk-built tree is still a well-formed AVL tree
+	for(int i = 0; i < 500; i++)
+	    assertEquals("v" + (2*i+1), map2.remove(i));
+	assertTrue(map2.isEmpty());
+
+	try {
+	    new NoCompTreeMap<Integer,String>(new Integer[] {2, 1}, new String[] {"a", "b"});
+	    fail("unsorted keys not detected");
+	}
+	catch(IllegalArgumentException e) {
+	    // expected
+	}
+    }
+
+}
@@ -0,0 +1,244 @@
+// TestOpenHashCollections.java, created Sat Oct 17 19:24:03 2026
+// Copyright (C) 2005 Alexandru Salcianu <salcianu@alum.mit.edu>
+// Licensed under the Modified BSD Licence; see COPYING for details.
+package jpaul.DataStructs;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+/**
+ * <code>TestOpenHashCollections</code> contains regression tests for
+ * the open-addressing {@link OpenHashSet} and {@link OpenHashMap}.
+ * Random operations run in parallel on an open-hash structure (with
+ * and without cached hash codes) and on a
+ * <code>LinkedHashSet</code>/<code>LinkedHashMap</code>; the contents
+ * and the (insertion) iteration order must agree.  The keys include
+ * <code>null</code> and objects with colliding hash codes.
+ *
+ * @version $Id$ */
+public class TestOpenHashCollections extends TestCase {
+
+    private final Random random = new Random(System.currentTimeMillis());
+
+    private static final int NB_OPERS = 30000;
+
+    /** Key with a user-chosen hash code. */
+    private static class Key implements Serializable {
+	private static final long serialVersionUID = 1L;
+	Key(int id, int hash) { this.id = id; this.hash = hash; }
+	final int id;
+	final int hash;
+	public int hashCode() { return hash; }
+	public boolean equals(Object o) {
+	    return (o instanceof Key) && ((Key) o).id == id;
+	}
+	public String toString() { return "k" + id; }
+    }
+
+    private Object randomKey(int range) {
+	int id = random.nextInt(range);
+	if(id == 0) return null;
+	// ids < 40 collide in groups of 4
+	return new Key(id, (id < 40) ? (id / 4) : id);
+    }
+
+
+    public void testSet() {
+	for(boolean cacheHashes : new boolean[] {true, false}) {
+	    for(int range : new int[] {8, 70, 1000}) {
+		Set<Object> ref = new LinkedHashSet<Object>();
+		OpenHashSet<Object> set = new OpenHashSet<Object>(cacheHashes);
+		for(int i = 0; i < NB_OPERS; i++) {
+		    Object key = randomKey(range);
+		    switch(random.nextInt(5)) {
+		    case 0:
+		    case 1:
+			assertEquals(ref.remove(key), set.remove(key));
+			break;
+		    case 2:
+			assertEquals(ref.contains(key), set.contains(key));
+			break;
+		    default:
+			assertEquals(ref.add(key), set.add(key));
+		    }
+		    if(i % 500 == 0) {
+			checkSet(ref, set);
+			checkSet(ref, set.clone());
+		    }
+		    if(i % 5000 == 0) {
+			// removal through the iterator
+			for(Iterator<Object> it = set.iterator(); it.hasNext(); ) {
+			    Object elem = it.next();
+			    if(random.nextInt(3) == 0) {
+				it.remove();
+				ref.remove(elem);
+			    }
+			}
+			checkSet(ref, set);
+		    }
+		}
+		checkSet(ref, set);
+		checkSet(ref, serialClone(set));
+		set.clear();
+		ref.clear();
+		checkSet(ref, set);
+	    }
+	}
+    }
+
+    private static void checkSet(Set<Object> ref, Set<Object> set) {
+	assertEquals(ref.size(), set.size());
+	assertEquals(ref, set);
+	assertEquals(set, ref);
+	assertEquals(ref.hashCode(), set.hashCode());
+	assertEquals(ref.toString(), set.toString());
+	assertEquals(new ArrayList<Object>(ref), new ArrayList<Object>(set));
+    }
+
+
+    public void testMap() {
+	for(boolean cacheHashes : new boolean[] {true, false}) {
+	    for(int range : new int[] {8, 70, 1000}) {
+		Map<Object,Integer> ref = new LinkedHashMap<Object,Integer>();
+		OpenHashMap<Object,Integer> map = new OpenHashMap<Object,Integer>(cacheHashes);
+		for(int i = 0; i < NB_OPERS; i++) {
+		    Object key = randomKey(range);
+		    Integer value = (i % 7 == 0) ? null : new Integer(i);
+		    switch(random.nextInt(5)) {
+		    case 0:
+			assertEquals(ref.remove(key), map.remove(key));
+			break;
+		    case 1:
+			assertEquals(ref.containsKey(key), map.containsKey(key));
+			assertEquals(ref.get(key), map.get(key));
+			break;
+		    default:
+			assertEquals(ref.put(key, value), map.put(key, value));
+		    }
+		    if(i % 500 == 0) {
+			checkMap(ref, map);
+			checkMap(ref, map.clone());
+		    }
+		    if(i % 5000 == 0) {
+			// updates and removals through the entry set
+			for(Iterator<Map.Entry<Object,Integer>> it = map.entrySet().iterator(); it.hasNext(); ) {
+			    Map.Entry<Object,Integer> entry = it.next();
+			    if(random.nextInt(3) == 0) {
+				it.remove();
+				ref.remove(entry.getKey());
+			    }
+			    else if(random.nextInt(2) == 0) {
+				entry.setValue(new Integer(-i));
+				ref.put(entry.getKey(), new Integer(-i));
+			    }
+			}
+			checkMap(ref, map);
+		    }
+		}
+		checkMap(ref, map);
+		checkMap(ref, serialClone(map));
+	    }
+	}
+    }
+
+    private static void checkMap(Map<Object,Integer> ref, Map<Object,Integer> map) {
+	assertEquals(ref.size(), map.size());
+	assertEquals(ref, map);
+	assertEquals(map, ref);
+	assertEquals(ref.hashCode(), map.hashCode());
+	assertEquals(ref.entrySet(), map.entrySet());
+	assertEquals(ref.toString(), map.toString());
+	assertEquals(new ArrayList<Object>(ref.keySet()), new ArrayList<Object>(map.keySet()));
+	assertEquals(new ArrayList<Integer>(ref.values()), new ArrayList<Integer>(map.values()));
+    }
+
+
+    // Adding keys that are already in the table must not move the
+    // other keys, even if the dense arrays are full (with holes).
+    public void testAddExisting() {
+	for(boolean cacheHashes : new boolean[] {true, false}) {
+	    for(int n = 2; n < 40; n++) {
+		for(int removed = 0; removed < n - 1; removed++) {
+		    Set<Object> ref = new LinkedHashSet<Object>();
+		    OpenHashSet<Object> set = new OpenHashSet<Object>(cacheHashes);
+		    Map<Object,Integer> refMap = new LinkedHashMap<Object,Integer>();
+		    OpenHashMap<Object,Integer> map = new OpenHashMap<Object,Integer>(cacheHashes);
+		    for(int i = 0; i < n; i++) {
+			ref.add(Integer.valueOf(i));
+			set.add(Integer.valueOf(i));
+			refMap.put(Integer.valueOf(i), Integer.valueOf(i));
+			map.put(Integer.valueOf(i), Integer.valueOf(i));
+		    }
+		    ref.remove(Integer.valueOf(removed));
+		    set.remove(Integer.valueOf(removed));
+		    refMap.remove(Integer.valueOf(removed));
+		    map.remove(Integer.valueOf(removed));
+
+		    assertFalse(set.addAll(set));
+		    checkSet(ref, set);
+
+		    // put on existing keys during the iteration
+		    int nbVisited = 0;
+		    for(Map.Entry<Object,Integer> entry : map.entrySet()) {
+			map.put(entry.getKey(), Integer.valueOf(-1));
+			refMap.put(entry.getKey(), Integer.valueOf(-1));
+			nbVisited++;
+		    }
+		    assertEquals(n - 1, nbVisited);
+		    checkMap(refMap, map);
+		}
+	    }
+	}
+    }
+
+
+    public void testMapSetRelation() {
+	Relation<Object,Object> ref = new MapSetRelation<Object,Object>();
+	Relation<Object,Object> rel =
+	    RelFacts.<Object,Object>mapSet(MapFacts.<Object,Set<Object>>openHash(),
+					   SetFacts.<Object>openHash()).create();
+	for(int i = 0; i < NB_OPERS; i++) {
+	    Object key = randomKey(50);
+	    Object value = randomKey(50);
+	    if(random.nextInt(3) == 0)
+		assertEquals(ref.remove(key, value), rel.remove(key, value));
+	    else
+		assertEquals(ref.add(key, value), rel.add(key, value));
+	    if(i % 1000 == 0) {
+		assertEquals(ref, rel);
+		assertEquals(ref, rel.clone());
+	    }
+	}
+	assertEquals(ref, rel);
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private static <T> T serialClone(T obj) {
+	try {
+	    ByteArrayOutputStream bout = new ByteArrayOutputStream();
+	    ObjectOutputStream out = new ObjectOutputStream(bout);
+	    out.writeObject(obj);
+	    out.close();
+	    ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bout.toByteArray()));
+	    return (T) in.readObject();
+	}
+	catch(Exception e) {
+	    throw new RuntimeException(e);
+	}
+    }
+
+}
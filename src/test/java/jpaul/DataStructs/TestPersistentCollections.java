@@ -0,0 +1,187 @@
+// TestPersistentCollections.java, created Sat Oct 17 15:20:42 2026
+// Copyright (C) 2005 Alexandru Salcianu <salcianu@alum.mit.edu>
+// Licensed under the Modified BSD Licence; see COPYING for details.
+package jpaul.DataStructs;
+
+import java.util.Set;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * <code>TestPersistentCollections</code> contains regression tests
+ * for the persistent (HAMT-based) sets, maps, and relations.  Random
+ * operations run in parallel on several versions (clones) of a
+ * persistent structure and of a trusted <code>java.util</code>
+ * structure; the versions must stay independent.  The keys include
+ * <code>null</code> and objects with colliding hash codes, in order
+ * to exercise the collision nodes at the bottom of the tries.
+ *
+ * @version $Id$ */
+public class TestPersistentCollections extends TestCase {
+
+    private final Random random = new Random(System.currentTimeMillis());
+
+    private static final int NB_OPERS = 30000;
+
+    /** Key with a user-chosen hash code. */
+    private static class Key {
+	Key(int id, int hash) { this.id = id; this.hash = hash; }
+	final int id;
+	final int hash;
+	public int hashCode() { return hash; }
+	public boolean equals(Object o) {
+	    return (o instanceof Key) && ((Key) o).id == id;
+	}
+	public String toString() { return "k" + id; }
+    }
+
+    private Object randomKey() {
+	int id = random.nextInt(3000);
+	if(id == 0) return null;
+	// ids < 100 collide in groups of 4; the others hash to
+	// spread-out values
+	return new Key(id, (id < 100) ? (id / 4) : id * 0x61c88647);
+    }
+
+
+    public void testPersistentMap() {
+	List<Map<Object,Integer>> refs = new ArrayList<Map<Object,Integer>>();
+	List<PersistentMap<Object,Integer>> maps = new ArrayList<PersistentMap<Object,Integer>>();
+	refs.add(new HashMap<Object,Integer>());
+	maps.add(new PersistentMap<Object,Integer>());
+
+	for(int i = 0; i < NB_OPERS; i++) {
+	    int v = random.nextInt(refs.size());
+	    Map<Object,Integer> ref = refs.get(v);
+	    PersistentMap<Object,Integer> map = maps.get(v);
+	    Object key = randomKey();
+	    switch(random.nextInt(10)) {
+	    case 0: case 1: case 2: case 3: {
+		Integer value = new Integer(random.nextInt(5));
+		assertEquals(ref.put(key, value), map.put(key, value));
+		break;
+	    }
+	    case 4: case 5:
+		assertEquals(ref.remove(key), map.remove(key));
+		break;
+	    case 6:
+		if(refs.size() < 10) {
+		    refs.add(new HashMap<Object,Integer>(ref));
+		    maps.add(map.clone());
+		}
+		break;
+	    default:
+		assertEquals(ref.containsKey(key), map.containsKey(key));
+		assertEquals(ref.get(key), map.get(key));
+	    }
+	    assertEquals(ref.size(), map.size());
+	    if(i % 1000 == 0) {
+		for(int j = 0; j < refs.size(); j++) {
+		    assertEquals(refs.get(j), maps.get(j));
+		    assertEquals(refs.get(j).hashCode(), maps.get(j).hashCode());
+		}
+	    }
+	}
+
+	// removal through the iterators
+	PersistentMap<Object,Integer> map = maps.get(0);
+	Map<Object,Integer> ref = refs.get(0);
+	for(Iterator<Object> it = map.keySet().iterator(); it.hasNext(); ) {
+	    Object key = it.next();
+	    if(random.nextBoolean()) {
+		it.remove();
+		ref.remove(key);
+	    }
+	}
+	assertEquals(ref, map);
+	map.clear();
+	assertTrue(map.isEmpty());
+	assertFalse(map.entrySet().iterator().hasNext());
+    }
+
+
+    public void testPersistentSetSnapshots() {
+	PersistentSet<Object> set = new PersistentSet<Object>();
+	Set<Object> ref = new HashSet<Object>();
+	for(int i = 0; i < 5000; i++) {
+	    Object key = randomKey();
+	    set.add(key);
+	    ref.add(key);
+	}
+	PersistentSet<Object> snapshot = set.clone();
+	Set<Object> refSnapshot = new HashSet<Object>(ref);
+	// mutate while iterating: the iterator works on a snapshot
+	int n = 0;
+	for(Object elem : set) {
+	    n++;
+	    set.remove(elem);
+	    set.add(randomKey());
+	}
+	assertEquals(refSnapshot.size(), n);
+	assertEquals(refSnapshot, snapshot);
+	assertEquals(snapshot, new PersistentSet<Object>(ref));
+    }
+
+
+    public void testPersistentRelation() {
+	RelationFactory<Integer,Integer> fact = RelFacts.persistent();
+	List<Relation<Integer,Integer>> refs = new ArrayList<Relation<Integer,Integer>>();
+	List<Relation<Integer,Integer>> rels = new ArrayList<Relation<Integer,Integer>>();
+	refs.add(new MapSetRelation<Integer,Integer>());
+	rels.add(fact.create());
+
+	for(int i = 0; i < NB_OPERS; i++) {
+	    int v = random.nextInt(refs.size());
+	    Relation<Integer,Integer> ref = refs.get(v);
+	    Relation<Integer,Integer> rel = rels.get(v);
+	    Integer key = new Integer(random.nextInt(40));
+	    Integer value = new Integer(random.nextInt(40));
+	    switch(random.nextInt(8)) {
+	    case 0: case 1: case 2:
+		assertEquals(ref.add(key, value), rel.add(key, value));
+		break;
+	    case 3:
+		assertEquals(ref.remove(key, value), rel.remove(key, value));
+		break;
+	    case 4:
+		if(random.nextInt(10) == 0)
+		    assertEquals(ref.removeKey(key), rel.removeKey(key));
+		break;
+	    case 5: {
+		Set<Integer> values = new HashSet<Integer>();
+		values.add(value);
+		values.add(new Integer(random.nextInt(40)));
+		if(random.nextBoolean())
+		    values = new PersistentSet<Integer>(values);
+		assertEquals(ref.addAll(key, values), rel.addAll(key, values));
+		break;
+	    }
+	    case 6:
+		if(refs.size() < 10) {
+		    refs.add(ref.clone());
+		    rels.add(fact.create(rel));
+		}
+		break;
+	    default:
+		assertEquals(ref.contains(key, value), rel.contains(key, value));
+		assertEquals(ref.getValues(key), rel.getValues(key));
+	    }
+	    if(i % 1000 == 0) {
+		for(int j = 0; j < refs.size(); j++) {
+		    assertEquals(refs.get(j), rels.get(j));
+		    assertEquals(rels.get(j), refs.get(j));
+		    assertEquals(refs.get(j).hashCode(), rels.get(j).hashCode());
+		    assertEquals(refs.get(j).size(), rels.get(j).size());
+		}
+	    }
+	}
+    }
+
+}
@@ -5,6 +5,7 @@ package jpaul.DataStructs;
 
 import java.util.Set;
 import java.util.HashSet;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.LinkedList;
@@ -100,6 +101,56 @@ public class TestSetFactory extends TestCase {
 
 	check(SetFacts.hash(), SetFacts.cow(SetFacts.noCompTree()),
 	      "SetFacts.cow(SetFacts.noCompTree())");
+
+	check(SetFacts.hash(), SetFacts.bitSet(new Universe()),
+	      "SetFacts.bitSet(new Universe())");
+
+	check(SetFacts.hash(), SetFacts.cow(SetFacts.bitSet(new Universe())),
+	      "SetFacts.cow(SetFacts.bitSet(new Universe()))");
+
+	check(SetFacts.hash(), SetFacts.persistent(),
+	      "SetFacts.persistent()");
+
+	check(SetFacts.hash(), SetFacts.openHash(),
+	      "SetFacts.openHash()");
+
+	check(SetFacts.hash(), SetFacts.openHash(false),
+	      "SetFacts.openHash(false)");
+
+	check(SetFacts.hash(), SetFacts.mapBased(MapFacts.openHash()),
+	      "SetFacts.mapBased(MapFacts.openHash())");
+
+	check(SetFacts.hash(), SetFacts.cow(SetFacts.openHash()),
+	      "SetFacts.cow(SetFacts.openHash())");
+    }
+
+
+    public void testMapBasedIteratorRemove() {
+	for(MapFactory<Integer,Object> mapFact :
+		Arrays.<MapFactory<Integer,Object>>asList(MapFacts.<Integer,Object>hash(),
+							  MapFacts.<Integer,Object>openHash())) {
+	    Set<Integer> set = SetFacts.<Integer>mapBased(mapFact).create();
+	    Set<Integer> ref = new HashSet<Integer>();
+	    for(int i = 0; i < 20; i++) {
+		set.add(i);
+		ref.add(i);
+	    }
+	    // remove the even elements through the iterator
+	    for(Iterator<Integer> it = set.iterator(); it.hasNext(); ) {
+		if(it.next().intValue() % 2 == 0) {
+		    it.remove();
+		}
+	    }
+	    for(Iterator<Integer> it = ref.iterator(); it.hasNext(); ) {
+		if(it.next().intValue() % 2 == 0) {
+		    it.remove();
+		}
+	    }
+	    assertEquals(10, set.size());
+	    assertFalse(set.contains(4));
+	    assertEquals(ref, set);
+	    assertEquals(ref.hashCode(), set.hashCode());
+	}
     }
 
 